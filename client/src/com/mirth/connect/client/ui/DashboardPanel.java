@@ -54,6 +54,8 @@ import javax.swing.tree.TreeSelectionModel;
 
 import net.miginfocom.swing.MigLayout;
 
+import org.apache.commons.lang3.StringUtils;
+import org.jdesktop.swingx.decorator.AbstractHighlighter;
 import org.jdesktop.swingx.decorator.ColorHighlighter;
 import org.jdesktop.swingx.decorator.ComponentAdapter;
 import org.jdesktop.swingx.decorator.HighlightPredicate;
@@ -809,6 +811,75 @@ public class DashboardPanel extends JPanel {
         };
 
         dashboardTable.addHighlighter(new ColorHighlighter(lastDeployedHighlighterPredicate, new Color(240, 230, 140), Color.BLACK, new Color(240, 230, 140), Color.BLACK));
+
+        HighlightPredicate statusToolTipPredicate = new HighlightPredicate() {
+            public boolean isHighlighted(Component renderer, ComponentAdapter adapter) {
+                return adapter.column == dashboardTable.getColumnViewIndex(STATUS_COLUMN_NAME);
+            }
+        };
+
+        // Show the group commit and XSLT cache statistics of each channel on its status
+        dashboardTable.addHighlighter(new AbstractHighlighter(statusToolTipPredicate) {
+            @Override
+            protected Component doHighlight(Component component, ComponentAdapter adapter) {
+                ((JComponent) component).setToolTipText(getStatusToolTip(getRowStatus(adapter.row)));
+                return component;
+            }
+        });
+
+        HighlightPredicate queuedToolTipPredicate = new HighlightPredicate() {
+            public boolean isHighlighted(Component renderer, ComponentAdapter adapter) {
+                return adapter.column == dashboardTable.getColumnViewIndex(QUEUED_COLUMN_NAME);
+            }
+        };
+
+        // Show how many of the queued messages are buffered in memory
+        dashboardTable.addHighlighter(new AbstractHighlighter(queuedToolTipPredicate) {
+            @Override
+            protected Component doHighlight(Component component, ComponentAdapter adapter) {
+                ((JComponent) component).setToolTipText(getQueueBufferToolTip(getRowStatus(adapter.row)));
+                return component;
+            }
+        });
+    }
+
+    private DashboardStatus getRowStatus(int row) {
+        TreePath path = dashboardTable.getPathForRow(row);
+
+        if (path != null) {
+            AbstractDashboardTableNode dashboardTableNode = (AbstractDashboardTableNode) path.getLastPathComponent();
+            if (!dashboardTableNode.isGroupNode()) {
+                return dashboardTableNode.getDashboardStatus();
+            }
+        }
+
+        return null;
+    }
+
+    private String getStatusToolTip(DashboardStatus status) {
+        if (status == null) {
+            return null;
+        }
+
+        List<String> lines = new ArrayList<String>();
+
+        if (status.getGroupCommitTransactions() != null) {
+            lines.add(String.format("Group commit transactions: %d<br>Average batch size: %.1f<br>Average commit latency: %.1f ms", status.getGroupCommitTransactions(), status.getGroupCommitAverageBatchSize(), status.getGroupCommitAverageLatency()));
+        }
+
+        if (status.getXsltCacheMisses() != null) {
+            lines.add(String.format("XSLT stylesheet cache: %d hits, %d misses", status.getXsltCacheHits(), status.getXsltCacheMisses()));
+        }
+
+        return lines.isEmpty() ? null : "<html><body>" + StringUtils.join(lines, "<br>") + "</body></html>";
+    }
+
+    private String getQueueBufferToolTip(DashboardStatus status) {
+        if (status == null || status.getQueueBufferSize() == null || status.getQueueBufferMemory() == null) {
+            return null;
+        }
+
+        return String.format("<html><body>Buffered messages: %d<br>Estimated buffer memory: %.1f KB</body></html>", status.getQueueBufferSize(), status.getQueueBufferMemory() / 1024.0);
     }
 
     /**
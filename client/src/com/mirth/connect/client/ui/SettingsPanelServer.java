@@ -81,6 +81,8 @@ public class SettingsPanelServer extends AbstractSettingsPanel {
         provideUsageStatsMoreInfoLabel.setToolTipText(UIConstants.PRIVACY_TOOLTIP);
         provideUsageStatsMoreInfoLabel.setCursor(new Cursor(Cursor.HAND_CURSOR));
         queueBufferSizeField.setDocument(new MirthFieldConstraints(8, false, false, true));
+        queueBufferMemoryField.setDocument(new MirthFieldConstraints(6, false, false, true));
+        queueContentPrefetchField.setDocument(new MirthFieldConstraints(4, false, false, true));
         smtpTimeoutField.setDocument(new MirthFieldConstraints(0, false, false, false));
 
         defaultMetaDataColumns = new ArrayList<MetaDataColumn>();
@@ -300,6 +302,18 @@ public class SettingsPanelServer extends AbstractSettingsPanel {
             queueBufferSizeField.setText("");
         }
 
+        if (serverSettings.getQueueBufferMemory() != null && serverSettings.getQueueBufferMemory() > 0) {
+            queueBufferMemoryField.setText(serverSettings.getQueueBufferMemory().toString());
+        } else {
+            queueBufferMemoryField.setText("");
+        }
+
+        if (serverSettings.getQueueContentPrefetch() != null && serverSettings.getQueueContentPrefetch() > 0) {
+            queueContentPrefetchField.setText(serverSettings.getQueueContentPrefetch().toString());
+        } else {
+            queueContentPrefetchField.setText("");
+        }
+
         // TODO: Change this to use a more complex custom metadata table rather than checkboxes
         List<MetaDataColumn> defaultMetaDataColumns = serverSettings.getDefaultMetaDataColumns();
         if (defaultMetaDataColumns != null) {
@@ -353,6 +367,10 @@ public class SettingsPanelServer extends AbstractSettingsPanel {
             serverSettings.setQueueBufferSize(queueBufferSize);
         }
 
+        // A blank queue buffer memory means the buffers are only limited by their size
+        serverSettings.setQueueBufferMemory(NumberUtils.toInt(queueBufferMemoryField.getText(), 0));
+        serverSettings.setQueueContentPrefetch(NumberUtils.toInt(queueContentPrefetchField.getText(), 0));
+
         // TODO: Change this to use a more complex custom metadata table rather than checkboxes
         // Until this is changed to a table, always add source/type/version in order
         List<MetaDataColumn> defaultMetaDataColumns = new ArrayList<MetaDataColumn>();
@@ -663,6 +681,14 @@ public class SettingsPanelServer extends AbstractSettingsPanel {
         queueBufferSizeField = new MirthTextField();
         queueBufferSizeField.setToolTipText("The default source/destination queue buffer size to use for new channels.");
 
+        queueBufferMemoryLabel = new JLabel("Memory Per Queue Buffer (MB):");
+        queueBufferMemoryField = new MirthTextField();
+        queueBufferMemoryField.setToolTipText("<html>The maximum estimated memory each source/destination queue buffer may use,<br/>in megabytes. This is a limit for every queue buffer on its own, not a total for<br/>the server, so the memory used by all queue buffers together can be this limit<br/>times the number of deployed queues. Queue buffers stop reading messages from<br/>the database once this is reached. Leave blank to only limit queue buffers by<br/>their size.</html>");
+
+        queueContentPrefetchLabel = new JLabel("Queue Content Prefetch:");
+        queueContentPrefetchField = new MirthTextField();
+        queueContentPrefetchField.setToolTipText("<html>If set, destination queues only buffer message IDs and load the content of<br/>this many upcoming messages per queue thread in the background. Does not<br/>apply to queues with a thread assignment variable. Leave blank to buffer<br/>queued messages with their content.</html>");
+
         defaultMetaDataLabel = new JLabel("Default Metadata Columns:");
 
         defaultMetaDataSourceCheckBox = new MirthCheckBox("Source");
@@ -778,6 +804,10 @@ public class SettingsPanelServer extends AbstractSettingsPanel {
         channelPanel.add(clearGlobalMapNoRadio);
         channelPanel.add(queueBufferSizeLabel, "newline, right");
         channelPanel.add(queueBufferSizeField, "w 50!");
+        channelPanel.add(queueBufferMemoryLabel, "newline, right");
+        channelPanel.add(queueBufferMemoryField, "w 50!");
+        channelPanel.add(queueContentPrefetchLabel, "newline, right");
+        channelPanel.add(queueContentPrefetchField, "w 50!");
         channelPanel.add(defaultMetaDataLabel, "newline, right");
         channelPanel.add(defaultMetaDataSourceCheckBox, "split 3");
         channelPanel.add(defaultMetaDataTypeCheckBox);
@@ -944,6 +974,10 @@ public class SettingsPanelServer extends AbstractSettingsPanel {
     private MirthRadioButton clearGlobalMapNoRadio;
     private JLabel queueBufferSizeLabel;
     private MirthTextField queueBufferSizeField;
+    private JLabel queueBufferMemoryLabel;
+    private MirthTextField queueBufferMemoryField;
+    private JLabel queueContentPrefetchLabel;
+    private MirthTextField queueContentPrefetchField;
     private JLabel defaultMetaDataLabel;
     private MirthCheckBox defaultMetaDataSourceCheckBox;
     private MirthCheckBox defaultMetaDataTypeCheckBox;
@@ -67,6 +67,9 @@ public class DestinationSettingsPanel extends JPanel {
     private boolean includeFilterTransformer;
     private int retryCount;
     private int retryIntervalMillis;
+    private double retryBackoffMultiplier;
+    private int maxRetryIntervalMillis;
+    private int retryJitterPercent;
     private int threadCount;
     private String threadAssignmentVariable;
     private int queueBufferSize;
@@ -101,6 +104,9 @@ public class DestinationSettingsPanel extends JPanel {
         rotate = properties.isRotate();
         includeFilterTransformer = properties.isIncludeFilterTransformer();
         retryIntervalMillis = properties.getRetryIntervalMillis();
+        retryBackoffMultiplier = properties.getRetryBackoffMultiplier();
+        maxRetryIntervalMillis = properties.getMaxRetryIntervalMillis();
+        retryJitterPercent = properties.getRetryJitterPercent();
         threadCount = properties.getThreadCount();
         threadAssignmentVariable = properties.getThreadAssignmentVariable();
 
@@ -146,6 +152,9 @@ public class DestinationSettingsPanel extends JPanel {
 
         properties.setRegenerateTemplate(regenerateTemplate);
         properties.setRetryIntervalMillis(retryIntervalMillis);
+        properties.setRetryBackoffMultiplier(retryBackoffMultiplier);
+        properties.setMaxRetryIntervalMillis(maxRetryIntervalMillis);
+        properties.setRetryJitterPercent(retryJitterPercent);
         properties.setRetryCount(retryCount);
         properties.setRotate(rotate);
         properties.setIncludeFilterTransformer(includeFilterTransformer);
@@ -218,6 +227,10 @@ public class DestinationSettingsPanel extends JPanel {
 
             list.add("Interval " + String.valueOf(retryIntervalMillis) + " ms");
 
+            if (retryBackoffMultiplier > 1) {
+                list.add("Backoff x" + String.valueOf(retryBackoffMultiplier));
+            }
+
             if (threadCount > 1) {
                 list.add(String.valueOf(threadCount) + " Threads");
 
@@ -361,6 +374,9 @@ public class DestinationSettingsPanel extends JPanel {
 
             retryCountField.setText(String.valueOf(retryCount));
             retryIntervalField.setText(String.valueOf(retryIntervalMillis));
+            retryBackoffMultiplierField.setText(String.valueOf(Math.max(retryBackoffMultiplier, 1)));
+            maxRetryIntervalField.setText(String.valueOf(maxRetryIntervalMillis));
+            retryJitterField.setText(String.valueOf(retryJitterPercent));
             queueThreadsField.setText(String.valueOf(threadCount));
             threadAssignmentVariableField.setText(StringUtils.defaultString(threadAssignmentVariable));
 
@@ -380,6 +396,12 @@ public class DestinationSettingsPanel extends JPanel {
             retryCountField.setEnabled(!queueEnabled || sendFirst);
             retryIntervalLabel.setEnabled(queueEnabled || retryCount > 0);
             retryIntervalField.setEnabled(queueEnabled || retryCount > 0);
+            retryBackoffMultiplierLabel.setEnabled(queueEnabled || retryCount > 0);
+            retryBackoffMultiplierField.setEnabled(queueEnabled || retryCount > 0);
+            maxRetryIntervalLabel.setEnabled(queueEnabled || retryCount > 0);
+            maxRetryIntervalField.setEnabled(queueEnabled || retryCount > 0);
+            retryJitterLabel.setEnabled(queueEnabled || retryCount > 0);
+            retryJitterField.setEnabled(queueEnabled || retryCount > 0);
             queueThreadsLabel.setEnabled(queueEnabled);
             queueThreadsField.setEnabled(queueEnabled);
             threadAssignmentVariableLabel.setEnabled(queueEnabled && threadCount > 1);
@@ -409,6 +431,8 @@ public class DestinationSettingsPanel extends JPanel {
         private boolean saveProperties() {
             retryCountField.setBackground(null);
             retryIntervalField.setBackground(null);
+            retryBackoffMultiplierField.setBackground(null);
+            retryJitterField.setBackground(null);
             queueThreadsField.setBackground(null);
 
             String errors = "";
@@ -423,6 +447,16 @@ public class DestinationSettingsPanel extends JPanel {
                 retryIntervalField.setBackground(UIConstants.INVALID_COLOR);
             }
 
+            if (retryBackoffMultiplierField.isEnabled() && NumberUtils.toDouble(retryBackoffMultiplierField.getText(), 0) < 1) {
+                errors += "Retry backoff multiplier must be at least 1.\n";
+                retryBackoffMultiplierField.setBackground(UIConstants.INVALID_COLOR);
+            }
+
+            if (retryJitterField.isEnabled() && NumberUtils.toInt(retryJitterField.getText(), 0) > 100) {
+                errors += "Retry jitter cannot be more than 100%.\n";
+                retryJitterField.setBackground(UIConstants.INVALID_COLOR);
+            }
+
             if (queueThreadsField.isEnabled() && NumberUtils.toInt(queueThreadsField.getText(), 0) <= 0) {
                 errors += "Queue threads must be greater than zero.\n";
                 queueThreadsField.setBackground(UIConstants.INVALID_COLOR);
@@ -443,6 +477,9 @@ public class DestinationSettingsPanel extends JPanel {
             includeFilterTransformer = includeFilterTransformerYesRadio.isSelected();
             retryCount = NumberUtils.toInt(retryCountField.getText(), 0);
             retryIntervalMillis = NumberUtils.toInt(retryIntervalField.getText(), 0);
+            retryBackoffMultiplier = NumberUtils.toDouble(retryBackoffMultiplierField.getText(), 1);
+            maxRetryIntervalMillis = NumberUtils.toInt(maxRetryIntervalField.getText(), 0);
+            retryJitterPercent = NumberUtils.toInt(retryJitterField.getText(), 0);
             threadCount = NumberUtils.toInt(queueThreadsField.getText(), 1);
             threadAssignmentVariable = threadAssignmentVariableField.getText();
             queueBufferSize = NumberUtils.toInt(queueBufferSizeField.getText());
@@ -496,6 +533,24 @@ public class DestinationSettingsPanel extends JPanel {
             retryIntervalField.setToolTipText("<html>The amount of time that should elapse between retry attempts to send<br/>messages. This interval applies to both the queue and initial retry attempts.</html>");
             retryIntervalField.setDocument(new MirthFieldConstraints(0, false, false, true));
 
+            retryBackoffMultiplierLabel = new JLabel("Retry Backoff Multiplier:");
+
+            retryBackoffMultiplierField = new JTextField();
+            retryBackoffMultiplierField.setToolTipText("<html>Each time a message fails to send again, the time until the next attempt is<br/>multiplied by this value, starting from the retry interval. Set to 1 to always<br/>wait the retry interval.</html>");
+            retryBackoffMultiplierField.setDocument(new MirthFieldConstraints("^[0-9]*\\.?[0-9]*$"));
+
+            maxRetryIntervalLabel = new JLabel("Max Retry Interval (ms):");
+
+            maxRetryIntervalField = new JTextField();
+            maxRetryIntervalField.setToolTipText("<html>The longest amount of time to wait between attempts when the<br/>retry backoff multiplier is greater than 1. Set to 0 for no limit.</html>");
+            maxRetryIntervalField.setDocument(new MirthFieldConstraints(0, false, false, true));
+
+            retryJitterLabel = new JLabel("Retry Jitter (%):");
+
+            retryJitterField = new JTextField();
+            retryJitterField.setToolTipText("<html>Randomly shortens or lengthens the time between attempts by up to this<br/>percentage, so that messages that failed at the same time are not all<br/>retried at the same time.</html>");
+            retryJitterField.setDocument(new MirthFieldConstraints(3, false, false, true));
+
             regenerateTemplateLabel = new JLabel("Regenerate Template:");
 
             ButtonGroup regenerateTemplateButtonGroup = new ButtonGroup();
@@ -612,11 +667,17 @@ public class DestinationSettingsPanel extends JPanel {
         private void initLayout() {
             setLayout(new MigLayout("insets 8, novisualpadding, hidemode 3, fill", "", "[grow][][]"));
 
-            containerPanel.setLayout(new MigLayout("insets 8, novisualpadding, hidemode 3, fill", "[]13[grow]", "[][][][][][][][][grow]"));
+            containerPanel.setLayout(new MigLayout("insets 8, novisualpadding, hidemode 3, fill", "[]13[grow]", "[][][][][][][][][][][][grow]"));
             containerPanel.add(retryCountLabel, "right");
             containerPanel.add(retryCountField, "w 75!");
             containerPanel.add(retryIntervalLabel, "newline, right");
             containerPanel.add(retryIntervalField, "w 75!");
+            containerPanel.add(retryBackoffMultiplierLabel, "newline, right");
+            containerPanel.add(retryBackoffMultiplierField, "w 75!");
+            containerPanel.add(maxRetryIntervalLabel, "newline, right");
+            containerPanel.add(maxRetryIntervalField, "w 75!");
+            containerPanel.add(retryJitterLabel, "newline, right");
+            containerPanel.add(retryJitterField, "w 75!");
             containerPanel.add(rotateLabel, "newline, right");
             containerPanel.add(rotateYesRadio, "split");
             containerPanel.add(rotateNoRadio);
@@ -650,14 +711,23 @@ public class DestinationSettingsPanel extends JPanel {
 
         private void retryCountChanged() {
             if (NumberUtils.toInt(retryCountField.getText()) > 0) {
-                retryIntervalField.setEnabled(true);
-                retryIntervalLabel.setEnabled(true);
+                setRetryIntervalEnabled(true);
             } else if (queueMessagesNeverRadio.isSelected()) {
-                retryIntervalField.setEnabled(false);
-                retryIntervalLabel.setEnabled(false);
+                setRetryIntervalEnabled(false);
             }
         }
 
+        private void setRetryIntervalEnabled(boolean enabled) {
+            retryIntervalField.setEnabled(enabled);
+            retryIntervalLabel.setEnabled(enabled);
+            retryBackoffMultiplierField.setEnabled(enabled);
+            retryBackoffMultiplierLabel.setEnabled(enabled);
+            maxRetryIntervalField.setEnabled(enabled);
+            maxRetryIntervalLabel.setEnabled(enabled);
+            retryJitterField.setEnabled(enabled);
+            retryJitterLabel.setEnabled(enabled);
+        }
+
         private void regenerateTemplateChanged() {
             boolean enabled = !queueMessagesNeverRadio.isSelected() && regenerateTemplateYesRadio.isSelected();
             includeFilterTransformerLabel.setEnabled(enabled);
@@ -685,6 +755,12 @@ public class DestinationSettingsPanel extends JPanel {
         private JTextField retryCountField;
         private JLabel retryIntervalLabel;
         private JTextField retryIntervalField;
+        private JLabel retryBackoffMultiplierLabel;
+        private JTextField retryBackoffMultiplierField;
+        private JLabel maxRetryIntervalLabel;
+        private JTextField maxRetryIntervalField;
+        private JLabel retryJitterLabel;
+        private JTextField retryJitterField;
         private JLabel queueThreadsLabel;
         private JTextField queueThreadsField;
         private JLabel threadAssignmentVariableLabel;
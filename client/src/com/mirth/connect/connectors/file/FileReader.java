@@ -27,6 +27,7 @@ import javax.swing.ScrollPaneConstants;
 
 import net.miginfocom.swing.MigLayout;
 
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.log4j.Logger;
 
 import com.mirth.connect.client.core.ClientException;
@@ -70,6 +71,8 @@ public class FileReader extends ConnectorSettingsPanel {
         errorResponseActionComboBox.setModel(new DefaultComboBoxModel(new FileAction[] {
                 FileAction.AFTER_PROCESSING, FileAction.MOVE, FileAction.DELETE }));
         fileAgeField.setDocument(new MirthFieldConstraints(0, false, false, true));
+        fullScanIntervalField.setDocument(new MirthFieldConstraints(0, false, false, true));
+        processingThreadsField.setDocument(new MirthFieldConstraints(0, false, false, true));
         fileSizeMinimumField.setDocument(new MirthFieldConstraints(0, false, false, true));
         fileSizeMaximumField.setDocument(new MirthFieldConstraints(0, false, false, true));
 
@@ -96,6 +99,8 @@ public class FileReader extends ConnectorSettingsPanel {
         }
 
         properties.setDirectoryRecursion(directoryRecursionYesRadio.isSelected());
+        properties.setWatchForChanges(watchForChangesYesRadio.isSelected());
+        properties.setFullScanInterval(fullScanIntervalField.getText());
         properties.setIgnoreDot(ignoreDotFilesYesRadio.isSelected());
 
         properties.setAnonymous(anonymousYesRadio.isSelected());
@@ -132,6 +137,9 @@ public class FileReader extends ConnectorSettingsPanel {
             properties.setSortBy(FileReceiverProperties.SORT_BY_DATE);
         }
 
+        properties.setProcessingThreads(processingThreadsField.getText());
+        properties.setKeepDirectoryOrder(keepDirectoryOrderYesRadio.isSelected());
+
         properties.setCharsetEncoding(parent.getSelectedEncodingForConnector(charsetEncodingComboBox));
         properties.setFileFilter(fileNameFilterField.getText());
         properties.setRegex(filenameFilterRegexCheckBox.isSelected());
@@ -220,6 +228,14 @@ public class FileReader extends ConnectorSettingsPanel {
             directoryRecursionNoRadio.setSelected(true);
         }
 
+        if (props.isWatchForChanges()) {
+            watchForChangesYesRadio.setSelected(true);
+        } else {
+            watchForChangesNoRadio.setSelected(true);
+        }
+        fullScanIntervalField.setText(props.getFullScanInterval());
+        watchForChangesActionPerformed();
+
         if (props.isIgnoreDot()) {
             ignoreDotFilesYesRadio.setSelected(true);
         } else {
@@ -296,6 +312,14 @@ public class FileReader extends ConnectorSettingsPanel {
             sortByComboBox.setSelectedItem("Date");
         }
 
+        processingThreadsField.setText(props.getProcessingThreads());
+
+        if (props.isKeepDirectoryOrder()) {
+            keepDirectoryOrderYesRadio.setSelected(true);
+        } else {
+            keepDirectoryOrderNoRadio.setSelected(true);
+        }
+
         parent.setPreviousSelectedEncodingForConnector(charsetEncodingComboBox, props.getCharsetEncoding());
 
         fileNameFilterField.setText(props.getFileFilter());
@@ -373,6 +397,15 @@ public class FileReader extends ConnectorSettingsPanel {
             }
         }
 
+        if (props.isWatchForChanges() && scheme == FileScheme.FILE) {
+            if (props.getFullScanInterval().length() == 0) {
+                valid = false;
+                if (highlight) {
+                    fullScanIntervalField.setBackground(UIConstants.INVALID_COLOR);
+                }
+            }
+        }
+
         if (props.isCheckFileAge()) {
             if (props.getFileAge().length() == 0) {
                 valid = false;
@@ -382,6 +415,13 @@ public class FileReader extends ConnectorSettingsPanel {
             }
         }
 
+        if (NumberUtils.toInt(props.getProcessingThreads(), 0) <= 0) {
+            valid = false;
+            if (highlight) {
+                processingThreadsField.setBackground(UIConstants.INVALID_COLOR);
+            }
+        }
+
         if (props.getFileSizeMinimum().length() == 0) {
             valid = false;
             if (highlight) {
@@ -408,6 +448,8 @@ public class FileReader extends ConnectorSettingsPanel {
         pathField.setBackground(null);
         fileNameFilterField.setBackground(null);
         fileAgeField.setBackground(null);
+        fullScanIntervalField.setBackground(null);
+        processingThreadsField.setBackground(null);
         fileSizeMinimumField.setBackground(null);
         fileSizeMaximumField.setBackground(null);
         usernameField.setBackground(null);
@@ -503,6 +545,43 @@ public class FileReader extends ConnectorSettingsPanel {
         directoryRecursionButtonGroup.add(directoryRecursionYesRadio);
         directoryRecursionButtonGroup.add(directoryRecursionNoRadio);
 
+        watchForChangesLabel = new JLabel();
+        watchForChangesLabel.setText("Watch for Changes:");
+
+        watchForChangesYesRadio = new MirthRadioButton();
+        watchForChangesYesRadio.setBackground(UIConstants.BACKGROUND_COLOR);
+        watchForChangesYesRadio.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
+        watchForChangesYesRadio.setText("Yes");
+        watchForChangesYesRadio.setToolTipText("<html>Select Yes to keep track of new files from file system notifications instead of listing the directory on every poll.<br/>This is only available for local files, and is recommended for directories holding many files.</html>");
+        watchForChangesYesRadio.setMargin(new Insets(0, 0, 0, 0));
+        watchForChangesYesRadio.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                watchForChangesActionPerformed();
+            }
+        });
+
+        watchForChangesNoRadio = new MirthRadioButton();
+        watchForChangesNoRadio.setBackground(UIConstants.BACKGROUND_COLOR);
+        watchForChangesNoRadio.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
+        watchForChangesNoRadio.setSelected(true);
+        watchForChangesNoRadio.setText("No");
+        watchForChangesNoRadio.setToolTipText("<html>Select No to list the directory on every poll.</html>");
+        watchForChangesNoRadio.setMargin(new Insets(0, 0, 0, 0));
+        watchForChangesNoRadio.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                watchForChangesActionPerformed();
+            }
+        });
+
+        watchForChangesButtonGroup = new ButtonGroup();
+        watchForChangesButtonGroup.add(watchForChangesYesRadio);
+        watchForChangesButtonGroup.add(watchForChangesNoRadio);
+
+        fullScanIntervalLabel = new JLabel();
+        fullScanIntervalLabel.setText("Full Scan Interval (ms):");
+        fullScanIntervalField = new MirthTextField();
+        fullScanIntervalField.setToolTipText("<html>If Watch for Changes is enabled, the directory is also listed in full this often, in case any notifications were missed.<br/>Set to 0 to only list the directory when the connector starts or notifications are dropped.</html>");
+
         ignoreDotFilesLabel = new JLabel();
         ignoreDotFilesLabel.setText("Ignore . files:");
 
@@ -787,6 +866,33 @@ public class FileReader extends ConnectorSettingsPanel {
         sortByComboBox.setModel(new DefaultComboBoxModel(new String[] { "Date", "Name", "Size" }));
         sortByComboBox.setToolTipText("<html>Selects the order in which files should be processed, if there are multiple files available to be processed.<br>Files can be processed by Date (oldest last modification date first), Size (smallest first) or name (a before z, etc.).</html>");
 
+        processingThreadsLabel = new JLabel();
+        processingThreadsLabel.setText("Processing Threads:");
+        processingThreadsField = new MirthTextField();
+        processingThreadsField.setToolTipText("<html>The number of files read and processed at once.<br/>With more than one thread, files may be processed out of order, and moves and deletes are done in batches.</html>");
+
+        keepDirectoryOrderLabel = new JLabel();
+        keepDirectoryOrderLabel.setText("Keep Directory Order:");
+
+        keepDirectoryOrderYesRadio = new MirthRadioButton();
+        keepDirectoryOrderYesRadio.setBackground(UIConstants.BACKGROUND_COLOR);
+        keepDirectoryOrderYesRadio.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
+        keepDirectoryOrderYesRadio.setText("Yes");
+        keepDirectoryOrderYesRadio.setToolTipText("<html>If there is more than one processing thread, select Yes to process the files in each directory one at a time in the selected sort order.<br/>The next file in the directory is read while the current one is being processed.</html>");
+        keepDirectoryOrderYesRadio.setMargin(new Insets(0, 0, 0, 0));
+
+        keepDirectoryOrderNoRadio = new MirthRadioButton();
+        keepDirectoryOrderNoRadio.setBackground(UIConstants.BACKGROUND_COLOR);
+        keepDirectoryOrderNoRadio.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
+        keepDirectoryOrderNoRadio.setSelected(true);
+        keepDirectoryOrderNoRadio.setText("No");
+        keepDirectoryOrderNoRadio.setToolTipText("<html>If there is more than one processing thread, select No to process any files at once, regardless of order.</html>");
+        keepDirectoryOrderNoRadio.setMargin(new Insets(0, 0, 0, 0));
+
+        keepDirectoryOrderButtonGroup = new ButtonGroup();
+        keepDirectoryOrderButtonGroup.add(keepDirectoryOrderYesRadio);
+        keepDirectoryOrderButtonGroup.add(keepDirectoryOrderNoRadio);
+
         fileTypeLabel = new JLabel();
         fileTypeLabel.setText("File Type:");
 
@@ -855,6 +961,13 @@ public class FileReader extends ConnectorSettingsPanel {
         add(directoryRecursionYesRadio, "split 2, spanx");
         add(directoryRecursionNoRadio);
 
+        add(watchForChangesLabel, "newline");
+        add(watchForChangesYesRadio, "split 2, spanx");
+        add(watchForChangesNoRadio);
+
+        add(fullScanIntervalLabel, "newline");
+        add(fullScanIntervalField, "w 75!, spanx");
+
         add(ignoreDotFilesLabel, "newline");
         add(ignoreDotFilesYesRadio, "split 2, spanx");
         add(ignoreDotFilesNoRadio);
@@ -927,6 +1040,13 @@ public class FileReader extends ConnectorSettingsPanel {
         add(sortFilesByLabel, "newline");
         add(sortByComboBox, "w 75!, spanx");
 
+        add(processingThreadsLabel, "newline");
+        add(processingThreadsField, "w 75!, spanx");
+
+        add(keepDirectoryOrderLabel, "newline");
+        add(keepDirectoryOrderYesRadio, "split 2, spanx");
+        add(keepDirectoryOrderNoRadio);
+
         add(fileTypeLabel, "newline");
         add(fileTypeBinary, "split 2, spanx");
         add(fileTypeText);
@@ -983,6 +1103,12 @@ public class FileReader extends ConnectorSettingsPanel {
         directoryLabel.setEnabled(!enableHost);
         directoryField.setEnabled(!enableHost);
 
+        // File system notifications are only available for local files
+        watchForChangesLabel.setEnabled(scheme == FileScheme.FILE);
+        watchForChangesYesRadio.setEnabled(scheme == FileScheme.FILE);
+        watchForChangesNoRadio.setEnabled(scheme == FileScheme.FILE);
+        watchForChangesActionPerformed();
+
         // reset the other fields.
         anonymousLabel.setEnabled(false);
         anonymousYesRadio.setEnabled(false);
@@ -1211,6 +1337,12 @@ public class FileReader extends ConnectorSettingsPanel {
         }
     }
 
+    private void watchForChangesActionPerformed() {
+        boolean enabled = watchForChangesYesRadio.isEnabled() && watchForChangesYesRadio.isSelected();
+        fullScanIntervalLabel.setEnabled(enabled);
+        fullScanIntervalField.setEnabled(enabled);
+    }
+
     private void ignoreFileSizeMaximumCheckBoxActionPerformed(ActionEvent evt) {
         fileSizeDashLabel.setEnabled(!ignoreFileSizeMaximumCheckBox.isSelected());
         fileSizeMaximumField.setEnabled(!ignoreFileSizeMaximumCheckBox.isSelected());
@@ -1255,6 +1387,18 @@ public class FileReader extends ConnectorSettingsPanel {
     private JLabel directoryRecursionLabel;
     private MirthRadioButton directoryRecursionNoRadio;
     private MirthRadioButton directoryRecursionYesRadio;
+    private ButtonGroup watchForChangesButtonGroup;
+    private JLabel watchForChangesLabel;
+    private MirthRadioButton watchForChangesNoRadio;
+    private MirthRadioButton watchForChangesYesRadio;
+    private JLabel fullScanIntervalLabel;
+    private MirthTextField fullScanIntervalField;
+    private JLabel processingThreadsLabel;
+    private MirthTextField processingThreadsField;
+    private ButtonGroup keepDirectoryOrderButtonGroup;
+    private JLabel keepDirectoryOrderLabel;
+    private MirthRadioButton keepDirectoryOrderNoRadio;
+    private MirthRadioButton keepDirectoryOrderYesRadio;
     private JLabel encodingLabel;
     private MirthTextField errorMoveToDirectoryField;
     private JLabel errorMoveToDirectoryLabel;
@@ -53,6 +53,7 @@ import net.miginfocom.swing.MigLayout;
 
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.http.entity.ContentType;
 import org.jdesktop.swingx.decorator.Highlighter;
 import org.jdesktop.swingx.decorator.HighlighterFactory;
@@ -141,9 +142,13 @@ public class HttpListener extends ConnectorSettingsPanel {
         HttpReceiverProperties properties = (HttpReceiverProperties) getDefaults();
         properties.setContextPath(contextPathField.getText());
         properties.setTimeout(receiveTimeoutField.getText());
+        properties.setSharedListener(sharedListenerYesRadio.isSelected());
+        properties.setAsyncProcessing(asyncProcessingYesRadio.isSelected());
+        properties.setProcessingThreads(processingThreadsField.getText());
         properties.setXmlBody(messageContentXmlBodyRadio.isSelected());
         properties.setParseMultipart(parseMultipartYesRadio.isSelected());
         properties.setIncludeMetadata(includeMetadataYesRadio.isSelected());
+        properties.setStreamRequestBody(streamRequestBodyYesRadio.isSelected());
         properties.setBinaryMimeTypes(binaryMimeTypesField.getText());
         properties.setBinaryMimeTypesRegex(binaryMimeTypesRegexCheckBox.isSelected());
         properties.setResponseContentType(responseContentTypeField.getText());
@@ -168,6 +173,20 @@ public class HttpListener extends ConnectorSettingsPanel {
         contextPathField.setText(props.getContextPath());
         receiveTimeoutField.setText(props.getTimeout());
 
+        if (props.isSharedListener()) {
+            sharedListenerYesRadio.setSelected(true);
+        } else {
+            sharedListenerNoRadio.setSelected(true);
+        }
+
+        if (props.isAsyncProcessing()) {
+            asyncProcessingYesRadio.setSelected(true);
+        } else {
+            asyncProcessingNoRadio.setSelected(true);
+        }
+        processingThreadsField.setText(props.getProcessingThreads());
+        asyncProcessingRadioActionPerformed();
+
         updateHttpUrl();
 
         if (props.isXmlBody()) {
@@ -190,6 +209,12 @@ public class HttpListener extends ConnectorSettingsPanel {
             includeMetadataNoRadio.setSelected(true);
         }
 
+        if (props.isStreamRequestBody()) {
+            streamRequestBodyYesRadio.setSelected(true);
+        } else {
+            streamRequestBodyNoRadio.setSelected(true);
+        }
+
         binaryMimeTypesField.setText(props.getBinaryMimeTypes());
         binaryMimeTypesRegexCheckBox.setSelected(props.isBinaryMimeTypesRegex());
 
@@ -246,6 +271,13 @@ public class HttpListener extends ConnectorSettingsPanel {
             }
         }
 
+        if (props.isAsyncProcessing() && NumberUtils.toInt(props.getProcessingThreads(), 0) <= 0) {
+            valid = false;
+            if (highlight) {
+                processingThreadsField.setBackground(UIConstants.INVALID_COLOR);
+            }
+        }
+
         if (!props.getSourceConnectorProperties().getResponseVariable().equalsIgnoreCase("None")) {
             if (props.getResponseContentType().length() == 0) {
                 valid = false;
@@ -268,6 +300,7 @@ public class HttpListener extends ConnectorSettingsPanel {
     @Override
     public void resetInvalidProperties() {
         receiveTimeoutField.setBackground(null);
+        processingThreadsField.setBackground(null);
         responseContentTypeField.setBackground(null);
         responseHeadersVariableField.setBackground(null);
     }
@@ -840,6 +873,16 @@ public class HttpListener extends ConnectorSettingsPanel {
         contextPathField = new MirthTextField();
         receiveTimeoutLabel = new JLabel();
         receiveTimeoutField = new MirthTextField();
+        sharedListenerButtonGroup = new ButtonGroup();
+        sharedListenerLabel = new JLabel();
+        sharedListenerYesRadio = new MirthRadioButton();
+        sharedListenerNoRadio = new MirthRadioButton();
+        asyncProcessingButtonGroup = new ButtonGroup();
+        asyncProcessingLabel = new JLabel();
+        asyncProcessingYesRadio = new MirthRadioButton();
+        asyncProcessingNoRadio = new MirthRadioButton();
+        processingThreadsLabel = new JLabel();
+        processingThreadsField = new MirthTextField();
         httpUrlField = new JTextField();
         httpUrlLabel = new JLabel();
         headersLabel = new JLabel();
@@ -856,6 +899,10 @@ public class HttpListener extends ConnectorSettingsPanel {
         includeMetadataLabel = new JLabel();
         includeMetadataYesRadio = new MirthRadioButton();
         includeMetadataNoRadio = new MirthRadioButton();
+        streamRequestBodyButtonGroup = new ButtonGroup();
+        streamRequestBodyLabel = new JLabel();
+        streamRequestBodyYesRadio = new MirthRadioButton();
+        streamRequestBodyNoRadio = new MirthRadioButton();
         staticResourcesLabel = new JLabel();
         staticResourcesDeleteButton = new JButton();
         staticResourcesNewButton = new JButton();
@@ -900,6 +947,41 @@ public class HttpListener extends ConnectorSettingsPanel {
 
         receiveTimeoutLabel.setText("Receive Timeout (ms):");
 
+        sharedListenerLabel.setText("Shared Listener:");
+
+        sharedListenerYesRadio.setBackground(new Color(255, 255, 255));
+        sharedListenerButtonGroup.add(sharedListenerYesRadio);
+        sharedListenerYesRadio.setText("Yes");
+        sharedListenerYesRadio.setMargin(new Insets(0, 0, 0, 0));
+
+        sharedListenerNoRadio.setBackground(new Color(255, 255, 255));
+        sharedListenerButtonGroup.add(sharedListenerNoRadio);
+        sharedListenerNoRadio.setText("No");
+        sharedListenerNoRadio.setMargin(new Insets(0, 0, 0, 0));
+
+        asyncProcessingLabel.setText("Asynchronous Processing:");
+
+        ActionListener asyncProcessingListener = new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                asyncProcessingRadioActionPerformed();
+            }
+        };
+
+        asyncProcessingYesRadio.setBackground(new Color(255, 255, 255));
+        asyncProcessingButtonGroup.add(asyncProcessingYesRadio);
+        asyncProcessingYesRadio.setText("Yes");
+        asyncProcessingYesRadio.setMargin(new Insets(0, 0, 0, 0));
+        asyncProcessingYesRadio.addActionListener(asyncProcessingListener);
+
+        asyncProcessingNoRadio.setBackground(new Color(255, 255, 255));
+        asyncProcessingButtonGroup.add(asyncProcessingNoRadio);
+        asyncProcessingNoRadio.setText("No");
+        asyncProcessingNoRadio.setMargin(new Insets(0, 0, 0, 0));
+        asyncProcessingNoRadio.addActionListener(asyncProcessingListener);
+
+        processingThreadsLabel.setText("Processing Threads:");
+        processingThreadsField.setDocument(new MirthFieldConstraints(0, false, false, true));
+
         httpUrlLabel.setText("HTTP URL:");
 
         headersLabel.setText("Response Headers:");
@@ -981,6 +1063,18 @@ public class HttpListener extends ConnectorSettingsPanel {
         includeMetadataNoRadio.setText("No");
         includeMetadataNoRadio.setMargin(new Insets(0, 0, 0, 0));
 
+        streamRequestBodyLabel.setText("Stream Request Body:");
+
+        streamRequestBodyYesRadio.setBackground(new Color(255, 255, 255));
+        streamRequestBodyButtonGroup.add(streamRequestBodyYesRadio);
+        streamRequestBodyYesRadio.setText("Yes");
+        streamRequestBodyYesRadio.setMargin(new Insets(0, 0, 0, 0));
+
+        streamRequestBodyNoRadio.setBackground(new Color(255, 255, 255));
+        streamRequestBodyButtonGroup.add(streamRequestBodyNoRadio);
+        streamRequestBodyNoRadio.setText("No");
+        streamRequestBodyNoRadio.setMargin(new Insets(0, 0, 0, 0));
+
         staticResourcesLabel.setText("Static Resources:");
 
         staticResourcesDeleteButton.setText("Delete");
@@ -1041,6 +1135,13 @@ public class HttpListener extends ConnectorSettingsPanel {
         charsetEncodingCombobox.setToolTipText("<html>Select the character set encoding to be used for the response to the sending system.<br>Set to Default to assume the default character set encoding for the JVM running Mirth Connect.</html>");
         contextPathField.setToolTipText("The context path for the HTTP Listener URL.");
         receiveTimeoutField.setToolTipText("Enter the maximum idle time in milliseconds for a connection.");
+        String sharedListenerToolTipText = "<html>Select Yes to add this listener to a server shared by all HTTP Listeners on the same host and port, using its<br/>base context path. Each listener on the shared server must have a different base context path.<br/>Select No to start a separate server for this listener.</html>";
+        sharedListenerYesRadio.setToolTipText(sharedListenerToolTipText);
+        sharedListenerNoRadio.setToolTipText(sharedListenerToolTipText);
+        String asyncProcessingToolTipText = "<html>Select Yes to process requests on this listener's own processing threads, so that the server's<br/>threads are free to receive other requests while messages are processed.<br/>Select No to process each request on the thread that received it.</html>";
+        asyncProcessingYesRadio.setToolTipText(asyncProcessingToolTipText);
+        asyncProcessingNoRadio.setToolTipText(asyncProcessingToolTipText);
+        processingThreadsField.setToolTipText("<html>The maximum number of requests this listener processes at once.<br/>Requests received while all threads are busy wait for one to become available, up<br/>to 10 waiting requests per thread. Requests beyond that receive a 503 response.</html>");
         httpUrlField.setToolTipText("<html>Displays the generated HTTP URL for the HTTP Listener.</html>");
         responseHeadersTable.setToolTipText("Response header parameters are encoded as HTTP headers in the response sent to the client.");
         responseStatusCodeField.setToolTipText("<html>Enter the status code for the HTTP response.  If this field is left blank a <br>default status code of 200 will be returned for a successful message, <br>and 500 will be returned for an errored message. If a \"Respond from\" <br>value is chosen, that response will be used to determine a successful <br>or errored response.<html>");
@@ -1048,6 +1149,9 @@ public class HttpListener extends ConnectorSettingsPanel {
         parseMultipartYesRadio.setToolTipText("<html>Select Yes to automatically parse multipart requests into separate XML nodes.<br/>Select No to always keep the request body as a single XML node.</html>");
         parseMultipartNoRadio.setToolTipText("<html>Select Yes to automatically parse multipart requests into separate XML nodes.<br/>Select No to always keep the request body as a single XML node.</html>");
         includeMetadataYesRadio.setToolTipText("<html>Select Yes to include request metadata (method, context path, headers,<br/>query parameters) in the XML content. Note that regardless of this<br/>setting, the same metadata is always available in the source map.</html>");
+        String streamRequestBodyToolTipText = "<html>Select Yes to write large request bodies to a temporary file instead of reading them into memory.<br/>With batch processing the batch is read from the file as it is split. Otherwise the body is stored<br/>as an attachment, and the raw content of the message is the attachment's replacement token.<br/>Select No to read the entire request body into the raw content.</html>";
+        streamRequestBodyYesRadio.setToolTipText(streamRequestBodyToolTipText);
+        streamRequestBodyNoRadio.setToolTipText(streamRequestBodyToolTipText);
         includeMetadataNoRadio.setToolTipText("<html>Select Yes to include request metadata (method, context path, headers,<br/>query parameters) in the XML content. Note that regardless of this<br/>setting, the same metadata is always available in the source map.</html>");
         staticResourcesTable.setToolTipText("<html>Values in this table are automatically sent back to any request<br/>with the matching context path. There are three resource types:<br/> - <b>File</b>: The value field specifies the path of the file to return.<br/> - <b>Directory</b>: Any file within the directory given by the value<br/>&nbsp;&nbsp;&nbsp;field may be requested, but subdirectories are not included.<br/> - <b>Custom</b>: The value field itself is returned as the response.<br/></html>");
         responseDataTypeBinaryRadio.setToolTipText("<html>If Binary is selected, responses will be decoded from Base64 into raw byte streams.<br/>If Text is selected, responses will be encoded with the specified character set encoding.</html>");
@@ -1060,12 +1164,20 @@ public class HttpListener extends ConnectorSettingsPanel {
     }
 
     protected void initLayout() {
-        setLayout(new MigLayout("insets 0 8 0 8, novisualpadding, hidemode 3, gap 12 6", "[][]6[]", "[][][][][][][][][][][][][grow][grow]"));
+        setLayout(new MigLayout("insets 0 8 0 8, novisualpadding, hidemode 3, gap 12 6", "[][]6[]", "[][][][][][][][][][][][][][][][][grow][grow]"));
 
         add(contextPathLabel, "right");
         add(contextPathField, "w 150!, sx");
         add(receiveTimeoutLabel, "newline, right");
         add(receiveTimeoutField, "w 100!, sx");
+        add(sharedListenerLabel, "newline, right");
+        add(sharedListenerYesRadio, "split 2");
+        add(sharedListenerNoRadio);
+        add(asyncProcessingLabel, "newline, right");
+        add(asyncProcessingYesRadio, "split 2");
+        add(asyncProcessingNoRadio);
+        add(processingThreadsLabel, "newline, right");
+        add(processingThreadsField, "w 50!, sx");
         add(messageContentLabel, "newline, right");
         add(messageContentPlainBodyRadio, "split 2");
         add(messageContentXmlBodyRadio);
@@ -1075,6 +1187,9 @@ public class HttpListener extends ConnectorSettingsPanel {
         add(includeMetadataLabel, "newline, right");
         add(includeMetadataYesRadio, "split 2");
         add(includeMetadataNoRadio);
+        add(streamRequestBodyLabel, "newline, right");
+        add(streamRequestBodyYesRadio, "split 2");
+        add(streamRequestBodyNoRadio);
         add(binaryMimeTypesLabel, "newline, right");
         add(binaryMimeTypesField, "w 300!, sx, split 3");
         add(binaryMimeTypesRegexCheckBox);
@@ -1110,6 +1225,14 @@ public class HttpListener extends ConnectorSettingsPanel {
         includeMetadataLabel.setEnabled(false);
         includeMetadataYesRadio.setEnabled(false);
         includeMetadataNoRadio.setEnabled(false);
+        streamRequestBodyLabel.setEnabled(true);
+        streamRequestBodyYesRadio.setEnabled(true);
+        streamRequestBodyNoRadio.setEnabled(true);
+    }
+
+    private void asyncProcessingRadioActionPerformed() {
+        processingThreadsLabel.setEnabled(asyncProcessingYesRadio.isSelected());
+        processingThreadsField.setEnabled(asyncProcessingYesRadio.isSelected());
     }
 
     private void contextPathFieldKeyReleased(java.awt.event.KeyEvent evt) {
@@ -1149,6 +1272,9 @@ public class HttpListener extends ConnectorSettingsPanel {
         includeMetadataLabel.setEnabled(true);
         includeMetadataYesRadio.setEnabled(true);
         includeMetadataNoRadio.setEnabled(true);
+        streamRequestBodyLabel.setEnabled(false);
+        streamRequestBodyYesRadio.setEnabled(false);
+        streamRequestBodyNoRadio.setEnabled(false);
     }
 
     private void staticResourcesDeleteButtonActionPerformed(ActionEvent evt) {
@@ -1214,6 +1340,10 @@ public class HttpListener extends ConnectorSettingsPanel {
     private JLabel headersLabel;
     protected JTextField httpUrlField;
     protected JLabel httpUrlLabel;
+    private ButtonGroup asyncProcessingButtonGroup;
+    private JLabel asyncProcessingLabel;
+    private MirthRadioButton asyncProcessingNoRadio;
+    private MirthRadioButton asyncProcessingYesRadio;
     private ButtonGroup includeHeadersGroup;
     private ButtonGroup includeMetadataButtonGroup;
     private JLabel includeMetadataLabel;
@@ -1226,6 +1356,8 @@ public class HttpListener extends ConnectorSettingsPanel {
     private JLabel parseMultipartLabel;
     private MirthRadioButton parseMultipartNoRadio;
     private MirthRadioButton parseMultipartYesRadio;
+    private JLabel processingThreadsLabel;
+    private MirthTextField processingThreadsField;
     protected MirthTextField receiveTimeoutField;
     protected JLabel receiveTimeoutLabel;
     protected JLabel responseStatusCodeLabel;
@@ -1244,9 +1376,17 @@ public class HttpListener extends ConnectorSettingsPanel {
     private MirthRadioButton useResponseHeadersVariableRadio;
     private MirthTextField responseHeadersVariableField;
     private MirthTextField responseStatusCodeField;
+    private ButtonGroup sharedListenerButtonGroup;
+    private JLabel sharedListenerLabel;
+    private MirthRadioButton sharedListenerNoRadio;
+    private MirthRadioButton sharedListenerYesRadio;
     private JButton staticResourcesDeleteButton;
     private JLabel staticResourcesLabel;
     private JButton staticResourcesNewButton;
     private MirthTable staticResourcesTable;
+    private ButtonGroup streamRequestBodyButtonGroup;
+    private JLabel streamRequestBodyLabel;
+    private MirthRadioButton streamRequestBodyNoRadio;
+    private MirthRadioButton streamRequestBodyYesRadio;
     // End of variables declaration
 }
@@ -46,6 +46,7 @@ import net.miginfocom.swing.MigLayout;
 
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.http.entity.ContentType;
 import org.jdesktop.swingx.decorator.Highlighter;
 import org.jdesktop.swingx.decorator.HighlighterFactory;
@@ -59,6 +60,7 @@ import com.mirth.connect.client.ui.TextFieldCellEditor;
 import com.mirth.connect.client.ui.UIConstants;
 import com.mirth.connect.client.ui.components.MirthCheckBox;
 import com.mirth.connect.client.ui.components.MirthComboBox;
+import com.mirth.connect.client.ui.components.MirthFieldConstraints;
 import com.mirth.connect.client.ui.components.MirthIconTextField;
 import com.mirth.connect.client.ui.components.MirthPasswordField;
 import com.mirth.connect.client.ui.components.MirthRadioButton;
@@ -165,6 +167,11 @@ public class HttpSender extends ConnectorSettingsPanel {
         properties.setMultipart(multipartYesButton.isSelected());
 
         properties.setSocketTimeout(sendTimeoutField.getText());
+        properties.setPoolConnections(poolConnectionsYesRadio.isSelected());
+        properties.setMaxConnectionsPerRoute(maxConnectionsPerRouteField.getText());
+        properties.setMaxConnections(maxConnectionsField.getText());
+        properties.setConnectionIdleTimeout(connectionIdleTimeoutField.getText());
+        properties.setConnectionPoolName(connectionPoolNameField.getText());
 
         properties.setUseAuthentication(authenticationYesRadio.isSelected());
 
@@ -247,6 +254,17 @@ public class HttpSender extends ConnectorSettingsPanel {
 
         sendTimeoutField.setText(props.getSocketTimeout());
 
+        if (props.isPoolConnections()) {
+            poolConnectionsYesRadio.setSelected(true);
+        } else {
+            poolConnectionsNoRadio.setSelected(true);
+        }
+        maxConnectionsPerRouteField.setText(props.getMaxConnectionsPerRoute());
+        maxConnectionsField.setText(props.getMaxConnections());
+        connectionIdleTimeoutField.setText(props.getConnectionIdleTimeout());
+        connectionPoolNameField.setText(props.getConnectionPoolName());
+        poolConnectionsRadioActionPerformed();
+
         if (props.isUseAuthentication()) {
             authenticationYesRadio.setSelected(true);
             authenticationYesRadioActionPerformed(null);
@@ -630,6 +648,29 @@ public class HttpSender extends ConnectorSettingsPanel {
             }
         }
 
+        if (props.isPoolConnections()) {
+            if (NumberUtils.toInt(props.getMaxConnectionsPerRoute()) <= 0) {
+                valid = false;
+                if (highlight) {
+                    maxConnectionsPerRouteField.setBackground(UIConstants.INVALID_COLOR);
+                }
+            }
+
+            if (NumberUtils.toInt(props.getMaxConnections()) <= 0) {
+                valid = false;
+                if (highlight) {
+                    maxConnectionsField.setBackground(UIConstants.INVALID_COLOR);
+                }
+            }
+
+            if (props.getConnectionIdleTimeout().length() == 0) {
+                valid = false;
+                if (highlight) {
+                    connectionIdleTimeoutField.setBackground(UIConstants.INVALID_COLOR);
+                }
+            }
+        }
+
         if (props.isUseParametersVariable() && StringUtils.isBlank(props.getParametersVariable())) {
             valid = false;
             if (highlight) {
@@ -667,6 +708,9 @@ public class HttpSender extends ConnectorSettingsPanel {
         proxyAddressField.setBackground(null);
         proxyPortField.setBackground(null);
         sendTimeoutField.setBackground(null);
+        maxConnectionsPerRouteField.setBackground(null);
+        maxConnectionsField.setBackground(null);
+        connectionIdleTimeoutField.setBackground(null);
         queryParamsVariableField.setBackground(null);
         headersVariableField.setBackground(null);
         contentTypeField.setBackground(null);
@@ -869,6 +913,19 @@ public class HttpSender extends ConnectorSettingsPanel {
         charsetEncodingCombobox = new MirthComboBox<String>();
         sendTimeoutField = new MirthTextField();
         sendTimeoutLabel = new JLabel();
+        poolConnectionsButtonGroup = new ButtonGroup();
+        poolConnectionsLabel = new JLabel();
+        poolConnectionsYesRadio = new MirthRadioButton();
+        poolConnectionsNoRadio = new MirthRadioButton();
+        maxConnectionsLabel = new JLabel();
+        maxConnectionsPerRouteField = new MirthTextField();
+        maxConnectionsPerRouteLabel = new JLabel();
+        maxConnectionsField = new MirthTextField();
+        maxConnectionsTotalLabel = new JLabel();
+        connectionIdleTimeoutLabel = new JLabel();
+        connectionIdleTimeoutField = new MirthTextField();
+        connectionPoolNameLabel = new JLabel();
+        connectionPoolNameField = new MirthTextField();
         parseMultipartLabel = new JLabel();
         parseMultipartYesRadio = new MirthRadioButton();
         parseMultipartNoRadio = new MirthRadioButton();
@@ -1112,6 +1169,37 @@ public class HttpSender extends ConnectorSettingsPanel {
 
         sendTimeoutLabel.setText("Send Timeout (ms):");
 
+        poolConnectionsLabel.setText("Pool Connections:");
+
+        ActionListener poolConnectionsListener = new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                poolConnectionsRadioActionPerformed();
+            }
+        };
+
+        poolConnectionsYesRadio.setBackground(new Color(255, 255, 255));
+        poolConnectionsButtonGroup.add(poolConnectionsYesRadio);
+        poolConnectionsYesRadio.setText("Yes");
+        poolConnectionsYesRadio.setMargin(new Insets(0, 0, 0, 0));
+        poolConnectionsYesRadio.addActionListener(poolConnectionsListener);
+
+        poolConnectionsNoRadio.setBackground(new Color(255, 255, 255));
+        poolConnectionsButtonGroup.add(poolConnectionsNoRadio);
+        poolConnectionsNoRadio.setText("No");
+        poolConnectionsNoRadio.setMargin(new Insets(0, 0, 0, 0));
+        poolConnectionsNoRadio.addActionListener(poolConnectionsListener);
+
+        maxConnectionsLabel.setText("Max Connections:");
+        maxConnectionsPerRouteField.setDocument(new MirthFieldConstraints(0, false, false, true));
+        maxConnectionsPerRouteLabel.setText("per host");
+        maxConnectionsField.setDocument(new MirthFieldConstraints(0, false, false, true));
+        maxConnectionsTotalLabel.setText("total");
+
+        connectionIdleTimeoutLabel.setText("Idle Timeout (ms):");
+        connectionIdleTimeoutField.setDocument(new MirthFieldConstraints(0, false, false, true));
+
+        connectionPoolNameLabel.setText("Shared Pool Name:");
+
         parseMultipartLabel.setText("Parse Multipart:");
 
         parseMultipartYesRadio.setBackground(new Color(255, 255, 255));
@@ -1227,6 +1315,13 @@ public class HttpSender extends ConnectorSettingsPanel {
         authenticationTypeDigestRadio.setToolTipText("Use the digest authentication scheme.");
         authenticationTypeBasicRadio.setToolTipText("Use the basic authentication scheme.");
         charsetEncodingCombobox.setToolTipText("<html>Select the character set encoding used by the sender of the message,<br> or Default to assume the default character set encoding for the JVM running Mirth Connect.</html>");
+        String poolConnectionsToolTipText = "<html>Select Yes to keep connections open after each request and reuse them for later requests<br/>from any queue thread of this destination. Select No to give each queue thread its own connection.</html>";
+        poolConnectionsYesRadio.setToolTipText(poolConnectionsToolTipText);
+        poolConnectionsNoRadio.setToolTipText(poolConnectionsToolTipText);
+        maxConnectionsPerRouteField.setToolTipText("The maximum number of open connections to each host.");
+        maxConnectionsField.setToolTipText("The maximum number of open connections across all hosts.");
+        connectionIdleTimeoutField.setToolTipText("<html>Connections that have not been used for this many milliseconds are closed.<br/>A value of zero keeps idle connections open until the server closes them.</html>");
+        connectionPoolNameField.setToolTipText("<html>If set, the connection pool is shared by every HTTP Sender and Web Service Sender with the same<br/>shared pool name. The pool settings are taken from the destination that starts first. Pools<br/>are only shared with the default HTTPS configuration; when a custom one is used (e.g.<br/>with a client certificate) each destination gets its own pool. Leave blank to give this<br/>destination its own pool.</html>");
         sendTimeoutField.setToolTipText("<html>Sets the socket timeout (SO_TIMEOUT) in milliseconds to be used when executing the method.<br>A timeout value of zero is interpreted as an infinite timeout.</html>");
         parseMultipartYesRadio.setToolTipText("<html>Select Yes to automatically parse multipart responses into separate XML nodes.<br/>Select No to always keep the response body as a single XML node.</html>");
         parseMultipartNoRadio.setToolTipText("<html>Select Yes to automatically parse multipart responses into separate XML nodes.<br/>Select No to always keep the response body as a single XML node.</html>");
@@ -1251,7 +1346,7 @@ public class HttpSender extends ConnectorSettingsPanel {
     }
     
     private void initLayout() {
-        setLayout(new MigLayout("insets 0 8 0 8, novisualpadding, hidemode 3, gap 12 6", "[][]6[]", "[][][][][][][][][][][][][][][][][grow][][grow][][][][grow]"));
+        setLayout(new MigLayout("insets 0 8 0 8, novisualpadding, hidemode 3, gap 12 6", "[][]6[]", "[][][][][][][][][][][][][][][][][][][][][grow][][grow][][][][grow]"));
         
         add(urlLabel, "right");
         add(urlField, "w 312!, sx, split 2");
@@ -1274,6 +1369,18 @@ public class HttpSender extends ConnectorSettingsPanel {
         add(multipartNoButton);
         add(sendTimeoutLabel, "newline, right");
         add(sendTimeoutField, "w 75!, sx");
+        add(poolConnectionsLabel, "newline, right");
+        add(poolConnectionsYesRadio, "split 2");
+        add(poolConnectionsNoRadio);
+        add(maxConnectionsLabel, "newline, right");
+        add(maxConnectionsPerRouteField, "w 50!, sx, split 4");
+        add(maxConnectionsPerRouteLabel);
+        add(maxConnectionsField, "w 50!, gapbefore 12");
+        add(maxConnectionsTotalLabel);
+        add(connectionIdleTimeoutLabel, "newline, right");
+        add(connectionIdleTimeoutField, "w 75!, sx");
+        add(connectionPoolNameLabel, "newline, right");
+        add(connectionPoolNameField, "w 125!, sx");
         add(responseContentLabel, "newline, right");
         add(responseContentPlainBodyRadio, "split 2");
         add(responseContentXmlBodyRadio);
@@ -1451,6 +1558,19 @@ public class HttpSender extends ConnectorSettingsPanel {
         includeMetadataNoRadio.setEnabled(true);
     }
 
+    private void poolConnectionsRadioActionPerformed() {
+        boolean enabled = poolConnectionsYesRadio.isSelected();
+        maxConnectionsLabel.setEnabled(enabled);
+        maxConnectionsPerRouteField.setEnabled(enabled);
+        maxConnectionsPerRouteLabel.setEnabled(enabled);
+        maxConnectionsField.setEnabled(enabled);
+        maxConnectionsTotalLabel.setEnabled(enabled);
+        connectionIdleTimeoutLabel.setEnabled(enabled);
+        connectionIdleTimeoutField.setEnabled(enabled);
+        connectionPoolNameLabel.setEnabled(enabled);
+        connectionPoolNameField.setEnabled(enabled);
+    }
+
     private void useProxyServerYesRadioActionPerformed(ActionEvent evt) {
         proxyAddressLabel.setEnabled(true);
         proxyAddressField.setEnabled(true);
@@ -1562,6 +1682,19 @@ public class HttpSender extends ConnectorSettingsPanel {
     private MirthRadioButton responseContentXmlBodyRadio;
     private MirthTextField sendTimeoutField;
     private JLabel sendTimeoutLabel;
+    private ButtonGroup poolConnectionsButtonGroup;
+    private JLabel poolConnectionsLabel;
+    private MirthRadioButton poolConnectionsYesRadio;
+    private MirthRadioButton poolConnectionsNoRadio;
+    private JLabel maxConnectionsLabel;
+    private MirthTextField maxConnectionsPerRouteField;
+    private JLabel maxConnectionsPerRouteLabel;
+    private MirthTextField maxConnectionsField;
+    private JLabel maxConnectionsTotalLabel;
+    private JLabel connectionIdleTimeoutLabel;
+    private MirthTextField connectionIdleTimeoutField;
+    private JLabel connectionPoolNameLabel;
+    private MirthTextField connectionPoolNameField;
     private JButton testConnection;
     private MirthIconTextField urlField;
     private JLabel urlLabel;
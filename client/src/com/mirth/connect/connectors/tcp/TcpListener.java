@@ -68,6 +68,7 @@ public class TcpListener extends ConnectorSettingsPanel implements ActionListene
         receiveTimeoutField.setDocument(new MirthFieldConstraints(0, false, false, true));
         bufferSizeField.setDocument(new MirthFieldConstraints(0, false, false, true));
         maxConnectionsField.setDocument(new MirthFieldConstraints(0, false, false, true));
+        processingThreadsField.setDocument(new MirthFieldConstraints(0, false, false, true));
 
         DefaultComboBoxModel<String> model = new DefaultComboBoxModel<String>();
         model.addElement("Basic TCP");
@@ -105,6 +106,8 @@ public class TcpListener extends ConnectorSettingsPanel implements ActionListene
         properties.setReceiveTimeout(receiveTimeoutField.getText());
         properties.setBufferSize(bufferSizeField.getText());
         properties.setMaxConnections(maxConnectionsField.getText());
+        properties.setNonBlocking(nonBlockingYesRadio.isSelected());
+        properties.setProcessingThreads(processingThreadsField.getText());
         properties.setKeepConnectionOpen(keepConnectionOpenYesRadio.isSelected());
         properties.setCharsetEncoding(parent.getSelectedEncodingForConnector(charsetEncodingComboBox));
         properties.setDataTypeBinary(dataTypeBinaryRadio.isSelected());
@@ -169,6 +172,15 @@ public class TcpListener extends ConnectorSettingsPanel implements ActionListene
         bufferSizeField.setText(props.getBufferSize());
         maxConnectionsField.setText(props.getMaxConnections());
 
+        if (props.isNonBlocking()) {
+            nonBlockingYesRadio.setSelected(true);
+        } else {
+            nonBlockingNoRadio.setSelected(true);
+        }
+        nonBlockingRadioActionPerformed();
+
+        processingThreadsField.setText(props.getProcessingThreads());
+
         if (props.isKeepConnectionOpen()) {
             keepConnectionOpenYesRadio.setSelected(true);
         } else {
@@ -281,6 +293,12 @@ public class TcpListener extends ConnectorSettingsPanel implements ActionListene
                 maxConnectionsField.setBackground(UIConstants.INVALID_COLOR);
             }
         }
+        if (props.isServerMode() && props.isNonBlocking() && (props.getProcessingThreads().length() == 0 || NumberUtils.toInt(props.getProcessingThreads()) <= 0)) {
+            valid = false;
+            if (highlight) {
+                processingThreadsField.setBackground(UIConstants.INVALID_COLOR);
+            }
+        }
         if (props.getRespondOnNewConnection() == TcpReceiverProperties.NEW_CONNECTION || props.getRespondOnNewConnection() == TcpReceiverProperties.NEW_CONNECTION_ON_RECOVERY) {
             if (props.getResponseAddress().length() <= 3) {
                 valid = false;
@@ -317,6 +335,7 @@ public class TcpListener extends ConnectorSettingsPanel implements ActionListene
         receiveTimeoutField.setBackground(null);
         bufferSizeField.setBackground(null);
         maxConnectionsField.setBackground(null);
+        processingThreadsField.setBackground(null);
         responseAddressField.setBackground(null);
         responsePortField.setBackground(null);
         if (responseConnectorPropertiesPanel != null) {
@@ -400,6 +419,32 @@ public class TcpListener extends ConnectorSettingsPanel implements ActionListene
         maxConnectionsLabel = new JLabel("Max Connections:");
         maxConnectionsField = new MirthTextField();
 
+        nonBlockingLabel = new JLabel("Non-Blocking:");
+        ButtonGroup nonBlockingGroup = new ButtonGroup();
+
+        nonBlockingYesRadio = new MirthRadioButton("Yes");
+        nonBlockingYesRadio.setBackground(getBackground());
+        nonBlockingYesRadio.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                nonBlockingRadioActionPerformed();
+            }
+        });
+        nonBlockingGroup.add(nonBlockingYesRadio);
+
+        nonBlockingNoRadio = new MirthRadioButton("No");
+        nonBlockingNoRadio.setBackground(getBackground());
+        nonBlockingNoRadio.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                nonBlockingRadioActionPerformed();
+            }
+        });
+        nonBlockingGroup.add(nonBlockingNoRadio);
+
+        processingThreadsLabel = new JLabel("Processing Threads:");
+        processingThreadsField = new MirthTextField();
+
         receiveTimeoutLabel = new JLabel("Receive Timeout (ms):");
         receiveTimeoutField = new MirthTextField();
 
@@ -501,6 +546,10 @@ public class TcpListener extends ConnectorSettingsPanel implements ActionListene
 
         reconnectIntervalField.setToolTipText("<html>If Client mode is selected, enter the time (in milliseconds) to wait<br/>between disconnecting from the TCP server and connecting to it again.</html>");
         maxConnectionsField.setToolTipText("<html>The maximum number of client connections to accept.<br/>After this number has been reached, subsequent socket requests will result in a rejection.</html>");
+        toolTipText = "<html>Select Yes to read all connections on a single thread and process complete messages on a pool of processing threads.<br/>Messages from the same connection are still processed and responded to in the order they were received.<br/>This is only used in Server mode with frame-based transmission modes (e.g. MLLP without MLLPv2) and batch processing disabled.<br/>Select No to use a dedicated thread for each connection.</html>";
+        nonBlockingYesRadio.setToolTipText(toolTipText);
+        nonBlockingNoRadio.setToolTipText(toolTipText);
+        processingThreadsField.setToolTipText("<html>The number of threads used to process messages when non-blocking mode is enabled.<br/>Each connection's messages are processed by one thread at a time.</html>");
         receiveTimeoutField.setToolTipText("The amount of time, in milliseconds, to wait without receiving a message before closing a connection.");
         bufferSizeField.setToolTipText("<html>Use larger values for larger messages, and smaller values <br>for smaller messages. Generally, the default value is fine.</html>");
 
@@ -554,6 +603,11 @@ public class TcpListener extends ConnectorSettingsPanel implements ActionListene
         add(reconnectIntervalField, "w 75!, sx");
         add(maxConnectionsLabel, "newline, right");
         add(maxConnectionsField, "w 75!, sx");
+        add(nonBlockingLabel, "newline, right");
+        add(nonBlockingYesRadio, "split 2");
+        add(nonBlockingNoRadio);
+        add(processingThreadsLabel, "newline, right");
+        add(processingThreadsField, "w 75!, sx");
         add(receiveTimeoutLabel, "newline, right");
         add(receiveTimeoutField, "w 75!, sx");
         add(bufferSizeLabel, "newline, right");
@@ -617,6 +671,10 @@ public class TcpListener extends ConnectorSettingsPanel implements ActionListene
         reconnectIntervalField.setEnabled(true);
         maxConnectionsLabel.setEnabled(false);
         maxConnectionsField.setEnabled(false);
+        nonBlockingLabel.setEnabled(false);
+        nonBlockingYesRadio.setEnabled(false);
+        nonBlockingNoRadio.setEnabled(false);
+        nonBlockingRadioActionPerformed();
     }
 
     private void modeServerRadioActionPerformed() {
@@ -631,6 +689,16 @@ public class TcpListener extends ConnectorSettingsPanel implements ActionListene
         reconnectIntervalField.setEnabled(false);
         maxConnectionsLabel.setEnabled(true);
         maxConnectionsField.setEnabled(true);
+        nonBlockingLabel.setEnabled(true);
+        nonBlockingYesRadio.setEnabled(true);
+        nonBlockingNoRadio.setEnabled(true);
+        nonBlockingRadioActionPerformed();
+    }
+
+    private void nonBlockingRadioActionPerformed() {
+        boolean enabled = modeServerRadio.isSelected() && nonBlockingYesRadio.isSelected();
+        processingThreadsLabel.setEnabled(enabled);
+        processingThreadsField.setEnabled(enabled);
     }
 
     private void transmissionModeComboBoxActionPerformed() {
@@ -717,6 +785,11 @@ public class TcpListener extends ConnectorSettingsPanel implements ActionListene
     private MirthTextField reconnectIntervalField;
     private JLabel maxConnectionsLabel;
     private MirthTextField maxConnectionsField;
+    private JLabel nonBlockingLabel;
+    private MirthRadioButton nonBlockingYesRadio;
+    private MirthRadioButton nonBlockingNoRadio;
+    private JLabel processingThreadsLabel;
+    private MirthTextField processingThreadsField;
     private JLabel receiveTimeoutLabel;
     private MirthTextField receiveTimeoutField;
     private JLabel bufferSizeLabel;
@@ -69,6 +69,7 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
         sendTimeoutField.setDocument(new MirthFieldConstraints(0, false, false, true));
         bufferSizeField.setDocument(new MirthFieldConstraints(0, false, false, true));
         responseTimeoutField.setDocument(new MirthFieldConstraints(0, false, false, true));
+        maxPipelinedMessagesField.setDocument(new MirthFieldConstraints(0, false, false, true));
 
         DefaultComboBoxModel model = new DefaultComboBoxModel();
         model.addElement("Basic TCP");
@@ -109,6 +110,8 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
         properties.setBufferSize(bufferSizeField.getText());
         properties.setKeepConnectionOpen(keepConnectionOpenYesRadio.isSelected());
         properties.setCheckRemoteHost(checkRemoteHostYesRadio.isSelected());
+        properties.setPooledConnections(pooledConnectionsYesRadio.isSelected());
+        properties.setMaxPipelinedMessages(maxPipelinedMessagesField.getText());
         properties.setResponseTimeout(responseTimeoutField.getText());
         properties.setIgnoreResponse(ignoreResponseCheckBox.isSelected());
         properties.setQueueOnResponseTimeout(queueOnResponseTimeoutYesRadio.isSelected());
@@ -157,6 +160,13 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
         maxConnectionsField.setText(props.getMaxConnections());
         sendTimeoutField.setText(props.getSendTimeout());
         bufferSizeField.setText(props.getBufferSize());
+        maxPipelinedMessagesField.setText(props.getMaxPipelinedMessages());
+
+        if (props.isPooledConnections()) {
+            pooledConnectionsYesRadio.setSelected(true);
+        } else {
+            pooledConnectionsNoRadio.setSelected(true);
+        }
 
         if (props.isKeepConnectionOpen()) {
             keepConnectionOpenYesRadio.setSelected(true);
@@ -258,7 +268,9 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
             }
         }
         
-        if (props.isServerMode() &&
+        boolean pooledConnections = !props.isServerMode() && props.isKeepConnectionOpen() && props.isPooledConnections();
+
+        if ((props.isServerMode() || pooledConnections) &&
         		(props.getMaxConnections().length() == 0 || NumberUtils.toInt(props.getMaxConnections()) <= 0)) {
         	valid = false;
             if (highlight) {
@@ -274,6 +286,12 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
                 }
             }
         }
+        if (pooledConnections && NumberUtils.toInt(props.getMaxPipelinedMessages()) <= 0) {
+            valid = false;
+            if (highlight) {
+                maxPipelinedMessagesField.setBackground(UIConstants.INVALID_COLOR);
+            }
+        }
         if (props.getBufferSize().length() == 0) {
             valid = false;
             if (highlight) {
@@ -307,6 +325,7 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
         localPortField.setBackground(null);
         decorateConnectorType();
         maxConnectionsField.setBackground(null);
+        maxPipelinedMessagesField.setBackground(null);
         sendTimeoutField.setBackground(null);
         bufferSizeField.setBackground(null);
         responseTimeoutField.setBackground(null);
@@ -593,6 +612,36 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
         checkRemoteHostNoRadio.setText("No");
         checkRemoteHostNoRadio.setToolTipText("<html>Select Yes to check if the remote host has closed the connection before each message.<br>Select No to assume the remote host has not closed the connection.<br>Checking the remote host will decrease throughput but will prevent the message from<br>erroring if the remote side closed the connection and queueing is disabled.</html>");
         checkRemoteHostNoRadio.setMargin(new java.awt.Insets(0, 0, 0, 0));
+
+        pooledConnectionsLabel = new JLabel("Pool Connections:");
+        ButtonGroup pooledConnectionsButtonGroup = new ButtonGroup();
+
+        String pooledConnectionsToolTipText = "<html>Select Yes to share a pool of connections to each remote host between all queue threads.<br/>Each connection may have several messages waiting for responses at once, which are<br/>matched to their messages by the HL7 v2 control ID (MSA-2), or in order if there isn't one.<br/>Select No to use a separate connection for each queue thread.</html>";
+        pooledConnectionsYesRadio = new MirthRadioButton("Yes");
+        pooledConnectionsYesRadio.setToolTipText(pooledConnectionsToolTipText);
+        pooledConnectionsYesRadio.setBackground(getBackground());
+        pooledConnectionsYesRadio.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                pooledConnectionsYesRadioActionPerformed();
+            }
+        });
+        pooledConnectionsButtonGroup.add(pooledConnectionsYesRadio);
+
+        pooledConnectionsNoRadio = new MirthRadioButton("No");
+        pooledConnectionsNoRadio.setToolTipText(pooledConnectionsToolTipText);
+        pooledConnectionsNoRadio.setBackground(getBackground());
+        pooledConnectionsNoRadio.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                pooledConnectionsNoRadioActionPerformed();
+            }
+        });
+        pooledConnectionsButtonGroup.add(pooledConnectionsNoRadio);
+
+        maxPipelinedMessagesLabel = new JLabel("Max Outstanding Messages:");
+        maxPipelinedMessagesField = new MirthTextField();
+        maxPipelinedMessagesField.setToolTipText("<html>The maximum number of messages that may be waiting for responses on each pooled connection.<br/>Messages are only sent before earlier responses arrive when there are multiple queue threads.<br/>MLLPv2 always waits for each response before sending the next message.</html>");
         
         modeLabel = new JLabel("Mode:");
         ButtonGroup modeButtonGroup = new ButtonGroup();
@@ -622,12 +671,12 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
         
         maxConnectionsLabel = new JLabel("Max Connections:");
         maxConnectionsField = new MirthTextField();
-        maxConnectionsField.setToolTipText("<html>The maximum number of client connections to accept.<br/>After this number has been reached, subsequent socket requests will result in a rejection.</html>");
+        maxConnectionsField.setToolTipText("<html>The maximum number of client connections to accept.<br/>After this number has been reached, subsequent socket requests will result in a rejection.<br/>In client mode with pooled connections, the maximum number of connections to each remote host.</html>");
     }
     // @formatter:on
     
     private void initLayout() {
-    	setLayout(new MigLayout("insets 0, novisualpadding, hidemode 3, gap 12 6", "", "[][]4[]4[][]4[]4[][][][]4[]4[]4[]4[]4[][]"));
+    	setLayout(new MigLayout("insets 0, novisualpadding, hidemode 3, gap 12 6", "", "[][]4[]4[][]4[]4[][][]4[][][]4[]4[]4[]4[]4[][]"));
     	
     	add(transmissionModeLabel, "right");
         add(transmissionModeComboBox, "h 22!, split 2");
@@ -660,6 +709,11 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
         add(checkRemoteHostLabel, "newline, right");
         add(checkRemoteHostYesRadio, "split 2");
         add(checkRemoteHostNoRadio);
+        add(pooledConnectionsLabel, "newline, right");
+        add(pooledConnectionsYesRadio, "split 2");
+        add(pooledConnectionsNoRadio);
+        add(maxPipelinedMessagesLabel, "newline, right");
+        add(maxPipelinedMessagesField, "w 75!, sx");
         add(sendTimeoutLabel, "newline, right");
         add(sendTimeoutField, "w 75!, sx");
         add(bufferSizeLabel, "newline, right");
@@ -733,6 +787,15 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
         checkRemoteHostLabel.setEnabled(true);
         checkRemoteHostYesRadio.setEnabled(true);
         checkRemoteHostNoRadio.setEnabled(true);
+        pooledConnectionsLabel.setEnabled(true);
+        pooledConnectionsYesRadio.setEnabled(true);
+        pooledConnectionsNoRadio.setEnabled(true);
+
+        if (pooledConnectionsYesRadio.isSelected()) {
+            pooledConnectionsYesRadioActionPerformed();
+        } else {
+            pooledConnectionsNoRadioActionPerformed();
+        }
     }
 
     private void keepConnectionOpenNoRadioActionPerformed(ActionEvent evt) {
@@ -741,6 +804,24 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
         checkRemoteHostLabel.setEnabled(false);
         checkRemoteHostYesRadio.setEnabled(false);
         checkRemoteHostNoRadio.setEnabled(false);
+        pooledConnectionsLabel.setEnabled(false);
+        pooledConnectionsYesRadio.setEnabled(false);
+        pooledConnectionsNoRadio.setEnabled(false);
+        pooledConnectionsNoRadioActionPerformed();
+    }
+
+    private void pooledConnectionsYesRadioActionPerformed() {
+        maxConnectionsLabel.setEnabled(true);
+        maxConnectionsField.setEnabled(true);
+        maxPipelinedMessagesLabel.setEnabled(true);
+        maxPipelinedMessagesField.setEnabled(true);
+    }
+
+    private void pooledConnectionsNoRadioActionPerformed() {
+        maxConnectionsLabel.setEnabled(false);
+        maxConnectionsField.setEnabled(false);
+        maxPipelinedMessagesLabel.setEnabled(false);
+        maxPipelinedMessagesField.setEnabled(false);
     }
 
     private void transmissionModeComboBoxActionPerformed(ActionEvent evt) {
@@ -789,10 +870,8 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
         keepConnectionOpenNoRadio.setEnabled(true);
         
         updateOverrideLocalBindingUI();
+        // This also updates max connections, which is only used by pooled connections in client mode
         updateKeepConnectionOpenUI();
-        
-        maxConnectionsLabel.setEnabled(false);
-        maxConnectionsField.setEnabled(false);
     }
 
     private void modeServerRadioActionPerformed() {    	
@@ -812,6 +891,11 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
         checkRemoteHostNoRadio.setEnabled(false);
         sendTimeoutLabel.setEnabled(false);
         sendTimeoutField.setEnabled(false);
+        pooledConnectionsLabel.setEnabled(false);
+        pooledConnectionsYesRadio.setEnabled(false);
+        pooledConnectionsNoRadio.setEnabled(false);
+        maxPipelinedMessagesLabel.setEnabled(false);
+        maxPipelinedMessagesField.setEnabled(false);
         
         localAddressLabel.setEnabled(true);
         localAddressField.setEnabled(true);
@@ -876,6 +960,11 @@ public class TcpSender extends ConnectorSettingsPanel implements ActionListener
     private JLabel localPortLabel;
     private JLabel maxConnectionsLabel;
     private MirthTextField maxConnectionsField;
+    private JLabel pooledConnectionsLabel;
+    private MirthRadioButton pooledConnectionsYesRadio;
+    private MirthRadioButton pooledConnectionsNoRadio;
+    private JLabel maxPipelinedMessagesLabel;
+    private MirthTextField maxPipelinedMessagesField;
     private ButtonGroup overrideLocalBindingButtonGroup;
     private MirthRadioButton overrideLocalBindingNoRadio;
     private MirthRadioButton overrideLocalBindingYesRadio;
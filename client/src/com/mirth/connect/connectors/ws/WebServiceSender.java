@@ -125,6 +125,8 @@ public class WebServiceSender extends ConnectorSettingsPanel {
         properties.setPort(StringUtils.trimToEmpty((String) portComboBox.getEditor().getItem()));
         properties.setLocationURI(StringUtils.trimToEmpty((String) locationURIComboBox.getEditor().getItem()));
         properties.setSocketTimeout(socketTimeoutField.getText());
+        properties.setPoolConnections(poolConnectionsYesRadio.isSelected());
+        properties.setConnectionPoolName(connectionPoolNameField.getText());
         properties.setSoapAction(soapActionField.getText());
 
         properties.setOneWay(invocationOneWayRadio.isSelected());
@@ -171,6 +173,14 @@ public class WebServiceSender extends ConnectorSettingsPanel {
         soapEnvelopeTextArea.setText(props.getEnvelope());
         socketTimeoutField.setText(props.getSocketTimeout());
 
+        if (props.isPoolConnections()) {
+            poolConnectionsYesRadio.setSelected(true);
+        } else {
+            poolConnectionsNoRadio.setSelected(true);
+        }
+        connectionPoolNameField.setText(props.getConnectionPoolName());
+        poolConnectionsRadioActionPerformed();
+
         if (props.isUseAuthentication()) {
             authenticationYesRadio.setSelected(true);
             authenticationYesRadioActionPerformed(null);
@@ -598,6 +608,28 @@ public class WebServiceSender extends ConnectorSettingsPanel {
         socketTimeoutLabel = new JLabel("Socket Timeout (ms):");
         socketTimeoutField = new MirthTextField();
 
+        poolConnectionsLabel = new JLabel("Pool WSDL Connections:");
+        ButtonGroup poolConnectionsButtonGroup = new ButtonGroup();
+        ActionListener poolConnectionsListener = new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                poolConnectionsRadioActionPerformed();
+            }
+        };
+
+        poolConnectionsYesRadio = new MirthRadioButton("Yes");
+        poolConnectionsYesRadio.setBackground(getBackground());
+        poolConnectionsYesRadio.addActionListener(poolConnectionsListener);
+        poolConnectionsButtonGroup.add(poolConnectionsYesRadio);
+
+        poolConnectionsNoRadio = new MirthRadioButton("No");
+        poolConnectionsNoRadio.setBackground(getBackground());
+        poolConnectionsNoRadio.addActionListener(poolConnectionsListener);
+        poolConnectionsButtonGroup.add(poolConnectionsNoRadio);
+
+        connectionPoolNameLabel = new JLabel("Shared Pool Name:");
+        connectionPoolNameField = new MirthTextField();
+
         authenticationLabel = new JLabel("Authentication:");
         ButtonGroup authenticationButtonGroup = new ButtonGroup();
 
@@ -997,6 +1029,10 @@ public class WebServiceSender extends ConnectorSettingsPanel {
         portComboBox.setToolTipText("<html>The port / endpoint name for the service defined above.<br/>This field is filled in automatically when the Get Operations<br/>button is clicked and does not usually need to be changed,<br/>unless multiple endpoints are defined for the currently<br/>selected service in the WSDL.</html>");
         locationURIComboBox.setToolTipText("<html>The dispatch location for the port / endpoint defined above.<br/>This field is filled in automatically when the Get Operations<br/>button is clicked and does not usually need to be changed.<br/>If left blank, the default URI defined in the WSDL will be used.</html>");
         socketTimeoutField.setToolTipText("<html>Sets the connection and socket timeout (SO_TIMEOUT) in<br/>milliseconds to be used when invoking the web service.<br/>A timeout value of zero is interpreted as an infinite timeout.</html>");
+        String poolConnectionsToolTipText = "<html>Select Yes to request the WSDL over kept-alive connections from a pool instead of<br/>opening a new connection for each request. Select No to use a new connection each time.</html>";
+        poolConnectionsYesRadio.setToolTipText(poolConnectionsToolTipText);
+        poolConnectionsNoRadio.setToolTipText(poolConnectionsToolTipText);
+        connectionPoolNameField.setToolTipText("<html>If set, the connection pool is shared by every HTTP Sender and Web Service Sender with the same<br/>shared pool name. The pool settings are taken from the destination that starts first. Pools<br/>are only shared with the default HTTPS configuration; when a custom one is used (e.g.<br/>with a client certificate) each destination gets its own pool. Leave blank to give this<br/>destination its own pool.</html>");
         authenticationYesRadio.setToolTipText("<html>Turning on authentication uses a username and password to get the WSDL, if necessary,<br>and uses the username and password binding provider properties when calling the web service.</html>");
         authenticationNoRadio.setToolTipText("<html>Turning on authentication uses a username and password to get the WSDL, if necessary,<br>and uses the username and password binding provider properties when calling the web service.</html>");
         usernameField.setToolTipText("The username used to get the WSDL and call the web service.");
@@ -1034,6 +1070,11 @@ public class WebServiceSender extends ConnectorSettingsPanel {
         add(locationURITestConnectionButton);
         add(socketTimeoutLabel, "newline, right");
         add(socketTimeoutField, "w 75!");
+        add(poolConnectionsLabel, "newline, right");
+        add(poolConnectionsYesRadio, "split 2");
+        add(poolConnectionsNoRadio);
+        add(connectionPoolNameLabel, "newline, right");
+        add(connectionPoolNameField, "w 125!");
         add(authenticationLabel, "newline, right");
         add(authenticationYesRadio, "split 2");
         add(authenticationNoRadio);
@@ -1214,6 +1255,11 @@ public class WebServiceSender extends ConnectorSettingsPanel {
         }
     }
 
+    private void poolConnectionsRadioActionPerformed() {
+        connectionPoolNameLabel.setEnabled(poolConnectionsYesRadio.isSelected());
+        connectionPoolNameField.setEnabled(poolConnectionsYesRadio.isSelected());
+    }
+
     private void authenticationYesRadioActionPerformed(ActionEvent evt) {
         usernameLabel.setEnabled(true);
         usernameField.setEnabled(true);
@@ -1469,6 +1515,11 @@ public class WebServiceSender extends ConnectorSettingsPanel {
     protected JButton locationURITestConnectionButton;
     protected JLabel socketTimeoutLabel;
     protected MirthTextField socketTimeoutField;
+    protected JLabel poolConnectionsLabel;
+    protected MirthRadioButton poolConnectionsYesRadio;
+    protected MirthRadioButton poolConnectionsNoRadio;
+    protected JLabel connectionPoolNameLabel;
+    protected MirthTextField connectionPoolNameField;
     protected JLabel authenticationLabel;
     protected MirthRadioButton authenticationYesRadio;
     protected MirthRadioButton authenticationNoRadio;
@@ -25,6 +25,11 @@ public class DatabaseConstants {
     public static final String DATABASE_TEST_QUERY = "database.test-query";
     public static final String DATABASE_CONN_MAX_RETRY = "database.connection.maxretry";
     public static final String DATABASE_CONN_RETRY_TIMEOUT = "database.connection.retrywaitinmilliseconds";
+    public static final String DATABASE_GROUP_COMMIT = "database.group-commit";
+    public static final String DATABASE_GROUP_COMMIT_WINDOW = "database.group-commit.window";
+    public static final String DATABASE_GROUP_COMMIT_MAX_BATCH_SIZE = "database.group-commit.max-batch-size";
+    public static final String DATABASE_GROUP_COMMIT_THREADS = "database.group-commit.threads";
+    public static final String DATABASE_MESSAGE_ID_BLOCK_SIZE = "database.message-id-block-size";
 
     public static final String DATABASE_READONLY = "database-readonly";
     public static final String DATABASE_READONLY_URL = "database-readonly.url";
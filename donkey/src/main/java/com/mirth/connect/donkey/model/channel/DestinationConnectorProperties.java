@@ -27,6 +27,9 @@ public class DestinationConnectorProperties implements Serializable, Migratable,
     private boolean queueEnabled;
     private boolean sendFirst;
     private int retryIntervalMillis;
+    private double retryBackoffMultiplier;
+    private int maxRetryIntervalMillis;
+    private int retryJitterPercent;
     private boolean regenerateTemplate;
     private int retryCount;
     private boolean rotate;
@@ -47,6 +50,9 @@ public class DestinationConnectorProperties implements Serializable, Migratable,
         queueEnabled = false;
         sendFirst = false;
         retryIntervalMillis = 10000;
+        retryBackoffMultiplier = 1;
+        maxRetryIntervalMillis = 0;
+        retryJitterPercent = 0;
         regenerateTemplate = false;
         retryCount = 0;
         rotate = false;
@@ -64,6 +70,9 @@ public class DestinationConnectorProperties implements Serializable, Migratable,
         queueEnabled = props.isQueueEnabled();
         sendFirst = props.isSendFirst();
         retryIntervalMillis = props.getRetryIntervalMillis();
+        retryBackoffMultiplier = props.getRetryBackoffMultiplier();
+        maxRetryIntervalMillis = props.getMaxRetryIntervalMillis();
+        retryJitterPercent = props.getRetryJitterPercent();
         regenerateTemplate = props.isRegenerateTemplate();
         retryCount = props.getRetryCount();
         rotate = props.isRotate();
@@ -107,6 +116,30 @@ public class DestinationConnectorProperties implements Serializable, Migratable,
         this.retryIntervalMillis = retryIntervalMillis;
     }
 
+    public double getRetryBackoffMultiplier() {
+        return retryBackoffMultiplier;
+    }
+
+    public void setRetryBackoffMultiplier(double retryBackoffMultiplier) {
+        this.retryBackoffMultiplier = retryBackoffMultiplier;
+    }
+
+    public int getMaxRetryIntervalMillis() {
+        return maxRetryIntervalMillis;
+    }
+
+    public void setMaxRetryIntervalMillis(int maxRetryIntervalMillis) {
+        this.maxRetryIntervalMillis = maxRetryIntervalMillis;
+    }
+
+    public int getRetryJitterPercent() {
+        return retryJitterPercent;
+    }
+
+    public void setRetryJitterPercent(int retryJitterPercent) {
+        this.retryJitterPercent = retryJitterPercent;
+    }
+
     public boolean isRegenerateTemplate() {
         return regenerateTemplate;
     }
@@ -263,6 +296,9 @@ public class DestinationConnectorProperties implements Serializable, Migratable,
         purgedProperties.put("queueEnabled", queueEnabled);
         purgedProperties.put("sendFirst", sendFirst);
         purgedProperties.put("retryIntervalMillis", retryIntervalMillis);
+        purgedProperties.put("retryBackoffMultiplier", retryBackoffMultiplier);
+        purgedProperties.put("maxRetryIntervalMillis", maxRetryIntervalMillis);
+        purgedProperties.put("retryJitterPercent", retryJitterPercent);
         purgedProperties.put("regenerateTemplate", regenerateTemplate);
         purgedProperties.put("retryCount", retryCount);
         purgedProperties.put("rotate", rotate);
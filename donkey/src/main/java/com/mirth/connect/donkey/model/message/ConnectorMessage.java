@@ -54,6 +54,8 @@ public class ConnectorMessage implements Serializable {
     private transient Integer queueBucket;
     private transient boolean attemptedFirst;
     private transient long dispatcherId;
+    private transient String indexedContent;
+    private transient Object contentIndex;
 
     public ConnectorMessage() {}
 
@@ -494,6 +496,19 @@ public class ConnectorMessage implements Serializable {
         this.dispatcherId = dispatcherId;
     }
 
+    /**
+     * Returns the index that a serializer built for the given content, or null if there is none.
+     * The index is only returned for the same content instance it was built for.
+     */
+    public Object getContentIndex(String content) {
+        return content != null && content == indexedContent ? contentIndex : null;
+    }
+
+    public void setContentIndex(String content, Object contentIndex) {
+        this.indexedContent = content;
+        this.contentIndex = contentIndex;
+    }
+
     public String toString() {
         return "message " + messageId + "-" + metaDataId + " (" + status + ")";
     }
@@ -25,4 +25,12 @@ public interface MessageSerializer {
     public String transformWithoutSerializing(String message, MessageSerializer outboundSerializer) throws MessageSerializerException;
 
     public void populateMetaData(String message, Map<String, Object> map);
+
+    /**
+     * Populates the connector map of the given connector message with metadata from the message.
+     * Serializers can override this to reuse work that is cached on the connector message.
+     */
+    public default void populateMetaData(String message, ConnectorMessage connectorMessage) {
+        populateMetaData(message, connectorMessage.getConnectorMap());
+    }
 }
\ No newline at end of file
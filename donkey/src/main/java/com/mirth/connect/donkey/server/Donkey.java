@@ -29,12 +29,14 @@ import com.mirth.connect.donkey.server.controllers.ChannelController;
 import com.mirth.connect.donkey.server.data.DonkeyDao;
 import com.mirth.connect.donkey.server.data.DonkeyDaoFactory;
 import com.mirth.connect.donkey.server.data.DonkeyStatisticsUpdater;
+import com.mirth.connect.donkey.server.data.jdbc.GroupCommitCoordinator;
 import com.mirth.connect.donkey.server.data.jdbc.JdbcDaoFactory;
 import com.mirth.connect.donkey.server.data.jdbc.XmlQuerySource;
 import com.mirth.connect.donkey.server.data.jdbc.XmlQuerySource.XmlQuerySourceException;
 import com.mirth.connect.donkey.server.event.EventDispatcher;
 import com.mirth.connect.donkey.util.Serializer;
 import com.mirth.connect.donkey.util.SerializerProvider;
+import com.mirth.connect.donkey.util.ThreadUtils;
 import com.mirth.connect.donkey.util.xstream.XStreamSerializer;
 
 public class Donkey {
@@ -63,6 +65,7 @@ public class Donkey {
     private Encryptor encryptor;
     private EventDispatcher eventDispatcher;
     private DonkeyStatisticsUpdater statisticsUpdater;
+    private int messageIdBlockSize = 1;
     private Logger logger = Logger.getLogger(getClass());
     private boolean running = false;
 
@@ -128,6 +131,14 @@ public class Donkey {
         statisticsUpdater = new DonkeyStatisticsUpdater(daoFactory, updateInterval);
         statisticsUpdater.start();
 
+        messageIdBlockSize = Math.max(NumberUtils.toInt(dbProperties.getProperty(DatabaseConstants.DATABASE_MESSAGE_ID_BLOCK_SIZE), 1), 1);
+
+        if (!ThreadUtils.setVirtualThreadsEnabled(Boolean.parseBoolean(donkeyConfiguration.getDonkeyProperties().getProperty("donkey.virtualthreads")))) {
+            logger.warn("Virtual threads are not supported by Java " + System.getProperty("java.version") + ", using platform threads instead.");
+        } else if (ThreadUtils.isVirtualThreadsEnabled()) {
+            logger.info("Using virtual threads for channel, queue and dispatch threads.");
+        }
+
         running = true;
     }
 
@@ -144,6 +155,20 @@ public class Donkey {
         jdbcDaoFactory.setSerializerProvider(serializerProvider);
         jdbcDaoFactory.setQuerySource(xmlQuerySource);
 
+        Properties dbProperties = donkeyConfiguration.getDonkeyProperties();
+
+        if (!readOnly && Boolean.parseBoolean(dbProperties.getProperty(DatabaseConstants.DATABASE_GROUP_COMMIT))) {
+            int window = NumberUtils.toInt(dbProperties.getProperty(DatabaseConstants.DATABASE_GROUP_COMMIT_WINDOW), GroupCommitCoordinator.DEFAULT_WINDOW);
+            int maxBatchSize = NumberUtils.toInt(dbProperties.getProperty(DatabaseConstants.DATABASE_GROUP_COMMIT_MAX_BATCH_SIZE), GroupCommitCoordinator.DEFAULT_MAX_BATCH_SIZE);
+            int threads = NumberUtils.toInt(dbProperties.getProperty(DatabaseConstants.DATABASE_GROUP_COMMIT_THREADS), GroupCommitCoordinator.DEFAULT_THREADS);
+
+            GroupCommitCoordinator groupCommitCoordinator = new GroupCommitCoordinator(jdbcDaoFactory, window, maxBatchSize, threads);
+            groupCommitCoordinator.start();
+            jdbcDaoFactory.setGroupCommitCoordinator(groupCommitCoordinator);
+
+            logger.debug("Enabled group commit with a " + window + " ms window, " + maxBatchSize + " max batch size, and " + threads + " threads");
+        }
+
         return jdbcDaoFactory;
     }
 
@@ -167,11 +192,35 @@ public class Donkey {
         return statisticsUpdater;
     }
 
+    /**
+     * Returns the group commit coordinator, or null if group commit is not enabled.
+     */
+    public GroupCommitCoordinator getGroupCommitCoordinator() {
+        if (daoFactory instanceof JdbcDaoFactory) {
+            return ((JdbcDaoFactory) daoFactory).getGroupCommitCoordinator();
+        }
+
+        return null;
+    }
+
+    /**
+     * The number of message IDs each channel reserves from the database at a time. A block size of
+     * 1 gets the next message ID from the database in the same transaction as the message.
+     */
+    public int getMessageIdBlockSize() {
+        return messageIdBlockSize;
+    }
+
     public void stopEngine() {
         if (statisticsUpdater != null) {
             statisticsUpdater.shutdown();
         }
 
+        GroupCommitCoordinator groupCommitCoordinator = getGroupCommitCoordinator();
+        if (groupCommitCoordinator != null) {
+            groupCommitCoordinator.shutdown();
+        }
+
         running = false;
     }
 
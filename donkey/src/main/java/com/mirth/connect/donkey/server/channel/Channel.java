@@ -25,7 +25,6 @@ import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
@@ -102,6 +101,7 @@ public class Channel implements Runnable {
 
     private StorageSettings storageSettings = new StorageSettings();
     private DonkeyDaoFactory daoFactory;
+    private MessageIdAllocator messageIdAllocator;
     private EventDispatcher eventDispatcher = Donkey.getInstance().getEventDispatcher();
     private Serializer serializer = Donkey.getInstance().getSerializer();
     private MessageMaps messageMaps;
@@ -235,6 +235,14 @@ public class Channel implements Runnable {
         this.daoFactory = daoFactory;
     }
 
+    public MessageIdAllocator getMessageIdAllocator() {
+        return messageIdAllocator;
+    }
+
+    public void setMessageIdAllocator(MessageIdAllocator messageIdAllocator) {
+        this.messageIdAllocator = messageIdAllocator;
+    }
+
     protected EventDispatcher getEventDispatcher() {
         return eventDispatcher;
     }
@@ -649,8 +657,7 @@ public class Channel implements Runnable {
             if (!sourceConnector.isRespondAfterProcessing()) {
                 queueThreads.clear();
                 for (int i = 1; i <= processingThreads; i++) {
-                    Thread queueThread = new Thread(Channel.this);
-                    queueThread.setName("Source Queue Thread " + i + " on " + name + " (" + channelId + ")");
+                    Thread queueThread = ThreadUtils.newThread(Channel.this, "Source Queue Thread " + i + " on " + name + " (" + channelId + ")");
                     queueThread.start();
                     queueThreads.put(queueThread.getId(), queueThread);
                 }
@@ -706,7 +713,7 @@ public class Channel implements Runnable {
                 // Remove any items in the queue's buffer because they may be outdated and refresh the queue size.
                 sourceQueue.invalidate(true, true);
 
-                channelExecutor = Executors.newCachedThreadPool();
+                channelExecutor = ThreadUtils.newCachedThreadPool("Channel Dispatch Thread on " + name + " (" + channelId + ") ");
 
                 // start the destination connectors but not the destination queues
                 for (DestinationChainProvider chainProvider : destinationChainProviders) {
@@ -1399,7 +1406,7 @@ public class Channel implements Runnable {
             dao.resetMessage(channelId, messageId);
             receivedDate = Calendar.getInstance();
         } else {
-            messageId = dao.getNextMessageId(channelId);
+            messageId = getNextMessageId(dao);
             receivedDate = Calendar.getInstance();
 
             Message message = new Message();
@@ -2107,6 +2114,14 @@ public class Channel implements Runnable {
         }
     }
 
+    private long getNextMessageId(DonkeyDao dao) {
+        if (messageIdAllocator != null) {
+            return messageIdAllocator.getNextMessageId();
+        }
+
+        return dao.getNextMessageId(channelId);
+    }
+
     public void importMessage(Message message, DonkeyDao dao) throws DonkeyException {
         if (message.getImportId() == null) {
             message.setImportId(message.getMessageId());
@@ -2116,7 +2131,7 @@ public class Channel implements Runnable {
             message.setImportChannelId(message.getChannelId());
         }
 
-        long messageId = dao.getNextMessageId(channelId);
+        long messageId = getNextMessageId(dao);
         message.setMessageId(messageId);
         message.setChannelId(channelId);
         message.setServerId(serverId);
@@ -51,6 +51,7 @@ import com.mirth.connect.donkey.server.event.DeployedStateEvent;
 import com.mirth.connect.donkey.server.event.ErrorEvent;
 import com.mirth.connect.donkey.server.message.ResponseValidator;
 import com.mirth.connect.donkey.server.queue.DestinationQueue;
+import com.mirth.connect.donkey.server.queue.RetryBackoff;
 import com.mirth.connect.donkey.util.MessageMaps;
 import com.mirth.connect.donkey.util.Serializer;
 import com.mirth.connect.donkey.util.ThreadUtils;
@@ -62,6 +63,7 @@ public abstract class DestinationConnector extends Connector implements Runnable
     private Map<Long, DestinationQueueThread> queueThreads = new HashMap<Long, DestinationQueueThread>();
     private Deque<Long> processingThreadIdStack;
     private DestinationConnectorProperties destinationConnectorProperties;
+    private RetryBackoff retryBackoff;
     private DestinationQueue queue;
     private int queueEmptySleepTime = Constants.DESTINATION_QUEUE_EMPTY_SLEEP_TIME;
     private String destinationName;
@@ -284,6 +286,11 @@ public abstract class DestinationConnector extends Connector implements Runnable
             }
         }
 
+        // The retry settings can only change when the channel is redeployed
+        if (destinationConnectorProperties != null) {
+            retryBackoff = new RetryBackoff(destinationConnectorProperties);
+        }
+
         onStart();
 
         /*
@@ -302,8 +309,7 @@ public abstract class DestinationConnector extends Connector implements Runnable
             queue.invalidate(true, true);
 
             for (int i = 1; i <= destinationConnectorProperties.getThreadCount(); i++) {
-                DestinationQueueThread thread = new DestinationQueueThread(this);
-                thread.setName("Destination Queue Thread " + i + " on " + channel.getName() + " (" + getChannelId() + "), " + destinationName + " (" + getMetaDataId() + ")");
+                DestinationQueueThread thread = new DestinationQueueThread(this, "Destination Queue Thread " + i + " on " + channel.getName() + " (" + getChannelId() + "), " + destinationName + " (" + getMetaDataId() + ")");
                 thread.start();
                 queueThreads.put(thread.getId(), thread);
             }
@@ -317,12 +323,14 @@ public abstract class DestinationConnector extends Connector implements Runnable
                     thread.interruptIfWaitingRetryInterval();
                 }
 
-                for (Thread thread : queueThreads.values()) {
+                for (DestinationQueueThread thread : queueThreads.values()) {
                     thread.join();
                 }
 
                 queueThreads.clear();
             } finally {
+                queue.stopContentPrefetch();
+
                 // Invalidate the queue's buffer when the queue is stopped to prevent the buffer becoming 
                 // unsynchronized with the data store.
                 queue.invalidate(false, true);
@@ -365,7 +373,7 @@ public abstract class DestinationConnector extends Connector implements Runnable
         updateCurrentState(DeployedState.STOPPING);
 
         if (MapUtils.isNotEmpty(queueThreads)) {
-            for (Thread thread : queueThreads.values()) {
+            for (DestinationQueueThread thread : queueThreads.values()) {
                 thread.interrupt();
             }
         }
@@ -375,12 +383,14 @@ public abstract class DestinationConnector extends Connector implements Runnable
         } finally {
             if (MapUtils.isNotEmpty(queueThreads)) {
                 try {
-                    for (Thread thread : queueThreads.values()) {
+                    for (DestinationQueueThread thread : queueThreads.values()) {
                         thread.join();
                     }
 
                     queueThreads.clear();
                 } finally {
+                    queue.stopContentPrefetch();
+
                     // Invalidate the queue's buffer when the queue is stopped to prevent the buffer becoming 
                     // unsynchronized with the data store.
                     queue.invalidate(false, true);
@@ -511,7 +521,7 @@ public abstract class DestinationConnector extends Connector implements Runnable
 
                 // pause for the given retry interval if this is not the first send attempt
                 if (sendAttempts > 0) {
-                    Thread.sleep(destinationConnectorProperties.getRetryIntervalMillis());
+                    Thread.sleep(retryBackoff.getDelay(sendAttempts));
                 }
 
                 // have the connector send the message and return a response
@@ -604,11 +614,14 @@ public abstract class DestinationConnector extends Connector implements Runnable
 
     @Override
     public void run() {
+        processQueue(new AtomicBoolean(false));
+    }
+
+    private void processQueue(AtomicBoolean waitingRetryInterval) {
         DonkeyDao dao = null;
         Serializer serializer = channel.getSerializer();
         ConnectorMessage connectorMessage = null;
         int retryIntervalMillis = destinationConnectorProperties.getRetryIntervalMillis();
-        AtomicBoolean waitingRetryInterval = ((DestinationQueueThread) Thread.currentThread()).getWaitingRetryInterval();
         Long lastMessageId = null;
         boolean canAcquire = true;
         Lock statusUpdateLock = null;
@@ -620,6 +633,17 @@ public abstract class DestinationConnector extends Connector implements Runnable
                     connectorMessage = queue.acquire();
                 }
 
+                /*
+                 * With rotation on, a message that was already attempted before it was queued is
+                 * handed to the queue's retry scheduler instead of making this thread wait.
+                 */
+                if (connectorMessage != null && queue.isRotate() && connectorMessage.isAttemptedFirst()) {
+                    connectorMessage.setAttemptedFirst(false);
+                    queue.releaseForRetry(connectorMessage, retryBackoff.getDelay(connectorMessage.getSendAttempts()));
+                    canAcquire = true;
+                    continue;
+                }
+
                 if (connectorMessage != null) {
                     boolean exceptionCaught = false;
 
@@ -627,16 +651,16 @@ public abstract class DestinationConnector extends Connector implements Runnable
                         /*
                          * If the last message id is equal to the current message id, then the
                          * message was not successfully sent and is being retried, so wait the retry
-                         * interval.
+                         * interval, backing off with each failed attempt.
                          * 
-                         * If the last message id is greater than the current message id, then some
-                         * message was not successful, message rotation is on, and the queue is back
-                         * to the oldest message, so wait the retry interval.
+                         * With rotation on, failed messages are released to the queue's retry
+                         * scheduler, which does not hand them out again until they are due, so
+                         * there is nothing to wait for here.
                          */
-                        if (connectorMessage.isAttemptedFirst() || lastMessageId != null && (lastMessageId == connectorMessage.getMessageId() || (queue.isRotate() && lastMessageId > connectorMessage.getMessageId() && queue.hasBeenRotated()))) {
+                        if (!queue.isRotate() && (connectorMessage.isAttemptedFirst() || lastMessageId != null && lastMessageId == connectorMessage.getMessageId())) {
                             try {
                                 waitingRetryInterval.set(true);
-                                Thread.sleep(retryIntervalMillis);
+                                Thread.sleep(retryBackoff.getDelay(connectorMessage.getSendAttempts()));
                             } finally {
                                 synchronized (waitingRetryInterval) {
                                     waitingRetryInterval.set(false);
@@ -815,7 +839,7 @@ public abstract class DestinationConnector extends Connector implements Runnable
                             queue.release(connectorMessage, true);
                         } else if (destinationConnectorProperties.isRotate()) {
                             canAcquire = true;
-                            queue.release(connectorMessage, false);
+                            queue.releaseForRetry(connectorMessage, retryBackoff.getDelay(connectorMessage.getSendAttempts()));
                         } else {
                             /*
                              * If the message is still queued, no exception occurred, and queue
@@ -998,12 +1022,40 @@ public abstract class DestinationConnector extends Connector implements Runnable
         previousStatus = connectorMessage.getStatus();
     }
 
-    public static class DestinationQueueThread extends Thread {
+    /**
+     * A thread that processes the destination queue. The thread itself is created through
+     * ThreadUtils, so it may be a virtual thread.
+     */
+    public static class DestinationQueueThread {
 
+        private DestinationConnector connector;
+        private Thread thread;
         private AtomicBoolean waitingRetryInterval = new AtomicBoolean(false);
 
-        public DestinationQueueThread(Runnable runnable) {
-            super(runnable);
+        public DestinationQueueThread(DestinationConnector connector, String name) {
+            this.connector = connector;
+            thread = ThreadUtils.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    DestinationQueueThread.this.connector.processQueue(waitingRetryInterval);
+                }
+            }, name);
+        }
+
+        public long getId() {
+            return thread.getId();
+        }
+
+        public void start() {
+            thread.start();
+        }
+
+        public void interrupt() {
+            thread.interrupt();
+        }
+
+        public void join() throws InterruptedException {
+            thread.join();
         }
 
         public AtomicBoolean getWaitingRetryInterval() {
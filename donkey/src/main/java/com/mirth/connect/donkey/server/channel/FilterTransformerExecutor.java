@@ -23,6 +23,7 @@ public class FilterTransformerExecutor {
     private DataType inbound;
     private DataType outbound;
     private FilterTransformer filterTransformer;
+    private boolean serializeMessage = true;
 
     public FilterTransformerExecutor(DataType inbound, DataType outbound) {
         this.inbound = inbound;
@@ -53,6 +54,20 @@ public class FilterTransformerExecutor {
         this.filterTransformer = filterTransformer;
     }
 
+    public boolean isSerializeMessage() {
+        return serializeMessage;
+    }
+
+    /**
+     * If false, the filter/transformer is run without serializing the message first, and the
+     * encoded content is created the same way as when there is no filter/transformer. This should
+     * only be used if the inbound and outbound data types are the same, and the filter/transformer
+     * never reads the serialized message or sets the transformed data.
+     */
+    public void setSerializeMessage(boolean serializeMessage) {
+        this.serializeMessage = serializeMessage;
+    }
+
     /**
      * Takes a ConnectorMessage and runs any filtering or transforming logic against it. Sets the
      * transformed content and encoded content on connectorMessage and updates it's status to either
@@ -75,9 +90,9 @@ public class FilterTransformerExecutor {
         }
 
         // Populate the connector map with metadata as necessary
-        inbound.getSerializer().populateMetaData(content, connectorMessage.getConnectorMap());
+        inbound.getSerializer().populateMetaData(content, connectorMessage);
 
-        if (filterTransformer != null) {
+        if (filterTransformer != null && serializeMessage) {
             // Pre-transformation setup
             switch (inbound.getSerializationType()) {
                 case RAW:
@@ -123,6 +138,16 @@ public class FilterTransformerExecutor {
                     break;
             }
         } else {
+            if (filterTransformer != null) {
+                // The filter/transformer doesn't use the serialized message, so only run it for filtering and side effects
+                if (filterTransformer.doFilterTransform(connectorMessage).isFiltered()) {
+                    connectorMessage.setStatus(Status.FILTERED);
+                    return;
+                }
+
+                ThreadUtils.checkInterruptedStatus();
+            }
+
             /*
              * Since this condition can only occur if the inbound and outbound datatypes are the
              * same, it is safe to pass the outbound serializer to the inbound serializer so that it
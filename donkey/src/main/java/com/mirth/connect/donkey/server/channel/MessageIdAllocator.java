@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.server.channel;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mirth.connect.donkey.server.data.DonkeyDao;
+import com.mirth.connect.donkey.server.data.DonkeyDaoFactory;
+
+/**
+ * Hands out message IDs for a channel from blocks that are reserved in the database ahead of time,
+ * so that most messages do not need a round-trip to the message sequence.
+ *
+ * Each block is reserved and committed in its own transaction before any of its IDs are used, so
+ * the sequence in the database is always ahead of every ID handed out on this server. IDs that are
+ * still unused when the allocator is discarded (redeploy, restart, crash) are never handed out,
+ * which leaves gaps in the message IDs but never duplicates. Other servers sharing the database
+ * reserve their own blocks from the same sequence, so IDs remain unique across the cluster but are
+ * only ascending per server.
+ */
+public class MessageIdAllocator {
+    private String channelId;
+    private DonkeyDaoFactory daoFactory;
+    private int blockSize;
+    private volatile IdRange currentRange = new IdRange(0, 0);
+    private Queue<IdRange> reservedRanges = new LinkedList<IdRange>();
+
+    public MessageIdAllocator(String channelId, DonkeyDaoFactory daoFactory, int blockSize) {
+        this.channelId = channelId;
+        this.daoFactory = daoFactory;
+        this.blockSize = Math.max(blockSize, 1);
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public long getNextMessageId() {
+        while (true) {
+            IdRange range = currentRange;
+            long id = range.next();
+
+            if (id >= 0) {
+                return id;
+            }
+
+            synchronized (this) {
+                // Only the first thread to find the range exhausted moves on to the next one
+                if (currentRange == range) {
+                    if (reservedRanges.isEmpty()) {
+                        reserveBlock();
+                    }
+
+                    currentRange = reservedRanges.remove();
+                }
+            }
+        }
+    }
+
+    private void reserveBlock() {
+        List<Long> ids;
+        DonkeyDao dao = daoFactory.getDao();
+
+        try {
+            ids = dao.getNextMessageIds(channelId, blockSize);
+            dao.commit();
+        } finally {
+            dao.close();
+        }
+
+        reservedRanges.addAll(toRanges(ids));
+    }
+
+    /**
+     * Collapses a sorted list of IDs into ranges of consecutive IDs.
+     */
+    static List<IdRange> toRanges(List<Long> ids) {
+        List<IdRange> ranges = new ArrayList<IdRange>();
+        long start = -1;
+        long end = -1;
+
+        for (long id : ids) {
+            if (start >= 0 && id == end) {
+                end++;
+            } else {
+                if (start >= 0) {
+                    ranges.add(new IdRange(start, end));
+                }
+
+                start = id;
+                end = id + 1;
+            }
+        }
+
+        if (start >= 0) {
+            ranges.add(new IdRange(start, end));
+        }
+
+        return ranges;
+    }
+
+    static class IdRange {
+        private AtomicLong nextId;
+        private long end;
+
+        IdRange(long start, long end) {
+            this.nextId = new AtomicLong(start);
+            this.end = end;
+        }
+
+        /**
+         * Returns the next ID in the range, or -1 if the range is exhausted.
+         */
+        long next() {
+            if (nextId.get() >= end) {
+                return -1;
+            }
+
+            long id = nextId.getAndIncrement();
+            return id < end ? id : -1;
+        }
+    }
+}
@@ -103,10 +103,23 @@ public interface DonkeyDao {
 
     public long getNextMessageId(String channelId);
 
+    /**
+     * Reserves up to count message IDs in a single round-trip and returns them in ascending order.
+     * The IDs are unique across all servers sharing the database but are not necessarily
+     * contiguous.
+     */
+    public List<Long> getNextMessageIds(String channelId, int count);
+
     public List<Message> getMessages(String channelId, List<Long> messageIds);
 
     public List<ConnectorMessage> getConnectorMessages(String channelId, String serverId, int metaDataId, Status status, int offset, int limit, Long minMessageId, Long maxMessageId);
 
+    /**
+     * Returns a page of connector messages in message ID order. If includeContent is false, only
+     * the connector message rows are read, without any content or metadata map.
+     */
+    public List<ConnectorMessage> getConnectorMessages(String channelId, String serverId, int metaDataId, Status status, int offset, int limit, Long minMessageId, Long maxMessageId, boolean includeContent);
+
     public List<ConnectorMessage> getConnectorMessages(String channelId, long messageId, Set<Integer> metaDataIds, boolean includeContent);
 
     public Map<Integer, ConnectorMessage> getConnectorMessages(String channelId, long messageId, List<Integer> metaDataIds);
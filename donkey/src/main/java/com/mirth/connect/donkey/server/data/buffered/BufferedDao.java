@@ -9,6 +9,8 @@
 
 package com.mirth.connect.donkey.server.data.buffered;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -27,9 +29,15 @@ import com.mirth.connect.donkey.server.channel.Statistics;
 import com.mirth.connect.donkey.server.data.DonkeyDao;
 import com.mirth.connect.donkey.server.data.DonkeyDaoFactory;
 import com.mirth.connect.donkey.server.data.StatisticsUpdater;
+import com.mirth.connect.donkey.server.data.jdbc.GroupCommitCoordinator;
+import com.mirth.connect.donkey.server.data.jdbc.GroupCommitTransaction;
+import com.mirth.connect.donkey.server.data.jdbc.JdbcDao;
+import com.mirth.connect.donkey.server.data.jdbc.JdbcDaoFactory;
 import com.mirth.connect.donkey.util.SerializerProvider;
 
 public class BufferedDao implements DonkeyDao {
+    private static final Set<DaoTaskType> NON_GROUP_COMMIT_TASK_TYPES = EnumSet.of(DaoTaskType.CREATE_CHANNEL, DaoTaskType.CHECK_CHANNEL_TABLES, DaoTaskType.REMOVE_CHANNEL, DaoTaskType.ADD_META_DATA_COLUMN, DaoTaskType.REMOVE_META_DATA_COLUMN, DaoTaskType.DELETE_ALL_MESSAGES);
+
     private DonkeyDaoFactory daoFactory;
     private SerializerProvider serializerProvider;
     private boolean encryptData;
@@ -96,49 +104,42 @@ public class BufferedDao implements DonkeyDao {
     }
 
     private void executeTasks(Boolean durable) {
+        GroupCommitCoordinator groupCommitCoordinator = getGroupCommitCoordinator();
+
+        if (groupCommitCoordinator != null && isGroupCommittable()) {
+            final List<DaoTask> transactionTasks = new ArrayList<DaoTask>(tasks);
+            tasks.clear();
+
+            // The settings are held by the transaction, since the DAO it runs on is shared with other channels
+            final SerializerProvider serializerProvider = this.serializerProvider;
+            final boolean encryptData = this.encryptData;
+            final boolean decryptData = this.decryptData;
+            final StatisticsUpdater statisticsUpdater = this.statisticsUpdater;
+
+            groupCommitCoordinator.commit(new GroupCommitTransaction() {
+                @Override
+                public String getChannelId() {
+                    return getTaskChannelId(transactionTasks);
+                }
+
+                @Override
+                public void execute(JdbcDao dao) {
+                    dao.startGroupedTransaction(serializerProvider, encryptData, decryptData, statisticsUpdater);
+
+                    for (DaoTask task : transactionTasks) {
+                        executeTask(dao, task);
+                    }
+                }
+            }, durable == null || durable);
+
+            return;
+        }
+
         DonkeyDao dao = getDelegateDao();
 
         try {
             while (!tasks.isEmpty()) {
-                DaoTask task = tasks.poll();
-                Object[] p = task.getParameters();
-
-                // @formatter:off
-                switch (task.getTaskType()) {
-                    case INSERT_MESSAGE: dao.insertMessage((Message) p[0]); break;
-                    case INSERT_CONNECTOR_MESSAGE: dao.insertConnectorMessage((ConnectorMessage) p[0], (Boolean) p[1], (Boolean) p[2]); break;
-                    case INSERT_MESSAGE_CONTENT: dao.insertMessageContent((MessageContent) p[0]); break;
-                    case BATCH_INSERT_MESSAGE_CONTENT: dao.batchInsertMessageContent((MessageContent) p[0]); break;
-                    case EXECUTE_BATCH_INSERT_MESSAGE_CONTENT: dao.executeBatchInsertMessageContent((String) p[0]); break;
-                    case INSERT_MESSAGE_ATTACHMENT: dao.insertMessageAttachment((String) p[0], (Long) p[1], (Attachment) p[2]); break;
-                    case UPDATE_MESSAGE_ATTACHMENT: dao.updateMessageAttachment((String) p[0], (Long) p[1], (Attachment) p[2]); break;
-                    case INSERT_META_DATA: dao.insertMetaData((ConnectorMessage) p[0], (List<MetaDataColumn>) p[1]); break;
-                    case STORE_META_DATA: dao.storeMetaData((ConnectorMessage) p[0], (List<MetaDataColumn>) p[1]); break;
-                    case STORE_MESSAGE_CONTENT: dao.storeMessageContent((MessageContent) p[0]); break;
-                    case STORE_CHANNEL_STATISTICS: dao.addChannelStatistics((Statistics) p[0]); break;
-                    case UPDATE_SEND_ATTEMPTS: dao.updateSendAttempts((ConnectorMessage) p[0]); break;
-                    case UPDATE_STATUS: dao.updateStatus((ConnectorMessage) p[0], (Status) p[1]); break;
-                    case UPDATE_ERRORS: dao.updateErrors((ConnectorMessage) p[0]); break;
-                    case UPDATE_MAPS: dao.updateMaps((ConnectorMessage) p[0]); break;
-                    case UPDATE_SOURCE_MAP: dao.updateSourceMap((ConnectorMessage) p[0]); break;
-                    case UPDATE_RESPONSE_MAP: dao.updateResponseMap((ConnectorMessage) p[0]); break;
-                    case MARK_AS_PROCESSED: dao.markAsProcessed((String) p[0], (Long) p[1]); break;
-                    case RESET_MESSAGE: dao.resetMessage((String) p[0], (Long) p[1]); break;
-                    case DELETE_MESSAGE: dao.deleteMessage((String) p[0], (Long) p[1]); break;
-                    case DELETE_CONNECTOR_MESSAGES: dao.deleteConnectorMessages((String) p[0], (Long) p[1], (Set<Integer>) p[2]); break;
-                    case DELETE_MESSAGE_STATISTICS: dao.deleteMessageStatistics((String) p[0], (Long) p[1], (Set<Integer>) p[2]); break;
-                    case DELETE_ALL_MESSAGES: dao.deleteAllMessages((String) p[0]); break;
-                    case DELETE_MESSAGE_CONTENT: dao.deleteMessageContent((String) p[0], (Long) p[1]); break;
-                    case DELETE_MESSAGE_CONTENT_BY_META_DATA_IDS: dao.deleteMessageContentByMetaDataIds((String) p[0], (Long) p[1], (Set<Integer>) p[2]); break;
-                    case DELETE_MESSAGE_ATTACHMENTS: dao.deleteMessageAttachments((String) p[0], (Long) p[1]); break;
-                    case CREATE_CHANNEL: dao.createChannel((String) p[0], (Long) p[1]); break;
-                    case REMOVE_CHANNEL: dao.removeChannel((String) p[0]); break;
-                    case ADD_META_DATA_COLUMN: dao.addMetaDataColumn((String) p[0], (MetaDataColumn) p[1]); break;
-                    case REMOVE_META_DATA_COLUMN: dao.removeMetaDataColumn((String) p[0], (String) p[1]); break;
-                    case RESET_STATISTICS: dao.resetStatistics((String) p[0], (Integer) p[1], (Set<Status>) p[2]); break;
-                    case RESET_ALL_STATISTICS: dao.resetAllStatistics((String) p[0]); break;
-                }
-                // @formatter:on
+                executeTask(dao, tasks.poll());
             }
 
             if (durable == null) {
@@ -153,6 +154,95 @@ public class BufferedDao implements DonkeyDao {
         }
     }
 
+    private void executeTask(DonkeyDao dao, DaoTask task) {
+        Object[] p = task.getParameters();
+
+        // @formatter:off
+        switch (task.getTaskType()) {
+            case INSERT_MESSAGE: dao.insertMessage((Message) p[0]); break;
+            case INSERT_CONNECTOR_MESSAGE: dao.insertConnectorMessage((ConnectorMessage) p[0], (Boolean) p[1], (Boolean) p[2]); break;
+            case INSERT_MESSAGE_CONTENT: dao.insertMessageContent((MessageContent) p[0]); break;
+            case BATCH_INSERT_MESSAGE_CONTENT: dao.batchInsertMessageContent((MessageContent) p[0]); break;
+            case EXECUTE_BATCH_INSERT_MESSAGE_CONTENT: dao.executeBatchInsertMessageContent((String) p[0]); break;
+            case INSERT_MESSAGE_ATTACHMENT: dao.insertMessageAttachment((String) p[0], (Long) p[1], (Attachment) p[2]); break;
+            case UPDATE_MESSAGE_ATTACHMENT: dao.updateMessageAttachment((String) p[0], (Long) p[1], (Attachment) p[2]); break;
+            case INSERT_META_DATA: dao.insertMetaData((ConnectorMessage) p[0], (List<MetaDataColumn>) p[1]); break;
+            case STORE_META_DATA: dao.storeMetaData((ConnectorMessage) p[0], (List<MetaDataColumn>) p[1]); break;
+            case STORE_MESSAGE_CONTENT: dao.storeMessageContent((MessageContent) p[0]); break;
+            case STORE_CHANNEL_STATISTICS: dao.addChannelStatistics((Statistics) p[0]); break;
+            case UPDATE_SEND_ATTEMPTS: dao.updateSendAttempts((ConnectorMessage) p[0]); break;
+            case UPDATE_STATUS: dao.updateStatus((ConnectorMessage) p[0], (Status) p[1]); break;
+            case UPDATE_ERRORS: dao.updateErrors((ConnectorMessage) p[0]); break;
+            case UPDATE_MAPS: dao.updateMaps((ConnectorMessage) p[0]); break;
+            case UPDATE_SOURCE_MAP: dao.updateSourceMap((ConnectorMessage) p[0]); break;
+            case UPDATE_RESPONSE_MAP: dao.updateResponseMap((ConnectorMessage) p[0]); break;
+            case MARK_AS_PROCESSED: dao.markAsProcessed((String) p[0], (Long) p[1]); break;
+            case RESET_MESSAGE: dao.resetMessage((String) p[0], (Long) p[1]); break;
+            case DELETE_MESSAGE: dao.deleteMessage((String) p[0], (Long) p[1]); break;
+            case DELETE_CONNECTOR_MESSAGES: dao.deleteConnectorMessages((String) p[0], (Long) p[1], (Set<Integer>) p[2]); break;
+            case DELETE_MESSAGE_STATISTICS: dao.deleteMessageStatistics((String) p[0], (Long) p[1], (Set<Integer>) p[2]); break;
+            case DELETE_ALL_MESSAGES: dao.deleteAllMessages((String) p[0]); break;
+            case DELETE_MESSAGE_CONTENT: dao.deleteMessageContent((String) p[0], (Long) p[1]); break;
+            case DELETE_MESSAGE_CONTENT_BY_META_DATA_IDS: dao.deleteMessageContentByMetaDataIds((String) p[0], (Long) p[1], (Set<Integer>) p[2]); break;
+            case DELETE_MESSAGE_ATTACHMENTS: dao.deleteMessageAttachments((String) p[0], (Long) p[1]); break;
+            case CREATE_CHANNEL: dao.createChannel((String) p[0], (Long) p[1]); break;
+            case REMOVE_CHANNEL: dao.removeChannel((String) p[0]); break;
+            case ADD_META_DATA_COLUMN: dao.addMetaDataColumn((String) p[0], (MetaDataColumn) p[1]); break;
+            case REMOVE_META_DATA_COLUMN: dao.removeMetaDataColumn((String) p[0], (String) p[1]); break;
+            case RESET_STATISTICS: dao.resetStatistics((String) p[0], (Integer) p[1], (Set<Status>) p[2]); break;
+            case RESET_ALL_STATISTICS: dao.resetAllStatistics((String) p[0]); break;
+        }
+        // @formatter:on
+    }
+
+    /**
+     * Returns the group commit coordinator of the delegate factory, or null if group commit is not
+     * enabled.
+     */
+    private GroupCommitCoordinator getGroupCommitCoordinator() {
+        if (daoFactory instanceof JdbcDaoFactory) {
+            GroupCommitCoordinator groupCommitCoordinator = ((JdbcDaoFactory) daoFactory).getGroupCommitCoordinator();
+
+            if (groupCommitCoordinator != null && groupCommitCoordinator.isRunning()) {
+                return groupCommitCoordinator;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Transactions that alter table structure or truncate tables are committed on their own, since
+     * some databases implicitly commit DDL statements.
+     */
+    private boolean isGroupCommittable() {
+        for (DaoTask task : tasks) {
+            if (NON_GROUP_COMMIT_TASK_TYPES.contains(task.getTaskType())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private String getTaskChannelId(List<DaoTask> tasks) {
+        for (DaoTask task : tasks) {
+            Object parameter = task.getParameters().length > 0 ? task.getParameters()[0] : null;
+
+            if (parameter instanceof String) {
+                return (String) parameter;
+            } else if (parameter instanceof ConnectorMessage) {
+                return ((ConnectorMessage) parameter).getChannelId();
+            } else if (parameter instanceof Message) {
+                return ((Message) parameter).getChannelId();
+            } else if (parameter instanceof MessageContent) {
+                return ((MessageContent) parameter).getChannelId();
+            }
+        }
+
+        return null;
+    }
+
     @Override
     public void rollback() {
         tasks.clear();
@@ -419,6 +509,19 @@ public class BufferedDao implements DonkeyDao {
         }
     }
 
+    @Override
+    public List<Long> getNextMessageIds(String channelId, int count) {
+        DonkeyDao dao = getDelegateDao();
+
+        try {
+            List<Long> ids = dao.getNextMessageIds(channelId, count);
+            dao.commit();
+            return ids;
+        } finally {
+            dao.close();
+        }
+    }
+
     @Override
     public List<Attachment> getMessageAttachment(String channelId, long messageId) {
         DonkeyDao dao = getDelegateDao();
@@ -474,6 +577,17 @@ public class BufferedDao implements DonkeyDao {
         }
     }
 
+    @Override
+    public List<ConnectorMessage> getConnectorMessages(String channelId, String serverId, int metaDataId, Status status, int offset, int limit, Long minMessageId, Long maxMessageId, boolean includeContent) {
+        DonkeyDao dao = getDelegateDao();
+
+        try {
+            return dao.getConnectorMessages(channelId, serverId, metaDataId, status, offset, limit, minMessageId, maxMessageId, includeContent);
+        } finally {
+            dao.close();
+        }
+    }
+
     @Override
     public List<ConnectorMessage> getConnectorMessages(String channelId, long messageId, Set<Integer> metaDataIds, boolean includeContent) {
         DonkeyDao dao = getDelegateDao();
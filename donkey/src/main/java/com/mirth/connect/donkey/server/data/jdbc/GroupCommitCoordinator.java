@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.server.data.jdbc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.mirth.connect.donkey.server.data.DonkeyDaoException;
+
+/**
+ * Gathers transactions submitted by many dispatch and queue threads and executes them on a shared
+ * connection so that they are made durable by a single physical commit. A committer thread takes
+ * the first pending transaction, waits up to the commit window for more transactions to arrive,
+ * and then executes and commits the whole batch. Callers block until their transaction has been
+ * committed, so the durability guarantee is the same as committing on their own connection.
+ *
+ * If a batch fails, it is rolled back and each of its transactions is retried on its own
+ * connection, so one bad transaction does not fail the others in the batch.
+ */
+public class GroupCommitCoordinator {
+    public static final int DEFAULT_WINDOW = 2;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final int DEFAULT_THREADS = 4;
+
+    private static final long POLL_INTERVAL = 100;
+
+    private JdbcDaoFactory daoFactory;
+    private long windowNanos;
+    private int maxBatchSize;
+    private int threadCount;
+    private BlockingQueue<CommitRequest> pendingRequests = new LinkedBlockingQueue<CommitRequest>();
+    private List<Thread> committerThreads = new ArrayList<Thread>();
+    private Map<String, GroupCommitStatistics> statistics = new ConcurrentHashMap<String, GroupCommitStatistics>();
+    private volatile boolean running = false;
+    private Logger logger = Logger.getLogger(getClass());
+
+    public GroupCommitCoordinator(JdbcDaoFactory daoFactory, int windowMillis, int maxBatchSize, int threadCount) {
+        this.daoFactory = daoFactory;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis >= 0 ? windowMillis : DEFAULT_WINDOW);
+        this.maxBatchSize = maxBatchSize > 0 ? maxBatchSize : DEFAULT_MAX_BATCH_SIZE;
+        this.threadCount = threadCount > 0 ? threadCount : DEFAULT_THREADS;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+
+        for (int i = 1; i <= threadCount; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runCommitter();
+                }
+            });
+            thread.setName("Group Commit Thread " + i);
+            thread.setDaemon(true);
+            thread.start();
+            committerThreads.add(thread);
+        }
+    }
+
+    /**
+     * Stops accepting transactions, waits for the committer threads to commit everything that is
+     * already pending, and then stops the committer threads.
+     */
+    public synchronized void shutdown() {
+        running = false;
+
+        for (Thread thread : committerThreads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        committerThreads.clear();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Executes and commits the transaction, blocking until it is committed. If the coordinator is
+     * not running, the transaction is committed immediately on its own connection.
+     */
+    public void commit(GroupCommitTransaction transaction, boolean durable) {
+        CommitRequest request = new CommitRequest(transaction, durable);
+
+        if (running) {
+            pendingRequests.add(request);
+
+            /*
+             * If the coordinator was shut down after the request was queued, the committer threads
+             * may have already exited. Take the request back and commit it ourselves unless a
+             * committer thread has already picked it up.
+             */
+            if (!running && pendingRequests.remove(request)) {
+                commitAlone(request, 1);
+            }
+        } else {
+            commitAlone(request, 1);
+        }
+
+        request.await();
+
+        Throwable error = request.getError();
+        if (error != null) {
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            } else {
+                throw new DonkeyDaoException(error);
+            }
+        }
+    }
+
+    public GroupCommitStatistics getStatistics(String channelId) {
+        return statistics.get(channelId);
+    }
+
+    public Map<String, GroupCommitStatistics> getStatistics() {
+        return new HashMap<String, GroupCommitStatistics>(statistics);
+    }
+
+    public void removeStatistics(String channelId) {
+        statistics.remove(channelId);
+    }
+
+    private void runCommitter() {
+        while (running || !pendingRequests.isEmpty()) {
+            List<CommitRequest> batch = new ArrayList<CommitRequest>();
+
+            try {
+                CommitRequest first = pendingRequests.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    CommitRequest next = remaining > 0 ? pendingRequests.poll(remaining, TimeUnit.NANOSECONDS) : pendingRequests.poll();
+
+                    if (next == null) {
+                        break;
+                    }
+
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Commit whatever has been gathered so far, the loop will exit once the queue is empty
+            }
+
+            if (!batch.isEmpty()) {
+                commitBatch(batch);
+            }
+        }
+    }
+
+    private void commitBatch(List<CommitRequest> batch) {
+        if (batch.size() == 1) {
+            commitAlone(batch.get(0), 1);
+            return;
+        }
+
+        boolean durable = false;
+        for (CommitRequest request : batch) {
+            durable |= request.isDurable();
+        }
+
+        Throwable batchError = null;
+        JdbcDao dao = null;
+
+        try {
+            dao = daoFactory.getDao();
+
+            for (CommitRequest request : batch) {
+                request.getTransaction().execute(dao);
+            }
+
+            dao.commit(durable);
+        } catch (Throwable t) {
+            batchError = t;
+        } finally {
+            closeQuietly(dao);
+        }
+
+        if (batchError == null) {
+            for (CommitRequest request : batch) {
+                complete(request, batch.size(), null);
+            }
+        } else {
+            logger.debug("Group commit of " + batch.size() + " transactions failed, retrying each transaction separately", batchError);
+
+            for (CommitRequest request : batch) {
+                commitAlone(request, batch.size());
+            }
+        }
+    }
+
+    private void commitAlone(CommitRequest request, int batchSize) {
+        Throwable error = null;
+        JdbcDao dao = null;
+
+        try {
+            dao = daoFactory.getDao();
+            request.getTransaction().execute(dao);
+            dao.commit(request.isDurable());
+        } catch (Throwable t) {
+            error = t;
+        } finally {
+            closeQuietly(dao);
+        }
+
+        complete(request, batchSize, error);
+    }
+
+    private void complete(CommitRequest request, int batchSize, Throwable error) {
+        String channelId = request.getTransaction().getChannelId();
+
+        if (channelId != null) {
+            GroupCommitStatistics channelStatistics = statistics.get(channelId);
+
+            if (channelStatistics == null) {
+                channelStatistics = new GroupCommitStatistics();
+                GroupCommitStatistics existing = statistics.putIfAbsent(channelId, channelStatistics);
+                if (existing != null) {
+                    channelStatistics = existing;
+                }
+            }
+
+            channelStatistics.update(batchSize, System.nanoTime() - request.getSubmitTime(), error != null);
+        }
+
+        request.complete(error);
+    }
+
+    private void closeQuietly(JdbcDao dao) {
+        if (dao != null) {
+            try {
+                dao.close();
+            } catch (Exception e) {
+                logger.warn("Failed to close group commit connection", e);
+            }
+        }
+    }
+
+    private class CommitRequest {
+        private GroupCommitTransaction transaction;
+        private boolean durable;
+        private long submitTime = System.nanoTime();
+        private CountDownLatch latch = new CountDownLatch(1);
+        private volatile Throwable error;
+
+        public CommitRequest(GroupCommitTransaction transaction, boolean durable) {
+            this.transaction = transaction;
+            this.durable = durable;
+        }
+
+        public GroupCommitTransaction getTransaction() {
+            return transaction;
+        }
+
+        public boolean isDurable() {
+            return durable;
+        }
+
+        public long getSubmitTime() {
+            return submitTime;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        public void complete(Throwable error) {
+            this.error = error;
+            latch.countDown();
+        }
+
+        /*
+         * Committing on a JDBC connection cannot be interrupted either, so wait for the commit to
+         * finish and restore the interrupted status afterwards.
+         */
+        public void await() {
+            boolean interrupted = false;
+
+            while (true) {
+                try {
+                    latch.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.server.data.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch size and commit latency for the transactions of a single channel that went through a
+ * GroupCommitCoordinator.
+ */
+public class GroupCommitStatistics {
+    private long transactionCount;
+    private long failedCount;
+    private long batchSizeTotal;
+    private int maxBatchSize;
+    private long latencyTotal;
+    private long maxLatency;
+
+    public synchronized void update(int batchSize, long latencyNanos, boolean failed) {
+        transactionCount++;
+        if (failed) {
+            failedCount++;
+        }
+
+        batchSizeTotal += batchSize;
+        maxBatchSize = Math.max(maxBatchSize, batchSize);
+        latencyTotal += latencyNanos;
+        maxLatency = Math.max(maxLatency, latencyNanos);
+    }
+
+    public synchronized long getTransactionCount() {
+        return transactionCount;
+    }
+
+    public synchronized long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * The average number of transactions that shared a physical commit with this channel's
+     * transactions.
+     */
+    public synchronized double getAverageBatchSize() {
+        return transactionCount > 0 ? (double) batchSizeTotal / transactionCount : 0;
+    }
+
+    public synchronized int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * The average time in milliseconds between submitting a transaction and the transaction being
+     * committed, including the time spent waiting for the commit window.
+     */
+    public synchronized double getAverageLatencyMillis() {
+        return transactionCount > 0 ? (double) latencyTotal / transactionCount / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+    }
+
+    public synchronized double getMaxLatencyMillis() {
+        return (double) maxLatency / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("transactions=%d, failed=%d, avgBatchSize=%.2f, maxBatchSize=%d, avgLatency=%.3fms, maxLatency=%.3fms", transactionCount, failedCount, getAverageBatchSize(), maxBatchSize, getAverageLatencyMillis(), getMaxLatencyMillis());
+    }
+}
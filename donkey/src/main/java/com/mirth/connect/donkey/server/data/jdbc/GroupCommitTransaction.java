@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.server.data.jdbc;
+
+/**
+ * A unit of work submitted to a GroupCommitCoordinator. The transaction may be executed on a DAO
+ * that is shared with other transactions, so it must start by calling
+ * JdbcDao.startGroupedTransaction with its own settings (e.g. encryption and the statistics
+ * updater), and it must be safe to execute more than once if the shared commit fails and the
+ * transaction is retried on its own.
+ */
+public interface GroupCommitTransaction {
+    /**
+     * The channel that the transaction belongs to, used for group commit statistics.
+     */
+    public String getChannelId();
+
+    public void execute(JdbcDao dao);
+}
@@ -23,6 +23,7 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -72,6 +73,7 @@ public class JdbcDao implements DonkeyDao {
     private Statistics currentStats;
     private Statistics totalStats;
     private Statistics transactionStats = new Statistics(false, true);
+    private List<GroupedTransactionStatistics> groupedTransactionStats = new ArrayList<GroupedTransactionStatistics>();
     private Map<String, Map<Integer, Set<Status>>> resetCurrentStats = new HashMap<String, Map<Integer, Set<Status>>>();
     private Map<String, Map<Integer, Set<Status>>> resetTotalStats = new HashMap<String, Map<Integer, Set<Status>>>();
     private List<String> removedChannelIds = new ArrayList<String>();
@@ -116,6 +118,28 @@ public class JdbcDao implements DonkeyDao {
         this.statisticsUpdater = statisticsUpdater;
     }
 
+    public void setSerializerProvider(SerializerProvider serializerProvider) {
+        this.serializerProvider = serializerProvider;
+    }
+
+    /**
+     * Starts the next of several transactions executed on this connection before a single commit,
+     * applying that transaction's settings. The statistics of the statements executed from now on
+     * are kept apart from those of the earlier transactions, and are sent to this transaction's
+     * statistics updater when the connection is committed.
+     */
+    public void startGroupedTransaction(SerializerProvider serializerProvider, boolean encryptData, boolean decryptData, StatisticsUpdater statisticsUpdater) {
+        if (!transactionStats.isEmpty()) {
+            groupedTransactionStats.add(new GroupedTransactionStatistics(this.statisticsUpdater, transactionStats));
+            transactionStats = new Statistics(false, true);
+        }
+
+        this.serializerProvider = serializerProvider;
+        this.encryptData = encryptData;
+        this.decryptData = decryptData;
+        this.statisticsUpdater = statisticsUpdater;
+    }
+
     public char getQuoteChar() {
         return quoteChar;
     }
@@ -1451,6 +1475,61 @@ public class JdbcDao implements DonkeyDao {
         }
     }
 
+    @Override
+    public List<Long> getNextMessageIds(String channelId, int count) {
+        List<Long> ids = new ArrayList<Long>();
+
+        if (count <= 1 || !(querySource.queryExists("getNextMessageIds") || querySource.queryExists("incrementMessageIdSequenceBy"))) {
+            ids.add(getNextMessageId(channelId));
+            return ids;
+        }
+
+        Statement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            Map<String, Object> values = new HashMap<String, Object>();
+            values.put("localChannelId", getLocalChannelId(channelId));
+            values.put("count", count);
+
+            statement = connection.createStatement();
+
+            if (querySource.queryExists("getNextMessageIds")) {
+                // Sequence-based databases hand out each ID separately, so other servers may interleave with this block
+                resultSet = statement.executeQuery(querySource.getQuery("getNextMessageIds", values));
+
+                while (resultSet.next()) {
+                    ids.add(resultSet.getLong(1));
+                }
+
+                Collections.sort(ids);
+            } else {
+                // Table-based sequences are locked, so the whole block can be reserved with a single update
+                if (querySource.queryExists("lockMessageSequenceTable")) {
+                    statement.executeUpdate(querySource.getQuery("lockMessageSequenceTable", values));
+                }
+
+                resultSet = statement.executeQuery(querySource.getQuery("getNextMessageId", values));
+                resultSet.next();
+                long firstId = resultSet.getLong(1);
+                close(resultSet);
+
+                statement.executeUpdate(querySource.getQuery("incrementMessageIdSequenceBy", values));
+
+                for (long id = firstId; id < firstId + count; id++) {
+                    ids.add(id);
+                }
+            }
+
+            return ids;
+        } catch (SQLException e) {
+            throw new DonkeyDaoException(e);
+        } finally {
+            close(resultSet);
+            close(statement);
+        }
+    }
+
     @Override
     public List<Attachment> getMessageAttachment(String channelId, long messageId) {
         ResultSet resultSet = null;
@@ -1813,6 +1892,11 @@ public class JdbcDao implements DonkeyDao {
 
     @Override
     public List<ConnectorMessage> getConnectorMessages(String channelId, String serverId, int metaDataId, Status status, int offset, int limit, Long minMessageId, Long maxMessageId) {
+        return getConnectorMessages(channelId, serverId, metaDataId, status, offset, limit, minMessageId, maxMessageId, true);
+    }
+
+    @Override
+    public List<ConnectorMessage> getConnectorMessages(String channelId, String serverId, int metaDataId, Status status, int offset, int limit, Long minMessageId, Long maxMessageId, boolean includeContent) {
         List<ConnectorMessage> connectorMessages = new ArrayList<ConnectorMessage>();
 
         if (limit == 0) {
@@ -1851,7 +1935,7 @@ public class JdbcDao implements DonkeyDao {
             resultSet = statement.executeQuery();
 
             while (resultSet.next()) {
-                connectorMessages.add(getConnectorMessageFromResultSet(channelId, resultSet, true, true));
+                connectorMessages.add(getConnectorMessageFromResultSet(channelId, resultSet, includeContent, includeContent));
             }
 
             return connectorMessages;
@@ -2338,6 +2422,15 @@ public class JdbcDao implements DonkeyDao {
             statisticsUpdater.update(transactionStats);
         }
 
+        // Statistics of earlier grouped transactions go to their own updaters, and then to the in-memory stats
+        for (GroupedTransactionStatistics grouped : groupedTransactionStats) {
+            if (grouped.statisticsUpdater != null) {
+                grouped.statisticsUpdater.update(grouped.statistics);
+            }
+            transactionStats.update(grouped.statistics);
+        }
+        groupedTransactionStats.clear();
+
         if (transactionAlteredChannels) {
             localChannelIds = null;
             transactionAlteredChannels = false;
@@ -2405,6 +2498,7 @@ public class JdbcDao implements DonkeyDao {
         try {
             connection.rollback();
             transactionStats.clear();
+            groupedTransactionStats.clear();
         } catch (SQLException e) {
             throw new DonkeyDaoException(e);
         }
@@ -3096,4 +3190,14 @@ public class JdbcDao implements DonkeyDao {
         Channel channel = donkey.getDeployedChannels().get(channelId);
         return channel != null ? channel.getName() : "";
     }
+
+    private static class GroupedTransactionStatistics {
+        private StatisticsUpdater statisticsUpdater;
+        private Statistics statistics;
+
+        public GroupedTransactionStatistics(StatisticsUpdater statisticsUpdater, Statistics statistics) {
+            this.statisticsUpdater = statisticsUpdater;
+            this.statistics = statistics;
+        }
+    }
 }
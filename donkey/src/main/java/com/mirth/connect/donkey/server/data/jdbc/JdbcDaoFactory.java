@@ -54,6 +54,7 @@ public class JdbcDaoFactory implements DonkeyDaoFactory {
     private StatisticsUpdater statisticsUpdater;
     private boolean encryptData = false;
     private boolean decryptData = true;
+    private GroupCommitCoordinator groupCommitCoordinator;
     private Map<Connection, PreparedStatementSource> statementSources = new ConcurrentHashMap<Connection, PreparedStatementSource>();
     private Logger logger = Logger.getLogger(getClass());
 
@@ -91,6 +92,14 @@ public class JdbcDaoFactory implements DonkeyDaoFactory {
         this.serializerProvider = serializerProvider;
     }
 
+    public GroupCommitCoordinator getGroupCommitCoordinator() {
+        return groupCommitCoordinator;
+    }
+
+    public void setGroupCommitCoordinator(GroupCommitCoordinator groupCommitCoordinator) {
+        this.groupCommitCoordinator = groupCommitCoordinator;
+    }
+
     public Map<Connection, PreparedStatementSource> getStatementSources() {
         return statementSources;
     }
@@ -264,6 +264,13 @@ public class PassthruDao implements DonkeyDao {
         return 1L;
     }
 
+    @Override
+    public List<Long> getNextMessageIds(String channelId, int count) {
+        List<Long> ids = new ArrayList<Long>();
+        ids.add(1L);
+        return ids;
+    }
+
     @Override
     public List<Attachment> getMessageAttachment(String channelId, long messageId) {
         return new ArrayList<Attachment>();
@@ -294,6 +301,11 @@ public class PassthruDao implements DonkeyDao {
         return new ArrayList<ConnectorMessage>();
     }
 
+    @Override
+    public List<ConnectorMessage> getConnectorMessages(String channelId, String serverId, int metaDataId, Status status, int offset, int limit, Long minMessageId, Long maxMessageId, boolean includeContent) {
+        return new ArrayList<ConnectorMessage>();
+    }
+
     @Override
     public Map<Integer, Status> getConnectorMessageStatuses(String channelId, long messageId, boolean checkProcessed) {
         return new HashMap<Integer, Status>();
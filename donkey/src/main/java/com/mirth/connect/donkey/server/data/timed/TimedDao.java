@@ -518,6 +518,17 @@ public class TimedDao implements DonkeyDao {
         }
     }
 
+    @Override
+    public List<Long> getNextMessageIds(String channelId, int count) {
+        long startTime = System.currentTimeMillis();
+
+        try {
+            return dao.getNextMessageIds(channelId, count);
+        } finally {
+            timer.log("getNextMessageIds", System.currentTimeMillis() - startTime);
+        }
+    }
+
     @Override
     public List<Attachment> getMessageAttachment(String channelId, long messageId) {
         long startTime = System.currentTimeMillis();
@@ -573,6 +584,17 @@ public class TimedDao implements DonkeyDao {
         }
     }
 
+    @Override
+    public List<ConnectorMessage> getConnectorMessages(String channelId, String serverId, int metaDataId, Status status, int offset, int limit, Long minMessageId, Long maxMessageId, boolean includeContent) {
+        long startTime = System.currentTimeMillis();
+
+        try {
+            return dao.getConnectorMessages(channelId, serverId, metaDataId, status, offset, limit, minMessageId, maxMessageId, includeContent);
+        } finally {
+            timer.log("getConnectorMessages", System.currentTimeMillis() - startTime);
+        }
+    }
+
     @Override
     public List<ConnectorMessage> getConnectorMessages(String channelId, long messageId, Set<Integer> metaDataIds, boolean includeContent) {
         long startTime = System.currentTimeMillis();
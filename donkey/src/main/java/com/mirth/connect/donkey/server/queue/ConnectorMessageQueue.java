@@ -9,9 +9,10 @@
 
 package com.mirth.connect.donkey.server.queue;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.mirth.connect.donkey.model.event.MessageEventType;
 import com.mirth.connect.donkey.model.message.ConnectorMessage;
@@ -21,22 +22,80 @@ import com.mirth.connect.donkey.server.event.MessageEvent;
 
 public abstract class ConnectorMessageQueue {
 
-    protected Map<Long, ConnectorMessage> buffer = new LinkedHashMap<Long, ConnectorMessage>();
-    protected Integer size;
+    /*
+     * When the buffer is limited in bytes, it is filled a page at a time so that no more messages
+     * than fit in the budget are read from the database. The first page is small since nothing is
+     * known yet about the size of the messages in the queue.
+     */
+    private static final int FIRST_FILL_PAGE_SIZE = 10;
+    private static final int MAX_FILL_PAGE_SIZE = 1000;
+
+    protected QueueBuffer buffer = new QueueBuffer(1);
     protected ConnectorMessageQueueDataSource dataSource;
     protected final AtomicBoolean timeoutLock = new AtomicBoolean(false);
     protected EventDispatcher eventDispatcher = Donkey.getInstance().getEventDispatcher();
     protected String channelId;
     protected Integer metaDataId;
 
-    private int bufferCapacity = 1000;
-    private boolean reachedCapacity = false;
-    private boolean invalidated = false;
+    /*
+     * Anything that resynchronizes the queue with the database (filling the buffer, invalidating,
+     * updating the size) takes the write lock. Adding, acquiring and releasing messages only take
+     * the read lock and work on the concurrent buffer and counters, so producers and queue threads
+     * do not block each other. The read lock cannot be upgraded, so code holding it must never
+     * call a method that takes the write lock.
+     */
+    private final ReentrantReadWriteLock bufferLock = new ReentrantReadWriteLock();
+
+    /*
+     * Deciding whether a new message still fits in the buffer and counting it has to be atomic
+     * among producers, otherwise a later message could make it into the buffer while an earlier
+     * one is left in the database.
+     */
+    private final Object addLock = new Object();
+
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile boolean sizeKnown = false;
+    private volatile int bufferCapacity = 1000;
+    private volatile long bufferMemoryCapacity = 0;
+    private volatile boolean reachedCapacity = false;
+    private volatile boolean invalidated = false;
+    private int skippedOnFill = 0;
 
     protected abstract ConnectorMessage pollFirstValue();
 
     protected void reset() {}
 
+    /**
+     * Called with the buffer locked exclusively whenever the queue is invalidated, after the buffer
+     * has been cleared. Subclasses that keep messages outside of the buffer should drop them here
+     * so they are read from the database again.
+     */
+    protected void bufferInvalidated() {}
+
+    /**
+     * Returns the number of messages a subclass keeps in memory outside of the buffer. They count
+     * towards the buffer capacity, so the buffer is filled with fewer messages while they are held.
+     */
+    protected int getHeldCount() {
+        return 0;
+    }
+
+    /**
+     * Returns the estimated number of bytes taken up by the messages a subclass keeps in memory
+     * outside of the buffer. They count towards the buffer memory capacity.
+     */
+    protected long getHeldMemory() {
+        return 0;
+    }
+
+    /**
+     * Returns the buffer segment the message belongs in. Subclasses that assign messages to
+     * different queue threads use one segment per thread.
+     */
+    protected int getBufferSegment(ConnectorMessage connectorMessage) {
+        return 0;
+    }
+
     public int getBufferSize() {
         return buffer.size();
     }
@@ -45,16 +104,61 @@ public abstract class ConnectorMessageQueue {
         return bufferCapacity;
     }
 
-    public synchronized void setBufferCapacity(int bufferCapacity) {
+    public void setBufferCapacity(int bufferCapacity) {
         if (bufferCapacity > 0) {
-            if (bufferCapacity < this.bufferCapacity) {
+            bufferLock.writeLock().lock();
+            try {
+                if (bufferCapacity < this.bufferCapacity) {
+                    buffer.clear();
+                }
+
+                this.bufferCapacity = bufferCapacity;
+            } finally {
+                bufferLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated number of bytes taken up by the messages currently in the buffer,
+     * including the ones held outside of it.
+     */
+    public long getBufferMemory() {
+        return buffer.getMemory() + getHeldMemory();
+    }
+
+    /**
+     * Returns the maximum estimated number of bytes the buffer will hold, or 0 if the buffer is
+     * only limited by its capacity in messages.
+     */
+    public long getBufferMemoryCapacity() {
+        return bufferMemoryCapacity;
+    }
+
+    /**
+     * Limits the buffer to an estimated number of bytes, in addition to the buffer capacity. At
+     * least one message is always buffered, no matter how large it is. A value of 0 or less removes
+     * the limit.
+     */
+    public void setBufferMemoryCapacity(long bufferMemoryCapacity) {
+        bufferMemoryCapacity = Math.max(bufferMemoryCapacity, 0);
+
+        bufferLock.writeLock().lock();
+        try {
+            if (bufferMemoryCapacity > 0 && (this.bufferMemoryCapacity == 0 || bufferMemoryCapacity < this.bufferMemoryCapacity)) {
                 buffer.clear();
             }
 
-            this.bufferCapacity = bufferCapacity;
+            this.bufferMemoryCapacity = bufferMemoryCapacity;
+        } finally {
+            bufferLock.writeLock().unlock();
         }
     }
 
+    private boolean isBufferMemoryFull() {
+        return bufferMemoryCapacity > 0 && getBufferMemory() >= bufferMemoryCapacity;
+    }
+
     public ConnectorMessageQueueDataSource getDataSource() {
         return dataSource;
     }
@@ -67,103 +171,197 @@ public abstract class ConnectorMessageQueue {
         invalidate(false, true);
     }
 
-    public synchronized void updateSize() {
-        size = dataSource.getSize();
+    public void updateSize() {
+        bufferLock.writeLock().lock();
+        try {
+            size.set(dataSource.getSize());
+            sizeKnown = true;
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
     }
 
-    public synchronized void updateSizeIfEmpty() {
-        if (size == null || size == 0) {
-            updateSize();
+    public void updateSizeIfEmpty() {
+        bufferLock.writeLock().lock();
+        try {
+            if (!sizeKnown || size.get() == 0) {
+                updateSize();
+            }
+        } finally {
+            bufferLock.writeLock().unlock();
         }
     }
 
-    public synchronized void invalidate(boolean updateSize, boolean reset) {
-        buffer.clear();
+    public void invalidate(boolean updateSize, boolean reset) {
+        bufferLock.writeLock().lock();
+        try {
+            buffer.clear();
+            bufferInvalidated();
 
-        if (reset) {
-            reset();
-        }
+            if (reset) {
+                reset();
+            }
 
-        size = null;
-        invalidated = true;
+            sizeKnown = false;
+            invalidated = true;
 
-        if (updateSize) {
-            eventDispatcher.dispatchEvent(new MessageEvent(channelId, metaDataId, MessageEventType.QUEUED, (long) size(), true));
+            if (updateSize) {
+                eventDispatcher.dispatchEvent(new MessageEvent(channelId, metaDataId, MessageEventType.QUEUED, (long) size(), true));
+            }
+        } finally {
+            bufferLock.writeLock().unlock();
         }
     }
 
-    public synchronized boolean contains(ConnectorMessage connectorMessage) {
+    public boolean contains(ConnectorMessage connectorMessage) {
         return buffer.containsKey(connectorMessage.getMessageId());
     }
 
     public boolean isEmpty() {
-        if (size == null) {
+        if (!sizeKnown) {
             updateSize();
         }
 
-        return (size == 0);
+        return (size.get() == 0);
     }
 
     public int size() {
-        if (size == null) {
+        if (!sizeKnown) {
             if (dataSource == null) {
                 return 0;
             }
             updateSize();
         }
 
-        return size;
+        return size.get();
+    }
+
+    protected boolean isSizeKnown() {
+        return sizeKnown;
+    }
+
+    /**
+     * Returns the queue size without going to the database. Only meaningful while the size is
+     * known.
+     */
+    protected int getActualSize() {
+        return size.get();
     }
 
     protected void incrementActualSize() {
-        size++;
+        size.incrementAndGet();
     }
 
     protected void decrementActualSize() {
-        size--;
-    }
-
-    public synchronized void add(ConnectorMessage connectorMessage) {
-        if (invalidated) {
-            /*
-             * If the buffer's size was already updated after an invalidate, then we need to
-             * increment the size by one in order to account for the new message that was just
-             * added, since this method is only ever called after a new message is added to the
-             * database
-             */
-            if (size != null) {
-                incrementActualSize();
-            }
-
-            /*
-             * If the buffer was never filled after an invalidate, we can't just insert the message
-             * directly into the buffer because there could be messages that should process before
-             * it. Therefore we'll just fill the buffer to resync it with the database. This method
-             * can only be called after a new message was added to the database
-             */
-            fillBuffer();
-        } else {
-            if (size == null) {
-                updateSize();
+        size.decrementAndGet();
+    }
+
+    /**
+     * Takes the read lock, making sure first that the queue size is known. Must not be called
+     * while already holding the read lock.
+     */
+    protected void lockBuffer() {
+        while (true) {
+            if (!sizeKnown) {
+                bufferLock.writeLock().lock();
+                try {
+                    if (!sizeKnown) {
+                        updateSize();
+                    }
+                } finally {
+                    bufferLock.writeLock().unlock();
+                }
             }
-            if (!reachedCapacity) {
-                if (size < bufferCapacity && !dataSource.isQueueRotated()) {
-                    if (canAddNewMessageToBuffer(connectorMessage)) {
-                        buffer.put(connectorMessage.getMessageId(), connectorMessage);
 
-                        // If there is a poll with timeout waiting, notify that an item was added to the buffer.
-                        if (timeoutLock.get()) {
-                            synchronized (timeoutLock) {
-                                timeoutLock.notifyAll();
-                                timeoutLock.set(false);
+            bufferLock.readLock().lock();
+
+            // The queue may have been invalidated again before the read lock was obtained
+            if (sizeKnown) {
+                return;
+            }
+
+            bufferLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the read lock without resolving the queue size.
+     */
+    protected void lockBufferForRelease() {
+        bufferLock.readLock().lock();
+    }
+
+    protected void unlockBuffer() {
+        bufferLock.readLock().unlock();
+    }
+
+    /**
+     * Takes the write lock, during which no other thread is adding, acquiring or releasing
+     * messages.
+     */
+    protected void lockBufferExclusively() {
+        bufferLock.writeLock().lock();
+    }
+
+    protected void unlockBufferExclusively() {
+        bufferLock.writeLock().unlock();
+    }
+
+    public void add(ConnectorMessage connectorMessage) {
+        boolean added = false;
+
+        while (!added) {
+            if (invalidated) {
+                bufferLock.writeLock().lock();
+                try {
+                    if (invalidated) {
+                        /*
+                         * If the buffer's size was already updated after an invalidate, then we
+                         * need to increment the size by one in order to account for the new
+                         * message that was just added, since this method is only ever called after
+                         * a new message is added to the database
+                         */
+                        if (sizeKnown) {
+                            incrementActualSize();
+                        }
+
+                        /*
+                         * If the buffer was never filled after an invalidate, we can't just insert
+                         * the message directly into the buffer because there could be messages
+                         * that should process before it. Therefore we'll just fill the buffer to
+                         * resync it with the database. This method can only be called after a new
+                         * message was added to the database
+                         */
+                        fillBuffer();
+                        added = true;
+                    }
+                } finally {
+                    bufferLock.writeLock().unlock();
+                }
+            } else {
+                lockBuffer();
+                try {
+                    if (!invalidated) {
+                        synchronized (addLock) {
+                            if (!reachedCapacity) {
+                                if (size.get() < bufferCapacity && !isBufferMemoryFull() && !dataSource.isQueueRotated()) {
+                                    if (canAddNewMessageToBuffer(connectorMessage)) {
+                                        buffer.put(getBufferSegment(connectorMessage), connectorMessage);
+                                        notifyTimeoutLock();
+                                    }
+                                } else {
+                                    reachedCapacity = true;
+                                }
                             }
+                            incrementActualSize();
                         }
+
+                        added = true;
                     }
-                } else {
-                    reachedCapacity = true;
+                } finally {
+                    unlockBuffer();
                 }
             }
-            incrementActualSize();
         }
 
         eventDispatcher.dispatchEvent(new MessageEvent(channelId, metaDataId, MessageEventType.QUEUED, (long) size(), false));
@@ -173,20 +371,138 @@ public abstract class ConnectorMessageQueue {
         return true;
     }
 
-    public synchronized void fillBuffer() {
-        if (size == null) {
-            updateSize();
+    /**
+     * Returns false if a message read from the database while filling the buffer should be left
+     * out of it, even though it still counts towards the queue size.
+     */
+    protected boolean canFillBufferWith(ConnectorMessage connectorMessage) {
+        return true;
+    }
+
+    /*
+     * The write lock is held from reading the messages until they are in the buffer. Finishing or
+     * releasing a message takes the read lock, so a message cannot be finished after it was read
+     * but before it was inserted, and canFillBufferWith sees whether it is still checked out. A
+     * message that was finished before the read is not returned by the database, because its status
+     * is committed before it is finished.
+     */
+    public void fillBuffer() {
+        bufferLock.writeLock().lock();
+        try {
+            if (!sizeKnown) {
+                updateSize();
+            }
+
+            invalidated = false;
+            int limit = Math.min(bufferCapacity, size.get());
+
+            buffer.clear();
+            skippedOnFill = 0;
+
+            if (bufferMemoryCapacity > 0) {
+                if (!fillBufferWithinMemoryCapacity(limit)) {
+                    // Messages were left in the database, so new messages cannot skip ahead of them
+                    reachedCapacity = true;
+                }
+            } else {
+                for (ConnectorMessage connectorMessage : dataSource.getItems(0, limit).values()) {
+                    if (!putFilledMessage(connectorMessage)) {
+                        reachedCapacity = true;
+                        break;
+                    }
+                }
+            }
+
+            if (buffer.size() + skippedOnFill == size.get()) {
+                reachedCapacity = false;
+            }
+
+            if (buffer.size() > 0) {
+                notifyTimeoutLock();
+            }
+        } finally {
+            bufferLock.writeLock().unlock();
         }
+    }
 
-        invalidated = false;
-        buffer = dataSource.getItems(0, Math.min(bufferCapacity, size));
+    /**
+     * Reads up to limit messages into the buffer one page at a time, until the buffer memory
+     * capacity is reached. Each page is sized from the average size of the messages read so far.
+     * Returns false if the memory capacity stopped the buffer from being filled.
+     */
+    private boolean fillBufferWithinMemoryCapacity(int limit) {
+        int pageSize = Math.min(limit, FIRST_FILL_PAGE_SIZE);
+        Map<Long, ConnectorMessage> items = dataSource.getItems(0, pageSize);
+
+        while (!items.isEmpty()) {
+            long lastMessageId = 0;
+
+            for (ConnectorMessage connectorMessage : items.values()) {
+                if (buffer.size() + skippedOnFill >= limit) {
+                    return true;
+                }
+
+                if (!buffer.isEmpty() && isBufferMemoryFull()) {
+                    return false;
+                }
+
+                if (!putFilledMessage(connectorMessage)) {
+                    return false;
+                }
+
+                lastMessageId = connectorMessage.getMessageId();
+            }
+
+            if (buffer.size() + skippedOnFill >= limit || items.size() < pageSize) {
+                return true;
+            }
+
+            if (isBufferMemoryFull()) {
+                return false;
+            }
+
+            long averageSize = Math.max(buffer.getMemory() / Math.max(buffer.size(), 1), 1);
+            long remaining = (bufferMemoryCapacity - getBufferMemory() + averageSize - 1) / averageSize;
+            pageSize = (int) Math.min(Math.min(remaining, MAX_FILL_PAGE_SIZE), limit - buffer.size() - skippedOnFill);
+            items = dataSource.getItemsAfter(lastMessageId, pageSize);
+        }
+
+        return true;
+    }
+
+    /*
+     * Returns false if the message was left out because the buffer and the held messages together
+     * already take up the buffer capacity. At least one message is always buffered.
+     */
+    private boolean putFilledMessage(ConnectorMessage connectorMessage) {
+        if (!canFillBufferWith(connectorMessage)) {
+            skippedOnFill++;
+        } else if (!buffer.isEmpty() && buffer.size() + getHeldCount() >= bufferCapacity) {
+            return false;
+        } else {
+            buffer.put(getBufferSegment(connectorMessage), connectorMessage);
+        }
+
+        return true;
+    }
 
-        if (buffer.size() == size) {
-            reachedCapacity = false;
+    /**
+     * Fills the buffer unless another thread already did so since the caller found it empty.
+     */
+    protected void fillBufferIfEmpty() {
+        bufferLock.writeLock().lock();
+        try {
+            if (buffer.isEmpty()) {
+                fillBuffer();
+            }
+        } finally {
+            bufferLock.writeLock().unlock();
         }
+    }
 
+    private void notifyTimeoutLock() {
         // If there is a poll with timeout waiting, notify that an item was added to the buffer.
-        if (buffer.size() > 0 && timeoutLock.get()) {
+        if (timeoutLock.get()) {
             synchronized (timeoutLock) {
                 timeoutLock.notifyAll();
                 timeoutLock.set(false);
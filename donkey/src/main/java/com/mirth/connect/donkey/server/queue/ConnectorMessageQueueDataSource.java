@@ -9,12 +9,14 @@
 
 package com.mirth.connect.donkey.server.queue;
 
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.mirth.connect.donkey.model.message.ConnectorMessage;
+import com.mirth.connect.donkey.model.message.Message;
 import com.mirth.connect.donkey.model.message.Status;
 import com.mirth.connect.donkey.server.data.DonkeyDao;
 import com.mirth.connect.donkey.server.data.DonkeyDaoFactory;
@@ -29,7 +31,8 @@ public class ConnectorMessageQueueDataSource {
     private Long maxMessageId = null;
     private Long minMessageId = null;
     private Long rotatedMessageId = null;
-    private ConcurrentHashMap<Long, Boolean> rotateThreadMap;
+    private volatile boolean includeContent = true;
+    private ConcurrentHashMap<Long, ConnectorMessage> contentPending = new ConcurrentHashMap<Long, ConnectorMessage>();
 
     public ConnectorMessageQueueDataSource(String channelId, String serverId, int metaDataId, Status status, boolean rotate, DonkeyDaoFactory daoFactory) {
         this.channelId = channelId;
@@ -38,10 +41,6 @@ public class ConnectorMessageQueueDataSource {
         this.status = status;
         this.rotate = rotate;
         this.daoFactory = daoFactory;
-
-        if (rotate) {
-            rotateThreadMap = new ConcurrentHashMap<Long, Boolean>();
-        }
     }
 
     public DonkeyDaoFactory getDaoFactory() {
@@ -80,11 +79,56 @@ public class ConnectorMessageQueueDataSource {
         this.status = status;
     }
 
-    public ConcurrentHashMap<Long, Boolean> getRotateThreadMap() {
-        return rotateThreadMap;
+    public boolean isIncludeContent() {
+        return includeContent;
+    }
+
+    /**
+     * If false, items are read without their content or metadata map, which then have to be loaded
+     * with loadContent before the connector message can be processed.
+     */
+    public void setIncludeContent(boolean includeContent) {
+        this.includeContent = includeContent;
+    }
+
+    /**
+     * Returns true if the connector message is an item that was read without its content, and the
+     * content has not been loaded since.
+     */
+    public boolean isContentPending(ConnectorMessage connectorMessage) {
+        return contentPending.get(connectorMessage.getMessageId()) == connectorMessage;
+    }
+
+    public void removeContentPending(ConnectorMessage connectorMessage) {
+        contentPending.remove(connectorMessage.getMessageId(), connectorMessage);
+    }
+
+    /**
+     * Loads the given messages in bulk and returns the fully loaded connector messages for this
+     * data source's connector, mapped by message ID. Messages that no longer exist are left out.
+     */
+    public Map<Long, ConnectorMessage> loadContent(List<Long> messageIds) {
+        Map<Long, ConnectorMessage> connectorMessages = new HashMap<Long, ConnectorMessage>();
+        DonkeyDao dao = daoFactory.getDao();
+
+        try {
+            for (int i = 0; i < messageIds.size(); i += 1000) {
+                for (Message message : dao.getMessages(channelId, messageIds.subList(i, Math.min(i + 1000, messageIds.size())))) {
+                    ConnectorMessage connectorMessage = message.getConnectorMessages().get(metaDataId);
+
+                    if (connectorMessage != null) {
+                        connectorMessages.put(message.getMessageId(), connectorMessage);
+                    }
+                }
+            }
+        } finally {
+            dao.close();
+        }
+
+        return connectorMessages;
     }
 
-    public void setLastItem(ConnectorMessage connectorMessage) {
+    public synchronized void setLastItem(ConnectorMessage connectorMessage) {
         /*
          * Multiple processing threads can cause the buffer to be out of order, so make sure the
          * rotation ID is always set to the highest one available.
@@ -98,7 +142,7 @@ public class ConnectorMessageQueueDataSource {
         }
     }
 
-    public void rotateQueue() {
+    public synchronized void rotateQueue() {
         minMessageId = rotatedMessageId;
 
         /*
@@ -119,11 +163,11 @@ public class ConnectorMessageQueueDataSource {
         }
     }
 
-    public boolean isQueueRotated() {
+    public synchronized boolean isQueueRotated() {
         return (rotate && minMessageId != null && minMessageId != 0);
     };
 
-    public int getSize() {
+    public synchronized int getSize() {
         DonkeyDao dao = getDaoFactory().getDao();
 
         try {
@@ -141,11 +185,16 @@ public class ConnectorMessageQueueDataSource {
         }
     }
 
-    public Map<Long, ConnectorMessage> getItems(int offset, int limit) {
+    public synchronized Map<Long, ConnectorMessage> getItems(int offset, int limit) {
         DonkeyDao dao = daoFactory.getDao();
 
         try {
-            List<ConnectorMessage> connectorMessages = dao.getConnectorMessages(channelId, serverId, metaDataId, status, offset, limit, minMessageId, maxMessageId);
+            // Reading from the start means the buffer is being refilled, so earlier items are gone
+            if (offset == 0) {
+                contentPending.clear();
+            }
+
+            List<ConnectorMessage> connectorMessages = dao.getConnectorMessages(channelId, serverId, metaDataId, status, offset, limit, minMessageId, maxMessageId, includeContent);
 
             /*
              * If rotation is on, the last query may not have returned any results because min/max
@@ -157,25 +206,44 @@ public class ConnectorMessageQueueDataSource {
                 minMessageId = 0L;
                 maxMessageId = null;
                 rotatedMessageId = null;
-                connectorMessages = dao.getConnectorMessages(channelId, serverId, metaDataId, status, offset, limit, minMessageId, maxMessageId);
-
-                if (connectorMessages.size() > 0) {
-                    // Update the rotate map for each thread ID so destination connectors know to sleep
-                    for (Long threadId : rotateThreadMap.keySet().toArray(new Long[rotateThreadMap.size()])) {
-                        rotateThreadMap.put(threadId, true);
-                    }
-                }
+                connectorMessages = dao.getConnectorMessages(channelId, serverId, metaDataId, status, offset, limit, minMessageId, maxMessageId, includeContent);
             }
 
-            Map<Long, ConnectorMessage> map = new LinkedHashMap<Long, ConnectorMessage>();
+            return toItems(connectorMessages);
+        } finally {
+            dao.close();
+        }
+    }
 
-            for (ConnectorMessage connectorMessage : connectorMessages) {
-                map.put(connectorMessage.getMessageId(), connectorMessage);
-            }
+    /**
+     * Returns up to limit items with a message ID greater than the given one, within the current
+     * rotation cycle. Unlike getItems, this never starts a new rotation cycle, so it can be used to
+     * read the queue one page at a time.
+     */
+    public synchronized Map<Long, ConnectorMessage> getItemsAfter(long messageId, int limit) {
+        DonkeyDao dao = daoFactory.getDao();
+
+        try {
+            long min = minMessageId != null ? Math.max(minMessageId, messageId + 1) : messageId + 1;
+            long max = maxMessageId != null ? maxMessageId : Long.MAX_VALUE;
 
-            return map;
+            return toItems(dao.getConnectorMessages(channelId, serverId, metaDataId, status, 0, limit, min, max, includeContent));
         } finally {
             dao.close();
         }
     }
+
+    private Map<Long, ConnectorMessage> toItems(List<ConnectorMessage> connectorMessages) {
+        Map<Long, ConnectorMessage> map = new LinkedHashMap<Long, ConnectorMessage>();
+
+        for (ConnectorMessage connectorMessage : connectorMessages) {
+            map.put(connectorMessage.getMessageId(), connectorMessage);
+
+            if (!includeContent) {
+                contentPending.put(connectorMessage.getMessageId(), connectorMessage);
+            }
+        }
+
+        return map;
+    }
 }
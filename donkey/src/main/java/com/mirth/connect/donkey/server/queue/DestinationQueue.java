@@ -9,12 +9,8 @@
 
 package com.mirth.connect.donkey.server.queue;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Collections;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
@@ -39,11 +35,15 @@ public class DestinationQueue extends ConnectorMessageQueue {
     private boolean regenerateTemplate;
     private Serializer serializer;
     private MessageMaps messageMaps;
-    private Set<Long> checkedOut = new HashSet<Long>();
-    private Set<Long> deleted = new HashSet<Long>();
-    private boolean rotate = false;
+    private Set<Long> checkedOut = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private Set<Long> deleted = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private volatile boolean rotate = false;
+    private int threadCount;
     private int queueBuckets = 1;
-    private List<Long> queueThreadIds;
+    private int contentPrefetch = 0;
+    private QueueContentPrefetcher prefetcher;
+    private QueueRetryScheduler retryScheduler;
+    private Map<Long, Integer> queueThreadBuckets;
     private HashFunction hashFunction;
     private Map<String, Integer> initialThreadAssignmentMap;
 
@@ -70,44 +70,113 @@ public class DestinationQueue extends ConnectorMessageQueue {
         this.regenerateTemplate = regenerateTemplate;
         this.serializer = serializer;
         this.messageMaps = messageMaps;
+        this.threadCount = threadCount;
 
         if (StringUtils.isNotBlank(groupBy)) {
             queueBuckets = threadCount;
 
             if (queueBuckets > 1) {
-                queueThreadIds = new ArrayList<Long>(queueBuckets);
+                queueThreadBuckets = new ConcurrentHashMap<Long, Integer>(queueBuckets);
                 hashFunction = Hashing.murmur3_32((int) System.currentTimeMillis());
                 initialThreadAssignmentMap = new ConcurrentHashMap<String, Integer>(queueBuckets);
+                buffer = new QueueBuffer(queueBuckets);
             }
         }
+
+        retryScheduler = new QueueRetryScheduler(buffer.getSegmentCount());
     }
 
     @Override
     protected ConnectorMessage pollFirstValue() {
-        Iterator<Entry<Long, ConnectorMessage>> iterator = buffer.entrySet().iterator();
+        /*
+         * If there are multiple buckets, each queue thread only polls the buffer segment for the
+         * bucket it was assigned when it registered.
+         */
+        return buffer.pollFirst(getThreadSegment());
+    }
 
-        while (iterator.hasNext()) {
-            ConnectorMessage connectorMessage = iterator.next().getValue();
+    /*
+     * Returns the buffer segment of the current queue thread, or -1 if it was not assigned a bucket.
+     */
+    private int getThreadSegment() {
+        if (queueBuckets > 1) {
+            Integer bucket = queueThreadBuckets.get(Thread.currentThread().getId());
+            return bucket != null ? bucket : -1;
+        }
 
-            /*
-             * If there are multiple buckets, then the first value in the buffer may not be the
-             * first value for this queue thread. In this case, iterate through the buffer and find
-             * the first one that matches (if any).
-             */
-            if (queueBuckets > 1) {
-                Integer bucket = getBucket(connectorMessage);
+        return 0;
+    }
 
-                if (bucket < queueThreadIds.size() && queueThreadIds.get(bucket).equals(Thread.currentThread().getId())) {
-                    iterator.remove();
-                    return connectorMessage;
-                }
-            } else {
-                iterator.remove();
-                return connectorMessage;
-            }
+    @Override
+    protected int getBufferSegment(ConnectorMessage connectorMessage) {
+        return queueBuckets > 1 ? getBucket(connectorMessage) : 0;
+    }
+
+    /*
+     * A message that is checked out is still in the database, so it would be read again when the
+     * buffer is filled. It is left out because the queue thread that has it checked out may release
+     * it at any time, and a queue thread polling the reloaded copy concurrently could then check it
+     * out a second time.
+     */
+    @Override
+    protected boolean canFillBufferWith(ConnectorMessage connectorMessage) {
+        return !checkedOut.contains(connectorMessage.getMessageId()) && !retryScheduler.isHeld(connectorMessage.getMessageId());
+    }
+
+    @Override
+    protected void bufferInvalidated() {
+        retryScheduler.clearHeld();
+    }
+
+    @Override
+    protected int getHeldCount() {
+        return retryScheduler.getHeldCount();
+    }
+
+    @Override
+    protected long getHeldMemory() {
+        return retryScheduler.getHeldMemory();
+    }
+
+    public int getContentPrefetch() {
+        return contentPrefetch;
+    }
+
+    /**
+     * If greater than 0, the queue buffers only message IDs and connector metadata, and loads the
+     * content of the next contentPrefetch messages per queue thread in the background as messages
+     * are acquired. This must be set before the data source.
+     */
+    public void setContentPrefetch(int contentPrefetch) {
+        this.contentPrefetch = contentPrefetch;
+    }
+
+    @Override
+    public void setDataSource(ConnectorMessageQueueDataSource dataSource) {
+        /*
+         * Messages can only be buffered without their content if they don't need to be assigned to
+         * queue threads, since the thread assignment variable may depend on the content.
+         */
+        stopContentPrefetch();
+
+        if (contentPrefetch > 0 && queueBuckets <= 1) {
+            dataSource.setIncludeContent(false);
+            prefetcher = new QueueContentPrefetcher(dataSource, contentPrefetch * Math.max(threadCount, 1), threadCount);
+        } else {
+            prefetcher = null;
         }
 
-        return null;
+        super.setDataSource(dataSource);
+    }
+
+    /**
+     * Stops the threads that load the content of upcoming messages in the background. They are
+     * started again when a queue thread acquires a message.
+     */
+    public void stopContentPrefetch() {
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+        }
     }
 
     public Lock getStatusUpdateLock() {
@@ -123,11 +192,12 @@ public class DestinationQueue extends ConnectorMessageQueue {
         checkedOut.clear();
         deleted.clear();
         if (queueBuckets > 1) {
-            queueThreadIds.clear();
+            queueThreadBuckets.clear();
         }
-        if (rotate) {
-            dataSource.getRotateThreadMap().clear();
+        if (prefetcher != null) {
+            prefetcher.clear();
         }
+        retryScheduler.clear();
     }
 
     public boolean isRotate() {
@@ -141,98 +211,142 @@ public class DestinationQueue extends ConnectorMessageQueue {
     public synchronized void registerThreadId() {
         Long threadId = Thread.currentThread().getId();
 
-        if (queueBuckets > 1) {
-            queueThreadIds.add(threadId);
-        }
-
-        if (rotate) {
-            dataSource.getRotateThreadMap().put(threadId, false);
+        if (queueBuckets > 1 && !queueThreadBuckets.containsKey(threadId)) {
+            queueThreadBuckets.put(threadId, queueThreadBuckets.size());
         }
     }
 
-    public boolean hasBeenRotated() {
-        if (rotate) {
-            // Check to see if the data source has rotated the queue
-            Long threadId = Thread.currentThread().getId();
-            Boolean rotated = dataSource.getRotateThreadMap().get(threadId);
-            if (rotated == null || rotated) {
-                if (rotated == null) {
-                    rotated = false;
-                }
-                // Update the map, clearing the flag
-                dataSource.getRotateThreadMap().put(threadId, false);
+    public ConnectorMessage acquire() {
+        while (true) {
+            ConnectorMessage connectorMessage = checkOut();
+
+            if (connectorMessage == null || prefetcher == null) {
+                return connectorMessage;
+            }
+
+            ConnectorMessage loadedMessage;
+            try {
+                loadedMessage = prefetcher.load(connectorMessage);
+            } catch (RuntimeException e) {
+                // Put the message back in the database's hands so it gets buffered again
+                checkedOut.remove(connectorMessage.getMessageId());
+                invalidate(false, false);
+                throw e;
+            }
+
+            if (loadedMessage != null) {
+                return loadedMessage;
             }
-            return rotated;
+
+            // The message was deleted after it was buffered
+            checkedOut.remove(connectorMessage.getMessageId());
         }
-        return false;
     }
 
-    public synchronized ConnectorMessage acquire() {
+    private ConnectorMessage checkOut() {
         ConnectorMessage connectorMessage = null;
+        boolean bufferFilled = false;
+        int segment = getThreadSegment();
+
+        lockBuffer();
+        try {
+            // Messages waiting for their next attempt are not available unless they are due
+            if (getActualSize() - checkedOut.size() - retryScheduler.getHeldCount() <= 0 && !retryScheduler.hasDue(segment)) {
+                return null;
+            }
+        } finally {
+            unlockBuffer();
+        }
 
-        if (size() - checkedOut.size() > 0) {
-            boolean bufferFilled = false;
-
-            do {
-                if (size == null) {
-                    updateSize();
+        while (true) {
+            lockBuffer();
+            try {
+                if (getActualSize() <= 0) {
+                    return null;
                 }
 
-                if (size > 0) {
+                // Messages that are due for another attempt go first
+                connectorMessage = retryScheduler.pollDue(segment);
+
+                if (connectorMessage == null) {
                     connectorMessage = pollFirstValue();
+                }
+
+                if (connectorMessage != null) {
+                    if (rotate) {
+                        dataSource.setLastItem(connectorMessage);
+                    }
 
                     /*
-                     * If connectorMessage is null, it may just mean that all the messages in the
-                     * buffer are in buckets for other queue threads. So only go to the database for
-                     * more messages and try again if the buffer is actually empty.
+                     * Once the held messages take up the whole buffer capacity, a message that is
+                     * not due is dropped instead. It is still in the database, so a later fill
+                     * reads it again.
                      */
-                    if (connectorMessage == null && buffer.size() == 0) {
-                        if (bufferFilled) {
-                            return null;
+                    if (!retryScheduler.isDue(connectorMessage)) {
+                        if (canHold()) {
+                            retryScheduler.hold(segment, connectorMessage);
                         }
+                        continue;
+                    }
 
-                        fillBuffer();
-                        bufferFilled = true;
+                    // Messages that were reloaded from the database may already be checked out by another thread
+                    if (checkedOut.add(connectorMessage.getMessageId())) {
+                        if (prefetcher != null) {
+                            prefetcher.prefetch(connectorMessage, buffer.peek(0, prefetcher.getLookAhead()));
+                        }
 
-                        connectorMessage = pollFirstValue();
+                        return connectorMessage;
                     }
 
-                    // if an element was found, decrement the overall count
-                    if (connectorMessage != null && rotate) {
-                        dataSource.setLastItem(connectorMessage);
-                    }
+                    continue;
+                }
+
+                /*
+                 * If connectorMessage is null, it may just mean that all the messages in the buffer
+                 * are in buckets for other queue threads. So only go to the database for more
+                 * messages and try again if the buffer is actually empty.
+                 */
+                if (!buffer.isEmpty() || bufferFilled) {
+                    return null;
                 }
-            } while (connectorMessage != null && checkedOut.contains(connectorMessage.getMessageId()));
+            } finally {
+                unlockBuffer();
+            }
+
+            fillBufferIfEmpty();
+            bufferFilled = true;
         }
+    }
 
-        if (connectorMessage != null) {
-            checkedOut.add(connectorMessage.getMessageId());
+    private boolean canHold() {
+        if (retryScheduler.getHeldCount() >= getBufferCapacity()) {
+            return false;
         }
 
-        return connectorMessage;
+        return getBufferMemoryCapacity() <= 0 || retryScheduler.getHeldMemory() < getBufferMemoryCapacity();
     }
 
-    public synchronized void release(ConnectorMessage connectorMessage, boolean finished) {
+    public void release(ConnectorMessage connectorMessage, boolean finished) {
         if (connectorMessage != null) {
-            if (size != null) {
-                Long messageId = connectorMessage.getMessageId();
+            lockBufferForRelease();
+            try {
+                if (isSizeKnown()) {
+                    Long messageId = connectorMessage.getMessageId();
 
-                if (finished) {
-                    decrementActualSize();
-
-                    if (buffer.containsKey(messageId)) {
+                    if (finished) {
+                        decrementActualSize();
                         buffer.remove(messageId);
+                        retryScheduler.remove(messageId);
+                    } else {
+                        buffer.replace(connectorMessage);
+                        dataSource.rotateQueue();
                     }
-                } else {
-                    if (buffer.containsKey(messageId)) {
-                        buffer.put(messageId, connectorMessage);
-                    }
-
-                    dataSource.rotateQueue();
                 }
-            }
 
-            checkedOut.remove(connectorMessage.getMessageId());
+                checkedOut.remove(connectorMessage.getMessageId());
+            } finally {
+                unlockBuffer();
+            }
 
             if (finished) {
                 eventDispatcher.dispatchEvent(new MessageEvent(channelId, metaDataId, MessageEventType.QUEUED, (long) size(), true));
@@ -240,28 +354,45 @@ public class DestinationQueue extends ConnectorMessageQueue {
         }
     }
 
-    public synchronized boolean isCheckedOut(Long messageId) {
-        boolean isCheckedOut = checkedOut.contains(messageId);
-
-        /*
-         * If the message is no longer checked out and it was previously marked as deleted, we want
-         * to remove it from the deleted list as well as the buffer so that it does not get acquired
-         * again.
-         */
-        if (!isCheckedOut && deleted.contains(messageId)) {
-            deleted.remove(messageId);
-            buffer.remove(messageId);
-            updateSize();
+    /**
+     * Releases a message that failed to send and is still queued, so that it is not acquired again
+     * until the given delay has passed. Queue threads are free to acquire other messages in the
+     * meantime.
+     */
+    public void releaseForRetry(ConnectorMessage connectorMessage, long delayMillis) {
+        if (connectorMessage != null) {
+            retryScheduler.schedule(connectorMessage.getMessageId(), delayMillis);
+            release(connectorMessage, false);
         }
+    }
 
-        return isCheckedOut;
+    public boolean isCheckedOut(Long messageId) {
+        lockBufferExclusively();
+        try {
+            boolean isCheckedOut = checkedOut.contains(messageId);
+
+            /*
+             * If the message is no longer checked out and it was previously marked as deleted, we
+             * want to remove it from the deleted list as well as the buffer so that it does not get
+             * acquired again.
+             */
+            if (!isCheckedOut && deleted.remove(messageId)) {
+                buffer.remove(messageId);
+                retryScheduler.remove(messageId);
+                updateSize();
+            }
+
+            return isCheckedOut;
+        } finally {
+            unlockBufferExclusively();
+        }
     }
 
-    public synchronized void markAsDeleted(Long messageId) {
+    public void markAsDeleted(Long messageId) {
         deleted.add(messageId);
     }
 
-    public synchronized boolean releaseIfDeleted(ConnectorMessage connectorMessage) {
+    public boolean releaseIfDeleted(ConnectorMessage connectorMessage) {
         if (deleted.contains(connectorMessage.getMessageId())) {
             release(connectorMessage, true);
             return true;
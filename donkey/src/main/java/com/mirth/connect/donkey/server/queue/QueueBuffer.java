@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.server.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
+import com.mirth.connect.donkey.model.message.MessageContent;
+
+/**
+ * The in-memory part of a connector message queue. Messages are kept in message ID order in one
+ * segment per queue bucket, so each queue thread only ever looks at the messages assigned to it and
+ * threads working on different segments do not contend with each other. All operations are
+ * thread-safe without locking.
+ * 
+ * The buffer also keeps track of the estimated number of bytes its messages take up on the heap.
+ * Each message is measured once when it is put into the buffer, so the total stays consistent even
+ * if the message content changes while it is buffered.
+ */
+class QueueBuffer {
+
+    /*
+     * Rough per-message cost of the connector message itself, its maps and the message content
+     * objects, on top of the content strings.
+     */
+    static final long MESSAGE_OVERHEAD = 1024;
+
+    private List<ConcurrentSkipListMap<Long, BufferedMessage>> segments;
+    private AtomicInteger size = new AtomicInteger();
+    private AtomicLong memory = new AtomicLong();
+
+    QueueBuffer(int segmentCount) {
+        segments = new ArrayList<ConcurrentSkipListMap<Long, BufferedMessage>>(Math.max(segmentCount, 1));
+
+        for (int i = 0; i < Math.max(segmentCount, 1); i++) {
+            segments.add(new ConcurrentSkipListMap<Long, BufferedMessage>());
+        }
+    }
+
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the estimated number of bytes taken up by the buffered messages.
+     */
+    long getMemory() {
+        return memory.get();
+    }
+
+    boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    boolean containsKey(Long messageId) {
+        for (ConcurrentSkipListMap<Long, BufferedMessage> segment : segments) {
+            if (segment.containsKey(messageId)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    void put(int segment, ConnectorMessage connectorMessage) {
+        BufferedMessage bufferedMessage = new BufferedMessage(connectorMessage);
+        BufferedMessage previous = segments.get(segment).put(connectorMessage.getMessageId(), bufferedMessage);
+
+        if (previous == null) {
+            size.incrementAndGet();
+            memory.addAndGet(bufferedMessage.bytes);
+        } else {
+            memory.addAndGet(bufferedMessage.bytes - previous.bytes);
+        }
+    }
+
+    /**
+     * Replaces the message with the same ID if it is still in the buffer.
+     */
+    boolean replace(ConnectorMessage connectorMessage) {
+        BufferedMessage bufferedMessage = new BufferedMessage(connectorMessage);
+
+        for (ConcurrentSkipListMap<Long, BufferedMessage> segment : segments) {
+            BufferedMessage previous = segment.replace(connectorMessage.getMessageId(), bufferedMessage);
+
+            if (previous != null) {
+                memory.addAndGet(bufferedMessage.bytes - previous.bytes);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    ConnectorMessage remove(Long messageId) {
+        for (ConcurrentSkipListMap<Long, BufferedMessage> segment : segments) {
+            BufferedMessage bufferedMessage = segment.remove(messageId);
+
+            if (bufferedMessage != null) {
+                size.decrementAndGet();
+                memory.addAndGet(-bufferedMessage.bytes);
+                return bufferedMessage.connectorMessage;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes and returns the message with the lowest ID in the given segment.
+     */
+    ConnectorMessage pollFirst(int segment) {
+        if (segment < 0 || segment >= segments.size()) {
+            return null;
+        }
+
+        Entry<Long, BufferedMessage> entry = segments.get(segment).pollFirstEntry();
+
+        if (entry != null) {
+            size.decrementAndGet();
+            memory.addAndGet(-entry.getValue().bytes);
+            return entry.getValue().connectorMessage;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns up to count messages with the lowest IDs in the given segment, without removing them.
+     */
+    List<ConnectorMessage> peek(int segment, int count) {
+        List<ConnectorMessage> connectorMessages = new ArrayList<ConnectorMessage>();
+
+        if (segment >= 0 && segment < segments.size()) {
+            for (BufferedMessage bufferedMessage : segments.get(segment).values()) {
+                if (connectorMessages.size() >= count) {
+                    break;
+                }
+
+                connectorMessages.add(bufferedMessage.connectorMessage);
+            }
+        }
+
+        return connectorMessages;
+    }
+
+    /**
+     * Clears all segments. This is only done while no other thread is using the buffer.
+     */
+    void clear() {
+        for (ConcurrentSkipListMap<Long, BufferedMessage> segment : segments) {
+            segment.clear();
+        }
+
+        size.set(0);
+        memory.set(0);
+    }
+
+    /**
+     * Estimates the number of bytes a connector message takes up on the heap, based on the length
+     * of its content. Strings take two bytes per character.
+     */
+    static long estimateSize(ConnectorMessage connectorMessage) {
+        long bytes = MESSAGE_OVERHEAD;
+
+        bytes += estimateSize(connectorMessage.getRaw());
+        bytes += estimateSize(connectorMessage.getProcessedRaw());
+        bytes += estimateSize(connectorMessage.getTransformed());
+        bytes += estimateSize(connectorMessage.getEncoded());
+        bytes += estimateSize(connectorMessage.getSent());
+        bytes += estimateSize(connectorMessage.getResponse());
+        bytes += estimateSize(connectorMessage.getResponseTransformed());
+        bytes += estimateSize(connectorMessage.getProcessedResponse());
+
+        return bytes;
+    }
+
+    private static long estimateSize(MessageContent messageContent) {
+        if (messageContent == null || messageContent.getContent() == null) {
+            return 0;
+        }
+
+        return messageContent.getContent().length() * 2L;
+    }
+
+    private static class BufferedMessage {
+        private ConnectorMessage connectorMessage;
+        private long bytes;
+
+        BufferedMessage(ConnectorMessage connectorMessage) {
+            this.connectorMessage = connectorMessage;
+            this.bytes = estimateSize(connectorMessage);
+        }
+    }
+}
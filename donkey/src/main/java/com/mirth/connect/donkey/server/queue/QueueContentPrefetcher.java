@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.server.queue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
+import com.mirth.connect.donkey.util.ThreadUtils;
+
+/**
+ * Loads the content of connector messages that a queue buffered without it. When a queue thread
+ * acquires a message, the content of the next messages in line is loaded in the background with a
+ * single bulk query, so that by the time they are acquired their content is usually already in
+ * memory.
+ */
+class QueueContentPrefetcher {
+
+    private ConnectorMessageQueueDataSource dataSource;
+    private int lookAhead;
+    private int threadCount;
+    private ThreadPoolExecutor executor;
+    private Map<Long, PrefetchTask> prefetches = new ConcurrentHashMap<Long, PrefetchTask>();
+    private Logger logger = Logger.getLogger(getClass());
+
+    /**
+     * Creates a prefetcher that loads content on at most threadCount threads, with at most
+     * threadCount more prefetches waiting for a thread.
+     */
+    QueueContentPrefetcher(ConnectorMessageQueueDataSource dataSource, int lookAhead, int threadCount) {
+        this.dataSource = dataSource;
+        this.lookAhead = Math.max(lookAhead, 1);
+        this.threadCount = Math.max(threadCount, 1);
+    }
+
+    int getLookAhead() {
+        return lookAhead;
+    }
+
+    /**
+     * Starts loading the content of the acquired message and the messages after it, unless enough
+     * of them are already being loaded. Prefetching is done in batches of about half the look-ahead
+     * so that each query loads more than one message.
+     */
+    void prefetch(ConnectorMessage acquired, List<ConnectorMessage> next) {
+        List<ConnectorMessage> candidates = new ArrayList<ConnectorMessage>();
+
+        if (needsPrefetch(acquired)) {
+            candidates.add(acquired);
+        }
+
+        for (ConnectorMessage connectorMessage : next) {
+            if (needsPrefetch(connectorMessage)) {
+                candidates.add(connectorMessage);
+            }
+        }
+
+        if (candidates.isEmpty() || (candidates.get(0) != acquired && candidates.size() < Math.max(lookAhead / 2, 1))) {
+            return;
+        }
+
+        PrefetchTask task = new PrefetchTask();
+
+        for (ConnectorMessage connectorMessage : candidates) {
+            PrefetchTask existing = prefetches.get(connectorMessage.getMessageId());
+
+            if (existing == null ? prefetches.putIfAbsent(connectorMessage.getMessageId(), task) == null : prefetches.replace(connectorMessage.getMessageId(), existing, task)) {
+                task.connectorMessages.add(connectorMessage);
+            }
+        }
+
+        if (!task.connectorMessages.isEmpty()) {
+            try {
+                getExecutor().execute(task);
+            } catch (RejectedExecutionException e) {
+                // All prefetch threads are busy, so these messages are loaded when they are acquired
+                task.cancel(false);
+                for (ConnectorMessage connectorMessage : task.connectorMessages) {
+                    prefetches.remove(connectorMessage.getMessageId(), task);
+                }
+            }
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(threadCount, threadCount, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(threadCount), ThreadUtils.newThreadFactory("Queue Content Prefetch Thread on " + dataSource.getChannelId() + " (" + dataSource.getMetaDataId() + ") "));
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        return executor;
+    }
+
+    /**
+     * Stops the prefetch threads once their current loads are done. Prefetches that have not
+     * started yet are cancelled, so their messages are loaded when they are acquired. Called when
+     * the queue threads are stopped; the prefetch threads are started again with the next prefetch.
+     */
+    synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+
+            for (Runnable task : executor.getQueue().toArray(new Runnable[0])) {
+                ((PrefetchTask) task).cancel(false);
+            }
+
+            executor = null;
+        }
+    }
+
+    private boolean needsPrefetch(ConnectorMessage connectorMessage) {
+        if (!dataSource.isContentPending(connectorMessage)) {
+            return false;
+        }
+
+        // The buffer may have been refilled with a new instance since an earlier prefetch started
+        PrefetchTask task = prefetches.get(connectorMessage.getMessageId());
+        return task == null || !task.contains(connectorMessage);
+    }
+
+    /**
+     * Returns the acquired message with its content, waiting for it to be prefetched if needed, or
+     * loading it directly if it was not prefetched. Returns null if the message no longer exists.
+     */
+    ConnectorMessage load(ConnectorMessage acquired) {
+        Long messageId = acquired.getMessageId();
+        PrefetchTask task = prefetches.remove(messageId);
+
+        if (!dataSource.isContentPending(acquired)) {
+            return acquired;
+        }
+
+        ConnectorMessage connectorMessage = null;
+        boolean loaded = false;
+
+        if (task != null && task.contains(acquired)) {
+            try {
+                connectorMessage = task.get().get(messageId);
+                loaded = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                logger.debug("Failed to prefetch queued message " + messageId + ", loading it again.", e.getCause());
+            } catch (CancellationException e) {
+                // The prefetch was rejected or the prefetch threads were stopped
+            }
+        }
+
+        if (!loaded) {
+            connectorMessage = dataSource.loadContent(Collections.singletonList(messageId)).get(messageId);
+        }
+
+        dataSource.removeContentPending(acquired);
+        return connectorMessage;
+    }
+
+    /**
+     * Forgets all prefetched content. Called whenever the queue buffer is invalidated.
+     */
+    void clear() {
+        prefetches.clear();
+    }
+
+    private class PrefetchTask extends FutureTask<Map<Long, ConnectorMessage>> {
+        private List<ConnectorMessage> connectorMessages;
+
+        PrefetchTask() {
+            this(new CopyOnWriteArrayList<ConnectorMessage>());
+        }
+
+        private PrefetchTask(final List<ConnectorMessage> connectorMessages) {
+            super(() -> {
+                List<Long> messageIds = new ArrayList<Long>(connectorMessages.size());
+                for (ConnectorMessage connectorMessage : connectorMessages) {
+                    messageIds.add(connectorMessage.getMessageId());
+                }
+                return dataSource.loadContent(messageIds);
+            });
+
+            this.connectorMessages = connectorMessages;
+        }
+
+        boolean contains(ConnectorMessage connectorMessage) {
+            for (ConnectorMessage prefetched : connectorMessages) {
+                if (prefetched == connectorMessage) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.server.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
+
+/**
+ * Keeps track of when each queued message that failed to send may be attempted again. Messages
+ * that are acquired before they are due are held here instead of being sent, and handed back to
+ * the queue thread of their segment once they are due, so that queue threads can keep sending
+ * other messages in the meantime.
+ * 
+ * The next attempt times outlive the held messages themselves. When the queue buffer is
+ * invalidated the held messages are dropped and read from the database again, and are then held
+ * again until they are due.
+ * 
+ * Held messages are kept in memory just like buffered ones, so the queue counts them towards its
+ * buffer capacity and memory capacity. Each message is measured once when it is held.
+ */
+class QueueRetryScheduler {
+
+    private Map<Long, Long> nextAttemptTimes = new ConcurrentHashMap<Long, Long>();
+    private List<PriorityBlockingQueue<HeldMessage>> segments;
+    private Map<Long, HeldMessage> held = new ConcurrentHashMap<Long, HeldMessage>();
+    private AtomicLong heldMemory = new AtomicLong();
+
+    QueueRetryScheduler(int segmentCount) {
+        segments = new ArrayList<PriorityBlockingQueue<HeldMessage>>(Math.max(segmentCount, 1));
+
+        for (int i = 0; i < Math.max(segmentCount, 1); i++) {
+            segments.add(new PriorityBlockingQueue<HeldMessage>());
+        }
+    }
+
+    /**
+     * Records that the message should not be attempted again for the given number of milliseconds.
+     */
+    void schedule(Long messageId, long delayMillis) {
+        nextAttemptTimes.put(messageId, System.currentTimeMillis() + Math.max(delayMillis, 0));
+    }
+
+    boolean isDue(ConnectorMessage connectorMessage) {
+        Long nextAttemptTime = nextAttemptTimes.get(connectorMessage.getMessageId());
+        return nextAttemptTime == null || nextAttemptTime <= System.currentTimeMillis();
+    }
+
+    /**
+     * Holds a message that is not due yet until its next attempt time.
+     */
+    void hold(int segment, ConnectorMessage connectorMessage) {
+        Long nextAttemptTime = nextAttemptTimes.get(connectorMessage.getMessageId());
+        HeldMessage heldMessage = new HeldMessage(connectorMessage, nextAttemptTime != null ? nextAttemptTime : 0);
+
+        discard(held.put(connectorMessage.getMessageId(), heldMessage));
+        heldMemory.addAndGet(heldMessage.bytes);
+        segments.get(segment).add(heldMessage);
+    }
+
+    boolean isHeld(Long messageId) {
+        return held.containsKey(messageId);
+    }
+
+    int getHeldCount() {
+        return held.size();
+    }
+
+    /**
+     * Returns the estimated number of bytes taken up by the held messages.
+     */
+    long getHeldMemory() {
+        return heldMemory.get();
+    }
+
+    boolean hasDue(int segment) {
+        if (segment < 0 || segment >= segments.size()) {
+            return false;
+        }
+
+        HeldMessage heldMessage = segments.get(segment).peek();
+        return heldMessage != null && heldMessage.nextAttemptTime <= System.currentTimeMillis();
+    }
+
+    /**
+     * Removes and returns the held message in the given segment that has been due the longest, or
+     * null if none are due.
+     */
+    ConnectorMessage pollDue(int segment) {
+        if (segment < 0 || segment >= segments.size()) {
+            return null;
+        }
+
+        PriorityBlockingQueue<HeldMessage> queue = segments.get(segment);
+
+        while (true) {
+            HeldMessage heldMessage = queue.peek();
+
+            if (heldMessage == null || heldMessage.nextAttemptTime > System.currentTimeMillis()) {
+                return null;
+            }
+
+            // Another thread may have polled or removed it in the meantime
+            if (queue.remove(heldMessage) && held.remove(heldMessage.connectorMessage.getMessageId(), heldMessage)) {
+                heldMemory.addAndGet(-heldMessage.bytes);
+                return heldMessage.connectorMessage;
+            }
+        }
+    }
+
+    /**
+     * Forgets the message entirely, after it was sent, errored, or deleted.
+     */
+    void remove(Long messageId) {
+        nextAttemptTimes.remove(messageId);
+        discard(held.remove(messageId));
+    }
+
+    private void discard(HeldMessage heldMessage) {
+        if (heldMessage != null) {
+            heldMemory.addAndGet(-heldMessage.bytes);
+
+            for (PriorityBlockingQueue<HeldMessage> queue : segments) {
+                queue.remove(heldMessage);
+            }
+        }
+    }
+
+    /**
+     * Drops the held messages but keeps their next attempt times.
+     */
+    void clearHeld() {
+        held.clear();
+        heldMemory.set(0);
+
+        for (PriorityBlockingQueue<HeldMessage> queue : segments) {
+            queue.clear();
+        }
+    }
+
+    void clear() {
+        clearHeld();
+        nextAttemptTimes.clear();
+    }
+
+    private static class HeldMessage implements Comparable<HeldMessage> {
+        private ConnectorMessage connectorMessage;
+        private long nextAttemptTime;
+        private long bytes;
+
+        HeldMessage(ConnectorMessage connectorMessage, long nextAttemptTime) {
+            this.connectorMessage = connectorMessage;
+            this.nextAttemptTime = nextAttemptTime;
+            this.bytes = QueueBuffer.estimateSize(connectorMessage);
+        }
+
+        @Override
+        public int compareTo(HeldMessage other) {
+            int result = Long.compare(nextAttemptTime, other.nextAttemptTime);
+            return result != 0 ? result : Long.compare(connectorMessage.getMessageId(), other.connectorMessage.getMessageId());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.server.queue;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.mirth.connect.donkey.model.channel.DestinationConnectorProperties;
+
+/**
+ * Calculates how long to wait before the next attempt to send a queued message. The first retry
+ * waits the retry interval, and each retry after that waits the previous interval times the backoff
+ * multiplier, up to the max retry interval. The jitter randomly shortens or lengthens each delay by
+ * up to the given percentage, so that messages that failed together are not all retried at once.
+ */
+public class RetryBackoff {
+
+    private int retryIntervalMillis;
+    private double multiplier;
+    private int maxRetryIntervalMillis;
+    private int jitterPercent;
+
+    public RetryBackoff(DestinationConnectorProperties properties) {
+        this(properties.getRetryIntervalMillis(), properties.getRetryBackoffMultiplier(), properties.getMaxRetryIntervalMillis(), properties.getRetryJitterPercent());
+    }
+
+    public RetryBackoff(int retryIntervalMillis, double multiplier, int maxRetryIntervalMillis, int jitterPercent) {
+        this.retryIntervalMillis = Math.max(retryIntervalMillis, 0);
+        this.multiplier = multiplier;
+        this.maxRetryIntervalMillis = maxRetryIntervalMillis;
+        this.jitterPercent = Math.min(Math.max(jitterPercent, 0), 100);
+    }
+
+    /**
+     * Returns the delay in milliseconds before the next attempt, given the number of attempts that
+     * have already failed.
+     */
+    public long getDelay(int failedAttempts) {
+        double delay = retryIntervalMillis;
+
+        // A multiplier of 1 or less (including 0 for channels saved before backoff existed) keeps the interval fixed
+        if (multiplier > 1 && failedAttempts > 1) {
+            delay *= Math.pow(multiplier, failedAttempts - 1);
+        }
+
+        if (maxRetryIntervalMillis > 0 && delay > maxRetryIntervalMillis) {
+            delay = Math.max(maxRetryIntervalMillis, retryIntervalMillis);
+        }
+
+        if (jitterPercent > 0) {
+            delay += delay * jitterPercent / 100 * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+        }
+
+        return Math.round(Math.min(delay, Integer.MAX_VALUE));
+    }
+}
@@ -10,8 +10,6 @@
 package com.mirth.connect.donkey.server.queue;
 
 import java.util.Collections;
-import java.util.Iterator;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
@@ -26,65 +24,76 @@ public class SourceQueue extends ConnectorMessageQueue {
 
     @Override
     protected ConnectorMessage pollFirstValue() {
-        Iterator<Entry<Long, ConnectorMessage>> iterator = buffer.entrySet().iterator();
-
-        if (iterator.hasNext()) {
-            ConnectorMessage connectorMessage = iterator.next().getValue();
-
-            iterator.remove();
-
-            return connectorMessage;
-        }
-
-        return null;
+        return buffer.pollFirst(0);
     }
 
-    public synchronized ConnectorMessage poll() {
-        if (size == null) {
-            updateSize();
-        }
+    /*
+     * A message that is being processed is still unprocessed in the database, so it would be read
+     * again when the buffer is filled. It is left out so that the copy cannot be polled once the
+     * message is finished.
+     */
+    @Override
+    protected boolean canFillBufferWith(ConnectorMessage connectorMessage) {
+        return !checkedOut.contains(connectorMessage.getMessageId());
+    }
 
+    public ConnectorMessage poll() {
         ConnectorMessage connectorMessage = null;
-
-        if (size > 0) {
-            connectorMessage = pollFirstValue();
-
-            // if no element was received and there are elements in the database,
-            // fill the buffer from the database and get the next element in the queue
-            if (connectorMessage == null) {
-                fillBuffer();
-                connectorMessage = pollFirstValue();
+        boolean bufferFilled = false;
+
+        while (true) {
+            lockBuffer();
+            try {
+                if (getActualSize() > 0) {
+                    connectorMessage = pollFirstValue();
+
+                    /*
+                     * We use a loop here to ensure that no message gets polled at the same time
+                     * from multiple queue threads. After calling poll() and acquiring a connector
+                     * message, the caller is expected to call finish to remove the message ID from
+                     * the checked out set.
+                     */
+                    while (connectorMessage != null && !checkedOut.add(connectorMessage.getMessageId())) {
+                        connectorMessage = pollFirstValue();
+                    }
+
+                    // if an element was found, decrement the overall count
+                    if (connectorMessage != null) {
+                        decrementActualSize();
+                    }
+                }
+
+                // if no element was received and there are elements in the database,
+                // fill the buffer from the database and get the next element in the queue
+                if (connectorMessage != null || getActualSize() <= 0 || bufferFilled) {
+                    break;
+                }
+            } finally {
+                unlockBuffer();
             }
 
-            /*
-             * We use a while loop here to ensure that no message gets polled at the same time from
-             * multiple queue threads. After calling poll() and acquiring a connector message, the
-             * caller is expected to call finish to remove the message ID from the checked out set.
-             */
-            while (connectorMessage != null && checkedOut.contains(connectorMessage.getMessageId())) {
-                connectorMessage = pollFirstValue();
-            }
+            fillBufferIfEmpty();
+            bufferFilled = true;
         }
 
-        // if an element was found, decrement the overall count
         if (connectorMessage != null) {
-            decrementActualSize();
-            checkedOut.add(connectorMessage.getMessageId());
             eventDispatcher.dispatchEvent(new MessageEvent(channelId, metaDataId, MessageEventType.QUEUED, (long) size(), true));
         }
 
         return connectorMessage;
     }
 
-    public synchronized void finish(ConnectorMessage connectorMessage) {
+    public void finish(ConnectorMessage connectorMessage) {
         if (connectorMessage != null) {
             Long messageId = connectorMessage.getMessageId();
 
-            if (buffer.containsKey(messageId)) {
+            lockBufferForRelease();
+            try {
                 buffer.remove(messageId);
+                checkedOut.remove(messageId);
+            } finally {
+                unlockBuffer();
             }
-
-            checkedOut.remove(messageId);
         }
     }
 
@@ -93,9 +102,14 @@ public class SourceQueue extends ConnectorMessageQueue {
         checkedOut.clear();
     }
 
-    public synchronized void decrementSize() {
-        if (size != null) {
-            decrementActualSize();
+    public void decrementSize() {
+        lockBufferForRelease();
+        try {
+            if (isSizeKnown()) {
+                decrementActualSize();
+            }
+        } finally {
+            unlockBuffer();
         }
 
         eventDispatcher.dispatchEvent(new MessageEvent(channelId, metaDataId, MessageEventType.QUEUED, (long) size(), true));
@@ -113,7 +127,7 @@ public class SourceQueue extends ConnectorMessageQueue {
          * multiple queue threads all have messages checked out and the buffer is full. In this case
          * we also want to wait until at least one of the messages has finished.
          */
-        if ((size == null || size == 0 || checkedOut.size() == getBufferCapacity()) && timeout > 0) {
+        if ((!isSizeKnown() || getActualSize() == 0 || checkedOut.size() == getBufferCapacity()) && timeout > 0) {
             synchronized (timeoutLock) {
                 timeoutLock.set(true);
                 timeoutLock.wait(TimeUnit.MILLISECONDS.convert(timeout, unit));
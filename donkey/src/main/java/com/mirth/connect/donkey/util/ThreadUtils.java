@@ -9,7 +9,25 @@
 
 package com.mirth.connect.donkey.util;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class ThreadUtils {
+
+    /*
+     * Virtual threads are only available on Java 21 and later, so they are created through
+     * reflection. These are all null when running on an older version.
+     */
+    private static final Method OF_VIRTUAL = getMethod(Thread.class, "ofVirtual");
+    private static final Method BUILDER_NAME = getMethod(getClass("java.lang.Thread$Builder"), "name", String.class);
+    private static final Method BUILDER_UNSTARTED = getMethod(getClass("java.lang.Thread$Builder"), "unstarted", Runnable.class);
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = getMethod(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private static volatile boolean virtualThreadsEnabled = false;
+
     public static void checkInterruptedStatus() throws InterruptedException {
         if (Thread.currentThread().isInterrupted()) {
             throw new InterruptedException();
@@ -22,4 +40,94 @@ public class ThreadUtils {
             throw (InterruptedException) t;
         }
     }
+
+    /**
+     * Returns true if the running Java version supports virtual threads.
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return OF_VIRTUAL != null && BUILDER_NAME != null && BUILDER_UNSTARTED != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    public static boolean isVirtualThreadsEnabled() {
+        return virtualThreadsEnabled;
+    }
+
+    /**
+     * Enables or disables creating channel, queue and dispatch threads as virtual threads. Threads
+     * that already exist are not affected. Returns false if virtual threads were requested but are
+     * not supported by the running Java version, in which case platform threads are still used.
+     */
+    public static boolean setVirtualThreadsEnabled(boolean enabled) {
+        virtualThreadsEnabled = enabled && isVirtualThreadsSupported();
+        return virtualThreadsEnabled == enabled;
+    }
+
+    /**
+     * Creates an unstarted thread with the given name. It is a virtual thread if virtual threads
+     * are enabled, otherwise a regular platform thread.
+     */
+    public static Thread newThread(Runnable runnable, String name) {
+        if (virtualThreadsEnabled) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (Thread) BUILDER_UNSTARTED.invoke(builder, runnable);
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to create virtual thread " + name + ".", e);
+            }
+        }
+
+        return new Thread(runnable, name);
+    }
+
+    /**
+     * Returns a thread factory that names each thread it creates with the given prefix followed by
+     * a sequence number. Whether the threads are virtual is decided each time a thread is created.
+     */
+    public static ThreadFactory newThreadFactory(final String namePrefix) {
+        final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return ThreadUtils.newThread(runnable, namePrefix + threadNumber.getAndIncrement());
+            }
+        };
+    }
+
+    /**
+     * Returns an executor that runs each task on a new virtual thread if virtual threads are
+     * enabled, or a cached thread pool otherwise. Either way tasks never wait for a free thread.
+     */
+    public static ExecutorService newCachedThreadPool(String namePrefix) {
+        ThreadFactory threadFactory = newThreadFactory(namePrefix);
+
+        if (virtualThreadsEnabled) {
+            try {
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to create virtual thread executor.", e);
+            }
+        }
+
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+
+    private static Class<?> getClass(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method getMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        if (clazz != null) {
+            try {
+                return clazz.getMethod(name, parameterTypes);
+            } catch (NoSuchMethodException e) {
+            }
+        }
+
+        return null;
+    }
 }
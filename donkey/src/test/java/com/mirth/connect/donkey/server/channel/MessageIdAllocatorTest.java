@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.server.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mirth.connect.donkey.server.data.DonkeyDao;
+import com.mirth.connect.donkey.server.data.DonkeyDaoFactory;
+
+public class MessageIdAllocatorTest {
+    private static final String CHANNEL_ID = "MessageIdAllocatorTest";
+
+    private DonkeyDaoFactory daoFactory;
+    private DonkeyDao dao;
+    private long sequence;
+
+    @Before
+    public void before() {
+        sequence = 1;
+        dao = mock(DonkeyDao.class);
+        daoFactory = mock(DonkeyDaoFactory.class);
+        when(daoFactory.getDao()).thenReturn(dao);
+
+        // Simulates a table-based sequence that reserves a contiguous block
+        when(dao.getNextMessageIds(anyString(), anyInt())).thenAnswer(invocation -> {
+            int count = invocation.getArgument(1);
+            List<Long> ids = new ArrayList<Long>();
+
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    ids.add(sequence++);
+                }
+            }
+
+            return ids;
+        });
+    }
+
+    @Test
+    public void testIdsComeFromReservedBlocks() throws Exception {
+        MessageIdAllocator allocator = new MessageIdAllocator(CHANNEL_ID, daoFactory, 10);
+
+        for (long expected = 1; expected <= 25; expected++) {
+            assertEquals(expected, allocator.getNextMessageId());
+        }
+
+        verify(dao, times(3)).getNextMessageIds(CHANNEL_ID, 10);
+        verify(dao, times(3)).commit();
+        verify(dao, times(3)).close();
+    }
+
+    @Test
+    public void testNewAllocatorLeavesGap() throws Exception {
+        MessageIdAllocator allocator = new MessageIdAllocator(CHANNEL_ID, daoFactory, 10);
+        assertEquals(1, allocator.getNextMessageId());
+        assertEquals(2, allocator.getNextMessageId());
+
+        // After a redeploy or restart the unused IDs of the previous block are skipped
+        allocator = new MessageIdAllocator(CHANNEL_ID, daoFactory, 10);
+        assertEquals(11, allocator.getNextMessageId());
+    }
+
+    @Test
+    public void testNonContiguousBlock() throws Exception {
+        DonkeyDao sequenceDao = mock(DonkeyDao.class);
+        when(daoFactory.getDao()).thenReturn(sequenceDao);
+
+        // Simulates a database sequence where another server took some of the IDs in between
+        when(sequenceDao.getNextMessageIds(CHANNEL_ID, 5)).thenReturn(Arrays.asList(3L, 4L, 8L, 9L, 12L), Arrays.asList(20L, 21L, 22L, 23L, 24L));
+
+        MessageIdAllocator allocator = new MessageIdAllocator(CHANNEL_ID, daoFactory, 5);
+        long[] expected = new long[] { 3, 4, 8, 9, 12, 20, 21 };
+
+        for (long id : expected) {
+            assertEquals(id, allocator.getNextMessageId());
+        }
+
+        verify(sequenceDao, times(2)).getNextMessageIds(CHANNEL_ID, 5);
+    }
+
+    @Test
+    public void testConcurrentAllocationIsUnique() throws Exception {
+        final MessageIdAllocator allocator = new MessageIdAllocator(CHANNEL_ID, daoFactory, 7);
+        final int threads = 8;
+        final int idsPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<List<Long>>> futures = new ArrayList<Future<List<Long>>>();
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<List<Long>>() {
+                    @Override
+                    public List<Long> call() throws Exception {
+                        List<Long> ids = new ArrayList<Long>();
+                        for (int j = 0; j < idsPerThread; j++) {
+                            ids.add(allocator.getNextMessageId());
+                        }
+                        return ids;
+                    }
+                }));
+            }
+
+            Set<Long> allIds = new HashSet<Long>();
+            for (Future<List<Long>> future : futures) {
+                allIds.addAll(future.get());
+            }
+
+            assertEquals(threads * idsPerThread, allIds.size());
+
+            // No block should be reserved without being used, other than the current one
+            assertTrue(sequence - 1 - allIds.size() < 7);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
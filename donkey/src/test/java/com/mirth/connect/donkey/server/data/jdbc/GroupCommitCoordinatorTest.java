@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.server.data.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mirth.connect.donkey.server.data.DonkeyDaoException;
+
+public class GroupCommitCoordinatorTest {
+    private static final String CHANNEL_ID = "GroupCommitCoordinatorTest";
+
+    private JdbcDaoFactory daoFactory;
+    private List<JdbcDao> daos;
+    private GroupCommitCoordinator coordinator;
+
+    @Before
+    public void before() {
+        daos = new ArrayList<JdbcDao>();
+        daoFactory = mock(JdbcDaoFactory.class);
+        when(daoFactory.getDao()).thenAnswer(invocation -> {
+            JdbcDao dao = mock(JdbcDao.class);
+            synchronized (daos) {
+                daos.add(dao);
+            }
+            return dao;
+        });
+    }
+
+    @After
+    public void after() {
+        if (coordinator != null) {
+            coordinator.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentTransactionsShareCommit() throws Exception {
+        int transactions = 20;
+        coordinator = new GroupCommitCoordinator(daoFactory, 500, transactions, 1);
+        coordinator.start();
+
+        final AtomicInteger executed = new AtomicInteger();
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(transactions);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+        try {
+            for (int i = 0; i < transactions; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        startLatch.await();
+                        coordinator.commit(new TestTransaction(executed, null), true);
+                        return null;
+                    }
+                }));
+            }
+
+            startLatch.countDown();
+
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(transactions, executed.get());
+        // All of the transactions should have arrived within the window and been committed together
+        assertEquals(1, daos.size());
+        verify(daos.get(0), times(1)).commit(true);
+
+        GroupCommitStatistics statistics = coordinator.getStatistics(CHANNEL_ID);
+        assertEquals(transactions, statistics.getTransactionCount());
+        assertEquals(transactions, statistics.getMaxBatchSize());
+        assertEquals(0, statistics.getFailedCount());
+    }
+
+    @Test
+    public void testDurableIfAnyTransactionIsDurable() throws Exception {
+        coordinator = new GroupCommitCoordinator(daoFactory, 500, 2, 1);
+        coordinator.start();
+
+        final AtomicInteger executed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<?> nonDurable = executor.submit(() -> coordinator.commit(new TestTransaction(executed, null), false));
+            Future<?> durable = executor.submit(() -> coordinator.commit(new TestTransaction(executed, null), true));
+            nonDurable.get();
+            durable.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, daos.size());
+        verify(daos.get(0), times(1)).commit(true);
+        verify(daos.get(0), never()).commit(false);
+    }
+
+    @Test
+    public void testFailedBatchIsRetriedSeparately() throws Exception {
+        coordinator = new GroupCommitCoordinator(daoFactory, 500, 2, 1);
+        coordinator.start();
+
+        final AtomicInteger executed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> good;
+        Future<?> bad;
+
+        try {
+            good = executor.submit(() -> coordinator.commit(new TestTransaction(executed, null), true));
+            bad = executor.submit(() -> coordinator.commit(new TestTransaction(executed, new DonkeyDaoException("test")), true));
+
+            good.get();
+
+            try {
+                bad.get();
+                fail("Expected the failed transaction to throw");
+            } catch (Exception e) {
+                assertTrue(e.getCause() instanceof DonkeyDaoException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // One shared connection for the batch, then one for each transaction
+        assertEquals(3, daos.size());
+        verify(daos.get(0), never()).commit(anyBoolean());
+
+        for (JdbcDao dao : daos) {
+            verify(dao, times(1)).close();
+        }
+
+        GroupCommitStatistics statistics = coordinator.getStatistics(CHANNEL_ID);
+        assertEquals(2, statistics.getTransactionCount());
+        assertEquals(1, statistics.getFailedCount());
+    }
+
+    @Test
+    public void testCommitAfterShutdown() throws Exception {
+        coordinator = new GroupCommitCoordinator(daoFactory, 500, 10, 1);
+        coordinator.start();
+        coordinator.shutdown();
+
+        AtomicInteger executed = new AtomicInteger();
+        coordinator.commit(new TestTransaction(executed, null), true);
+
+        assertEquals(1, executed.get());
+        assertEquals(1, daos.size());
+        verify(daos.get(0), times(1)).commit(true);
+    }
+
+    @Test(expected = DonkeyDaoException.class)
+    public void testCommitFailure() throws Exception {
+        coordinator = new GroupCommitCoordinator(daoFactory, 0, 10, 1);
+        coordinator.start();
+
+        JdbcDao dao = mock(JdbcDao.class);
+        doThrow(new DonkeyDaoException("test")).when(dao).commit(anyBoolean());
+        when(daoFactory.getDao()).thenReturn(dao);
+
+        coordinator.commit(new TestTransaction(new AtomicInteger(), null), true);
+    }
+
+    private class TestTransaction implements GroupCommitTransaction {
+        private AtomicInteger executed;
+        private RuntimeException error;
+
+        public TestTransaction(AtomicInteger executed, RuntimeException error) {
+            this.executed = executed;
+            this.error = error;
+        }
+
+        @Override
+        public String getChannelId() {
+            return CHANNEL_ID;
+        }
+
+        @Override
+        public void execute(JdbcDao dao) {
+            if (error != null) {
+                throw error;
+            }
+
+            executed.incrementAndGet();
+        }
+    }
+}
@@ -13,6 +13,7 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -27,15 +28,20 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.Arrays;
+import java.util.Calendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.mirth.connect.donkey.model.channel.MetaDataColumn;
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
+import com.mirth.connect.donkey.model.message.Status;
 import com.mirth.connect.donkey.model.message.attachment.Attachment;
 import com.mirth.connect.donkey.server.Donkey;
 import com.mirth.connect.donkey.server.channel.Channel;
@@ -236,6 +242,36 @@ public class JdbcDaoTest {
         verify(deleteStatement, times(0)).executeUpdate();
     }
 
+    // Transactions sharing a connection each send their statistics to their own updater
+    @Test
+    public void testGroupedTransactionStatistics() throws Exception {
+        SerializerProvider serializerProvider = mock(SerializerProvider.class);
+        JdbcDao dao = spy(new JdbcDao(mock(Donkey.class), connection, mock(QuerySource.class), mock(PreparedStatementSource.class), serializerProvider, false, false, null, null, null, ""));
+
+        PreparedStatement updateStatement = mock(PreparedStatement.class);
+        when(updateStatement.executeUpdate()).thenReturn(1);
+        doReturn(updateStatement).when(dao).prepareStatement(eq("updateStatus"), any());
+
+        final Map<StatisticsUpdater, Set<String>> updatedChannelIds = new HashMap<StatisticsUpdater, Set<String>>();
+        StatisticsUpdater updater1 = mock(StatisticsUpdater.class);
+        StatisticsUpdater updater2 = mock(StatisticsUpdater.class);
+        for (final StatisticsUpdater updater : new StatisticsUpdater[] { updater1, updater2 }) {
+            doAnswer(invocation -> {
+                updatedChannelIds.put(updater, new HashSet<String>(((Statistics) invocation.getArgument(0)).getStats().keySet()));
+                return null;
+            }).when(updater).update(any());
+        }
+
+        dao.startGroupedTransaction(serializerProvider, true, false, updater1);
+        dao.updateStatus(new ConnectorMessage("channel1", "Channel 1", 1, 1, "", Calendar.getInstance(), Status.SENT), Status.RECEIVED);
+        dao.startGroupedTransaction(serializerProvider, false, false, updater2);
+        dao.updateStatus(new ConnectorMessage("channel2", "Channel 2", 1, 1, "", Calendar.getInstance(), Status.SENT), Status.RECEIVED);
+        dao.commit();
+
+        assertEquals(new HashSet<String>(Arrays.asList("channel1")), updatedChannelIds.get(updater1));
+        assertEquals(new HashSet<String>(Arrays.asList("channel2")), updatedChannelIds.get(updater2));
+    }
+
     private JdbcDao getDao(String channelId, ResultSet segmentCountResult, PreparedStatement segmentCountStatement, PreparedStatement updateStatement, PreparedStatement insertStatement, PreparedStatement deleteStatement) throws Exception {
         Donkey donkey = mock(Donkey.class);
         Connection connection = mock(Connection.class);
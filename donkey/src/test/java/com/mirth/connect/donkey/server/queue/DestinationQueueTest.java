@@ -0,0 +1,590 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.server.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
+import com.mirth.connect.donkey.model.message.ContentType;
+import com.mirth.connect.donkey.model.message.Message;
+import com.mirth.connect.donkey.model.message.MessageContent;
+import com.mirth.connect.donkey.model.message.Status;
+import com.mirth.connect.donkey.server.data.DonkeyDao;
+import com.mirth.connect.donkey.server.data.DonkeyDaoFactory;
+import com.mirth.connect.donkey.server.event.EventDispatcher;
+import com.mirth.connect.donkey.util.MessageMaps;
+
+public class DestinationQueueTest {
+    private static final String CHANNEL_ID = "DestinationQueueTest";
+
+    // Simulates the queued connector messages in the database
+    private TreeMap<Long, ConnectorMessage> database;
+    private Set<Long> published;
+    private ConnectorMessageQueueDataSource dataSource;
+
+    // When set, filling the buffer waits after reading from the database until fillProceed is counted down
+    private volatile CountDownLatch fillReading;
+    private volatile CountDownLatch fillProceed;
+
+    @Before
+    public void before() {
+        database = new TreeMap<Long, ConnectorMessage>();
+        published = new HashSet<Long>();
+        dataSource = mock(ConnectorMessageQueueDataSource.class);
+        when(dataSource.getChannelId()).thenReturn(CHANNEL_ID);
+        when(dataSource.getMetaDataId()).thenReturn(1);
+        when(dataSource.getSize()).thenAnswer(invocation -> {
+            synchronized (database) {
+                return database.size();
+            }
+        });
+        when(dataSource.getItems(anyInt(), anyInt())).thenAnswer(invocation -> {
+            int limit = invocation.getArgument(1);
+            Map<Long, ConnectorMessage> items = new LinkedHashMap<Long, ConnectorMessage>();
+
+            synchronized (database) {
+                for (ConnectorMessage connectorMessage : database.values()) {
+                    if (items.size() >= limit) {
+                        break;
+                    }
+                    if (published.contains(connectorMessage.getMessageId())) {
+                        items.put(connectorMessage.getMessageId(), connectorMessage);
+                    }
+                }
+            }
+
+            awaitFill();
+            return items;
+        });
+        when(dataSource.getItemsAfter(anyLong(), anyInt())).thenAnswer(invocation -> {
+            long messageId = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            Map<Long, ConnectorMessage> items = new LinkedHashMap<Long, ConnectorMessage>();
+
+            synchronized (database) {
+                for (ConnectorMessage connectorMessage : database.tailMap(messageId, false).values()) {
+                    if (items.size() >= limit) {
+                        break;
+                    }
+                    if (published.contains(connectorMessage.getMessageId())) {
+                        items.put(connectorMessage.getMessageId(), connectorMessage);
+                    }
+                }
+            }
+
+            return items;
+        });
+    }
+
+    @Test
+    public void testAcquireInOrder() throws Exception {
+        for (long messageId = 1; messageId <= 5; messageId++) {
+            store(messageId);
+        }
+
+        DestinationQueue queue = createQueue(null, 1);
+        queue.setBufferCapacity(3);
+        queue.registerThreadId();
+
+        for (long messageId = 1; messageId <= 5; messageId++) {
+            ConnectorMessage connectorMessage = queue.acquire();
+            assertEquals(messageId, connectorMessage.getMessageId());
+            finish(queue, connectorMessage);
+        }
+
+        assertNull(queue.acquire());
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.getBufferSize());
+    }
+
+    @Test
+    public void testReleasedMessageIsNotAcquiredTwice() throws Exception {
+        store(1);
+        store(2);
+
+        DestinationQueue queue = createQueue(null, 1);
+        queue.registerThreadId();
+
+        ConnectorMessage first = queue.acquire();
+        assertEquals(1, first.getMessageId());
+
+        // Refilling the buffer reloads the checked out message from the database
+        queue.invalidate(false, false);
+        assertEquals(2, queue.acquire().getMessageId());
+        assertNull(queue.acquire());
+
+        queue.release(first, false);
+        assertEquals(2, queue.size());
+    }
+
+    @Test(timeout = 60000)
+    public void testReleaseDuringFill() throws Exception {
+        store(1);
+        store(2);
+
+        final DestinationQueue queue = createQueue(null, 1);
+        queue.registerThreadId();
+        final ConnectorMessage first = queue.acquire();
+        assertEquals(1, first.getMessageId());
+
+        // Fill the buffer while the first message is checked out, and release it during the database read
+        queue.invalidate(false, false);
+        fillReading = new CountDownLatch(1);
+        fillProceed = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<ConnectorMessage> acquired = executor.submit(() -> queue.acquire());
+            fillReading.await();
+
+            Future<?> released = executor.submit(() -> finish(queue, first));
+            Thread.sleep(200);
+            assertFalse(released.isDone());
+
+            fillProceed.countDown();
+            assertEquals(2, acquired.get().getMessageId());
+            released.get();
+        } finally {
+            fillProceed.countDown();
+            fillProceed = null;
+            executor.shutdownNow();
+        }
+
+        assertNull(queue.acquire());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testReleaseForRetry() throws Exception {
+        store(1);
+        store(2);
+        store(3);
+
+        DestinationQueue queue = createQueue(null, 1);
+        queue.registerThreadId();
+
+        ConnectorMessage failed = queue.acquire();
+        assertEquals(1, failed.getMessageId());
+        queue.releaseForRetry(failed, 500);
+
+        // Other messages can be sent while the failed one waits
+        ConnectorMessage connectorMessage = queue.acquire();
+        assertEquals(2, connectorMessage.getMessageId());
+        finish(queue, connectorMessage);
+        connectorMessage = queue.acquire();
+        assertEquals(3, connectorMessage.getMessageId());
+        finish(queue, connectorMessage);
+        assertNull(queue.acquire());
+
+        // The next attempt time survives the buffer being invalidated
+        queue.invalidate(false, false);
+        assertNull(queue.acquire());
+        assertEquals(1, queue.size());
+
+        Thread.sleep(600);
+        connectorMessage = queue.acquire();
+        assertEquals(1, connectorMessage.getMessageId());
+        finish(queue, connectorMessage);
+        assertNull(queue.acquire());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testHeldMessagesCountTowardsBufferCapacity() throws Exception {
+        store(1);
+        store(2);
+        store(3, false);
+        store(4, false);
+
+        DestinationQueue queue = createQueue(null, 1);
+        queue.setBufferCapacity(2);
+        queue.registerThreadId();
+
+        queue.releaseForRetry(queue.acquire(), 60000);
+        queue.releaseForRetry(queue.acquire(), 60000);
+        assertNull(queue.acquire());
+        assertEquals(2, queue.getHeldCount());
+
+        // The held messages take up the buffer capacity, so only one more message is buffered
+        synchronized (database) {
+            published.clear();
+        }
+        publish(3);
+        publish(4);
+
+        ConnectorMessage connectorMessage = queue.acquire();
+        assertEquals(3, connectorMessage.getMessageId());
+        assertEquals(0, queue.getBufferSize());
+
+        // Messages that are not due are no longer held once the capacity is reached
+        queue.releaseForRetry(connectorMessage, 60000);
+        assertNull(queue.acquire());
+        assertEquals(2, queue.getHeldCount());
+        assertEquals(4, queue.size());
+    }
+
+    @Test
+    public void testRetryBackoff() throws Exception {
+        RetryBackoff fixed = new RetryBackoff(1000, 1, 0, 0);
+        assertEquals(1000, fixed.getDelay(1));
+        assertEquals(1000, fixed.getDelay(5));
+
+        // Channels saved before backoff existed have a multiplier of 0
+        assertEquals(1000, new RetryBackoff(1000, 0, 0, 0).getDelay(5));
+
+        RetryBackoff exponential = new RetryBackoff(1000, 2, 10000, 0);
+        assertEquals(1000, exponential.getDelay(0));
+        assertEquals(1000, exponential.getDelay(1));
+        assertEquals(2000, exponential.getDelay(2));
+        assertEquals(8000, exponential.getDelay(4));
+        assertEquals(10000, exponential.getDelay(5));
+        assertEquals(10000, exponential.getDelay(1000));
+
+        RetryBackoff jitter = new RetryBackoff(1000, 1, 0, 20);
+        for (int i = 0; i < 100; i++) {
+            long delay = jitter.getDelay(1);
+            assertTrue(delay >= 800 && delay <= 1200);
+        }
+    }
+
+    @Test
+    public void testThreadAssignmentBuckets() throws Exception {
+        for (long messageId = 1; messageId <= 6; messageId++) {
+            store(messageId);
+        }
+
+        final DestinationQueue queue = createQueue("group", 2);
+
+        ExecutorService firstThread = Executors.newSingleThreadExecutor();
+        ExecutorService secondThread = Executors.newSingleThreadExecutor();
+
+        try {
+            firstThread.submit(() -> queue.registerThreadId()).get();
+            secondThread.submit(() -> queue.registerThreadId()).get();
+
+            // Odd message IDs are seen first, so they are assigned to the first queue thread
+            assertEquals(list(1, 3, 5), firstThread.submit(new AcquireAll(queue)).get());
+            assertEquals(list(2, 4, 6), secondThread.submit(new AcquireAll(queue)).get());
+        } finally {
+            firstThread.shutdownNow();
+            secondThread.shutdownNow();
+        }
+
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testBufferMemoryCapacity() throws Exception {
+        for (long messageId = 1; messageId <= 10; messageId++) {
+            store(messageId).setRaw(new MessageContent(CHANNEL_ID, messageId, 1, ContentType.RAW, StringUtils.repeat('x', 1000), "HL7V2", false));
+        }
+
+        long messageSize = QueueBuffer.MESSAGE_OVERHEAD + 2000;
+
+        DestinationQueue queue = createQueue(null, 1);
+        queue.setBufferMemoryCapacity(messageSize * 3 + 1);
+        queue.registerThreadId();
+
+        // The buffer stops filling after the message that takes it over its memory capacity
+        assertEquals(1, queue.acquire().getMessageId());
+        assertEquals(3, queue.getBufferSize());
+        assertEquals(messageSize * 3, queue.getBufferMemory());
+
+        // New messages must not skip ahead of the messages left in the database
+        ConnectorMessage newMessage = store(11);
+        queue.add(newMessage);
+        assertEquals(3, queue.getBufferSize());
+
+        for (long messageId = 2; messageId <= 11; messageId++) {
+            ConnectorMessage connectorMessage = queue.acquire();
+            assertEquals(messageId, connectorMessage.getMessageId());
+            finish(queue, connectorMessage);
+        }
+
+        assertNull(queue.acquire());
+        assertEquals(0, queue.getBufferMemory());
+    }
+
+    @Test
+    public void testContentPrefetch() throws Exception {
+        for (long messageId = 1; messageId <= 20; messageId++) {
+            store(messageId).setRaw(new MessageContent(CHANNEL_ID, messageId, 1, ContentType.RAW, "message " + messageId, "HL7V2", false));
+        }
+
+        DonkeyDao dao = mock(DonkeyDao.class);
+        DestinationQueue queue = createPrefetchQueue(dao);
+
+        for (long messageId = 1; messageId <= 20; messageId++) {
+            ConnectorMessage connectorMessage = queue.acquire();
+            assertEquals(messageId, connectorMessage.getMessageId());
+            assertNotNull(connectorMessage.getRaw());
+            assertEquals("message " + messageId, connectorMessage.getRaw().getContent());
+            finish(queue, connectorMessage);
+        }
+
+        assertNull(queue.acquire());
+
+        // Content is loaded in batches rather than one message at a time
+        verify(dao, atMost(10)).getMessages(anyString(), anyList());
+    }
+
+    @Test
+    public void testContentPrefetchAfterStop() throws Exception {
+        for (long messageId = 1; messageId <= 20; messageId++) {
+            store(messageId).setRaw(new MessageContent(CHANNEL_ID, messageId, 1, ContentType.RAW, "message " + messageId, "HL7V2", false));
+        }
+
+        DestinationQueue queue = createPrefetchQueue(mock(DonkeyDao.class));
+
+        // Stopping the prefetch threads in between acquires must not lose any content
+        for (long messageId = 1; messageId <= 20; messageId++) {
+            if (messageId % 5 == 0) {
+                queue.stopContentPrefetch();
+            }
+
+            ConnectorMessage connectorMessage = queue.acquire();
+            assertEquals(messageId, connectorMessage.getMessageId());
+            assertEquals("message " + messageId, connectorMessage.getRaw().getContent());
+            finish(queue, connectorMessage);
+        }
+
+        queue.stopContentPrefetch();
+        assertNull(queue.acquire());
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentProducersAndConsumers() throws Exception {
+        final int producers = 4;
+        final int consumers = 8;
+        final int messagesPerProducer = 500;
+        final int total = producers * messagesPerProducer;
+
+        final DestinationQueue queue = createQueue(null, 1);
+        queue.setBufferCapacity(50);
+
+        final AtomicLong nextMessageId = new AtomicLong(1);
+        final Set<Long> inFlightIds = Collections.synchronizedSet(new HashSet<Long>());
+        final Set<Long> processedIds = Collections.synchronizedSet(new HashSet<Long>());
+        ExecutorService executor = Executors.newFixedThreadPool(producers + consumers);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+
+        try {
+            for (int i = 0; i < consumers; i++) {
+                futures.add(executor.submit(() -> {
+                    queue.registerThreadId();
+
+                    while (processedIds.size() < total) {
+                        ConnectorMessage connectorMessage = queue.acquire();
+
+                        if (connectorMessage == null) {
+                            Thread.yield();
+                            continue;
+                        }
+
+                        assertTrue("Message " + connectorMessage.getMessageId() + " was acquired by two threads", inFlightIds.add(connectorMessage.getMessageId()));
+                        processedIds.add(connectorMessage.getMessageId());
+                        inFlightIds.remove(connectorMessage.getMessageId());
+                        finish(queue, connectorMessage);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < producers; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < messagesPerProducer; j++) {
+                        /*
+                         * Only let the buffer load the message from the database once it has been
+                         * added. Otherwise it could be processed before it is added, and then be
+                         * added to the buffer and processed a second time.
+                         */
+                        ConnectorMessage connectorMessage = store(nextMessageId.getAndIncrement(), false);
+                        queue.add(connectorMessage);
+                        publish(connectorMessage.getMessageId());
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(total, processedIds.size());
+
+        queue.invalidate(false, false);
+        assertEquals(0, queue.size());
+    }
+
+    private DestinationQueue createQueue(String groupBy, int threadCount) {
+        MessageMaps messageMaps = mock(MessageMaps.class);
+        when(messageMaps.get(eq("group"), any(ConnectorMessage.class))).thenAnswer(invocation -> {
+            ConnectorMessage connectorMessage = invocation.getArgument(1);
+            return connectorMessage.getMessageId() % 2 == 1 ? "odd" : "even";
+        });
+
+        DestinationQueue queue = new DestinationQueue(groupBy, threadCount, true, null, messageMaps);
+        queue.eventDispatcher = mock(EventDispatcher.class);
+        queue.setDataSource(dataSource);
+        return queue;
+    }
+
+    private DestinationQueue createPrefetchQueue(DonkeyDao dao) {
+        DonkeyDaoFactory daoFactory = mock(DonkeyDaoFactory.class);
+        when(daoFactory.getDao()).thenReturn(dao);
+        when(dao.getConnectorMessageCount(anyString(), anyString(), anyInt(), any(Status.class))).thenAnswer(invocation -> {
+            synchronized (database) {
+                return database.size();
+            }
+        });
+
+        // Only the connector message rows are read when filling the buffer
+        when(dao.getConnectorMessages(anyString(), anyString(), anyInt(), any(Status.class), anyInt(), anyInt(), any(), any(), eq(false))).thenAnswer(invocation -> {
+            int limit = invocation.getArgument(5);
+            List<ConnectorMessage> connectorMessages = new ArrayList<ConnectorMessage>();
+
+            synchronized (database) {
+                for (ConnectorMessage connectorMessage : database.values()) {
+                    if (connectorMessages.size() < limit) {
+                        connectorMessages.add(new ConnectorMessage(CHANNEL_ID, "Test", connectorMessage.getMessageId(), 1, "server", Calendar.getInstance(), Status.QUEUED));
+                    }
+                }
+            }
+
+            return connectorMessages;
+        });
+
+        when(dao.getMessages(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Long> messageIds = invocation.getArgument(1);
+            List<Message> messages = new ArrayList<Message>();
+
+            for (Long messageId : messageIds) {
+                Message message = new Message();
+                message.setMessageId(messageId);
+                synchronized (database) {
+                    message.getConnectorMessages().put(1, database.get(messageId));
+                }
+                messages.add(message);
+            }
+
+            return messages;
+        });
+
+        DestinationQueue queue = new DestinationQueue(null, 1, true, null, mock(MessageMaps.class));
+        queue.eventDispatcher = mock(EventDispatcher.class);
+        queue.setContentPrefetch(5);
+        queue.setDataSource(new ConnectorMessageQueueDataSource(CHANNEL_ID, "server", 1, Status.QUEUED, false, daoFactory));
+        queue.registerThreadId();
+        return queue;
+    }
+
+    private ConnectorMessage store(long messageId) {
+        return store(messageId, true);
+    }
+
+    private ConnectorMessage store(long messageId, boolean publish) {
+        ConnectorMessage connectorMessage = new ConnectorMessage(CHANNEL_ID, "Test", messageId, 1, "server", Calendar.getInstance(), Status.QUEUED);
+
+        synchronized (database) {
+            database.put(messageId, connectorMessage);
+            if (publish) {
+                published.add(messageId);
+            }
+        }
+
+        return connectorMessage;
+    }
+
+    private void awaitFill() throws InterruptedException {
+        CountDownLatch proceed = fillProceed;
+        if (proceed != null) {
+            fillReading.countDown();
+            proceed.await();
+        }
+    }
+
+    private void publish(long messageId) {
+        synchronized (database) {
+            published.add(messageId);
+        }
+    }
+
+    private void finish(DestinationQueue queue, ConnectorMessage connectorMessage) {
+        synchronized (database) {
+            database.remove(connectorMessage.getMessageId());
+        }
+
+        queue.release(connectorMessage, true);
+    }
+
+    private List<Long> list(long... messageIds) {
+        List<Long> list = new ArrayList<Long>();
+        for (long messageId : messageIds) {
+            list.add(messageId);
+        }
+        return list;
+    }
+
+    private class AcquireAll implements Callable<List<Long>> {
+        private DestinationQueue queue;
+
+        public AcquireAll(DestinationQueue queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public List<Long> call() throws Exception {
+            List<Long> messageIds = new ArrayList<Long>();
+            ConnectorMessage connectorMessage;
+
+            while ((connectorMessage = queue.acquire()) != null) {
+                messageIds.add(connectorMessage.getMessageId());
+                finish(queue, connectorMessage);
+            }
+
+            return messageIds;
+        }
+    }
+}
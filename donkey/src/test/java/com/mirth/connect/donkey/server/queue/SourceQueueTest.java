@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.server.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
+import com.mirth.connect.donkey.model.message.Status;
+import com.mirth.connect.donkey.server.event.EventDispatcher;
+
+public class SourceQueueTest {
+    private static final String CHANNEL_ID = "SourceQueueTest";
+
+    // Simulates the unprocessed connector messages in the database
+    private TreeMap<Long, ConnectorMessage> database;
+    private ConnectorMessageQueueDataSource dataSource;
+
+    // When set, filling the buffer waits after reading from the database until fillProceed is counted down
+    private volatile CountDownLatch fillReading;
+    private volatile CountDownLatch fillProceed;
+
+    @Before
+    public void before() {
+        database = new TreeMap<Long, ConnectorMessage>();
+        dataSource = mock(ConnectorMessageQueueDataSource.class);
+        when(dataSource.getChannelId()).thenReturn(CHANNEL_ID);
+        when(dataSource.getMetaDataId()).thenReturn(0);
+        when(dataSource.getSize()).thenAnswer(invocation -> {
+            synchronized (database) {
+                return database.size();
+            }
+        });
+        when(dataSource.getItems(anyInt(), anyInt())).thenAnswer(invocation -> {
+            int limit = invocation.getArgument(1);
+            Map<Long, ConnectorMessage> items = new LinkedHashMap<Long, ConnectorMessage>();
+
+            synchronized (database) {
+                for (ConnectorMessage connectorMessage : database.values()) {
+                    if (items.size() >= limit) {
+                        break;
+                    }
+                    items.put(connectorMessage.getMessageId(), connectorMessage);
+                }
+            }
+
+            awaitFill();
+            return items;
+        });
+    }
+
+    @Test
+    public void testPollInOrder() throws Exception {
+        for (long messageId = 1; messageId <= 5; messageId++) {
+            store(messageId);
+        }
+
+        SourceQueue queue = createQueue();
+        queue.setBufferCapacity(3);
+
+        for (long messageId = 1; messageId <= 5; messageId++) {
+            ConnectorMessage connectorMessage = queue.poll();
+            assertEquals(messageId, connectorMessage.getMessageId());
+            finish(queue, connectorMessage);
+        }
+
+        assertNull(queue.poll());
+        assertEquals(0, queue.getBufferSize());
+    }
+
+    @Test
+    public void testCheckedOutMessageIsNotBuffered() throws Exception {
+        store(1);
+        store(2);
+
+        SourceQueue queue = createQueue();
+        ConnectorMessage first = queue.poll();
+        assertEquals(1, first.getMessageId());
+
+        // The first message is still unprocessed in the database, so the fill reads it again
+        queue.invalidate(true, false);
+        queue.fillBuffer();
+        assertFalse(queue.contains(first));
+        assertEquals(1, queue.getBufferSize());
+
+        ConnectorMessage second = queue.poll();
+        assertEquals(2, second.getMessageId());
+
+        finish(queue, first);
+        finish(queue, second);
+        assertNull(queue.poll());
+        assertEquals(0, queue.getBufferSize());
+    }
+
+    @Test(timeout = 60000)
+    public void testFinishDuringFill() throws Exception {
+        store(1);
+        store(2);
+
+        final SourceQueue queue = createQueue();
+        final ConnectorMessage first = queue.poll();
+        assertEquals(1, first.getMessageId());
+
+        // Fill the buffer while the first message is checked out, and finish it during the database read
+        queue.invalidate(false, false);
+        fillReading = new CountDownLatch(1);
+        fillProceed = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<ConnectorMessage> polled = executor.submit(() -> queue.poll());
+            fillReading.await();
+
+            Future<?> finished = executor.submit(() -> finish(queue, first));
+            Thread.sleep(200);
+            assertFalse(finished.isDone());
+
+            fillProceed.countDown();
+            assertEquals(2, polled.get().getMessageId());
+            finished.get();
+        } finally {
+            fillProceed.countDown();
+            fillProceed = null;
+            executor.shutdownNow();
+        }
+
+        assertFalse(queue.contains(first));
+        assertNull(queue.poll());
+    }
+
+    private SourceQueue createQueue() {
+        SourceQueue queue = new SourceQueue();
+        queue.eventDispatcher = mock(EventDispatcher.class);
+        queue.setDataSource(dataSource);
+        return queue;
+    }
+
+    private ConnectorMessage store(long messageId) {
+        ConnectorMessage connectorMessage = new ConnectorMessage(CHANNEL_ID, "Test", messageId, 0, "server", Calendar.getInstance(), Status.RECEIVED);
+
+        synchronized (database) {
+            database.put(messageId, connectorMessage);
+        }
+
+        return connectorMessage;
+    }
+
+    private void awaitFill() throws InterruptedException {
+        CountDownLatch proceed = fillProceed;
+        if (proceed != null) {
+            fillReading.countDown();
+            proceed.await();
+        }
+    }
+
+    private void finish(SourceQueue queue, ConnectorMessage connectorMessage) {
+        synchronized (database) {
+            database.remove(connectorMessage.getMessageId());
+        }
+
+        queue.finish(connectorMessage);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.mirth.connect.donkey.util.ThreadUtils;
+
+/**
+ * Compares platform and virtual threads for a server with many deployed channels. Each simulated
+ * channel has a dispatch executor and a number of destination queue threads, created the same way
+ * the engine creates them, and every message waits on a simulated downstream system before it is
+ * done. Reports the peak number of platform threads and the end-to-end message latency.
+ * 
+ * The virtual thread run is skipped when not running on Java 21 or later.
+ */
+public class VirtualThreadPerformanceTests {
+    private final static int CHANNELS = 600;
+    private final static int QUEUE_THREADS_PER_CHANNEL = 4;
+    private final static int MESSAGES_PER_CHANNEL = 20;
+    private final static int SEND_MILLIS = 5;
+    private final static int MESSAGE_INTERVAL_MILLIS = 50;
+
+    @After
+    public void after() {
+        ThreadUtils.setVirtualThreadsEnabled(false);
+    }
+
+    @Test
+    public void testPlatformThreads() throws Exception {
+        ThreadUtils.setVirtualThreadsEnabled(false);
+        runTest("Platform threads");
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        Assume.assumeTrue(ThreadUtils.setVirtualThreadsEnabled(true));
+        runTest("Virtual threads");
+    }
+
+    private void runTest(String description) throws Exception {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        threadBean.resetPeakThreadCount();
+        int initialThreads = threadBean.getThreadCount();
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<Long>());
+        List<ExecutorService> executors = new ArrayList<ExecutorService>();
+        List<Thread> queueThreads = new ArrayList<Thread>();
+        List<BlockingQueue<Long>> queues = new ArrayList<BlockingQueue<Long>>();
+        long start = System.nanoTime();
+
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            final BlockingQueue<Long> queue = new LinkedBlockingQueue<Long>();
+            queues.add(queue);
+            executors.add(ThreadUtils.newCachedThreadPool("Channel Dispatch Thread on Channel " + channel + " "));
+
+            for (int i = 1; i <= QUEUE_THREADS_PER_CHANNEL; i++) {
+                Thread thread = ThreadUtils.newThread(() -> {
+                    try {
+                        while (true) {
+                            long queuedTime = queue.take();
+                            Thread.sleep(SEND_MILLIS);
+                            ThreadUtils.checkInterruptedStatus();
+                            latencies.add(System.nanoTime() - queuedTime);
+                        }
+                    } catch (InterruptedException e) {
+                        // Halted
+                    }
+                }, "Destination Queue Thread " + i + " on Channel " + channel);
+
+                thread.start();
+                queueThreads.add(thread);
+            }
+        }
+
+        // Each channel receives a message every interval, which is dispatched on the channel's executor and then queued
+        List<Future<?>> dispatches = new ArrayList<Future<?>>();
+        for (int message = 0; message < MESSAGES_PER_CHANNEL; message++) {
+            Thread.sleep(MESSAGE_INTERVAL_MILLIS);
+
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                final BlockingQueue<Long> queue = queues.get(channel);
+                final long receivedTime = System.nanoTime();
+
+                dispatches.add(executors.get(channel).submit(() -> {
+                    Thread.sleep(SEND_MILLIS);
+                    queue.add(receivedTime);
+                    return null;
+                }));
+            }
+        }
+
+        for (Future<?> dispatch : dispatches) {
+            dispatch.get();
+        }
+
+        while (latencies.size() < CHANNELS * MESSAGES_PER_CHANNEL) {
+            Thread.sleep(10);
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        int peakThreads = threadBean.getPeakThreadCount() - initialThreads;
+
+        for (Thread thread : queueThreads) {
+            thread.interrupt();
+        }
+        for (Thread thread : queueThreads) {
+            thread.join();
+        }
+        for (ExecutorService executor : executors) {
+            executor.shutdownNow();
+        }
+
+        assertEquals(CHANNELS * MESSAGES_PER_CHANNEL, latencies.size());
+
+        List<Long> sorted = new ArrayList<Long>(latencies);
+        Collections.sort(sorted);
+
+        System.out.println(description + ": " + CHANNELS + " channels, " + (CHANNELS * QUEUE_THREADS_PER_CHANNEL) + " queue threads, " + sorted.size() + " messages in " + elapsedMillis + " ms");
+        System.out.println("    Peak platform threads: " + peakThreads);
+        System.out.println("    Latency p50: " + toMillis(sorted, 0.5) + " ms, p99: " + toMillis(sorted, 0.99) + " ms, max: " + toMillis(sorted, 1) + " ms");
+    }
+
+    private String toMillis(List<Long> sorted, double percentile) {
+        long nanos = sorted.get(Math.min((int) Math.ceil(percentile * sorted.size()) - 1, sorted.size() - 1));
+        return String.format("%.1f", nanos / 1000000.0);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.donkey.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class ThreadUtilsTest {
+
+    @After
+    public void after() {
+        ThreadUtils.setVirtualThreadsEnabled(false);
+    }
+
+    @Test
+    public void testPlatformThreadsByDefault() throws Exception {
+        Thread thread = ThreadUtils.newThread(() -> {}, "Test Thread");
+        assertEquals("Test Thread", thread.getName());
+        assertEquals(Thread.class, thread.getClass());
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void testUnsupportedVirtualThreads() throws Exception {
+        Assume.assumeTrue(!ThreadUtils.isVirtualThreadsSupported());
+
+        assertFalse(ThreadUtils.setVirtualThreadsEnabled(true));
+        assertFalse(ThreadUtils.isVirtualThreadsEnabled());
+        assertEquals(Thread.class, ThreadUtils.newThread(() -> {}, "Test Thread").getClass());
+    }
+
+    @Test
+    public void testVirtualThreadHalt() throws Exception {
+        Assume.assumeTrue(ThreadUtils.isVirtualThreadsSupported());
+        assertTrue(ThreadUtils.setVirtualThreadsEnabled(true));
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean halted = new AtomicBoolean(false);
+
+        Thread thread = ThreadUtils.newThread(() -> {
+            try {
+                started.countDown();
+                while (true) {
+                    ThreadUtils.checkInterruptedStatus();
+                }
+            } catch (InterruptedException e) {
+                halted.set(true);
+            }
+        }, "Test Virtual Thread");
+
+        assertEquals("Test Virtual Thread", thread.getName());
+        assertTrue(thread.isDaemon());
+
+        thread.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        thread.interrupt();
+        thread.join(10000);
+
+        assertTrue(halted.get());
+    }
+
+    @Test
+    public void testCachedThreadPoolHalt() throws Exception {
+        for (boolean virtual : new boolean[] { false, true }) {
+            if (virtual && !ThreadUtils.setVirtualThreadsEnabled(true)) {
+                continue;
+            }
+
+            ExecutorService executor = ThreadUtils.newCachedThreadPool("Test Pool Thread ");
+            Future<String> name = executor.submit(() -> Thread.currentThread().getName());
+            assertEquals("Test Pool Thread 1", name.get());
+
+            Future<?> sleeping = executor.submit(() -> {
+                Thread.sleep(60000);
+                return null;
+            });
+
+            executor.shutdownNow();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertTrue(sleeping.isDone());
+        }
+    }
+}
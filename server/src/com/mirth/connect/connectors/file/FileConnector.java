@@ -116,6 +116,18 @@ public class FileConnector {
         this.secure = secure;
     }
 
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    /**
+     * Sets the maximum number of connections in each pool. Pools that have already been created
+     * aren't changed.
+     */
+    public void setMaxTotalConnections(int maxTotalConnections) {
+        this.maxTotalConnections = maxTotalConnections;
+    }
+
     public boolean isValidateConnection() {
         return validateConnection;
     }
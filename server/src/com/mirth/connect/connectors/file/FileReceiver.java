@@ -17,14 +17,22 @@ import java.io.Reader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections4.CollectionUtils;
@@ -49,6 +57,7 @@ import com.mirth.connect.donkey.server.channel.PollConnector;
 import com.mirth.connect.donkey.server.event.ConnectionStatusEvent;
 import com.mirth.connect.donkey.server.event.ErrorEvent;
 import com.mirth.connect.donkey.server.message.batch.BatchMessageReader;
+import com.mirth.connect.donkey.util.ThreadUtils;
 import com.mirth.connect.server.controllers.ConfigurationController;
 import com.mirth.connect.server.controllers.ControllerFactory;
 import com.mirth.connect.server.controllers.EventController;
@@ -71,14 +80,20 @@ public class FileReceiver extends PollConnector {
     private FileConfiguration configuration = null;
     private FileConnector fileConnector = null;
 
-    private String originalFilename = null;
-
     private FileReceiverProperties connectorProperties;
     private String charsetEncoding;
 
     private long fileSizeMinimum;
     private long fileSizeMaximum;
 
+    private FileWatchIndex watchIndex;
+
+    // The number of moves and deletes done together on one connection when processing in parallel
+    private static final int POST_ACTION_BATCH_SIZE = 50;
+
+    private ThreadPoolExecutor executor;
+    private ThreadPoolExecutor readAheadExecutor;
+
     @Override
     public void onDeploy() throws ConnectorTaskException {
         this.connectorProperties = (FileReceiverProperties) SerializationUtils.clone(getConnectorProperties());
@@ -147,11 +162,30 @@ public class FileReceiver extends PollConnector {
                 s3Properties.setCustomHeaders(replacer.replaceKeysAndValuesInMap(s3Properties.getCustomHeaders(), channelId, channelName));
             }
 
+            int processingThreads = NumberUtils.toInt(replacer.replaceValues(connectorProperties.getProcessingThreads(), channelId, channelName), 0);
+            if (processingThreads > 1) {
+                // Each thread may hold one connection to read ahead, and another to read or move a file
+                fileConnector.setMaxTotalConnections(Math.max(fileConnector.getMaxTotalConnections(), processingThreads * 2 + 1));
+
+                executor = new ThreadPoolExecutor(processingThreads, processingThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), ThreadUtils.newThreadFactory("File Reader Processing Thread on " + channelName + " (" + channelId + ") "));
+                readAheadExecutor = new ThreadPoolExecutor(processingThreads, processingThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), ThreadUtils.newThreadFactory("File Reader Read-Ahead Thread on " + channelName + " (" + channelId + ") "));
+            }
+
             URI uri = fileConnector.getEndpointURI(host, connectorProperties.getScheme(), schemeProperties, connectorProperties.isSecure());
 
             fileSystemOptions = new FileSystemConnectionOptions(uri, connectorProperties.isAnonymous(), username, password, schemeProperties);
             FileSystemConnection con = fileConnector.getConnection(fileSystemOptions);
             fileConnector.releaseConnection(con, fileSystemOptions);
+
+            if (connectorProperties.isWatchForChanges()) {
+                if (connectorProperties.getScheme() == FileScheme.FILE) {
+                    long fullScanInterval = NumberUtils.toLong(replacer.replaceValues(connectorProperties.getFullScanInterval(), channelId, channelName), 0);
+                    watchIndex = new FileWatchIndex(fileConnector.getPathPart(uri), connectorProperties.isDirectoryRecursion(), connectorProperties.isRegex(), connectorProperties.isIgnoreDot(), fullScanInterval);
+                    watchIndex.start("File Reader Watch Thread on " + channelName + " (" + channelId + ")");
+                } else {
+                    logger.warn("Watching for changes is only supported for local files. The directory will be polled instead.");
+                }
+            }
         } catch (URISyntaxException e1) {
             throw new ConnectorTaskException("Error creating URI.", e1);
         } catch (Exception e) {
@@ -161,6 +195,22 @@ public class FileReceiver extends PollConnector {
 
     @Override
     public void onStop() throws ConnectorTaskException {
+        if (watchIndex != null) {
+            try {
+                watchIndex.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                watchIndex = null;
+            }
+        }
+
+        try {
+            stopProcessingThreads(false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
         try {
             fileConnector.doStop();
         } catch (FileConnectorException e) {
@@ -172,13 +222,39 @@ public class FileReceiver extends PollConnector {
 
     @Override
     public void onHalt() throws ConnectorTaskException {
+        try {
+            stopProcessingThreads(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
         fileConnector.disconnect();
         onStop();
     }
 
+    private void stopProcessingThreads(boolean halt) throws InterruptedException {
+        if (executor != null) {
+            try {
+                if (halt) {
+                    executor.shutdownNow();
+                    readAheadExecutor.shutdownNow();
+                } else {
+                    executor.shutdown();
+                    readAheadExecutor.shutdown();
+                    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                    readAheadExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                executor = null;
+                readAheadExecutor = null;
+            }
+        }
+    }
+
     @Override
     protected void poll() {
         eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.POLLING));
+        ParallelPoll parallelPoll = null;
         try {
             String channelId = getChannelId();
             String channelName = getChannel().getName();
@@ -215,7 +291,22 @@ public class FileReceiver extends PollConnector {
             String pollId = "" + System.nanoTime();
             AtomicInteger pollSequenceId = new AtomicInteger(1);
 
-            if (connectorProperties.isDirectoryRecursion()) {
+            if (executor != null) {
+                parallelPoll = new ParallelPoll(pollId, pollSequenceId);
+            }
+
+            if (watchIndex != null) {
+                // The index replaces the directory listing, and the files are checked the same way
+                List<FileInfo> files = watchIndex.getPendingFiles(filenamePattern);
+
+                for (Iterator<FileInfo> it = files.iterator(); it.hasNext();) {
+                    if (!isFileValid(it.next())) {
+                        it.remove();
+                    }
+                }
+
+                processFiles(files, pollId, pollSequenceId, true, parallelPoll);
+            } else if (connectorProperties.isDirectoryRecursion()) {
                 Set<String> visitedDirectories = new HashSet<String>();
                 Stack<String> directoryStack = new Stack<String>();
                 directoryStack.push(readDir);
@@ -226,22 +317,28 @@ public class FileReceiver extends PollConnector {
                 while ((files = listFilesRecursively(visitedDirectories, directoryStack)) != null) {
                     if (!files.isEmpty()) {
                         if (previousFiles != null) {
-                            processFiles(previousFiles, pollId, pollSequenceId, false);
+                            processFiles(previousFiles, pollId, pollSequenceId, false, parallelPoll);
                         }
                         previousFiles = files;
                     }
                 }
 
                 if (previousFiles != null) {
-                    processFiles(previousFiles, pollId, pollSequenceId, true);
+                    processFiles(previousFiles, pollId, pollSequenceId, true, parallelPoll);
                 }
             } else {
-                processFiles(listFiles(readDir), pollId, pollSequenceId, true);
+                processFiles(listFiles(readDir), pollId, pollSequenceId, true, parallelPoll);
             }
+        } catch (InterruptedException e) {
+            // The connector was halted while files were being processed
+            Thread.currentThread().interrupt();
         } catch (Throwable t) {
             eventController.dispatchEvent(new ErrorEvent(getChannelId(), getMetaDataId(), null, ErrorEventType.SOURCE_CONNECTOR, getSourceName(), connectorProperties.getName(), null, t));
             logger.error("Error polling in channel: " + getChannelId(), t);
         } finally {
+            if (parallelPoll != null) {
+                parallelPoll.finish();
+            }
             eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.IDLE));
         }
     }
@@ -269,10 +366,18 @@ public class FileReceiver extends PollConnector {
         return null;
     }
 
-    private void processFiles(List<FileInfo> files, String pollId, AtomicInteger pollSequenceId, boolean recursionComplete) {
+    private void processFiles(List<FileInfo> files, String pollId, AtomicInteger pollSequenceId, boolean recursionComplete, ParallelPoll parallelPoll) throws InterruptedException {
         // sort files by specified attribute before processing
         sortFiles(files);
 
+        if (parallelPoll != null) {
+            parallelPoll.add(files);
+            if (recursionComplete) {
+                parallelPoll.complete();
+            }
+            return;
+        }
+
         for (int i = 0, size = files.size(); i < size; i++) {
             if (isTerminated()) {
                 return;
@@ -335,6 +440,171 @@ public class FileReceiver extends PollConnector {
         }
     }
 
+    /*
+     * Processes the files of a poll on the processing threads. The valid files from each listing are
+     * submitted without waiting, except for those from the latest listing with any, which are held
+     * back in case they're the last. With Keep Directory Order, the files in each directory are
+     * processed one at a time in sort order, and the next file is read while the current one is
+     * dispatched. The file that completes the poll is only processed once all of the others are
+     * done, so that pollComplete still means that the rest of the poll has been processed. Moves and
+     * deletes are batched, and all of them have been done once the poll is finished.
+     */
+    private class ParallelPoll {
+        private String pollId;
+        private AtomicInteger pollSequenceId;
+        private PostActionBatch postActions = new PostActionBatch();
+        private List<Future<?>> futures = new ArrayList<Future<?>>();
+        private List<FileInfo> heldFiles;
+        private FileInfo lastListedFile;
+
+        ParallelPoll(String pollId, AtomicInteger pollSequenceId) {
+            this.pollId = pollId;
+            this.pollSequenceId = pollSequenceId;
+        }
+
+        /*
+         * Adds the sorted files from a listing.
+         */
+        void add(List<FileInfo> files) {
+            List<FileInfo> validFiles = new ArrayList<FileInfo>();
+            for (FileInfo file : files) {
+                if (isFileValid(file)) {
+                    validFiles.add(file);
+                }
+            }
+
+            if (!files.isEmpty()) {
+                lastListedFile = files.get(files.size() - 1);
+            }
+
+            if (!validFiles.isEmpty()) {
+                if (heldFiles != null) {
+                    submit(heldFiles);
+                }
+                heldFiles = validFiles;
+            }
+        }
+
+        /*
+         * Called once every file has been listed.
+         */
+        void complete() throws InterruptedException {
+            FileInfo lastFile = null;
+
+            if (heldFiles != null) {
+                lastFile = heldFiles.remove(heldFiles.size() - 1);
+                submit(heldFiles);
+                heldFiles = null;
+            } else if (lastListedFile != null) {
+                lastFile = lastListedFile;
+                logger.warn("The file " + lastFile.getName() + " may have been modified since being listed by the File Reader. This message will still be processed by the channel, but the file age/size may not be correct with respect to the current File Reader settings.");
+            }
+
+            waitForFiles();
+
+            if (lastFile != null && !isTerminated()) {
+                processFile(lastFile, createSourceMap(lastFile, pollId, true), pollSequenceId, null, postActions);
+            }
+
+            postActions.flush();
+        }
+
+        /*
+         * Waits for any files that were submitted and does their post-actions, whether or not the
+         * poll was completed. Held files are not processed, the same as if they hadn't been listed.
+         */
+        void finish() {
+            try {
+                waitForFiles();
+            } catch (InterruptedException e) {
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+            } finally {
+                postActions.flush();
+            }
+        }
+
+        private void submit(List<FileInfo> files) {
+            if (futures.isEmpty()) {
+                eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.READING));
+            }
+
+            List<List<FileInfo>> groups = new ArrayList<List<FileInfo>>();
+            if (connectorProperties.isKeepDirectoryOrder()) {
+                Map<String, List<FileInfo>> directories = new LinkedHashMap<String, List<FileInfo>>();
+                for (FileInfo file : files) {
+                    directories.computeIfAbsent(file.getParent(), directory -> new ArrayList<FileInfo>()).add(file);
+                }
+                groups.addAll(directories.values());
+            } else {
+                for (FileInfo file : files) {
+                    groups.add(Collections.singletonList(file));
+                }
+            }
+
+            for (final List<FileInfo> group : groups) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        processFileGroup(group, pollId, pollSequenceId, postActions);
+                    }
+                }));
+            }
+        }
+
+        private void waitForFiles() throws InterruptedException {
+            for (Iterator<Future<?>> it = futures.iterator(); it.hasNext();) {
+                try {
+                    it.next().get();
+                } catch (ExecutionException e) {
+                    logger.error("Error processing files in channel: " + getChannelId(), e.getCause());
+                }
+                it.remove();
+            }
+        }
+    }
+
+    private void processFileGroup(List<FileInfo> files, String pollId, AtomicInteger pollSequenceId, PostActionBatch postActions) {
+        // Batches are streamed from the connection while they're dispatched, so they aren't read ahead
+        boolean readAhead = !isProcessBatch() && files.size() > 1;
+        Map<String, Object> nextSourceMap = null;
+        Future<byte[]> nextContents = null;
+
+        for (int i = 0; i < files.size(); i++) {
+            if (isTerminated()) {
+                if (nextContents != null) {
+                    nextContents.cancel(true);
+                }
+                return;
+            }
+
+            FileInfo file = files.get(i);
+            Map<String, Object> sourceMap = nextSourceMap != null ? nextSourceMap : createSourceMap(file, pollId, false);
+            Future<byte[]> contents = nextContents;
+            nextSourceMap = null;
+            nextContents = null;
+
+            if (readAhead && i + 1 < files.size()) {
+                nextSourceMap = createSourceMap(files.get(i + 1), pollId, false);
+                nextContents = readAhead(files.get(i + 1), nextSourceMap);
+            }
+
+            processFile(file, sourceMap, pollSequenceId, contents, postActions);
+        }
+    }
+
+    private Future<byte[]> readAhead(final FileInfo file, final Map<String, Object> sourceMap) {
+        return readAheadExecutor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                file.populateSourceMap(sourceMap);
+                return getBytesFromFile(file, sourceMap);
+            }
+        });
+    }
+
     public void sortFiles(List<FileInfo> files) {
         String sortAttribute = connectorProperties.getSortBy();
 
@@ -347,20 +617,31 @@ public class FileReceiver extends PollConnector {
         }
     }
 
-    public synchronized void processFile(FileInfo file, String pollId, AtomicInteger pollSequenceId, boolean pollComplete) {
+    public void processFile(FileInfo file, String pollId, AtomicInteger pollSequenceId, boolean pollComplete) {
+        processFile(file, createSourceMap(file, pollId, pollComplete), pollSequenceId, null, null);
+    }
+
+    private Map<String, Object> createSourceMap(FileInfo file, String pollId, boolean pollComplete) {
+        // Add the original filename to the channel map
+        Map<String, Object> sourceMap = new HashMap<String, Object>();
+        sourceMap.put("originalFilename", file.getName());
+        sourceMap.put("fileDirectory", file.getParent());
+        sourceMap.put("fileSize", file.getSize());
+        sourceMap.put("fileLastModified", file.getLastModified());
+        sourceMap.put("pollId", pollId);
+        if (pollComplete) {
+            sourceMap.put("pollComplete", true);
+        }
+        return sourceMap;
+    }
+
+    /*
+     * If the contents were read ahead, the source map was populated when they were read. If a batch
+     * of post-actions is given, the move or delete is added to it instead of being done right away.
+     */
+    private void processFile(FileInfo file, Map<String, Object> sourceMap, AtomicInteger pollSequenceId, Future<byte[]> contents, PostActionBatch postActions) {
         try {
-            // Add the original filename to the channel map
-            originalFilename = file.getName();
-            Map<String, Object> sourceMap = new HashMap<String, Object>();
-            sourceMap.put("originalFilename", originalFilename);
-            sourceMap.put("fileDirectory", file.getParent());
-            sourceMap.put("fileSize", file.getSize());
-            sourceMap.put("fileLastModified", file.getLastModified());
-            sourceMap.put("pollId", pollId);
-            sourceMap.put("pollSequenceId", pollSequenceId.get());
-            if (pollComplete) {
-                sourceMap.put("pollComplete", true);
-            }
+            String originalFilename = file.getName();
 
             // Set the default file action
             FileAction action = FileAction.NONE;
@@ -370,7 +651,13 @@ public class FileReceiver extends PollConnector {
             // Perform some quick checks to make sure file can be processed
             if (file.isDirectory()) {
                 // ignore directories
+                if (contents != null) {
+                    contents.cancel(true);
+                }
             } else if (!(file.isReadable() && file.isFile())) {
+                if (contents != null) {
+                    contents.cancel(true);
+                }
                 // it's either not readable, or something odd like a link */
                 throw new FileConnectorException("File is not readable.");
             } else {
@@ -381,13 +668,16 @@ public class FileReceiver extends PollConnector {
                     Response response = null;
 
                     // Allow implementation to inject custom source map variables
-                    file.populateSourceMap(sourceMap);
+                    if (contents == null) {
+                        file.populateSourceMap(sourceMap);
+                    }
 
                     // ast: use the user-selected encoding
                     if (isProcessBatch()) {
                         FileSystemConnection con = fileConnector.getConnection(fileSystemOptions);
                         Reader in = null;
                         try {
+                            sourceMap.put("pollSequenceId", pollSequenceId.getAndIncrement());
                             in = new InputStreamReader(con.readFile(file.getName(), file.getParent(), sourceMap), charsetEncoding);
                             BatchRawMessage batchRawMessage = new BatchRawMessage(new BatchMessageReader(in), sourceMap);
 
@@ -396,7 +686,6 @@ public class FileReceiver extends PollConnector {
                                 logger.warn("File " + originalFilename + " was successfully processed, but no messages were dispatched to the channel.");
                             }
                         } finally {
-                            pollSequenceId.incrementAndGet();
                             if (in != null) {
                                 in.close();
                             }
@@ -404,20 +693,22 @@ public class FileReceiver extends PollConnector {
                             fileConnector.releaseConnection(con, fileSystemOptions);
                         }
                     } else {
+                        byte[] bytes = contents != null ? getReadAhead(contents) : getBytesFromFile(file, sourceMap);
+
                         RawMessage rawMessage;
                         if (connectorProperties.isBinary()) {
-                            rawMessage = new RawMessage(getBytesFromFile(file, sourceMap));
+                            rawMessage = new RawMessage(bytes);
                         } else {
-                            rawMessage = new RawMessage(new String(getBytesFromFile(file, sourceMap), charsetEncoding));
+                            rawMessage = new RawMessage(new String(bytes, charsetEncoding));
                         }
 
+                        sourceMap.put("pollSequenceId", pollSequenceId.getAndIncrement());
                         rawMessage.setSourceMap(sourceMap);
 
                         DispatchResult dispatchResult = null;
                         try {
                             dispatchResult = dispatchRawMessage(rawMessage);
                         } finally {
-                            pollSequenceId.incrementAndGet();
                             finishDispatch(dispatchResult);
                         }
 
@@ -449,6 +740,8 @@ public class FileReceiver extends PollConnector {
                     action = connectorProperties.getAfterProcessingAction();
                 }
 
+                PostAction postAction = null;
+
                 // Move or delete the file based on the selected file action
                 if (action == FileAction.MOVE) {
                     // Replace and set the directory/filename
@@ -474,20 +767,22 @@ public class FileReceiver extends PollConnector {
                             logger.error("Moving file to error directory: " + destinationDir);
                         }
 
-                        // Delete the destination file if it exists, and then rename the original file
-                        deleteFile(destinationName, destinationDir, true);
-                        boolean resultOfFileMoveOperation = renameFile(file.getName(), file.getParent(), destinationName, destinationDir);
-
-                        if (!resultOfFileMoveOperation) {
-                            throw new FileConnectorException("Error moving file from [" + pathname(file.getName(), file.getParent()) + "] to [" + pathname(destinationName, destinationDir) + "]");
-                        }
+                        postAction = new PostAction(file, destinationName, destinationDir);
                     }
                 } else if (action == FileAction.DELETE) {
-                    // Delete the original file
-                    boolean resultOfFileMoveOperation = deleteFile(file.getName(), file.getParent(), false);
+                    postAction = new PostAction(file, null, null);
+                }
 
-                    if (!resultOfFileMoveOperation) {
-                        throw new FileConnectorException("Error deleting file from [" + pathname(file.getName(), file.getParent()) + "]");
+                if (postAction != null) {
+                    if (postActions != null) {
+                        postActions.add(postAction);
+                    } else {
+                        FileSystemConnection con = fileConnector.getConnection(fileSystemOptions);
+                        try {
+                            postAction.perform(con);
+                        } finally {
+                            fileConnector.releaseConnection(con, fileSystemOptions);
+                        }
                     }
                 }
 
@@ -501,6 +796,20 @@ public class FileReceiver extends PollConnector {
         }
     }
 
+    private byte[] getReadAhead(Future<byte[]> contents) throws Exception {
+        try {
+            return contents.get();
+        } catch (ExecutionException e) {
+            // Reading errors are handled the same as if the file had been read now
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     private boolean filesEqual(String dir1, String name1, String dir2, String name2) {
         String separator = System.getProperty("file.separator");
         String escapedSeparator = StringEscapeUtils.escapeJava(separator);
@@ -525,35 +834,99 @@ public class FileReceiver extends PollConnector {
         }
     }
 
-    /** Delete a file */
-    private boolean deleteFile(String name, String dir, boolean mayNotExist) throws Exception {
-        FileSystemConnection con = fileConnector.getConnection(fileSystemOptions);
-        try {
-            con.delete(name, dir, mayNotExist);
-            return true;
-        } catch (Exception e) {
-            if (mayNotExist) {
-                return true;
+    /*
+     * Moves a file that has been processed, or deletes it if there's no destination.
+     */
+    private class PostAction {
+        private String name;
+        private String dir;
+        private String destinationName;
+        private String destinationDir;
+
+        PostAction(FileInfo file, String destinationName, String destinationDir) {
+            this.name = file.getName();
+            this.dir = file.getParent();
+            this.destinationName = destinationName;
+            this.destinationDir = destinationDir;
+        }
+
+        void perform(FileSystemConnection con) throws FileConnectorException {
+            if (destinationName != null) {
+                // Delete the destination file if it exists, and then rename the original file
+                try {
+                    con.delete(destinationName, destinationDir, true);
+                } catch (Exception e) {
+                    // It may not exist
+                }
+
+                try {
+                    con.move(name, dir, destinationName, destinationDir);
+                } catch (Exception e) {
+                    throw new FileConnectorException("Error moving file from [" + pathname(name, dir) + "] to [" + pathname(destinationName, destinationDir) + "]", e);
+                }
             } else {
-                logger.info("Unable to delete destination file");
-                return false;
+                try {
+                    con.delete(name, dir, false);
+                } catch (Exception e) {
+                    throw new FileConnectorException("Error deleting file from [" + pathname(name, dir) + "]", e);
+                }
             }
-        } finally {
-            fileConnector.releaseConnection(con, fileSystemOptions);
         }
     }
 
-    private boolean renameFile(String fromName, String fromDir, String toName, String toDir) throws Exception {
-        FileSystemConnection con = fileConnector.getConnection(fileSystemOptions);
-        try {
+    /*
+     * Post-actions from the processing threads, done together on one connection instead of each
+     * borrowing its own. The batch is done when it's full, and when the poll's files are done.
+     */
+    private class PostActionBatch {
+        private List<PostAction> postActions = new ArrayList<PostAction>();
+
+        void add(PostAction postAction) {
+            boolean full;
+            synchronized (this) {
+                postActions.add(postAction);
+                full = postActions.size() >= POST_ACTION_BATCH_SIZE;
+            }
 
-            con.move(fromName, fromDir, toName, toDir);
-            return true;
-        } catch (Exception e) {
+            if (full) {
+                flush();
+            }
+        }
 
-            return false;
-        } finally {
-            fileConnector.releaseConnection(con, fileSystemOptions);
+        void flush() {
+            List<PostAction> batch;
+            synchronized (this) {
+                if (postActions.isEmpty()) {
+                    return;
+                }
+                batch = postActions;
+                postActions = new ArrayList<PostAction>();
+            }
+
+            FileSystemConnection con = null;
+            try {
+                con = fileConnector.getConnection(fileSystemOptions);
+
+                for (PostAction postAction : batch) {
+                    try {
+                        postAction.perform(con);
+                    } catch (Exception e) {
+                        eventController.dispatchEvent(new ErrorEvent(getChannelId(), getMetaDataId(), 12345L, ErrorEventType.SOURCE_CONNECTOR, getSourceName(), connectorProperties.getName(), "", e));
+                        logger.error("Error processing file in channel: " + getChannelId(), e);
+                    }
+                }
+            } catch (Exception e) {
+                eventController.dispatchEvent(new ErrorEvent(getChannelId(), getMetaDataId(), 12345L, ErrorEventType.SOURCE_CONNECTOR, getSourceName(), connectorProperties.getName(), "", e));
+                logger.error("Error moving or deleting processed files in channel: " + getChannelId(), e);
+            } finally {
+                if (con != null) {
+                    try {
+                        fileConnector.releaseConnection(con, fileSystemOptions);
+                    } catch (Exception e) {
+                        logger.warn("Error releasing file system connection.", e);
+                    }
+                }
+            }
         }
     }
 
@@ -35,6 +35,8 @@ public class FileReceiverProperties extends ConnectorProperties implements PollC
     private String fileFilter;
     private boolean regex;
     private boolean directoryRecursion;
+    private boolean watchForChanges;
+    private String fullScanInterval;
     private boolean ignoreDot;
     private boolean anonymous;
     private String username;
@@ -56,6 +58,8 @@ public class FileReceiverProperties extends ConnectorProperties implements PollC
     private String fileSizeMaximum;
     private boolean ignoreFileSizeMaximum;
     private String sortBy;
+    private String processingThreads;
+    private boolean keepDirectoryOrder;
     private boolean binary;
     private String charsetEncoding;
 
@@ -73,6 +77,8 @@ public class FileReceiverProperties extends ConnectorProperties implements PollC
         fileFilter = "*";
         regex = false;
         directoryRecursion = false;
+        watchForChanges = false;
+        fullScanInterval = "300000";
         ignoreDot = true;
         anonymous = true;
         username = "anonymous";
@@ -94,6 +100,8 @@ public class FileReceiverProperties extends ConnectorProperties implements PollC
         fileSizeMaximum = "";
         ignoreFileSizeMaximum = true;
         sortBy = SORT_BY_DATE;
+        processingThreads = "1";
+        keepDirectoryOrder = false;
         binary = false;
         charsetEncoding = CharsetUtils.DEFAULT_ENCODING;
     }
@@ -146,6 +154,23 @@ public class FileReceiverProperties extends ConnectorProperties implements PollC
         this.directoryRecursion = directoryRecursion;
     }
 
+    public boolean isWatchForChanges() {
+        return watchForChanges;
+    }
+
+    public void setWatchForChanges(boolean watchForChanges) {
+        this.watchForChanges = watchForChanges;
+    }
+
+    public String getFullScanInterval() {
+        // Channels serialized before this property existed
+        return fullScanInterval != null ? fullScanInterval : "300000";
+    }
+
+    public void setFullScanInterval(String fullScanInterval) {
+        this.fullScanInterval = fullScanInterval;
+    }
+
     public boolean isIgnoreDot() {
         return ignoreDot;
     }
@@ -314,6 +339,23 @@ public class FileReceiverProperties extends ConnectorProperties implements PollC
         this.sortBy = sortBy;
     }
 
+    public String getProcessingThreads() {
+        // Channels serialized before this property existed
+        return processingThreads != null ? processingThreads : "1";
+    }
+
+    public void setProcessingThreads(String processingThreads) {
+        this.processingThreads = processingThreads;
+    }
+
+    public boolean isKeepDirectoryOrder() {
+        return keepDirectoryOrder;
+    }
+
+    public void setKeepDirectoryOrder(boolean keepDirectoryOrder) {
+        this.keepDirectoryOrder = keepDirectoryOrder;
+    }
+
     public boolean isBinary() {
         return binary;
     }
@@ -428,6 +470,8 @@ public class FileReceiverProperties extends ConnectorProperties implements PollC
         purgedProperties.put("schemePurgedProperties", schemeProperties.getPurgedProperties());
         purgedProperties.put("regex", regex);
         purgedProperties.put("directoryRecursion", directoryRecursion);
+        purgedProperties.put("watchForChanges", watchForChanges);
+        purgedProperties.put("fullScanInterval", PurgeUtil.getNumericValue(getFullScanInterval()));
         purgedProperties.put("ignoreDot", ignoreDot);
         purgedProperties.put("anonymous", anonymous);
         purgedProperties.put("timeout", PurgeUtil.getNumericValue(timeout));
@@ -442,6 +486,8 @@ public class FileReceiverProperties extends ConnectorProperties implements PollC
         purgedProperties.put("fileSizeMaximum", PurgeUtil.getNumericValue(fileSizeMaximum));
         purgedProperties.put("ignoreFileSizeMaximum", ignoreFileSizeMaximum);
         purgedProperties.put("sortBy", sortBy);
+        purgedProperties.put("processingThreads", PurgeUtil.getNumericValue(getProcessingThreads()));
+        purgedProperties.put("keepDirectoryOrder", keepDirectoryOrder);
         return purgedProperties;
     }
 }
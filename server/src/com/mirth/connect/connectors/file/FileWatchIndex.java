@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.connectors.file;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+import com.mirth.connect.connectors.file.filesystems.FileConnection;
+import com.mirth.connect.connectors.file.filesystems.FileInfo;
+
+/**
+ * Keeps an index of the files waiting to be read from a local directory, and optionally its
+ * subdirectories, from file system watch notifications, so that each poll doesn't have to list the
+ * whole directory tree. The index only holds files that match the filename filter. Whether a file is
+ * still there and still matches is checked again each time the pending files are returned, and the
+ * file age and size checks are left to the File Reader. A full scan of the directories is added to
+ * the index when the index is first used, whenever the watch service drops events, and periodically
+ * in case a notification was missed.
+ */
+class FileWatchIndex {
+
+    private Logger logger = Logger.getLogger(this.getClass());
+
+    private String directory;
+    private boolean recursive;
+    private boolean regex;
+    private boolean ignoreDot;
+    private long fullScanInterval;
+
+    private FileConnection connection = new FileConnection();
+    private volatile String filenamePattern;
+    private volatile FilenameFilter filenameFilter;
+
+    private WatchService watchService;
+    private Thread thread;
+    private Map<WatchKey, Path> watchKeys = new ConcurrentHashMap<WatchKey, Path>();
+    private Set<Path> pendingFiles = ConcurrentHashMap.newKeySet();
+    private volatile boolean fullScanNeeded = true;
+    private long lastFullScan;
+
+    FileWatchIndex(String directory, boolean recursive, boolean regex, boolean ignoreDot, long fullScanInterval) {
+        this.directory = directory;
+        this.recursive = recursive;
+        this.regex = regex;
+        this.ignoreDot = ignoreDot;
+        this.fullScanInterval = fullScanInterval;
+    }
+
+    /**
+     * Starts the thread that takes notifications from the watch service. The directories aren't
+     * watched until the first full scan.
+     */
+    void start(String threadName) throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+
+        thread = new Thread(threadName) {
+            @Override
+            public void run() {
+                try {
+                    watch();
+                } catch (Throwable t) {
+                    logger.error("Error watching directory " + directory + " for changes.", t);
+                }
+            }
+        };
+
+        thread.start();
+    }
+
+    void stop() throws InterruptedException {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.warn("Error closing the watch service for directory " + directory + ".", e);
+            }
+        }
+
+        if (thread != null && thread.isAlive()) {
+            thread.join();
+        }
+
+        watchKeys.clear();
+        pendingFiles.clear();
+    }
+
+    /**
+     * Returns the files waiting to be read that still exist and match the filename filter, doing a
+     * full scan first if one is due. The files aren't sorted.
+     */
+    List<FileInfo> getPendingFiles(String filenamePattern) throws Exception {
+        if (!Objects.equals(filenamePattern, this.filenamePattern)) {
+            filenameFilter = connection.getFilenameFilter(filenamePattern, regex);
+            this.filenamePattern = filenamePattern;
+            fullScanNeeded = true;
+        }
+
+        if (fullScanNeeded || (fullScanInterval > 0 && System.currentTimeMillis() - lastFullScan >= fullScanInterval)) {
+            fullScan();
+        }
+
+        List<FileInfo> files = new ArrayList<FileInfo>();
+
+        for (Iterator<Path> it = pendingFiles.iterator(); it.hasNext();) {
+            FileInfo file = connection.getFileInfo(it.next().toFile(), filenameFilter, ignoreDot);
+
+            // Files that were moved, deleted, or ignored since they were added are dropped
+            if (file != null) {
+                files.add(file);
+            } else {
+                it.remove();
+            }
+        }
+
+        return files;
+    }
+
+    /*
+     * Watches and lists every directory in the tree, adding all of their files. Notifications that
+     * arrive during the scan are still applied, so the index isn't replaced; anything it holds that
+     * is no longer there is dropped when the pending files are next returned.
+     */
+    private void fullScan() throws Exception {
+        fullScanNeeded = false;
+        lastFullScan = System.currentTimeMillis();
+
+        if (!Files.isDirectory(Paths.get(directory))) {
+            // Try again on the next poll, the same as polling a directory that doesn't exist
+            fullScanNeeded = true;
+            return;
+        }
+
+        logger.debug("Scanning directory " + directory + " for files to read.");
+        long start = System.currentTimeMillis();
+        addDirectories(directory);
+        logger.debug("Scanned directory " + directory + " in " + (System.currentTimeMillis() - start) + " ms, " + pendingFiles.size() + " pending files.");
+    }
+
+    /*
+     * Each directory is watched before it's listed, so that no file is missed in between. Visited
+     * directories are tracked by canonical path, the same as when polling, to avoid link loops.
+     */
+    private void addDirectories(String fromDir) throws Exception {
+        Set<String> visitedDirectories = new HashSet<String>();
+        Stack<String> directoryStack = new Stack<String>();
+        directoryStack.push(fromDir);
+
+        while (!directoryStack.isEmpty()) {
+            String dir = directoryStack.pop();
+
+            if (visitedDirectories.add(dir)) {
+                Path path = Paths.get(dir);
+                watchKeys.put(path.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), path);
+
+                for (FileInfo file : connection.listFiles(dir, filenamePattern, regex, ignoreDot)) {
+                    pendingFiles.add(path.resolve(file.getName()));
+                }
+
+                if (recursive) {
+                    directoryStack.addAll(connection.listDirectories(dir));
+                }
+            }
+        }
+    }
+
+    private void watch() throws InterruptedException {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path dir = watchKeys.get(key);
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    logger.debug("Notifications were dropped for directory " + directory + ", a full scan will be done on the next poll.");
+                    fullScanNeeded = true;
+                } else if (dir != null) {
+                    handleEvent(event.kind(), dir.resolve((Path) event.context()));
+                }
+            }
+
+            // The key is no longer valid once its directory is deleted or moved
+            if (!key.reset()) {
+                watchKeys.remove(key);
+
+                if (dir != null && dir.equals(Paths.get(directory))) {
+                    fullScanNeeded = true;
+                }
+            }
+        }
+    }
+
+    private void handleEvent(WatchEvent.Kind<?> kind, Path path) {
+        if (kind == ENTRY_DELETE) {
+            pendingFiles.remove(path);
+        } else if (Files.isDirectory(path)) {
+            if (recursive && kind == ENTRY_CREATE) {
+                try {
+                    // The directory may already hold files if it was moved here
+                    addDirectories(path.toFile().getCanonicalPath());
+                } catch (Exception e) {
+                    logger.warn("Error watching new directory " + path + ", a full scan will be done on the next poll.", e);
+                    fullScanNeeded = true;
+                }
+            }
+        } else if (filenameFilter != null && connection.getFileInfo(path.toFile(), filenameFilter, ignoreDot) != null) {
+            pendingFiles.add(path);
+        }
+    }
+}
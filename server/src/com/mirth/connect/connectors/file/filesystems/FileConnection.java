@@ -110,13 +110,7 @@ public class FileConnection implements FileSystemConnection, FileIgnoring {
 
     @Override
     public List<FileInfo> listFiles(String fromDir, String filenamePattern, boolean isRegex, boolean ignoreDot) throws Exception {
-        FilenameFilter filenameFilter;
-
-        if (isRegex) {
-            filenameFilter = new RegexFilenameFilter(filenamePattern);
-        } else {
-            filenameFilter = new WildcardFileFilter(filenamePattern.trim().split("\\s*,\\s*"));
-        }
+        FilenameFilter filenameFilter = getFilenameFilter(filenamePattern, isRegex);
 
         File readDirectory = getReadDirectory(fromDir);
 
@@ -129,7 +123,7 @@ public class FileConnection implements FileSystemConnection, FileIgnoring {
                 List<FileInfo> result = new ArrayList<FileInfo>(todoFiles.length);
                 for (File f : todoFiles) {
 
-                    if (f.isFile() && !f.getName().endsWith(IGNORE) && !isFileIgnored(f) && !(ignoreDot && f.getName().startsWith("."))) {
+                    if (isListable(f, ignoreDot)) {
                         result.add(new FileFileInfo(f));
                     }
                 }
@@ -140,6 +134,33 @@ public class FileConnection implements FileSystemConnection, FileIgnoring {
         }
     }
 
+    /**
+     * Returns the filter used by listFiles for the given filename pattern.
+     */
+    public FilenameFilter getFilenameFilter(String filenamePattern, boolean isRegex) {
+        if (isRegex) {
+            return new RegexFilenameFilter(filenamePattern);
+        } else {
+            return new WildcardFileFilter(filenamePattern.trim().split("\\s*,\\s*"));
+        }
+    }
+
+    /**
+     * Returns the info for a single file if listFiles would include it with the given filter, or
+     * null if it wouldn't.
+     */
+    public FileInfo getFileInfo(File file, FilenameFilter filenameFilter, boolean ignoreDot) {
+        if (filenameFilter.accept(file.getParentFile(), file.getName()) && isListable(file, ignoreDot)) {
+            return new FileFileInfo(file);
+        }
+
+        return null;
+    }
+
+    private boolean isListable(File file, boolean ignoreDot) {
+        return file.isFile() && !file.getName().endsWith(IGNORE) && !isFileIgnored(file) && !(ignoreDot && file.getName().startsWith("."));
+    }
+
     @Override
     public List<String> listDirectories(String fromDir) throws Exception {
         List<String> directories = new ArrayList<String>();
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.connectors.http;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.utils.HttpClientUtils;
+import org.apache.http.config.Registry;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.HttpRoutePlanner;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.log4j.Logger;
+
+import com.mirth.connect.util.HttpUtil;
+
+/**
+ * A pool of keep-alive HTTP connections used by every dispatcher thread of a destination, or by
+ * every destination that uses the same pool name. The settings of a shared pool are taken from the
+ * destination that creates it, and the pool is closed once the last destination releases it.
+ * Destinations only share a pool when they use the default configuration, so that they all have
+ * the same socket factories and TLS settings.
+ */
+public class HttpConnectionPool {
+
+    /**
+     * Request context attribute holding the HttpHost of the proxy to send the request through.
+     */
+    public static final String PROXY_CONTEXT_KEY = "dispatcherProxy";
+
+    private static Logger logger = Logger.getLogger(HttpConnectionPool.class);
+    private static Map<String, HttpConnectionPool> pools = new HashMap<String, HttpConnectionPool>();
+
+    private String name;
+    private boolean shared;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient client;
+    private int references;
+
+    private HttpConnectionPool(String name, boolean shared, Registry<ConnectionSocketFactory> socketFactoryRegistry, int maxConnectionsPerRoute, int maxConnections, int idleTimeout, int socketTimeout) {
+        this.name = name;
+        this.shared = shared;
+
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        connectionManager.setDefaultMaxPerRoute(Math.max(maxConnectionsPerRoute, 1));
+        connectionManager.setMaxTotal(Math.max(maxConnections, connectionManager.getDefaultMaxPerRoute()));
+        connectionManager.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(socketTimeout).build());
+
+        HttpClientBuilder clientBuilder = HttpClients.custom().setConnectionManager(connectionManager);
+        HttpUtil.configureClientBuilder(clientBuilder);
+
+        /*
+         * Connections authenticated with a client certificate are otherwise only reused by requests
+         * with the same user token, which a new request context never has, so every request would
+         * do a new TLS handshake. That's only safe when the pool belongs to a single destination, so
+         * shared pools keep the connection state.
+         */
+        if (!shared) {
+            clientBuilder.disableConnectionState();
+        }
+
+        clientBuilder.evictExpiredConnections();
+        if (idleTimeout > 0) {
+            clientBuilder.evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+        }
+
+        // Destinations sharing the pool may or may not use a proxy, so it's chosen for each request
+        clientBuilder.setRoutePlanner(new ContextProxyRoutePlanner());
+
+        client = clientBuilder.build();
+    }
+
+    /**
+     * Returns the pool with the given name, creating it if needed. A pool that isn't shared may
+     * only be acquired once, and must be given a name unique to its destination.
+     */
+    public static synchronized HttpConnectionPool acquire(String name, boolean shared, Registry<ConnectionSocketFactory> socketFactoryRegistry, int maxConnectionsPerRoute, int maxConnections, int idleTimeout, int socketTimeout) {
+        HttpConnectionPool pool = pools.get(name);
+
+        if (pool != null && (!shared || !pool.shared)) {
+            throw new IllegalStateException("The HTTP connection pool \"" + name + "\" is already in use.");
+        }
+
+        if (pool == null) {
+            logger.debug("Creating HTTP connection pool: " + name);
+            pool = new HttpConnectionPool(name, shared, socketFactoryRegistry, maxConnectionsPerRoute, maxConnections, idleTimeout, socketTimeout);
+            pools.put(name, pool);
+        }
+
+        pool.references++;
+        return pool;
+    }
+
+    /**
+     * Returns the connection statistics of every open pool, by pool name.
+     */
+    public static synchronized Map<String, PoolStats> getStatistics() {
+        Map<String, PoolStats> statistics = new TreeMap<String, PoolStats>();
+
+        for (HttpConnectionPool pool : pools.values()) {
+            statistics.put(pool.name, pool.getStats());
+        }
+
+        return statistics;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Returns the number of leased, available and pending connections across all routes.
+     */
+    public PoolStats getStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Returns the connection statistics as a message for the connection log.
+     */
+    public String getStatusMessage() {
+        PoolStats stats = getStats();
+        return "Connection pool: " + stats.getLeased() + " leased, " + stats.getAvailable() + " available, " + stats.getPending() + " pending";
+    }
+
+    /**
+     * Releases the pool, closing it and all of its connections if nothing else is using it.
+     */
+    public void release() {
+        synchronized (HttpConnectionPool.class) {
+            if (references == 0 || --references > 0) {
+                return;
+            }
+
+            pools.remove(name);
+        }
+
+        logger.debug("Closing HTTP connection pool: " + name);
+        HttpClientUtils.closeQuietly(client);
+    }
+
+    private static class ContextProxyRoutePlanner implements HttpRoutePlanner {
+        @Override
+        public HttpRoute determineRoute(HttpHost target, HttpRequest request, HttpContext context) throws HttpException {
+            HttpHost proxy = (HttpHost) context.getAttribute(PROXY_CONTEXT_KEY);
+            boolean secure = target.getSchemeName().equals("https");
+
+            if (proxy != null) {
+                return new HttpRoute(target, null, proxy, secure);
+            }
+
+            return new HttpRoute(target, null, secure);
+        }
+    }
+}
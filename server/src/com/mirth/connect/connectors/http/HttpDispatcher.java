@@ -47,6 +47,7 @@ import org.apache.http.auth.AuthenticationException;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.AuthCache;
+import org.apache.http.client.CookieStore;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.AuthSchemes;
 import org.apache.http.client.config.RequestConfig;
@@ -79,6 +80,7 @@ import org.apache.http.impl.auth.BasicSchemeFactory;
 import org.apache.http.impl.auth.DigestScheme;
 import org.apache.http.impl.auth.DigestSchemeFactory;
 import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
@@ -111,7 +113,7 @@ import com.mirth.connect.util.HttpUtil;
 
 public class HttpDispatcher extends DestinationConnector {
 
-    private static final String PROXY_CONTEXT_KEY = "dispatcherProxy";
+    private static final String PROXY_CONTEXT_KEY = HttpConnectionPool.PROXY_CONTEXT_KEY;
     private static final Pattern AUTH_HEADER_PATTERN = Pattern.compile("([^\\s=,]+)\\s*=\\s*([^=,;\"\\s]+|\"([^\"]|\\\\[\\s\\S])*(?<!\\\\)\")");
     private static final int MAX_MAP_SIZE = 100;
 
@@ -122,6 +124,8 @@ public class HttpDispatcher extends DestinationConnector {
     protected TemplateValueReplacer replacer = new TemplateValueReplacer();
 
     private Map<Long, CloseableHttpClient> clients = new ConcurrentHashMap<Long, CloseableHttpClient>();
+    private HttpConnectionPool connectionPool;
+    private Map<Long, CookieStore> cookieStores = new ConcurrentHashMap<Long, CookieStore>();
     private HttpConfiguration configuration;
     private RegistryBuilder<ConnectionSocketFactory> socketFactoryRegistry;
     private Map<String, String[]> binaryMimeTypesArrayMap;
@@ -168,6 +172,7 @@ public class HttpDispatcher extends DestinationConnector {
         }
 
         clients.clear();
+        releaseConnectionPool();
     }
 
     @Override
@@ -177,6 +182,7 @@ public class HttpDispatcher extends DestinationConnector {
         }
 
         clients.clear();
+        releaseConnectionPool();
     }
 
     @Override
@@ -211,6 +217,7 @@ public class HttpDispatcher extends DestinationConnector {
         boolean validateResponse = false;
 
         CloseableHttpClient client = null;
+        HttpConnectionPool pool = null;
         HttpRequestBase httpMethod = null;
         CloseableHttpResponse httpResponse = null;
         File tempFile = null;
@@ -221,7 +228,13 @@ public class HttpDispatcher extends DestinationConnector {
         try {
             configuration.configureDispatcher(this, httpDispatcherProperties);
 
-            client = clients.get(dispatcherId);
+            if (getConnectorProperties().isPoolConnections()) {
+                pool = getConnectionPool(socketTimeout);
+                client = pool.getClient();
+            } else {
+                client = clients.get(dispatcherId);
+            }
+
             if (client == null) {
                 BasicHttpClientConnectionManager httpClientConnectionManager = new BasicHttpClientConnectionManager(socketFactoryRegistry.build());
                 httpClientConnectionManager.setSocketConfig(SocketConfig.custom().setSoTimeout(socketTimeout).build());
@@ -275,6 +288,16 @@ public class HttpDispatcher extends DestinationConnector {
 
             HttpClientContext context = HttpClientContext.create();
 
+            if (pool != null) {
+                // Each queue thread keeps its own cookies, the same as when it has its own client
+                CookieStore cookieStore = cookieStores.get(dispatcherId);
+                if (cookieStore == null) {
+                    cookieStore = new BasicCookieStore();
+                    cookieStores.put(dispatcherId, cookieStore);
+                }
+                context.setCookieStore(cookieStore);
+            }
+
             // authentication
             if (httpDispatcherProperties.isUseAuthentication()) {
                 CredentialsProvider credsProvider = new BasicCredentialsProvider();
@@ -318,6 +341,11 @@ public class HttpDispatcher extends DestinationConnector {
             // execute the method
             logger.debug("executing method: type=" + httpMethod.getMethod() + ", uri=" + httpMethod.getURI().toString());
             httpResponse = client.execute(target, httpMethod, context);
+
+            if (pool != null && logger.isDebugEnabled()) {
+                logger.debug("HTTP connection pool " + pool.getName() + ": " + pool.getStats());
+            }
+
             StatusLine statusLine = httpResponse.getStatusLine();
             int statusCode = statusLine.getStatusCode();
             logger.debug("received status code: " + statusCode);
@@ -402,7 +430,7 @@ public class HttpDispatcher extends DestinationConnector {
             responseStatusMessage = ErrorMessageBuilder.buildErrorResponse("Error connecting to HTTP server", t);
             responseError = ErrorMessageBuilder.buildErrorMessage(connectorProperties.getName(), "Error connecting to HTTP server", t);
 
-            if (t instanceof Error || t instanceof IllegalStateException) {
+            if ((t instanceof Error || t instanceof IllegalStateException) && pool == null) {
                 // If an error occurred we can't guarantee the state of the client, so close it
                 HttpUtil.closeVeryQuietly(httpResponse);
                 HttpClientUtils.closeQuietly(client);
@@ -418,13 +446,52 @@ public class HttpDispatcher extends DestinationConnector {
                     tempFile = null;
                 }
             } finally {
-                eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.IDLE));
+                eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.IDLE, pool != null ? pool.getStatusMessage() : null));
             }
         }
 
         return new Response(responseStatus, responseData, responseStatusMessage, responseError, validateResponse);
     }
 
+    /*
+     * The pool is created on the first send rather than on start, after the configuration has had a
+     * chance to register its socket factories.
+     */
+    private synchronized HttpConnectionPool getConnectionPool(int socketTimeout) {
+        if (connectionPool == null) {
+            HttpDispatcherProperties connectorProperties = getConnectorProperties();
+            String poolName = StringUtils.trim(connectorProperties.getConnectionPoolName());
+            boolean shared = StringUtils.isNotEmpty(poolName);
+
+            // A custom configuration may register its own socket factories (e.g. for TLS) for each destination
+            if (shared && configuration.getClass() != DefaultHttpConfiguration.class) {
+                logger.warn("A shared connection pool is not supported with the current HTTP configuration, using a separate pool instead (" + connectorProperties.getName() + " \"" + getDestinationName() + "\" on channel " + getChannelId() + ").");
+                shared = false;
+            }
+
+            if (!shared) {
+                poolName = getChannelId() + " " + getMetaDataId();
+            }
+
+            int maxConnectionsPerRoute = NumberUtils.toInt(replacer.replaceValues(connectorProperties.getMaxConnectionsPerRoute(), getChannelId(), getChannel().getName()), 10);
+            int maxConnections = NumberUtils.toInt(replacer.replaceValues(connectorProperties.getMaxConnections(), getChannelId(), getChannel().getName()), 50);
+            int idleTimeout = NumberUtils.toInt(replacer.replaceValues(connectorProperties.getConnectionIdleTimeout(), getChannelId(), getChannel().getName()), 60000);
+
+            connectionPool = HttpConnectionPool.acquire(poolName, shared, socketFactoryRegistry.build(), maxConnectionsPerRoute, maxConnections, idleTimeout, socketTimeout);
+        }
+
+        return connectionPool;
+    }
+
+    private synchronized void releaseConnectionPool() {
+        if (connectionPool != null) {
+            connectionPool.release();
+            connectionPool = null;
+        }
+
+        cookieStores.clear();
+    }
+
     @Override
     protected String getConfigurationClass() {
         return configurationController.getProperty(getConnectorProperties().getProtocol(), "httpConfigurationClass");
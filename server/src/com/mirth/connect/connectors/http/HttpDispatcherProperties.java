@@ -55,6 +55,11 @@ public class HttpDispatcherProperties extends ConnectorProperties implements Des
     private boolean dataTypeBinary;
     private String charset;
     private String socketTimeout;
+    private boolean poolConnections;
+    private String maxConnectionsPerRoute;
+    private String maxConnections;
+    private String connectionIdleTimeout;
+    private String connectionPoolName;
 
     public HttpDispatcherProperties() {
         destinationConnectorProperties = new DestinationConnectorProperties(false);
@@ -86,6 +91,11 @@ public class HttpDispatcherProperties extends ConnectorProperties implements Des
         this.dataTypeBinary = false;
         this.charset = "UTF-8";
         this.socketTimeout = "30000";
+        this.poolConnections = false;
+        this.maxConnectionsPerRoute = "10";
+        this.maxConnections = "50";
+        this.connectionIdleTimeout = "60000";
+        this.connectionPoolName = "";
     }
 
     public HttpDispatcherProperties(HttpDispatcherProperties props) {
@@ -128,6 +138,11 @@ public class HttpDispatcherProperties extends ConnectorProperties implements Des
         dataTypeBinary = props.isDataTypeBinary();
         charset = props.getCharset();
         socketTimeout = props.getSocketTimeout();
+        poolConnections = props.isPoolConnections();
+        maxConnectionsPerRoute = props.getMaxConnectionsPerRoute();
+        maxConnections = props.getMaxConnections();
+        connectionIdleTimeout = props.getConnectionIdleTimeout();
+        connectionPoolName = props.getConnectionPoolName();
     }
 
     public String getHost() {
@@ -346,6 +361,48 @@ public class HttpDispatcherProperties extends ConnectorProperties implements Des
         this.socketTimeout = socketTimeout;
     }
 
+    public boolean isPoolConnections() {
+        return poolConnections;
+    }
+
+    public void setPoolConnections(boolean poolConnections) {
+        this.poolConnections = poolConnections;
+    }
+
+    // The defaults below are for channels serialized before these properties existed
+
+    public String getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute != null ? maxConnectionsPerRoute : "10";
+    }
+
+    public void setMaxConnectionsPerRoute(String maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public String getMaxConnections() {
+        return maxConnections != null ? maxConnections : "50";
+    }
+
+    public void setMaxConnections(String maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public String getConnectionIdleTimeout() {
+        return connectionIdleTimeout != null ? connectionIdleTimeout : "60000";
+    }
+
+    public void setConnectionIdleTimeout(String connectionIdleTimeout) {
+        this.connectionIdleTimeout = connectionIdleTimeout;
+    }
+
+    public String getConnectionPoolName() {
+        return connectionPoolName != null ? connectionPoolName : "";
+    }
+
+    public void setConnectionPoolName(String connectionPoolName) {
+        this.connectionPoolName = connectionPoolName;
+    }
+
     @Override
     public String getProtocol() {
         return "HTTP";
@@ -528,6 +585,10 @@ public class HttpDispatcherProperties extends ConnectorProperties implements Des
         purgedProperties.put("dataTypeBinary", dataTypeBinary);
         purgedProperties.put("charset", charset);
         purgedProperties.put("socketTimeout", PurgeUtil.getNumericValue(socketTimeout));
+        purgedProperties.put("poolConnections", poolConnections);
+        purgedProperties.put("maxConnectionsPerRoute", PurgeUtil.getNumericValue(getMaxConnectionsPerRoute()));
+        purgedProperties.put("maxConnections", PurgeUtil.getNumericValue(getMaxConnections()));
+        purgedProperties.put("connectionIdleTimeout", PurgeUtil.getNumericValue(getConnectionIdleTimeout()));
         return purgedProperties;
     }
 }
\ No newline at end of file
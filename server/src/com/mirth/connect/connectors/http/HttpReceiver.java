@@ -30,6 +30,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import java.util.zip.GZIPInputStream;
@@ -39,6 +43,7 @@ import javax.mail.MessagingException;
 import javax.mail.internet.MimeMultipart;
 import javax.mail.util.ByteArrayDataSource;
 import javax.security.auth.Subject;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
@@ -100,6 +105,7 @@ import com.mirth.connect.donkey.server.message.batch.ResponseHandler;
 import com.mirth.connect.donkey.server.message.batch.SimpleResponseHandler;
 import com.mirth.connect.donkey.util.Base64Util;
 import com.mirth.connect.donkey.util.DonkeyElement.DonkeyElementException;
+import com.mirth.connect.donkey.util.ThreadUtils;
 import com.mirth.connect.plugins.httpauth.AuthenticationResult;
 import com.mirth.connect.plugins.httpauth.Authenticator;
 import com.mirth.connect.plugins.httpauth.AuthenticatorProvider;
@@ -120,12 +126,17 @@ import com.mirth.connect.util.CharsetUtils;
 import com.mirth.connect.util.HttpUtil;
 
 public class HttpReceiver extends SourceConnector implements BinaryContentTypeResolver {
+    // Requests that may wait for a processing thread, per thread, before new ones are rejected
+    private static final int QUEUED_REQUESTS_PER_THREAD = 10;
+
     private Logger logger = Logger.getLogger(this.getClass());
     private ConfigurationController configurationController = ControllerFactory.getFactory().createConfigurationController();
     private EventController eventController = ControllerFactory.getFactory().createEventController();
     private final TemplateValueReplacer replacer = new TemplateValueReplacer();
     private HttpConfiguration configuration = null;
     private Server server;
+    private SharedHttpServer.Registration sharedServerRegistration;
+    private ThreadPoolExecutor executor;
     private String host;
     private int port;
     private int timeout;
@@ -133,6 +144,7 @@ public class HttpReceiver extends SourceConnector implements BinaryContentTypeRe
     private Pattern binaryMimeTypesRegex;
     private HttpAuthConnectorPluginProperties authProps;
     private AuthenticatorProvider authenticatorProvider;
+    private boolean streamRequestBody;
 
     @Override
     public void onDeploy() throws ConnectorTaskException {
@@ -140,6 +152,12 @@ public class HttpReceiver extends SourceConnector implements BinaryContentTypeRe
             throw new ConnectorTaskException("Batch processing is not supported for Xml Body.");
         }
 
+        streamRequestBody = getConnectorProperties().isStreamRequestBody();
+        if (streamRequestBody && getConnectorProperties().isXmlBody()) {
+            logger.warn("Streaming the request body is not supported for Xml Body, reading the entire body instead (" + getConnectorProperties().getName() + " \"Source\" on channel " + getChannelId() + ").");
+            streamRequestBody = false;
+        }
+
         // load the default configuration
         String configurationClass = getConfigurationClass();
 
@@ -216,10 +234,24 @@ public class HttpReceiver extends SourceConnector implements BinaryContentTypeRe
             contextPath = contextPath.substring(0, contextPath.length() - 1);
         }
 
-        try {
-            server = new Server();
-            configuration.configureReceiver(this);
+        boolean sharedListener = getConnectorProperties().isSharedListener();
 
+        // A custom configuration may set up its own connectors (e.g. for TLS) on a dedicated server
+        if (sharedListener && configuration.getClass() != DefaultHttpConfiguration.class) {
+            logger.warn("A shared listener is not supported with the current HTTP configuration, using a separate listener instead (" + getConnectorProperties().getName() + " \"Source\" on channel " + getChannelId() + ").");
+            sharedListener = false;
+        }
+
+        if (getConnectorProperties().isAsyncProcessing()) {
+            int processingThreads = NumberUtils.toInt(replacer.replaceValues(getConnectorProperties().getProcessingThreads(), channelId, channelName), 0);
+            if (processingThreads <= 0) {
+                processingThreads = 1;
+            }
+
+            executor = new ThreadPoolExecutor(processingThreads, processingThreads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(processingThreads * QUEUED_REQUESTS_PER_THREAD), ThreadUtils.newThreadFactory("HTTP Receiver Processing Thread on " + channelName + " (" + channelId + ") "));
+        }
+
+        try {
             HandlerCollection handlers = new HandlerCollection();
             Handler serverHandler = handlers;
 
@@ -291,12 +323,25 @@ public class HttpReceiver extends SourceConnector implements BinaryContentTypeRe
             if (authenticatorProvider != null) {
                 serverHandler = createSecurityHandler(handlers);
             }
-            server.setHandler(serverHandler);
 
-            logger.debug("starting HTTP server with address: " + host + ":" + port);
-            server.start();
+            if (sharedListener) {
+                logger.debug("adding HTTP context " + contextPath + " to shared server with address: " + host + ":" + port);
+                sharedServerRegistration = SharedHttpServer.register(host, port, timeout, contextPath, serverHandler);
+            } else {
+                server = new Server();
+                configuration.configureReceiver(this);
+                server.setHandler(serverHandler);
+
+                logger.debug("starting HTTP server with address: " + host + ":" + port);
+                server.start();
+            }
+
             eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.IDLE));
         } catch (Exception e) {
+            if (executor != null) {
+                shutdownExecutorNow();
+            }
+
             eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.FAILURE));
             throw new ConnectorTaskException("Failed to start HTTP Listener", e);
         }
@@ -304,25 +349,76 @@ public class HttpReceiver extends SourceConnector implements BinaryContentTypeRe
 
     @Override
     public void onStop() throws ConnectorTaskException {
+        stop(false);
+    }
+
+    @Override
+    public void onHalt() throws ConnectorTaskException {
+        stop(true);
+    }
+
+    private void stop(boolean halt) throws ConnectorTaskException {
         ConnectorTaskException firstCause = null;
 
+        if (executor != null) {
+            if (halt) {
+                shutdownExecutorNow();
+            } else {
+                // Requests that are already being processed are allowed to finish and send their responses
+                executor.shutdown();
+
+                try {
+                    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    firstCause = new ConnectorTaskException("Request processing thread disposal interrupted", e);
+                }
+            }
+        }
+
+        if (sharedServerRegistration != null) {
+            try {
+                logger.debug("removing HTTP context from shared server");
+                sharedServerRegistration.unregister();
+            } catch (Exception e) {
+                if (firstCause == null) {
+                    firstCause = new ConnectorTaskException("Failed to stop HTTP Listener", e);
+                }
+            }
+
+            sharedServerRegistration = null;
+        }
+
         if (server != null) {
             try {
                 logger.debug("stopping HTTP server");
                 server.stop();
             } catch (Exception e) {
-                firstCause = new ConnectorTaskException("Failed to stop HTTP Listener", e.getCause());
+                if (firstCause == null) {
+                    firstCause = new ConnectorTaskException("Failed to stop HTTP Listener", e.getCause());
+                }
             }
         }
 
+        if (executor != null) {
+            shutdownExecutorNow();
+        }
+
         if (firstCause != null) {
             throw firstCause;
         }
     }
 
-    @Override
-    public void onHalt() throws ConnectorTaskException {
-        onStop();
+    /*
+     * Interrupts the requests being processed, and responds to the ones that are still waiting for a
+     * processing thread with a 503 so that their connections are not left open.
+     */
+    private void shutdownExecutorNow() {
+        for (Runnable task : executor.shutdownNow()) {
+            ((AsyncRequestTask) task).reject();
+        }
+
+        executor = null;
     }
 
     @Override
@@ -332,70 +428,157 @@ public class HttpReceiver extends SourceConnector implements BinaryContentTypeRe
 
     private class RequestHandler extends AbstractHandler {
         @Override
-        public void handle(String target, Request baseRequest, HttpServletRequest servletRequest, HttpServletResponse servletResponse) throws IOException, ServletException {
+        public void handle(String target, final Request baseRequest, HttpServletRequest servletRequest, final HttpServletResponse servletResponse) throws IOException, ServletException {
             logger.debug("received HTTP request");
             eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.CONNECTED));
-            DispatchResult dispatchResult = null;
             String originalThreadName = Thread.currentThread().getName();
+            boolean processingAsync = false;
 
             try {
                 Thread.currentThread().setName("HTTP Receiver Thread on " + getChannel().getName() + " (" + getChannelId() + ") < " + originalThreadName);
-                Map<String, Object> sourceMap = new HashMap<String, Object>();
-                List<Attachment> attachments = new ArrayList<Attachment>();
+                final Map<String, Object> sourceMap = new HashMap<String, Object>();
+                final List<Attachment> attachments = new ArrayList<Attachment>();
                 Object messageContent = null;
 
                 try {
                     messageContent = getMessage(baseRequest, sourceMap, attachments);
                 } catch (Throwable t) {
-                    sendErrorResponse(baseRequest, servletResponse, dispatchResult, t);
+                    sendErrorResponse(baseRequest, servletResponse, null, t);
                 }
 
                 if (messageContent != null) {
-                    if (isProcessBatch()) {
-                        if (messageContent instanceof byte[]) {
-                            BatchMessageException e = new BatchMessageException("Batch processing is not supported for binary data.");
-                            logger.error(e.getMessage() + " (channel: " + ChannelController.getInstance().getDeployedChannelById(getChannelId()).getName() + ")", e);
-                            eventController.dispatchEvent(new ErrorEvent(getChannelId(), getMetaDataId(), null, ErrorEventType.SOURCE_CONNECTOR, getSourceName(), getConnectorProperties().getName(), null, e));
-                        } else {
-                            try {
-                                BatchRawMessage batchRawMessage = new BatchRawMessage(new BatchMessageReader((String) messageContent), sourceMap, attachments);
-                                ResponseHandler responseHandler = new SimpleResponseHandler();
+                    ThreadPoolExecutor executor = HttpReceiver.this.executor;
 
-                                dispatchBatchMessage(batchRawMessage, responseHandler);
+                    if (executor != null) {
+                        // Release the Jetty thread while the message is processed, and send the response when it's done
+                        AsyncContext asyncContext = baseRequest.startAsync();
+                        asyncContext.setTimeout(0);
+                        AsyncRequestTask task = new AsyncRequestTask(asyncContext, baseRequest, servletResponse, messageContent, sourceMap, attachments);
 
-                                dispatchResult = responseHandler.getResultForResponse();
-                                sendResponse(baseRequest, servletResponse, dispatchResult);
-                            } catch (Throwable t) {
-                                sendErrorResponse(baseRequest, servletResponse, dispatchResult, t);
-                            }
-                        }
-                    } else {
                         try {
-                            RawMessage rawMessage = null;
-                            if (messageContent instanceof byte[]) {
-                                rawMessage = new RawMessage((byte[]) messageContent, null, sourceMap, attachments);
-                            } else {
-                                rawMessage = new RawMessage((String) messageContent, null, sourceMap, attachments);
-                            }
-
-                            dispatchResult = dispatchRawMessage(rawMessage);
-
-                            sendResponse(baseRequest, servletResponse, dispatchResult);
-                        } catch (Throwable t) {
-                            sendErrorResponse(baseRequest, servletResponse, dispatchResult, t);
-                        } finally {
-                            finishDispatch(dispatchResult);
+                            executor.execute(task);
+                            processingAsync = true;
+                        } catch (RejectedExecutionException e) {
+                            // The receiver is stopping, or too many requests are already waiting
+                            task.reject();
+                            processingAsync = true;
                         }
+                    } else {
+                        dispatchMessage(baseRequest, servletResponse, messageContent, sourceMap, attachments);
                     }
                 }
             } finally {
-                eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.IDLE));
+                if (!processingAsync) {
+                    eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.IDLE));
+                }
                 Thread.currentThread().setName(originalThreadName);
             }
             baseRequest.setHandled(true);
         }
     }
 
+    /*
+     * Processes a request on a processing thread and completes its asynchronous context when done.
+     * A request that is never processed is completed with a 503 instead.
+     */
+    private class AsyncRequestTask implements Runnable {
+        private AsyncContext asyncContext;
+        private Request baseRequest;
+        private HttpServletResponse servletResponse;
+        private Object messageContent;
+        private Map<String, Object> sourceMap;
+        private List<Attachment> attachments;
+
+        AsyncRequestTask(AsyncContext asyncContext, Request baseRequest, HttpServletResponse servletResponse, Object messageContent, Map<String, Object> sourceMap, List<Attachment> attachments) {
+            this.asyncContext = asyncContext;
+            this.baseRequest = baseRequest;
+            this.servletResponse = servletResponse;
+            this.messageContent = messageContent;
+            this.sourceMap = sourceMap;
+            this.attachments = attachments;
+        }
+
+        @Override
+        public void run() {
+            try {
+                dispatchMessage(baseRequest, servletResponse, messageContent, sourceMap, attachments);
+            } catch (Throwable t) {
+                logger.debug("Error sending HTTP response (" + getConnectorProperties().getName() + " \"Source\" on channel " + getChannelId() + ").", t);
+            } finally {
+                eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.IDLE));
+                asyncContext.complete();
+            }
+        }
+
+        void reject() {
+            try {
+                if (messageContent instanceof SpooledRequestBody) {
+                    ((SpooledRequestBody) messageContent).dispose();
+                }
+
+                servletResponse.setStatus(HttpStatus.SC_SERVICE_UNAVAILABLE);
+            } finally {
+                eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.IDLE));
+                asyncContext.complete();
+            }
+        }
+    }
+
+    private void dispatchMessage(Request baseRequest, HttpServletResponse servletResponse, Object messageContent, Map<String, Object> sourceMap, List<Attachment> attachments) throws IOException {
+        DispatchResult dispatchResult = null;
+        SpooledRequestBody requestBody = messageContent instanceof SpooledRequestBody ? (SpooledRequestBody) messageContent : null;
+
+        try {
+            if (isProcessBatch()) {
+                if (messageContent instanceof byte[] || (requestBody != null && requestBody.isBinary())) {
+                    BatchMessageException e = new BatchMessageException("Batch processing is not supported for binary data.");
+                    logger.error(e.getMessage() + " (channel: " + ChannelController.getInstance().getDeployedChannelById(getChannelId()).getName() + ")", e);
+                    eventController.dispatchEvent(new ErrorEvent(getChannelId(), getMetaDataId(), null, ErrorEventType.SOURCE_CONNECTOR, getSourceName(), getConnectorProperties().getName(), null, e));
+                } else {
+                    try {
+                        // A streamed body is read by the batch adaptor straight from the spooled content
+                        BatchMessageReader batchMessageReader = requestBody != null ? new BatchMessageReader(requestBody.getReader()) : new BatchMessageReader((String) messageContent);
+                        BatchRawMessage batchRawMessage = new BatchRawMessage(batchMessageReader, sourceMap, attachments);
+                        ResponseHandler responseHandler = new SimpleResponseHandler();
+
+                        dispatchBatchMessage(batchRawMessage, responseHandler);
+
+                        dispatchResult = responseHandler.getResultForResponse();
+                        sendResponse(baseRequest, servletResponse, dispatchResult);
+                    } catch (Throwable t) {
+                        sendErrorResponse(baseRequest, servletResponse, dispatchResult, t);
+                    }
+                }
+            } else {
+                try {
+                    RawMessage rawMessage = null;
+                    if (requestBody != null) {
+                        // The body is stored as an attachment, and only its token is kept in the raw content
+                        Attachment attachment = requestBody.toAttachment();
+                        attachments.add(attachment);
+                        rawMessage = new RawMessage(attachment.getAttachmentId(), null, sourceMap, attachments);
+                    } else if (messageContent instanceof byte[]) {
+                        rawMessage = new RawMessage((byte[]) messageContent, null, sourceMap, attachments);
+                    } else {
+                        rawMessage = new RawMessage((String) messageContent, null, sourceMap, attachments);
+                    }
+
+                    dispatchResult = dispatchRawMessage(rawMessage);
+
+                    sendResponse(baseRequest, servletResponse, dispatchResult);
+                } catch (Throwable t) {
+                    sendErrorResponse(baseRequest, servletResponse, dispatchResult, t);
+                } finally {
+                    finishDispatch(dispatchResult);
+                }
+            }
+        } finally {
+            if (requestBody != null) {
+                requestBody.dispose();
+            }
+        }
+    }
+
     protected void sendResponse(Request baseRequest, HttpServletResponse servletResponse, DispatchResult dispatchResult) throws Exception {
         ContentType contentType = ContentType.parse(replaceValues(getConnectorProperties().getResponseContentType(), dispatchResult));
         if (!getConnectorProperties().isResponseDataTypeBinary() && contentType.getCharset() == null) {
@@ -538,6 +721,10 @@ public class HttpReceiver extends SourceConnector implements BinaryContentTypeRe
     }
 
     protected Object getMessage(Request request, Map<String, Object> sourceMap, List<Attachment> attachments) throws IOException, ChannelException, MessagingException, DonkeyElementException, ParserConfigurationException {
+        if (streamRequestBody) {
+            return getStreamedMessage(request, sourceMap);
+        }
+
         HttpRequestMessage requestMessage = createRequestMessage(request, false);
 
         /*
@@ -561,6 +748,24 @@ public class HttpReceiver extends SourceConnector implements BinaryContentTypeRe
         return rawMessageContent;
     }
 
+    /*
+     * Spools the request body without converting it, so that it can be handed to the batch adaptor
+     * or stored as an attachment without holding the whole body in memory.
+     */
+    private SpooledRequestBody getStreamedMessage(Request request, Map<String, Object> sourceMap) throws IOException, MessagingException {
+        HttpRequestMessage requestMessage = createRequestMessage(request, true);
+        ContentType contentType = requestMessage.getContentType();
+
+        SpooledRequestBody requestBody = new SpooledRequestBody(getRequestInputStream(request, requestMessage), SpooledRequestBody.DEFAULT_THRESHOLD, contentType.getMimeType(), isBinaryContentType(contentType), HttpMessageConverter.getDefaultHttpCharset(request.getCharacterEncoding()));
+        logger.debug("spooled HTTP request body of " + requestBody.getSize() + " bytes" + (requestBody.isInMemory() ? " in memory" : " to a temporary file"));
+
+        eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.RECEIVING));
+
+        populateSourceMap(request, requestMessage, sourceMap);
+
+        return requestBody;
+    }
+
     protected HttpRequestMessage createRequestMessage(Request request, boolean ignorePayload) throws IOException, MessagingException {
         // Only parse multipart if XML Body is selected and Parse Multipart is enabled
         boolean parseMultipart = getConnectorProperties().isXmlBody() && getConnectorProperties().isParseMultipart() && ServletFileUpload.isMultipartContent(request);
@@ -587,26 +792,7 @@ public class HttpReceiver extends SourceConnector implements BinaryContentTypeRe
         requestMessage.setContextPath(StringUtils.trimToEmpty(new URL(requestMessage.getRequestUrl()).getPath()));
 
         if (!ignorePayload) {
-            InputStream requestInputStream = request.getInputStream();
-            // If a security handler already consumed the entity, get it from the request attribute instead
-            try {
-                byte[] entity = (byte[]) request.getAttribute(EntityProvider.ATTRIBUTE_NAME);
-                if (entity != null) {
-                    requestInputStream = new ByteArrayInputStream(entity);
-                }
-            } catch (Exception e) {
-            }
-
-            // If the request is GZIP encoded, uncompress the content
-            List<String> contentEncodingList = requestMessage.getCaseInsensitiveHeaders().get(HTTP.CONTENT_ENCODING);
-            if (CollectionUtils.isNotEmpty(contentEncodingList)) {
-                for (String contentEncoding : contentEncodingList) {
-                    if (contentEncoding != null && (contentEncoding.equalsIgnoreCase("gzip") || contentEncoding.equalsIgnoreCase("x-gzip"))) {
-                        requestInputStream = new GZIPInputStream(requestInputStream);
-                        break;
-                    }
-                }
-            }
+            InputStream requestInputStream = getRequestInputStream(request, requestMessage);
 
             /*
              * First parse out the body of the HTTP request. Depending on the connector settings,
@@ -625,6 +811,31 @@ public class HttpReceiver extends SourceConnector implements BinaryContentTypeRe
         return requestMessage;
     }
 
+    protected InputStream getRequestInputStream(Request request, HttpRequestMessage requestMessage) throws IOException {
+        InputStream requestInputStream = request.getInputStream();
+        // If a security handler already consumed the entity, get it from the request attribute instead
+        try {
+            byte[] entity = (byte[]) request.getAttribute(EntityProvider.ATTRIBUTE_NAME);
+            if (entity != null) {
+                requestInputStream = new ByteArrayInputStream(entity);
+            }
+        } catch (Exception e) {
+        }
+
+        // If the request is GZIP encoded, uncompress the content
+        List<String> contentEncodingList = requestMessage.getCaseInsensitiveHeaders().get(HTTP.CONTENT_ENCODING);
+        if (CollectionUtils.isNotEmpty(contentEncodingList)) {
+            for (String contentEncoding : contentEncodingList) {
+                if (contentEncoding != null && (contentEncoding.equalsIgnoreCase("gzip") || contentEncoding.equalsIgnoreCase("x-gzip"))) {
+                    requestInputStream = new GZIPInputStream(requestInputStream);
+                    break;
+                }
+            }
+        }
+
+        return requestInputStream;
+    }
+
     protected void populateSourceMap(Request request, HttpRequestMessage requestMessage, Map<String, Object> sourceMap) {
         sourceMap.put("remoteAddress", requestMessage.getRemoteAddress());
         sourceMap.put("remotePort", request.getRemotePort());
@@ -31,6 +31,7 @@ public class HttpReceiverProperties extends ConnectorProperties implements Liste
     private boolean xmlBody;
     private boolean parseMultipart;
     private boolean includeMetadata;
+    private boolean streamRequestBody;
     private String binaryMimeTypes;
     private boolean binaryMimeTypesRegex;
     private String responseContentType;
@@ -42,6 +43,9 @@ public class HttpReceiverProperties extends ConnectorProperties implements Liste
     private String charset;
     private String contextPath;
     private String timeout;
+    private boolean sharedListener;
+    private boolean asyncProcessing;
+    private String processingThreads;
     private List<HttpStaticResource> staticResources;
 
     public HttpReceiverProperties() {
@@ -51,6 +55,7 @@ public class HttpReceiverProperties extends ConnectorProperties implements Liste
         this.xmlBody = false;
         this.parseMultipart = true;
         this.includeMetadata = false;
+        this.streamRequestBody = false;
         this.binaryMimeTypes = "application/.*(?<!json|xml)$|image/.*|video/.*|audio/.*";
         this.binaryMimeTypesRegex = true;
         this.responseContentType = "text/plain";
@@ -60,6 +65,9 @@ public class HttpReceiverProperties extends ConnectorProperties implements Liste
         this.charset = "UTF-8";
         this.contextPath = "";
         this.timeout = "30000";
+        this.sharedListener = false;
+        this.asyncProcessing = false;
+        this.processingThreads = "10";
         this.staticResources = new ArrayList<HttpStaticResource>();
         this.responseHeadersVariable = "";
         this.useResponseHeadersVariable = false;
@@ -89,6 +97,14 @@ public class HttpReceiverProperties extends ConnectorProperties implements Liste
         this.includeMetadata = includeMetadata;
     }
 
+    public boolean isStreamRequestBody() {
+        return streamRequestBody;
+    }
+
+    public void setStreamRequestBody(boolean streamRequestBody) {
+        this.streamRequestBody = streamRequestBody;
+    }
+
     public String getBinaryMimeTypes() {
         return binaryMimeTypes;
     }
@@ -177,6 +193,31 @@ public class HttpReceiverProperties extends ConnectorProperties implements Liste
         this.timeout = timeout;
     }
 
+    public boolean isSharedListener() {
+        return sharedListener;
+    }
+
+    public void setSharedListener(boolean sharedListener) {
+        this.sharedListener = sharedListener;
+    }
+
+    public boolean isAsyncProcessing() {
+        return asyncProcessing;
+    }
+
+    public void setAsyncProcessing(boolean asyncProcessing) {
+        this.asyncProcessing = asyncProcessing;
+    }
+
+    public String getProcessingThreads() {
+        // Channels serialized before this property existed
+        return processingThreads != null ? processingThreads : "10";
+    }
+
+    public void setProcessingThreads(String processingThreads) {
+        this.processingThreads = processingThreads;
+    }
+
     public List<HttpStaticResource> getStaticResources() {
         return staticResources;
     }
@@ -280,10 +321,14 @@ public class HttpReceiverProperties extends ConnectorProperties implements Liste
         Map<String, Object> purgedProperties = super.getPurgedProperties();
         purgedProperties.put("sourceConnectorProperties", sourceConnectorProperties.getPurgedProperties());
         purgedProperties.put("binaryMimeTypesRegex", binaryMimeTypesRegex);
+        purgedProperties.put("streamRequestBody", streamRequestBody);
         purgedProperties.put("responseDataTypeBinary", responseDataTypeBinary);
         purgedProperties.put("responseHeaderChars", responseHeaders.size());
         purgedProperties.put("charset", charset);
         purgedProperties.put("timeout", PurgeUtil.getNumericValue(timeout));
+        purgedProperties.put("sharedListener", sharedListener);
+        purgedProperties.put("asyncProcessing", asyncProcessing);
+        purgedProperties.put("processingThreads", PurgeUtil.getNumericValue(getProcessingThreads()));
         return purgedProperties;
     }
 }
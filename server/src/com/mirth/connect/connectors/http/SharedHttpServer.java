@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.connectors.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+/**
+ * A Jetty server shared by every HTTP Listener on the same host and port, so that they share one
+ * connector and thread pool instead of each having their own. Each listener registers its handlers
+ * under its base context path, and requests go to the listener with the longest matching context
+ * path. The server is started when the first listener registers and stopped when the last one is
+ * unregistered.
+ */
+class SharedHttpServer {
+
+    private static Logger logger = Logger.getLogger(SharedHttpServer.class);
+    private static Map<String, SharedHttpServer> servers = new HashMap<String, SharedHttpServer>();
+
+    private String key;
+    private Server server;
+
+    // Sorted by descending context path length, and replaced rather than modified
+    private volatile List<Registration> registrations = new ArrayList<Registration>();
+
+    private SharedHttpServer(String key, String host, int port, int idleTimeout) {
+        this.key = key;
+
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setHost(host);
+        connector.setPort(port);
+        connector.setIdleTimeout(idleTimeout);
+        server.addConnector(connector);
+        server.setHandler(new RoutingHandler());
+    }
+
+    /**
+     * Adds the handler for a listener's base context path to the server for the host and port,
+     * starting the server if this is the first listener on it. The idle timeout of the connector is
+     * taken from the first listener.
+     */
+    static synchronized Registration register(String host, int port, int idleTimeout, String contextPath, Handler handler) throws Exception {
+        String key = host + ":" + port;
+        SharedHttpServer sharedServer = servers.get(key);
+        boolean created = false;
+
+        if (sharedServer == null) {
+            sharedServer = new SharedHttpServer(key, host, port, idleTimeout);
+            created = true;
+        }
+
+        for (Registration registration : sharedServer.registrations) {
+            if (registration.contextPath.equals(contextPath)) {
+                throw new Exception("The base context path \"" + contextPath + "\" is already in use by another HTTP Listener on " + key + ".");
+            }
+        }
+
+        Registration registration = sharedServer.new Registration(contextPath, handler);
+        handler.setServer(sharedServer.server);
+        handler.start();
+
+        if (created) {
+            try {
+                logger.debug("Starting shared HTTP server with address: " + key);
+                sharedServer.server.start();
+            } catch (Exception e) {
+                handler.stop();
+                sharedServer.server.stop();
+                throw e;
+            }
+
+            servers.put(key, sharedServer);
+        }
+
+        List<Registration> registrations = new ArrayList<Registration>(sharedServer.registrations);
+        registrations.add(registration);
+        Collections.sort(registrations, new Comparator<Registration>() {
+            @Override
+            public int compare(Registration registration1, Registration registration2) {
+                return registration2.contextPath.length() - registration1.contextPath.length();
+            }
+        });
+        sharedServer.registrations = registrations;
+
+        return registration;
+    }
+
+    static synchronized int getServerCount() {
+        return servers.size();
+    }
+
+    /*
+     * Stops the server if no listeners are left on it.
+     */
+    private static synchronized void unregister(Registration registration) throws Exception {
+        SharedHttpServer sharedServer = registration.getServer();
+
+        List<Registration> registrations = new ArrayList<Registration>(sharedServer.registrations);
+        if (!registrations.remove(registration)) {
+            return;
+        }
+        sharedServer.registrations = registrations;
+
+        try {
+            registration.handler.stop();
+        } finally {
+            if (registrations.isEmpty()) {
+                servers.remove(sharedServer.key);
+                logger.debug("Stopping shared HTTP server with address: " + sharedServer.key);
+                sharedServer.server.stop();
+            }
+        }
+    }
+
+    class Registration {
+        private String contextPath;
+        private Handler handler;
+
+        private Registration(String contextPath, Handler handler) {
+            this.contextPath = contextPath;
+            this.handler = handler;
+        }
+
+        /**
+         * Removes the listener's handler. Requests already being handled by it are not affected.
+         */
+        void unregister() throws Exception {
+            SharedHttpServer.unregister(this);
+        }
+
+        private SharedHttpServer getServer() {
+            return SharedHttpServer.this;
+        }
+
+        private boolean matches(String target) {
+            return contextPath.isEmpty() || target.equals(contextPath) || target.startsWith(contextPath + "/");
+        }
+    }
+
+    private class RoutingHandler extends AbstractHandler {
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+            for (Registration registration : registrations) {
+                if (registration.matches(target)) {
+                    // Only the most specific listener gets the request, as if it had its own server
+                    registration.handler.handle(target, baseRequest, request, response);
+                    return;
+                }
+            }
+        }
+    }
+}
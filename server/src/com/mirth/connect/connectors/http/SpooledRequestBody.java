@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.connectors.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Base64InputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ReaderInputStream;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+
+import com.mirth.connect.donkey.model.message.attachment.Attachment;
+import com.mirth.connect.donkey.server.Constants;
+import com.mirth.connect.server.util.ServerUUIDGenerator;
+
+/**
+ * An HTTP request body that has been read off the connection without being converted to a string.
+ * Bodies up to the threshold are kept in memory, and larger ones are written to a temporary file.
+ * The body must be disposed once the message has been dispatched.
+ */
+class SpooledRequestBody {
+
+    static final int DEFAULT_THRESHOLD = 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private DeferredFileOutputStream output;
+    private String mimeType;
+    private boolean binary;
+    private String charset;
+    private List<Closeable> openStreams = new ArrayList<Closeable>();
+
+    SpooledRequestBody(InputStream inputStream, int threshold, String mimeType, boolean binary, String charset) throws IOException {
+        this.mimeType = mimeType;
+        this.binary = binary;
+        this.charset = charset;
+
+        output = new DeferredFileOutputStream(threshold, "HttpReceiver", ".tmp", null);
+
+        try {
+            IOUtils.copyLarge(inputStream, output, new byte[BUFFER_SIZE]);
+            output.close();
+        } catch (IOException e) {
+            IOUtils.closeQuietly(output);
+            dispose();
+            throw e;
+        }
+    }
+
+    long getSize() {
+        return output.getByteCount();
+    }
+
+    boolean isInMemory() {
+        return output.isInMemory();
+    }
+
+    boolean isBinary() {
+        return binary;
+    }
+
+    String getCharset() {
+        return charset;
+    }
+
+    synchronized InputStream getInputStream() throws IOException {
+        InputStream inputStream;
+
+        if (output.isInMemory()) {
+            inputStream = new ByteArrayInputStream(output.getData());
+        } else {
+            inputStream = new BufferedInputStream(new FileInputStream(output.getFile()), BUFFER_SIZE);
+        }
+
+        openStreams.add(inputStream);
+        return inputStream;
+    }
+
+    /**
+     * Returns a reader over the body decoded with the request charset, for batch processing.
+     */
+    Reader getReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(getInputStream(), charset), BUFFER_SIZE);
+    }
+
+    /**
+     * Creates an attachment holding the body. Binary bodies are stored Base64 encoded and text
+     * bodies are stored in the attachment charset, the same as the attachment handlers do, so that
+     * the body can be reattached by destinations.
+     */
+    Attachment toAttachment() throws IOException {
+        InputStream inputStream = getInputStream();
+        byte[] content;
+
+        if (binary) {
+            content = IOUtils.toByteArray(new Base64InputStream(inputStream, true, 0, null));
+        } else if (Charset.forName(charset).equals(Charset.forName(Constants.ATTACHMENT_CHARSET))) {
+            content = IOUtils.toByteArray(inputStream, getSize());
+        } else {
+            content = IOUtils.toByteArray(new ReaderInputStream(new InputStreamReader(inputStream, charset), Constants.ATTACHMENT_CHARSET));
+        }
+
+        return new Attachment(ServerUUIDGenerator.getUUID(), content, mimeType);
+    }
+
+    /**
+     * Closes any streams opened on the body and deletes the temporary file, if there is one.
+     */
+    synchronized void dispose() {
+        for (Closeable stream : openStreams) {
+            IOUtils.closeQuietly(stream);
+        }
+        openStreams.clear();
+
+        File file = output.getFile();
+        if (file != null) {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+}
@@ -0,0 +1,641 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.connectors.tcp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import com.mirth.connect.model.transmission.framemode.FrameStreamHandlerException;
+
+/**
+ * Accepts and reads TCP connections on a single selector thread, instead of a thread per
+ * connection. Bytes are read in blocks and split into frames on the start and end of message bytes.
+ * Each complete frame, including its start and end bytes, is handed to the frame handler on the
+ * given executor. Frames from the same connection are handled one at a time in the order they were
+ * received, so responses are written back in order. Reading from a connection is paused while too
+ * many of its frames are waiting to be handled.
+ */
+class NonBlockingTcpListener {
+
+    // The number of frames from one connection that may wait to be handled before reading is paused
+    private static final int MAX_QUEUED_FRAMES = 64;
+
+    private Logger logger = Logger.getLogger(this.getClass());
+
+    private ServerSocketChannel serverChannel;
+    private byte[] startOfMessageBytes;
+    private byte[] endOfMessageBytes;
+    private int bufferSize;
+    private int maxConnections;
+    private int timeout;
+    private Executor executor;
+    private FrameHandler handler;
+
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean running;
+    private Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<Runnable>();
+    private Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Handles the connections and frames of a NonBlockingTcpListener.
+     */
+    interface FrameHandler {
+
+        /**
+         * Called when a connection is accepted. If an exception is thrown the connection is closed.
+         */
+        void connected(Connection connection) throws IOException;
+
+        /**
+         * Handles a complete frame, including its start and end bytes. Returns false if the
+         * connection should be closed afterwards.
+         */
+        boolean frameReceived(Connection connection, byte[] frame) throws InterruptedException;
+
+        /**
+         * Called when nothing has been received on a connection for the receive timeout, and no
+         * frame is partially received. Returns true if the connection should be closed.
+         */
+        boolean idleTimeout(Connection connection);
+
+        /**
+         * Called when reading from a connection failed, or it ended or timed out in the middle of a
+         * frame. The connection is closed afterwards, once any frames already received from it have
+         * been handled if it ended.
+         */
+        void readError(Connection connection, IOException e);
+
+        void disconnected(Connection connection);
+    }
+
+    NonBlockingTcpListener(ServerSocketChannel serverChannel, byte[] startOfMessageBytes, byte[] endOfMessageBytes, int bufferSize, int maxConnections, int timeout, Executor executor, FrameHandler handler) {
+        this.serverChannel = serverChannel;
+        this.startOfMessageBytes = startOfMessageBytes;
+        this.endOfMessageBytes = endOfMessageBytes;
+        this.bufferSize = bufferSize > 0 ? bufferSize : 65536;
+        this.maxConnections = maxConnections;
+        this.timeout = timeout;
+        this.executor = executor;
+        this.handler = handler;
+    }
+
+    void start(String threadName) throws IOException {
+        selector = Selector.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+
+        thread = new Thread(threadName) {
+            @Override
+            public void run() {
+                try {
+                    select();
+                } catch (Throwable t) {
+                    logger.error("Error selecting TCP connections.", t);
+                } finally {
+                    closeQuietly();
+                }
+            }
+        };
+
+        thread.start();
+    }
+
+    /**
+     * Stops accepting and reading from connections. Frames already received may still be handled,
+     * and responses may still be written until the connections are closed.
+     */
+    void stop() throws InterruptedException {
+        running = false;
+
+        if (selector != null) {
+            selector.wakeup();
+        }
+
+        if (thread != null && thread.isAlive()) {
+            thread.join();
+        }
+    }
+
+    void closeConnections() {
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    Set<Connection> getConnections() {
+        return connections;
+    }
+
+    private void select() throws IOException {
+        // Wake up regularly to check for idle connections
+        long selectTimeout = timeout > 0 ? Math.max(Math.min(timeout / 2, 1000), 1) : 0;
+
+        while (running) {
+            selector.select(selectTimeout);
+
+            Runnable task;
+            while ((task = selectorTasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (CancelledKeyException e) {
+                    // The connection was closed before the task ran
+                }
+            }
+
+            for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext();) {
+                SelectionKey key = it.next();
+                it.remove();
+
+                if (!key.isValid()) {
+                    continue;
+                }
+
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+
+                Connection connection = (Connection) key.attachment();
+
+                try {
+                    if (key.isWritable()) {
+                        connection.writable();
+                    }
+
+                    if (key.isValid() && key.isReadable()) {
+                        connection.read();
+                    }
+                } catch (CancelledKeyException e) {
+                    // The connection was closed by an executor thread
+                } catch (IOException e) {
+                    handler.readError(connection, e);
+                    connection.close();
+                }
+            }
+
+            if (timeout > 0) {
+                checkTimeouts();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+
+        while ((channel = serverChannel.accept()) != null) {
+            if (connections.size() >= maxConnections) {
+                logger.debug("Maximum number of connections reached, closing new connection from " + channel.socket().getRemoteSocketAddress() + ".");
+                channel.close();
+                continue;
+            }
+
+            Connection connection = new Connection(channel);
+
+            try {
+                channel.configureBlocking(false);
+                handler.connected(connection);
+            } catch (IOException e) {
+                logger.debug("Error initializing socket.", e);
+                channel.close();
+                continue;
+            }
+
+            connections.add(connection);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void checkTimeouts() {
+        long now = System.currentTimeMillis();
+
+        for (Connection connection : connections) {
+            if (!connection.isProcessing() && now - connection.lastReadTime >= timeout) {
+                connection.lastReadTime = now;
+
+                if (connection.hasPartialFrame()) {
+                    handler.readError(connection, connection.incompleteFrameException(new SocketTimeoutException("Read timed out")));
+                    connection.close();
+                } else if (handler.idleTimeout(connection)) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private void runOnSelector(Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+
+    private void closeQuietly() {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            logger.debug("Error closing server socket.", e);
+        }
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.debug("Error closing selector.", e);
+        }
+    }
+
+    /**
+     * Returns the index of the first occurrence of the given bytes in the array between from
+     * (inclusive) and to (exclusive), or -1 if it doesn't occur.
+     */
+    static int indexOf(byte[] array, int from, int to, byte[] bytes) {
+        if (bytes.length == 0) {
+            return from;
+        }
+
+        byte first = bytes[0];
+        int last = to - bytes.length;
+
+        for (int i = from; i <= last; i++) {
+            // Most of the block is skipped over here looking for the first byte
+            if (array[i] != first) {
+                while (++i <= last && array[i] != first);
+            }
+
+            if (i <= last) {
+                int j = 1;
+                while (j < bytes.length && array[i + j] == bytes[j]) {
+                    j++;
+                }
+
+                if (j == bytes.length) {
+                    return i;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    class Connection implements Runnable {
+        private SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer readBuffer;
+        private OutputStream outputStream;
+        private volatile long lastReadTime = System.currentTimeMillis();
+        private AtomicBoolean closed = new AtomicBoolean(false);
+
+        // Received bytes that aren't part of a complete frame yet
+        private byte[] pending = new byte[0];
+        private int pendingStart;
+        private int pendingEnd;
+        private boolean inFrame;
+        private int searchFrom;
+
+        // Guarded by this connection
+        private Queue<byte[]> frames = new ArrayDeque<byte[]>();
+        private boolean processing;
+        private boolean readPaused;
+        private boolean endOfStream;
+
+        private Object writeLock = new Object();
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+            readBuffer = ByteBuffer.allocate(bufferSize);
+            outputStream = new ConnectionOutputStream();
+        }
+
+        Socket getSocket() {
+            return channel.socket();
+        }
+
+        /**
+         * Returns a stream that writes to the connection each time it is flushed.
+         */
+        OutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        boolean isOpen() {
+            return !closed.get() && channel.isOpen();
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                connections.remove(this);
+
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.debug("Error closing client socket.", e);
+                }
+
+                synchronized (writeLock) {
+                    writeLock.notifyAll();
+                }
+
+                handler.disconnected(this);
+            }
+        }
+
+        /*
+         * Called on the selector thread when the channel has bytes to read.
+         */
+        private void read() throws IOException {
+            int read = channel.read(readBuffer);
+
+            if (read < 0) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+
+                if (hasPartialFrame()) {
+                    handler.readError(this, incompleteFrameException(null));
+                }
+
+                // Close once the frames already received have been handled
+                synchronized (this) {
+                    endOfStream = true;
+
+                    if (processing) {
+                        return;
+                    }
+                }
+
+                close();
+                return;
+            }
+
+            if (read == 0) {
+                return;
+            }
+
+            lastReadTime = System.currentTimeMillis();
+            append(readBuffer.array(), readBuffer.position());
+            readBuffer.clear();
+
+            boolean schedule = false;
+            byte[] frame;
+
+            while ((frame = nextFrame()) != null) {
+                synchronized (this) {
+                    frames.add(frame);
+
+                    if (!processing) {
+                        processing = true;
+                        schedule = true;
+                    }
+
+                    if (frames.size() >= MAX_QUEUED_FRAMES && !readPaused) {
+                        readPaused = true;
+                        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    }
+                }
+            }
+
+            if (schedule) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    logger.debug("Executor rejected frames from " + channel.socket().getRemoteSocketAddress() + ".", e);
+                    close();
+                }
+            }
+        }
+
+        private void append(byte[] bytes, int length) {
+            if (pendingEnd + length > pending.length) {
+                int pendingLength = pendingEnd - pendingStart;
+
+                if (pendingLength + length > pending.length) {
+                    pending = Arrays.copyOfRange(pending, pendingStart, pendingStart + Math.max(pending.length * 2, pendingLength + length));
+                } else {
+                    System.arraycopy(pending, pendingStart, pending, 0, pendingLength);
+                }
+
+                searchFrom -= pendingStart;
+                pendingStart = 0;
+                pendingEnd = pendingLength;
+            }
+
+            System.arraycopy(bytes, 0, pending, pendingEnd, length);
+            pendingEnd += length;
+        }
+
+        /*
+         * Returns the next complete frame in the pending bytes, or null if there isn't one yet.
+         */
+        private byte[] nextFrame() {
+            if (!inFrame) {
+                if (pendingEnd == pendingStart) {
+                    return null;
+                }
+
+                int start = indexOf(pending, pendingStart, pendingEnd, startOfMessageBytes);
+
+                if (start < 0) {
+                    // Anything before the start of message bytes is discarded, except the beginning of them
+                    pendingStart = Math.max(pendingStart, pendingEnd - startOfMessageBytes.length + 1);
+                    return null;
+                }
+
+                pendingStart = start;
+                searchFrom = start + startOfMessageBytes.length;
+                inFrame = true;
+            }
+
+            int end = indexOf(pending, searchFrom, pendingEnd, endOfMessageBytes);
+
+            if (end < 0) {
+                searchFrom = Math.max(searchFrom, pendingEnd - endOfMessageBytes.length + 1);
+                return null;
+            }
+
+            int frameEnd = end + endOfMessageBytes.length;
+            byte[] frame = Arrays.copyOfRange(pending, pendingStart, frameEnd);
+            pendingStart = frameEnd;
+            inFrame = false;
+
+            return frame;
+        }
+
+        private boolean hasPartialFrame() {
+            return inFrame;
+        }
+
+        private IOException incompleteFrameException(IOException cause) {
+            int length = Math.min(pendingEnd - pendingStart, endOfMessageBytes.length);
+            return new FrameStreamHandlerException(false, endOfMessageBytes, Arrays.copyOfRange(pending, pendingEnd - length, pendingEnd), cause);
+        }
+
+        private synchronized boolean isProcessing() {
+            return processing;
+        }
+
+        /*
+         * Handles the queued frames one at a time on an executor thread.
+         */
+        @Override
+        public void run() {
+            for (;;) {
+                byte[] frame;
+
+                synchronized (this) {
+                    frame = frames.poll();
+
+                    if (frame == null || closed.get()) {
+                        processing = false;
+
+                        if (endOfStream || closed.get()) {
+                            break;
+                        }
+
+                        return;
+                    }
+
+                    if (readPaused && frames.size() < MAX_QUEUED_FRAMES / 2) {
+                        readPaused = false;
+                        runOnSelector(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (key.isValid()) {
+                                    key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                                }
+                            }
+                        });
+                    }
+                }
+
+                boolean keepOpen = false;
+
+                try {
+                    keepOpen = handler.frameReceived(this, frame);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable t) {
+                    logger.error("Error handling message from " + channel.socket().getRemoteSocketAddress() + ".", t);
+                } finally {
+                    // Reading could have timed out while the frame was handled
+                    lastReadTime = System.currentTimeMillis();
+                }
+
+                if (!keepOpen || !isOpen()) {
+                    break;
+                }
+            }
+
+            close();
+        }
+
+        /*
+         * Called on the selector thread when the channel can be written to again.
+         */
+        private void writable() {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+
+            synchronized (writeLock) {
+                writeLock.notifyAll();
+            }
+        }
+
+        /*
+         * Writes all of the bytes, waiting for the selector whenever the socket's send buffer is
+         * full. Once the listener is stopped the socket is polled instead.
+         */
+        private void write(ByteBuffer buffer) throws IOException {
+            synchronized (writeLock) {
+                long waitStart = 0;
+
+                while (buffer.hasRemaining()) {
+                    if (!isOpen()) {
+                        throw new ClosedChannelException();
+                    }
+
+                    if (channel.write(buffer) > 0) {
+                        waitStart = 0;
+                        continue;
+                    }
+
+                    if (waitStart == 0) {
+                        waitStart = System.currentTimeMillis();
+                    } else if (timeout > 0 && System.currentTimeMillis() - waitStart >= timeout) {
+                        throw new SocketTimeoutException("Write timed out");
+                    }
+
+                    if (running) {
+                        runOnSelector(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (key.isValid()) {
+                                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                                }
+                            }
+                        });
+                    }
+
+                    try {
+                        writeLock.wait(running ? 1000 : 10);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while writing.", e);
+                    }
+                }
+            }
+        }
+
+        private class ConnectionOutputStream extends OutputStream {
+            private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+            @Override
+            public void write(int b) {
+                buffer.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                buffer.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (buffer.size() > 0) {
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+                    buffer.reset();
+                    Connection.this.write(bytes);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,591 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.connectors.tcp;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+import com.mirth.connect.donkey.server.message.StreamHandler;
+import com.mirth.connect.model.transmission.TransmissionModeProperties;
+import com.mirth.connect.model.transmission.batch.DefaultBatchStreamReader;
+import com.mirth.connect.plugins.TransmissionModeProvider;
+
+/**
+ * A pool of open connections for each remote endpoint of a TCP Sender. Several messages may be
+ * outstanding on a connection at once. Their responses are matched back to them by the HL7 v2
+ * message control ID (MSA-2 in the response, MSH-10 in the message), or in the order the messages
+ * were sent if there is no control ID.
+ *
+ * Responses are read by whichever sending thread is waiting first, so no reader thread is needed.
+ * Idle connections and response timeouts are driven by a shared timer wheel.
+ */
+class TcpConnectionPool {
+
+    private Logger logger = Logger.getLogger(this.getClass());
+
+    private TransmissionModeProvider transmissionModeProvider;
+    private TransmissionModeProperties transmissionModeProperties;
+    private ConnectionHandler handler;
+    private TimerWheel timerWheel;
+    private int maxConnections;
+    private int maxOutstanding;
+    private int bufferSize;
+    private String charsetEncoding;
+
+    // Guarded by this pool
+    private Map<String, Endpoint> endpoints = new HashMap<String, Endpoint>();
+    private boolean closed;
+
+    /**
+     * Opens and tracks the connections of the pool.
+     */
+    interface ConnectionHandler {
+
+        /**
+         * Creates and connects a new socket to the endpoint in the given properties.
+         */
+        Socket connect(TcpDispatcherProperties connectorProperties) throws Exception;
+
+        void disconnected(Socket socket);
+    }
+
+    TcpConnectionPool(TransmissionModeProvider transmissionModeProvider, TransmissionModeProperties transmissionModeProperties, ConnectionHandler handler, TimerWheel timerWheel, int maxConnections, int maxOutstanding, int bufferSize, String charsetEncoding) {
+        this.transmissionModeProvider = transmissionModeProvider;
+        this.transmissionModeProperties = transmissionModeProperties;
+        this.handler = handler;
+        this.timerWheel = timerWheel;
+        this.maxConnections = Math.max(maxConnections, 1);
+        this.maxOutstanding = Math.max(maxOutstanding, 1);
+        this.bufferSize = bufferSize;
+        this.charsetEncoding = charsetEncoding;
+    }
+
+    /**
+     * Reserves a slot for one message on a connection to the given endpoint. An idle connection is
+     * used first, then a new connection if the endpoint has fewer than the maximum, and then the
+     * least busy connection that has fewer than the maximum outstanding messages. Otherwise this
+     * waits until a slot is released. The slot must be released afterwards.
+     */
+    Connection acquire(String key, TcpDispatcherProperties connectorProperties) throws Exception {
+        Endpoint endpoint;
+
+        synchronized (this) {
+            for (;;) {
+                if (closed) {
+                    throw new IOException("The connection pool has been closed.");
+                }
+
+                endpoint = endpoints.get(key);
+                if (endpoint == null) {
+                    endpoint = new Endpoint();
+                    endpoints.put(key, endpoint);
+                }
+
+                Connection leastBusy = null;
+                for (Connection connection : endpoint.connections) {
+                    if (connection.isOpen() && (leastBusy == null || connection.outstanding < leastBusy.outstanding)) {
+                        leastBusy = connection;
+                    }
+                }
+
+                if (leastBusy != null && leastBusy.outstanding == 0) {
+                    return leastBusy.reserve();
+                }
+
+                if (endpoint.connections.size() + endpoint.connecting < maxConnections) {
+                    endpoint.connecting++;
+                    break;
+                }
+
+                if (leastBusy != null && leastBusy.outstanding < maxOutstanding) {
+                    return leastBusy.reserve();
+                }
+
+                wait();
+            }
+        }
+
+        // Connect outside of the lock, since it can take a while
+        Connection connection = null;
+
+        try {
+            connection = new Connection(key, handler.connect(connectorProperties));
+        } catch (Exception e) {
+            synchronized (this) {
+                endpoint.connecting--;
+                notifyAll();
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            endpoint.connecting--;
+
+            // The endpoint is only removed while nothing is connecting to it
+            if (!closed) {
+                // Wake up anything waiting for this connection to be shared
+                endpoint.connections.add(connection);
+                notifyAll();
+                return connection.reserve();
+            }
+
+            notifyAll();
+        }
+
+        connection.close(new IOException("The connection pool has been closed."));
+        throw new IOException("The connection pool has been closed.");
+    }
+
+    /**
+     * Closes every connection. Messages that are still waiting for responses fail.
+     */
+    void close() {
+        List<Connection> connections = new ArrayList<Connection>();
+
+        synchronized (this) {
+            closed = true;
+
+            for (Endpoint endpoint : endpoints.values()) {
+                connections.addAll(endpoint.connections);
+            }
+
+            notifyAll();
+        }
+
+        for (Connection connection : connections) {
+            connection.close(new IOException("The connection pool has been closed."));
+        }
+    }
+
+    synchronized int getConnectionCount() {
+        int count = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            count += endpoint.connections.size();
+        }
+        return count;
+    }
+
+    private synchronized void remove(Connection connection) {
+        Endpoint endpoint = endpoints.get(connection.key);
+
+        if (endpoint != null && endpoint.connections.remove(connection)) {
+            if (endpoint.connections.isEmpty() && endpoint.connecting == 0) {
+                endpoints.remove(connection.key);
+            }
+
+            notifyAll();
+        }
+    }
+
+    /*
+     * Closes the connection if it's still idle after the send timeout.
+     */
+    private void closeIfIdle(Connection connection, long releases) {
+        synchronized (this) {
+            if (connection.outstanding > 0 || connection.releases != releases) {
+                return;
+            }
+
+            connection.idleTimeout = null;
+        }
+
+        logger.debug("Closing idle connection to " + SocketUtil.getInetAddress(connection.socket) + ".");
+        connection.close(null);
+    }
+
+    /**
+     * Returns the control ID from MSH-10 of an ER7-encoded HL7 v2 message, or null if there isn't
+     * one.
+     */
+    static String getMessageControlId(String message) {
+        return getField(message, "MSH", 10);
+    }
+
+    /**
+     * Returns the control ID from MSA-2 of an ER7-encoded HL7 v2 acknowledgement, or null if there
+     * isn't one.
+     */
+    static String getAcknowledgedControlId(String response) {
+        return getField(response, "MSA", 2);
+    }
+
+    /*
+     * Returns a field of the first segment with the given name, or null if it's empty or missing.
+     */
+    private static String getField(String message, String segmentName, int field) {
+        if (message == null) {
+            return null;
+        }
+
+        int index = -1;
+
+        if (message.startsWith(segmentName)) {
+            index = 0;
+        } else {
+            for (int i = message.indexOf(segmentName); i > 0; i = message.indexOf(segmentName, i + 1)) {
+                char previous = message.charAt(i - 1);
+
+                if (previous == '\r' || previous == '\n') {
+                    index = i;
+                    break;
+                }
+            }
+        }
+
+        index += segmentName.length();
+        if (index < segmentName.length() || index >= message.length()) {
+            return null;
+        }
+
+        // MSH-1 is the field separator itself, so the separator after the segment name comes before MSH-2
+        char fieldSeparator = message.charAt(index);
+        int separators = segmentName.equals("MSH") ? field - 2 : field - 1;
+
+        for (int i = 0; i < separators; i++) {
+            index = getFieldEnd(message, index + 1, fieldSeparator);
+
+            if (index >= message.length() || message.charAt(index) != fieldSeparator) {
+                return null;
+            }
+        }
+
+        return StringUtils.trimToNull(message.substring(index + 1, getFieldEnd(message, index + 1, fieldSeparator)));
+    }
+
+    private static int getFieldEnd(String message, int index, char fieldSeparator) {
+        while (index < message.length()) {
+            char c = message.charAt(index);
+
+            if (c == fieldSeparator || c == '\r' || c == '\n') {
+                break;
+            }
+
+            index++;
+        }
+
+        return index;
+    }
+
+    private class Endpoint {
+        private List<Connection> connections = new ArrayList<Connection>();
+        private int connecting;
+    }
+
+    /**
+     * A response that a message sent on a connection is waiting for.
+     */
+    class Pending {
+        private String controlId;
+        private TimerWheel.Timeout responseTimeout;
+
+        // Guarded by the connection
+        private boolean done;
+        private byte[] response;
+        private IOException exception;
+
+        private Pending(String controlId) {
+            this.controlId = controlId;
+        }
+    }
+
+    class Connection {
+        private String key;
+        private Socket socket;
+        private OutputStream outputStream;
+        private Object writeLock = new Object();
+
+        // Guarded by the pool
+        private int outstanding;
+        private long releases;
+        private TimerWheel.Timeout idleTimeout;
+
+        // Guarded by this connection
+        private ArrayDeque<Pending> pending = new ArrayDeque<Pending>();
+        private boolean reading;
+        private IOException closedException;
+
+        private Connection(String key, Socket socket) throws IOException {
+            this.key = key;
+            this.socket = socket;
+
+            try {
+                outputStream = new BufferedOutputStream(socket.getOutputStream(), bufferSize);
+            } catch (IOException e) {
+                SocketUtil.closeSocket(socket);
+                handler.disconnected(socket);
+                throw e;
+            }
+        }
+
+        Socket getSocket() {
+            return socket;
+        }
+
+        synchronized boolean isOpen() {
+            return closedException == null && !socket.isClosed();
+        }
+
+        /*
+         * Called with the pool locked.
+         */
+        private Connection reserve() {
+            outstanding++;
+
+            if (idleTimeout != null) {
+                idleTimeout.cancel();
+                idleTimeout = null;
+            }
+
+            return this;
+        }
+
+        /**
+         * Releases the slot reserved by acquire. If nothing else is outstanding on the connection,
+         * it's closed after the idle timeout, if there is one.
+         */
+        void release(long idleTimeoutMillis) {
+            synchronized (TcpConnectionPool.this) {
+                outstanding--;
+
+                if (outstanding == 0 && idleTimeoutMillis > 0) {
+                    final long idleReleases = ++releases;
+
+                    idleTimeout = timerWheel.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            closeIfIdle(Connection.this, idleReleases);
+                        }
+                    }, idleTimeoutMillis);
+                }
+
+                TcpConnectionPool.this.notifyAll();
+            }
+        }
+
+        /**
+         * Writes the message, and returns the response it's waiting for. If the response isn't
+         * needed, null is returned instead.
+         */
+        Pending write(byte[] bytes, String controlId, boolean waitForResponse, int responseTimeoutMillis) throws IOException {
+            Pending response = null;
+
+            synchronized (writeLock) {
+                if (waitForResponse) {
+                    // Register before writing so a fast response can't arrive first
+                    response = new Pending(controlId);
+
+                    synchronized (this) {
+                        if (closedException != null) {
+                            throw closedException;
+                        }
+                        pending.add(response);
+                    }
+
+                    if (responseTimeoutMillis > 0) {
+                        final Pending timedResponse = response;
+                        response.responseTimeout = timerWheel.schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                close(new SocketTimeoutException("Timed out waiting for a response."), timedResponse);
+                            }
+                        }, responseTimeoutMillis);
+                    }
+                }
+
+                try {
+                    StreamHandler streamHandler = transmissionModeProvider.getStreamHandler(socket.getInputStream(), outputStream, new DefaultBatchStreamReader(socket.getInputStream()), transmissionModeProperties);
+                    streamHandler.write(bytes);
+                    outputStream.flush();
+                } catch (IOException e) {
+                    close(e);
+                    throw e;
+                }
+            }
+
+            return response;
+        }
+
+        /**
+         * Waits for the response. If no other thread is reading from the connection, this thread
+         * reads responses and hands them to the messages they belong to until its own arrives.
+         */
+        byte[] read(Pending response) throws IOException, InterruptedException {
+            for (;;) {
+                synchronized (this) {
+                    while (!response.done && reading) {
+                        wait();
+                    }
+
+                    if (response.done) {
+                        if (response.exception != null) {
+                            throw response.exception;
+                        }
+                        return response.response;
+                    }
+
+                    reading = true;
+                }
+
+                try {
+                    StreamHandler streamHandler = transmissionModeProvider.getStreamHandler(socket.getInputStream(), outputStream, new DefaultBatchStreamReader(socket.getInputStream()), transmissionModeProperties);
+                    byte[] bytes = streamHandler.read();
+
+                    synchronized (writeLock) {
+                        streamHandler.commit(true);
+                    }
+
+                    if (bytes == null) {
+                        // The remote side closed the connection, so this is the last response
+                        complete(bytes);
+                        close(new IOException("Connection closed by the remote host before a response was received."));
+                    } else {
+                        complete(bytes);
+                    }
+                } catch (IOException e) {
+                    close(e);
+                } finally {
+                    synchronized (this) {
+                        reading = false;
+                        notifyAll();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Discards any bytes the remote side sent that nobody is waiting for.
+         */
+        void skipAvailable() {
+            synchronized (this) {
+                if (reading || !pending.isEmpty()) {
+                    return;
+                }
+            }
+
+            try {
+                socket.getInputStream().skip(socket.getInputStream().available());
+            } catch (IOException e) {
+                logger.warn("Error flushing socket input stream.", e);
+            }
+        }
+
+        /*
+         * Hands a response to the message with the same control ID, or to the oldest message if
+         * there isn't one.
+         */
+        private void complete(byte[] bytes) {
+            Pending response = null;
+
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    logger.debug("Discarding response from " + SocketUtil.getInetAddress(socket) + " that no message is waiting for.");
+                    return;
+                }
+
+                if (bytes != null && pending.size() > 1) {
+                    String controlId = null;
+
+                    try {
+                        controlId = getAcknowledgedControlId(new String(bytes, charsetEncoding));
+                    } catch (IOException e) {
+                        logger.debug("Unable to decode response.", e);
+                    }
+
+                    if (controlId != null) {
+                        for (Iterator<Pending> it = pending.iterator(); it.hasNext();) {
+                            Pending candidate = it.next();
+
+                            if (controlId.equals(candidate.controlId)) {
+                                it.remove();
+                                response = candidate;
+                                break;
+                            }
+                        }
+                    }
+                }
+
+                if (response == null) {
+                    response = pending.poll();
+                }
+
+                response.done = true;
+                response.response = bytes;
+                notifyAll();
+            }
+
+            if (response.responseTimeout != null) {
+                response.responseTimeout.cancel();
+            }
+        }
+
+        void close(IOException cause) {
+            close(cause, null);
+        }
+
+        /*
+         * Closes the connection and fails everything still waiting for a response. The given
+         * response, if any, fails with the cause, and the others with a connection closed error.
+         */
+        private void close(IOException cause, Pending failed) {
+            List<Pending> failedResponses;
+
+            synchronized (this) {
+                // A response that timed out could have arrived just before
+                if (closedException != null || (failed != null && failed.done)) {
+                    return;
+                }
+
+                closedException = cause != null ? cause : new IOException("Connection closed.");
+                failedResponses = new ArrayList<Pending>(pending);
+                pending.clear();
+
+                for (Pending response : failedResponses) {
+                    response.done = true;
+
+                    if (failed == null || response == failed) {
+                        response.exception = closedException;
+                    } else {
+                        response.exception = new IOException("Connection closed because another message timed out waiting for a response.", closedException);
+                    }
+                }
+
+                notifyAll();
+            }
+
+            for (Pending response : failedResponses) {
+                if (response.responseTimeout != null) {
+                    response.responseTimeout.cancel();
+                }
+            }
+
+            remove(this);
+
+            try {
+                SocketUtil.closeSocket(socket);
+            } catch (IOException e) {
+                logger.debug("Error closing socket.", e);
+            }
+
+            handler.disconnected(socket);
+        }
+    }
+}
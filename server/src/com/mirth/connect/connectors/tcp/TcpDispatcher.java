@@ -21,6 +21,7 @@ import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -47,9 +48,11 @@ import com.mirth.connect.donkey.server.event.ErrorEvent;
 import com.mirth.connect.donkey.server.message.StreamHandler;
 import com.mirth.connect.donkey.server.message.batch.BatchStreamReader;
 import com.mirth.connect.donkey.util.ThreadUtils;
+import com.mirth.connect.model.transmission.TransmissionModeProperties;
 import com.mirth.connect.model.transmission.batch.DefaultBatchStreamReader;
 import com.mirth.connect.plugins.BasicModeProvider;
 import com.mirth.connect.plugins.TransmissionModeProvider;
+import com.mirth.connect.plugins.mllpmode.MLLPModeProperties;
 import com.mirth.connect.server.controllers.ConfigurationController;
 import com.mirth.connect.server.controllers.ControllerFactory;
 import com.mirth.connect.server.controllers.EventController;
@@ -61,6 +64,8 @@ import com.mirth.connect.util.TcpUtil;
 public class TcpDispatcher extends DestinationConnector {
     // This determines how many client requests can queue up while waiting for the server socket to accept
     private static final int DEFAULT_BACKLOG = 256;
+    private static final int TIMER_TICK_MILLIS = 50;
+    private static final int TIMER_TICKS_PER_WHEEL = 512;
 
     private Logger logger = Logger.getLogger(this.getClass());
     protected TcpDispatcherProperties connectorProperties;
@@ -70,7 +75,12 @@ public class TcpDispatcher extends DestinationConnector {
 
     private TcpConfiguration configuration = null;
     private Map<String, Socket> connectedSockets;
-    private Map<String, Thread> timeoutThreads;
+    private TimerWheel timerWheel;
+    private Map<String, TimerWheel.Timeout> sendTimeouts;
+    private TcpConnectionPool connectionPool;
+    private boolean pooledConnections;
+    private int poolSize;
+    private int maxPipelinedMessages;
 
     private int sendTimeout;
     private int responseTimeout;
@@ -127,12 +137,35 @@ public class TcpDispatcher extends DestinationConnector {
         }
 
         connectedSockets = new ConcurrentHashMap<String, Socket>();
-        timeoutThreads = new ConcurrentHashMap<String, Thread>();
+        sendTimeouts = new HashMap<String, TimerWheel.Timeout>();
         sendTimeout = NumberUtils.toInt(connectorProperties.getSendTimeout());
         responseTimeout = NumberUtils.toInt(connectorProperties.getResponseTimeout());
         bufferSize = NumberUtils.toInt(connectorProperties.getBufferSize());
         maxConnections = NumberUtils.toInt(connectorProperties.getMaxConnections());
 
+        pooledConnections = false;
+
+        if (connectorProperties.isPooledConnections()) {
+            if (connectorProperties.isServerMode() || !connectorProperties.isKeepConnectionOpen()) {
+                logger.warn("Pooled connections require client mode with Keep Connection Open enabled, using one connection per queue thread instead (" + connectorProperties.getName() + " \"" + getDestinationName() + "\" on channel " + getChannelId() + ").");
+            } else {
+                pooledConnections = true;
+                poolSize = maxConnections;
+                maxPipelinedMessages = NumberUtils.toInt(connectorProperties.getMaxPipelinedMessages());
+
+                // Only one connection can be bound to a fixed local port
+                if (connectorProperties.isOverrideLocalBinding() && NumberUtils.toInt(connectorProperties.getLocalPort()) > 0) {
+                    poolSize = 1;
+                }
+
+                // MLLPv2 reads the commit acknowledgement right after writing each message
+                TransmissionModeProperties transmissionModeProperties = connectorProperties.getTransmissionModeProperties();
+                if (transmissionModeProperties instanceof MLLPModeProperties && ((MLLPModeProperties) transmissionModeProperties).isUseMLLPv2()) {
+                    maxPipelinedMessages = 1;
+                }
+            }
+        }
+
         eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.IDLE));
     }
 
@@ -189,6 +222,12 @@ public class TcpDispatcher extends DestinationConnector {
             };
 
             thread.start();
+        } else {
+            timerWheel = new TimerWheel("TCP Sender Timer Thread on " + getChannel().getName() + " (" + getChannelId() + ")", TIMER_TICK_MILLIS, TIMER_TICKS_PER_WHEEL);
+
+            if (pooledConnections) {
+                connectionPool = new TcpConnectionPool(transmissionModeProvider, connectorProperties.getTransmissionModeProperties(), new PoolConnectionHandler(), timerWheel, poolSize, maxPipelinedMessages, bufferSize, CharsetUtils.getEncoding(connectorProperties.getCharsetEncoding()));
+            }
         }
     }
 
@@ -227,11 +266,13 @@ public class TcpDispatcher extends DestinationConnector {
                 serverModeSockets.clear();
             }
         } else {
+            if (connectionPool != null) {
+                connectionPool.close();
+            }
+
             try {
-                // Interrupt and join the connector timeout threads
-                for (String socketKey : timeoutThreads.keySet().toArray(new String[timeoutThreads.size()])) {
-                    disposeThread(socketKey);
-                }
+                // Cancel the send timeouts and join the timer thread
+                stopTimer();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 throw new ConnectorTaskException(e);
@@ -289,14 +330,16 @@ public class TcpDispatcher extends DestinationConnector {
                 serverModeSockets.clear();
             }
         } else {
-            // Interrupt and join the connector timeout threads
-            for (String socketKey : timeoutThreads.keySet().toArray(new String[timeoutThreads.size()])) {
-                try {
-                    disposeThread(socketKey);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    firstCause = new ConnectorTaskException("Thread join operation interrupted (" + connectorProperties.getName() + " \"" + getDestinationName() + "\" on channel " + getChannelId() + ").", e);
-                }
+            if (connectionPool != null) {
+                connectionPool.close();
+            }
+
+            // Cancel the send timeouts and join the timer thread
+            try {
+                stopTimer();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                firstCause = new ConnectorTaskException("Thread join operation interrupted (" + connectorProperties.getName() + " \"" + getDestinationName() + "\" on channel " + getChannelId() + ").", e);
             }
 
             // Close the connector client sockets
@@ -319,6 +362,11 @@ public class TcpDispatcher extends DestinationConnector {
     @Override
     public Response send(ConnectorProperties connectorProperties, ConnectorMessage message) {
         TcpDispatcherProperties tcpDispatcherProperties = (TcpDispatcherProperties) connectorProperties;
+
+        if (connectionPool != null) {
+            return sendPooled(tcpDispatcherProperties, message);
+        }
+
         Status responseStatus = Status.QUEUED;
         String responseData = null;
         String responseStatusMessage = null;
@@ -333,7 +381,6 @@ public class TcpDispatcher extends DestinationConnector {
         }
 
         Socket socket = null;
-        Thread timeoutThread = null;
         Response response = null;
 
         try {
@@ -345,13 +392,9 @@ public class TcpDispatcher extends DestinationConnector {
                     throw new Exception("Remote port is invalid.");
                 }
 
+                // Cancel the send timeout first so it won't close the socket while it's being used
+                cancelSendTimeout(socketKey);
                 socket = connectedSockets.get(socketKey);
-                timeoutThread = timeoutThreads.get(socketKey);
-
-                // If keep connection open is true, then interrupt the thread so it won't close the socket
-                if (tcpDispatcherProperties.isKeepConnectionOpen() && timeoutThread != null) {
-                    disposeThreadQuietly(socketKey);
-                }
 
                 // Initialize a new socket if our current one is invalid, the remote side has closed, or keep connection open is false
                 if (!tcpDispatcherProperties.isKeepConnectionOpen() || socket == null || socket.isClosed() || (tcpDispatcherProperties.isCheckRemoteHost() && socket instanceof StateAwareSocketInterface && ((StateAwareSocketInterface) socket).remoteSideHasClosed())) {
@@ -361,22 +404,12 @@ public class TcpDispatcher extends DestinationConnector {
                     String info = "Trying to connect on " + tcpDispatcherProperties.getRemoteAddress() + ":" + tcpDispatcherProperties.getRemotePort() + "...";
                     eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.CONNECTING, info));
 
-                    if (tcpDispatcherProperties.isOverrideLocalBinding()) {
-                        socket = SocketUtil.createSocket(configuration, tcpDispatcherProperties.getLocalAddress(), NumberUtils.toInt(tcpDispatcherProperties.getLocalPort()));
-                    } else {
-                        socket = SocketUtil.createSocket(configuration);
-                    }
+                    socket = createSocket(tcpDispatcherProperties);
 
                     ThreadUtils.checkInterruptedStatus();
                     connectedSockets.put(socketKey, socket);
 
-                    SocketUtil.connectSocket(socket, tcpDispatcherProperties.getRemoteAddress(), NumberUtils.toInt(tcpDispatcherProperties.getRemotePort()), responseTimeout);
-
-                    socket.setReuseAddress(true);
-                    socket.setReceiveBufferSize(bufferSize);
-                    socket.setSendBufferSize(bufferSize);
-                    socket.setSoTimeout(responseTimeout);
-                    socket.setKeepAlive(tcpDispatcherProperties.isKeepConnectionOpen());
+                    connectSocket(socket, tcpDispatcherProperties);
 
                     eventController.dispatchEvent(new ConnectorCountEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.CONNECTED, SocketUtil.getLocalAddress(socket) + " -> " + SocketUtil.getInetAddress(socket), true));
                 }
@@ -461,7 +494,7 @@ public class TcpDispatcher extends DestinationConnector {
             String monitorMessage = "Error sending message: " + t.getMessage();
 
             if (!tcpDispatcherProperties.isServerMode()) {
-                disposeThreadQuietly(socketKey);
+                cancelSendTimeout(socketKey);
                 closeSocketQuietly(socketKey);
                 monitorMessage = "Error sending message (" + SocketUtil.getLocalAddress(socket) + " -> " + SocketUtil.getInetAddress(socket) + "): " + t.getMessage();
             }
@@ -582,7 +615,7 @@ public class TcpDispatcher extends DestinationConnector {
                 if (tcpDispatcherProperties.isKeepConnectionOpen() && (getCurrentState() == DeployedState.STARTED || getCurrentState() == DeployedState.STARTING)) {
                     if (sendTimeout > 0) {
                         // Close the connection after the send timeout has been reached
-                        startThread(socketKey);
+                        scheduleSendTimeout(socketKey);
                     }
                 } else {
                     // If keep connection open is false, then close the socket right now
@@ -593,7 +626,7 @@ public class TcpDispatcher extends DestinationConnector {
             if (tcpDispatcherProperties.isServerMode()) {
                 closeServerModeSocketQuietly(socket);
             } else {
-                disposeThreadQuietly(socketKey);
+                cancelSendTimeout(socketKey);
                 closeSocketQuietly(socketKey);
             }
 
@@ -624,6 +657,125 @@ public class TcpDispatcher extends DestinationConnector {
         return new Response(responseStatus, responseData, responseStatusMessage, responseError, validateResponse);
     }
 
+    /*
+     * Sends the message on a pooled connection to the remote endpoint. Several messages may be
+     * waiting for responses on the same connection, and each response is matched back to its
+     * message by the control ID.
+     */
+    private Response sendPooled(TcpDispatcherProperties tcpDispatcherProperties, ConnectorMessage message) {
+        Status responseStatus = Status.QUEUED;
+        String responseData = null;
+        String responseStatusMessage = null;
+        String responseError = null;
+        boolean validateResponse = false;
+
+        TcpConnectionPool.Connection connection = null;
+        Socket socket = null;
+
+        try {
+            // Do some validation first to avoid unnecessarily creating sockets
+            if (StringUtils.isBlank(tcpDispatcherProperties.getRemoteAddress())) {
+                throw new Exception("Remote address is blank.");
+            } else if (NumberUtils.toInt(tcpDispatcherProperties.getRemotePort()) <= 0) {
+                throw new Exception("Remote port is invalid.");
+            }
+
+            String endpointKey = tcpDispatcherProperties.getRemoteAddress() + ":" + tcpDispatcherProperties.getRemotePort();
+            if (tcpDispatcherProperties.isOverrideLocalBinding()) {
+                endpointKey += " " + tcpDispatcherProperties.getLocalAddress() + ":" + tcpDispatcherProperties.getLocalPort();
+            }
+
+            connection = connectionPool.acquire(endpointKey, tcpDispatcherProperties);
+            socket = connection.getSocket();
+
+            ThreadUtils.checkInterruptedStatus();
+
+            // Send the message
+            eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.SENDING, SocketUtil.getLocalAddress(socket) + " -> " + SocketUtil.getInetAddress(socket)));
+            String controlId = tcpDispatcherProperties.isDataTypeBinary() ? null : TcpConnectionPool.getMessageControlId(tcpDispatcherProperties.getTemplate());
+            TcpConnectionPool.Pending pending = connection.write(getTemplateBytes(tcpDispatcherProperties, message), controlId, !tcpDispatcherProperties.isIgnoreResponse(), responseTimeout);
+
+            if (!tcpDispatcherProperties.isIgnoreResponse()) {
+                // Attempt to get the response from the remote endpoint
+                try {
+                    String info = "Waiting for response from " + SocketUtil.getInetAddress(socket) + " (Timeout: " + tcpDispatcherProperties.getResponseTimeout() + " ms)... ";
+                    eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.WAITING_FOR_RESPONSE, info));
+                    byte[] responseBytes = connection.read(pending);
+                    if (responseBytes != null) {
+                        responseData = new String(responseBytes, CharsetUtils.getEncoding(tcpDispatcherProperties.getCharsetEncoding()));
+                        responseStatusMessage = "Message successfully sent.";
+                    } else {
+                        responseStatusMessage = "Message successfully sent, but no response received.";
+                    }
+
+                    responseStatus = Status.SENT;
+
+                    // We only want to validate the response if we were able to retrieve it successfully
+                    validateResponse = tcpDispatcherProperties.getDestinationConnectorProperties().isValidateResponse();
+                } catch (IOException e) {
+                    // An exception occurred while retrieving the response, and the pool has already closed the connection
+                    if (e instanceof SocketTimeoutException || e.getCause() != null && e.getCause() instanceof SocketTimeoutException) {
+                        responseStatusMessage = "Timeout waiting for response";
+
+                        if (!tcpDispatcherProperties.isQueueOnResponseTimeout()) {
+                            responseStatus = Status.ERROR;
+                        }
+                    } else {
+                        responseStatusMessage = "Error receiving response";
+                    }
+
+                    responseError = ErrorMessageBuilder.buildErrorMessage(connectorProperties.getName(), responseStatusMessage + ": " + e.getMessage(), e);
+                    logger.warn(responseStatusMessage + " (" + connectorProperties.getName() + " \"" + getDestinationName() + "\" on channel " + getChannelId() + ").", e);
+                    eventController.dispatchEvent(new ErrorEvent(getChannelId(), getMetaDataId(), message.getMessageId(), ErrorEventType.DESTINATION_CONNECTOR, getDestinationName(), connectorProperties.getName(), responseStatusMessage + ".", e));
+                    eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.FAILURE, responseStatusMessage + " from " + SocketUtil.getInetAddress(socket)));
+                }
+            } else {
+                // MIRTH-2980: Since we're ignoring responses, flush out the socket's input stream so it doesn't continually grow
+                connection.skipAvailable();
+
+                // We're ignoring the response, so always return a successful response
+                responseStatus = Status.SENT;
+                responseStatusMessage = "Message successfully sent.";
+            }
+        } catch (Throwable t) {
+            // If an exception occurred then close the connection, since a response may still arrive for this message
+            if (connection != null) {
+                connection.close(t instanceof IOException ? (IOException) t : new IOException(t));
+            }
+
+            String monitorMessage = "Error sending message (" + SocketUtil.getLocalAddress(socket) + " -> " + SocketUtil.getInetAddress(socket) + "): " + t.getMessage();
+            eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.FAILURE, monitorMessage));
+
+            responseStatusMessage = t.getClass().getSimpleName() + ": " + t.getMessage();
+            responseError = ErrorMessageBuilder.buildErrorMessage(connectorProperties.getName(), t.getMessage(), t);
+
+            String logMessage = "Error sending message via TCP (" + connectorProperties.getName() + " \"" + getDestinationName() + "\" on channel " + getChannelId() + ").";
+
+            if (t instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            } else if (t instanceof ConnectException || t.getCause() != null && t.getCause() instanceof ConnectException) {
+                if (isQueueEnabled()) {
+                    logger.warn(logMessage, t);
+                } else {
+                    logger.error(logMessage, t);
+                }
+            } else {
+                logger.debug(logMessage, t);
+            }
+
+            eventController.dispatchEvent(new ErrorEvent(getChannelId(), getMetaDataId(), message.getMessageId(), ErrorEventType.DESTINATION_CONNECTOR, getDestinationName(), connectorProperties.getName(), "Error sending message via TCP.", t));
+        } finally {
+            if (connection != null) {
+                // Close the connection after the send timeout if nothing else uses it
+                connection.release(sendTimeout);
+            }
+
+            eventController.dispatchEvent(new ConnectorCountEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.IDLE, SocketUtil.getLocalAddress(socket) + " -> " + SocketUtil.getInetAddress(socket), (Boolean) null));
+        }
+
+        return new Response(responseStatus, responseData, responseStatusMessage, responseError, validateResponse);
+    }
+
     @Override
     protected String getConfigurationClass() {
         return configurationController.getProperty(connectorProperties.getProtocol(), "tcpConfigurationClass");
@@ -681,46 +833,39 @@ public class TcpDispatcher extends DestinationConnector {
     }
 
     /*
-     * Starts up the connector thread which closes the connection after the send timeout has been
-     * reached.
+     * Closes the connection after the send timeout has been reached, unless it's used again first.
      */
-    private void startThread(final String socketKey) {
-        disposeThreadQuietly(socketKey);
+    private void scheduleSendTimeout(String socketKey) {
+        synchronized (sendTimeouts) {
+            cancelSendTimeout(socketKey);
 
-        Thread thread = new Thread("TCP Dispatcher Send Timeout Thread for key " + socketKey) {
-            @Override
-            public void run() {
-                try {
-                    Thread.sleep(sendTimeout);
-                    closeSocketQuietly(socketKey);
-                } catch (InterruptedException e) {
-                    if (getCurrentState() == DeployedState.STOPPING || getCurrentState() == DeployedState.STOPPED) {
-                        closeSocketQuietly(socketKey);
-                    }
-
-                    Thread.currentThread().interrupt();
-                } finally {
-                    timeoutThreads.remove(socketKey);
-                }
-            }
-        };
-
-        timeoutThreads.put(socketKey, thread);
-        thread.start();
+            SendTimeoutTask task = new SendTimeoutTask(socketKey);
+            task.timeout = timerWheel.schedule(task, sendTimeout);
+            sendTimeouts.put(socketKey, task.timeout);
+        }
     }
 
-    private void disposeThreadQuietly(String socketKey) {
-        try {
-            disposeThread(socketKey);
-        } catch (InterruptedException e) {
-            logger.warn("Thread join operation interrupted (" + connectorProperties.getName() + " \"" + getDestinationName() + "\" on channel " + getChannelId() + ").", e);
+    private void cancelSendTimeout(String socketKey) {
+        synchronized (sendTimeouts) {
+            TimerWheel.Timeout timeout = sendTimeouts.remove(socketKey);
+
+            if (timeout != null) {
+                timeout.cancel();
+            }
         }
     }
 
-    private void disposeThread(String socketKey) throws InterruptedException {
-        Thread thread = timeoutThreads.get(socketKey);
+    private void stopTimer() throws InterruptedException {
+        synchronized (sendTimeouts) {
+            for (TimerWheel.Timeout timeout : sendTimeouts.values()) {
+                timeout.cancel();
+            }
+            sendTimeouts.clear();
+        }
 
-        disposeThread(thread, true);
+        if (timerWheel != null) {
+            timerWheel.stop();
+        }
     }
 
     private void disposeThread(Thread thread, boolean interrupt) throws InterruptedException {
@@ -740,6 +885,24 @@ public class TcpDispatcher extends DestinationConnector {
         }
     }
 
+    private Socket createSocket(TcpDispatcherProperties tcpDispatcherProperties) throws IOException {
+        if (tcpDispatcherProperties.isOverrideLocalBinding()) {
+            return SocketUtil.createSocket(configuration, tcpDispatcherProperties.getLocalAddress(), NumberUtils.toInt(tcpDispatcherProperties.getLocalPort()));
+        } else {
+            return SocketUtil.createSocket(configuration);
+        }
+    }
+
+    private void connectSocket(Socket socket, TcpDispatcherProperties tcpDispatcherProperties) throws IOException {
+        SocketUtil.connectSocket(socket, tcpDispatcherProperties.getRemoteAddress(), NumberUtils.toInt(tcpDispatcherProperties.getRemotePort()), responseTimeout);
+
+        socket.setReuseAddress(true);
+        socket.setReceiveBufferSize(bufferSize);
+        socket.setSendBufferSize(bufferSize);
+        socket.setSoTimeout(responseTimeout);
+        socket.setKeepAlive(tcpDispatcherProperties.isKeepConnectionOpen());
+    }
+
     /*
      * Returns the byte array representation of the connector properties template, using the
      * properties to determine whether or not to encode in Base64, and what charset to use.
@@ -816,4 +979,55 @@ public class TcpDispatcher extends DestinationConnector {
         socket.setReuseAddress(true);
         socket.setTcpNoDelay(true);
     }
+
+    private class SendTimeoutTask implements Runnable {
+        private String socketKey;
+        private TimerWheel.Timeout timeout;
+
+        private SendTimeoutTask(String socketKey) {
+            this.socketKey = socketKey;
+        }
+
+        @Override
+        public void run() {
+            synchronized (sendTimeouts) {
+                // The socket may have been used again just as this expired
+                if (sendTimeouts.get(socketKey) == timeout) {
+                    sendTimeouts.remove(socketKey);
+                    closeSocketQuietly(socketKey);
+                }
+            }
+        }
+    }
+
+    private class PoolConnectionHandler implements TcpConnectionPool.ConnectionHandler {
+
+        @Override
+        public Socket connect(TcpDispatcherProperties tcpDispatcherProperties) throws Exception {
+            logger.debug("Creating new pooled socket (" + connectorProperties.getName() + " \"" + getDestinationName() + "\" on channel " + getChannelId() + ").");
+            String info = "Trying to connect on " + tcpDispatcherProperties.getRemoteAddress() + ":" + tcpDispatcherProperties.getRemotePort() + "...";
+            eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.CONNECTING, info));
+
+            Socket socket = createSocket(tcpDispatcherProperties);
+
+            try {
+                connectSocket(socket, tcpDispatcherProperties);
+            } catch (IOException e) {
+                try {
+                    SocketUtil.closeSocket(socket);
+                } catch (IOException e2) {
+                    logger.debug("Error closing socket (" + connectorProperties.getName() + " \"" + getDestinationName() + "\" on channel " + getChannelId() + ").", e2);
+                }
+                throw e;
+            }
+
+            eventController.dispatchEvent(new ConnectorCountEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.CONNECTED, SocketUtil.getLocalAddress(socket) + " -> " + SocketUtil.getInetAddress(socket), true));
+            return socket;
+        }
+
+        @Override
+        public void disconnected(Socket socket) {
+            eventController.dispatchEvent(new ConnectorCountEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.DISCONNECTED, SocketUtil.getLocalAddress(socket) + " -> " + SocketUtil.getInetAddress(socket), false));
+        }
+    }
 }
@@ -43,6 +43,8 @@ public class TcpDispatcherProperties extends ConnectorProperties implements Dest
     private String maxConnections;
     private boolean keepConnectionOpen;
     private boolean checkRemoteHost;
+    private boolean pooledConnections;
+    private String maxPipelinedMessages;
     private String responseTimeout;
     private boolean ignoreResponse;
     private boolean queueOnResponseTimeout;
@@ -69,6 +71,8 @@ public class TcpDispatcherProperties extends ConnectorProperties implements Dest
         this.maxConnections = "10";
         this.keepConnectionOpen = false;
         this.checkRemoteHost = false;
+        this.pooledConnections = false;
+        this.maxPipelinedMessages = "1";
         this.responseTimeout = "5000";
         this.ignoreResponse = false;
         this.queueOnResponseTimeout = true;
@@ -93,6 +97,8 @@ public class TcpDispatcherProperties extends ConnectorProperties implements Dest
         bufferSize = props.getBufferSize();
         keepConnectionOpen = props.isKeepConnectionOpen();
         checkRemoteHost = props.isCheckRemoteHost();
+        pooledConnections = props.isPooledConnections();
+        maxPipelinedMessages = props.getMaxPipelinedMessages();
         responseTimeout = props.getResponseTimeout();
         ignoreResponse = props.isIgnoreResponse();
         queueOnResponseTimeout = props.isQueueOnResponseTimeout();
@@ -197,6 +203,23 @@ public class TcpDispatcherProperties extends ConnectorProperties implements Dest
         this.checkRemoteHost = checkRemoteHost;
     }
 
+    public boolean isPooledConnections() {
+        return pooledConnections;
+    }
+
+    public void setPooledConnections(boolean pooledConnections) {
+        this.pooledConnections = pooledConnections;
+    }
+
+    public String getMaxPipelinedMessages() {
+        // Properties saved before pipelining existed send one message at a time
+        return maxPipelinedMessages != null ? maxPipelinedMessages : "1";
+    }
+
+    public void setMaxPipelinedMessages(String maxPipelinedMessages) {
+        this.maxPipelinedMessages = maxPipelinedMessages;
+    }
+
     public String getResponseTimeout() {
         return responseTimeout;
     }
@@ -339,6 +362,8 @@ public class TcpDispatcherProperties extends ConnectorProperties implements Dest
         purgedProperties.put("maxConnections", PurgeUtil.getNumericValue(maxConnections));
         purgedProperties.put("keepConnectionOpen", keepConnectionOpen);
         purgedProperties.put("checkRemoteHost", checkRemoteHost);
+        purgedProperties.put("pooledConnections", pooledConnections);
+        purgedProperties.put("maxPipelinedMessages", PurgeUtil.getNumericValue(getMaxPipelinedMessages()));
         purgedProperties.put("responseTimeout", PurgeUtil.getNumericValue(responseTimeout));
         purgedProperties.put("ignoreResponse", ignoreResponse);
         purgedProperties.put("queueOnResponseTimeout", queueOnResponseTimeout);
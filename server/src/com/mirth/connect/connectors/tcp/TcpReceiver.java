@@ -10,7 +10,9 @@
 package com.mirth.connect.connectors.tcp;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.BindException;
@@ -21,6 +23,7 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -31,8 +34,10 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -61,11 +66,15 @@ import com.mirth.connect.donkey.server.message.batch.BatchStreamReader;
 import com.mirth.connect.donkey.server.message.batch.ResponseHandler;
 import com.mirth.connect.donkey.server.message.batch.SimpleResponseHandler;
 import com.mirth.connect.donkey.util.ThreadUtils;
+import com.mirth.connect.connectors.tcp.NonBlockingTcpListener.Connection;
 import com.mirth.connect.model.transmission.StreamHandlerException;
+import com.mirth.connect.model.transmission.TransmissionModeProperties;
 import com.mirth.connect.model.transmission.batch.DefaultBatchStreamReader;
+import com.mirth.connect.model.transmission.framemode.FrameModeProperties;
 import com.mirth.connect.plugins.BasicModeProvider;
 import com.mirth.connect.plugins.DataTypeServerPlugin;
 import com.mirth.connect.plugins.TransmissionModeProvider;
+import com.mirth.connect.plugins.mllpmode.MLLPModeProperties;
 import com.mirth.connect.server.controllers.ConfigurationController;
 import com.mirth.connect.server.controllers.ControllerFactory;
 import com.mirth.connect.server.controllers.EventController;
@@ -94,11 +103,14 @@ public class TcpReceiver extends SourceConnector {
     private Set<Future<Throwable>> results = new HashSet<Future<Throwable>>();
     private Set<TcpReader> clientReaders = new HashSet<TcpReader>();
     private AtomicBoolean disposing;
+    private NonBlockingTcpListener nonBlockingListener;
 
     private int maxConnections;
     private int timeout;
     private int bufferSize;
     private int reconnectInterval;
+    private boolean nonBlocking;
+    private int processingThreads;
     private TransmissionModeProvider transmissionModeProvider;
     private DataTypeServerPlugin dataTypeServerPlugin;
 
@@ -150,6 +162,28 @@ public class TcpReceiver extends SourceConnector {
             throw new ConnectorTaskException("Unable to find data type plugin: " + getInboundDataType().getType());
         }
 
+        nonBlocking = false;
+
+        if (connectorProperties.isNonBlocking()) {
+            TransmissionModeProperties transmissionModeProperties = connectorProperties.getTransmissionModeProperties();
+
+            /*
+             * Frames are found by their start and end bytes on a plain socket channel, so batch
+             * processing, client mode, custom (e.g. TLS) socket configurations, and modes that read
+             * acknowledgements back from the stream use a thread per connection instead.
+             */
+            if (!connectorProperties.isServerMode() || isProcessBatch() || configuration.getClass() != DefaultTcpConfiguration.class || !(transmissionModeProperties instanceof FrameModeProperties) || TcpUtil.stringToByteArray(((FrameModeProperties) transmissionModeProperties).getEndOfMessageBytes()).length == 0 || (transmissionModeProperties instanceof MLLPModeProperties && ((MLLPModeProperties) transmissionModeProperties).isUseMLLPv2())) {
+                logger.warn("Non-blocking mode is not supported with the current settings, using a thread per connection instead (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ").");
+            } else {
+                nonBlocking = true;
+                processingThreads = NumberUtils.toInt(connectorProperties.getProcessingThreads());
+
+                if (processingThreads <= 0) {
+                    processingThreads = maxConnections;
+                }
+            }
+        }
+
         disposing = new AtomicBoolean(false);
 
         eventController.dispatchEvent(new ConnectorCountEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.IDLE, null, maxConnections));
@@ -164,12 +198,20 @@ public class TcpReceiver extends SourceConnector {
         results.clear();
         clientReaders.clear();
 
+        // Reader threads are virtual threads if they are enabled server-wide
+        ThreadFactory threadFactory = ThreadUtils.newThreadFactory("TCP Receiver Reader Thread on " + getChannel().getName() + " (" + getChannelId() + ") ");
+
+        if (nonBlocking) {
+            startNonBlocking();
+            return;
+        }
+
         if (connectorProperties.isServerMode()) {
             // If we're in server mode, use the max connections property to initialize the thread pool
-            executor = new ThreadPoolExecutor(0, maxConnections, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+            executor = new ThreadPoolExecutor(0, maxConnections, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory);
         } else {
             // If we're in client mode, only a single thread is needed
-            executor = Executors.newSingleThreadExecutor();
+            executor = Executors.newSingleThreadExecutor(threadFactory);
         }
 
         if (connectorProperties.isServerMode()) {
@@ -269,6 +311,11 @@ public class TcpReceiver extends SourceConnector {
 
     @Override
     public void onStop() throws ConnectorTaskException {
+        if (nonBlockingListener != null) {
+            stopNonBlocking(false);
+            return;
+        }
+
         ConnectorTaskException firstCause = null;
 
         synchronized (clientReaders) {
@@ -384,6 +431,11 @@ public class TcpReceiver extends SourceConnector {
 
     @Override
     public void onHalt() throws ConnectorTaskException {
+        if (nonBlockingListener != null) {
+            stopNonBlocking(true);
+            return;
+        }
+
         ConnectorTaskException firstCause = null;
 
         synchronized (clientReaders) {
@@ -555,14 +607,7 @@ public class TcpReceiver extends SourceConnector {
 
                     try {
                         // Add the socket information to the channelMap
-                        Map<String, Object> sourceMap = new HashMap<String, Object>();
-                        sourceMap.put("localAddress", socket.getLocalAddress().getHostAddress());
-                        sourceMap.put("localPort", socket.getLocalPort());
-                        if (socket.getRemoteSocketAddress() instanceof InetSocketAddress) {
-                            sourceMap.put("remoteAddress", ((InetSocketAddress) socket.getRemoteSocketAddress()).getAddress().getHostAddress());
-                            sourceMap.put("remotePort", ((InetSocketAddress) socket.getRemoteSocketAddress()).getPort());
-                        }
-                        sourceMap.putAll(configuration.getSocketInformation(socket));
+                        Map<String, Object> sourceMap = getSourceMap(socket);
 
                         OutputStream outputStream = null;
 
@@ -659,54 +704,7 @@ public class TcpReceiver extends SourceConnector {
                                         streamHandler.commit(false);
                                     }
                                 } else {
-                                    RawMessage rawMessage = null;
-
-                                    if (connectorProperties.isDataTypeBinary()) {
-                                        // Store the raw bytes in the RawMessage object
-                                        rawMessage = new RawMessage(bytes);
-                                    } else {
-                                        // Encode the bytes using the charset encoding property and store the string in the RawMessage object
-                                        rawMessage = new RawMessage(getStringFromBytes(bytes));
-                                    }
-
-                                    rawMessage.setSourceMap(sourceMap);
-
-                                    DispatchResult dispatchResult = null;
-
-                                    ThreadUtils.checkInterruptedStatus();
-
-                                    // Send the message to the source connector
-                                    try {
-                                        dispatchResult = dispatchRawMessage(rawMessage);
-
-                                        streamHandler.commit(true);
-
-                                        // Check to see if we have a response to send
-                                        if (dispatchResult.getSelectedResponse() != null) {
-                                            // Send the response
-                                            dispatchResult.setAttemptedResponse(true);
-
-                                            try {
-                                                // If the response socket hasn't been initialized, do that now
-                                                if (connectorProperties.getRespondOnNewConnection() == TcpReceiverProperties.NEW_CONNECTION) {
-                                                    responseSocket = createResponseSocket();
-                                                    connectResponseSocket(responseSocket, streamHandler);
-                                                }
-
-                                                sendResponse(dispatchResult.getSelectedResponse().getMessage(), responseSocket, streamHandler, connectorProperties.getRespondOnNewConnection() == TcpReceiverProperties.NEW_CONNECTION);
-                                            } catch (IOException e) {
-                                                dispatchResult.setResponseError(ErrorMessageBuilder.buildErrorMessage(connectorProperties.getName(), "Error sending response.", e));
-                                            } finally {
-                                                if (connectorProperties.getRespondOnNewConnection() == TcpReceiverProperties.NEW_CONNECTION || !connectorProperties.isKeepConnectionOpen()) {
-                                                    closeSocketQuietly(responseSocket);
-                                                }
-                                            }
-                                        }
-                                    } catch (ChannelException e) {
-                                        streamHandler.commit(false);
-                                    } finally {
-                                        finishDispatch(dispatchResult);
-                                    }
+                                    responseSocket = dispatchMessage(bytes, sourceMap, responseSocket, streamHandler);
                                 }
 
                                 eventController.dispatchEvent(new ConnectorCountEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.IDLE, SocketUtil.getLocalAddress(socket) + " -> " + SocketUtil.getInetAddress(socket), (Boolean) null));
@@ -731,24 +729,7 @@ public class TcpReceiver extends SourceConnector {
                                 eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.FAILURE, "Timeout waiting for message from " + SocketUtil.getLocalAddress(socket) + ". "));
                             } else {
                                 // Set the return value and send an alert
-                                String errorMessage = "Error receiving message (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ").";
-
-                                SocketException cause = null;
-                                if (e instanceof SocketException) {
-                                    cause = (SocketException) e;
-                                } else if (e.getCause() != null && e.getCause() instanceof SocketException) {
-                                    cause = (SocketException) e.getCause();
-                                }
-
-                                if (cause != null && cause.getMessage() != null && cause.getMessage().contains("Connection reset")) {
-                                    logger.warn(errorMessage, e);
-                                } else {
-                                    logger.error(errorMessage, e);
-                                }
-
-                                t = new Exception(errorMessage, e);
-                                eventController.dispatchEvent(new ErrorEvent(getChannelId(), getMetaDataId(), null, ErrorEventType.SOURCE_CONNECTOR, getSourceName(), connectorProperties.getName(), "Error receiving message", e));
-                                eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.FAILURE, "Error receiving message from " + SocketUtil.getLocalAddress(socket) + ": " + e.getMessage()));
+                                t = receiveError(socket, e);
                             }
                         } else {
                             logger.debug("Timeout reading from socket input stream (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ").");
@@ -820,7 +801,7 @@ public class TcpReceiver extends SourceConnector {
 
         @Override
         public String getStringFromBytes(byte[] bytes) throws IOException {
-            return new String(bytes, CharsetUtils.getEncoding(connectorProperties.getCharsetEncoding()));
+            return getString(bytes);
         }
     }
 
@@ -874,6 +855,264 @@ public class TcpReceiver extends SourceConnector {
         }
     }
 
+    private void startNonBlocking() throws ConnectorTaskException {
+        ServerSocketChannel serverChannel = null;
+
+        try {
+            serverChannel = createServerSocketChannel();
+        } catch (IOException e) {
+            throw new ConnectorTaskException("Failed to create server socket (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ").", e);
+        }
+
+        /*
+         * Each connection only has one task queued or running at a time, so the queue can't grow
+         * past the maximum number of connections.
+         */
+        executor = new ThreadPoolExecutor(processingThreads, processingThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), ThreadUtils.newThreadFactory("TCP Receiver Processing Thread on " + getChannel().getName() + " (" + getChannelId() + ") "));
+
+        FrameModeProperties frameModeProperties = (FrameModeProperties) connectorProperties.getTransmissionModeProperties();
+        nonBlockingListener = new NonBlockingTcpListener(serverChannel, TcpUtil.stringToByteArray(frameModeProperties.getStartOfMessageBytes()), TcpUtil.stringToByteArray(frameModeProperties.getEndOfMessageBytes()), bufferSize, maxConnections, timeout, executor, new TcpFrameHandler());
+
+        try {
+            nonBlockingListener.start("TCP Receiver Selector Thread on " + getChannel().getName() + " (" + getChannelId() + ")");
+        } catch (IOException e) {
+            nonBlockingListener = null;
+            executor.shutdownNow();
+
+            try {
+                serverChannel.close();
+            } catch (IOException e2) {
+                logger.debug("Error closing server socket (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ").", e2);
+            }
+
+            throw new ConnectorTaskException("Failed to start selector (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ").", e);
+        }
+    }
+
+    private void stopNonBlocking(boolean halt) throws ConnectorTaskException {
+        ConnectorTaskException firstCause = null;
+
+        // Stop accepting and reading from connections
+        try {
+            logger.debug("Closing server socket (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ").");
+            nonBlockingListener.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            firstCause = new ConnectorTaskException("Thread join operation interrupted (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ").", e);
+        }
+
+        if (halt) {
+            nonBlockingListener.closeConnections();
+            executor.shutdownNow();
+        } else {
+            // Frames that are already being processed are allowed to finish and send their responses
+            executor.shutdown();
+
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (firstCause == null) {
+                    firstCause = new ConnectorTaskException("Client thread disposal interrupted (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ").", e);
+                }
+            }
+
+            nonBlockingListener.closeConnections();
+        }
+
+        nonBlockingListener = null;
+
+        // Close the recovery response socket, if applicable
+        try {
+            SocketUtil.closeSocket(recoveryResponseSocket);
+        } catch (IOException e) {
+            if (firstCause == null) {
+                firstCause = new ConnectorTaskException("Error closing response socket (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ").", e);
+            }
+        }
+
+        if (firstCause != null) {
+            throw firstCause;
+        }
+    }
+
+    /**
+     * Processes the frames read by the non-blocking listener. Each frame is read back through a
+     * stream handler from the transmission mode provider, so the message and response bytes are the
+     * same as when reading from the socket directly.
+     */
+    private class TcpFrameHandler implements NonBlockingTcpListener.FrameHandler {
+
+        @Override
+        public void connected(Connection connection) throws IOException {
+            Socket socket = connection.getSocket();
+            initSocket(socket);
+            eventController.dispatchEvent(new ConnectorCountEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.CONNECTED, SocketUtil.getLocalAddress(socket) + " -> " + SocketUtil.getInetAddress(socket), true));
+        }
+
+        @Override
+        public boolean frameReceived(Connection connection, byte[] frame) throws InterruptedException {
+            // Frames received while stopping are dropped, the same as when reading from the socket
+            if (getCurrentState() != DeployedState.STARTED) {
+                return false;
+            }
+
+            Socket socket = connection.getSocket();
+            Socket responseSocket = null;
+            String originalThreadName = Thread.currentThread().getName();
+
+            try {
+                Thread.currentThread().setName("TCP Receiver Thread on " + getChannel().getName() + " (" + getChannelId() + ") < " + originalThreadName);
+
+                if (connectorProperties.getRespondOnNewConnection() != TcpReceiverProperties.NEW_CONNECTION) {
+                    responseSocket = socket;
+                }
+
+                InputStream inputStream = new ByteArrayInputStream(frame);
+                StreamHandler streamHandler = transmissionModeProvider.getStreamHandler(inputStream, connection.getOutputStream(), new DefaultBatchStreamReader(inputStream), connectorProperties.getTransmissionModeProperties());
+                byte[] bytes = streamHandler.read();
+
+                if (bytes != null) {
+                    logger.debug("Bytes returned from socket, length: " + bytes.length + " (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ")");
+                    eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.RECEIVING, "Message received from " + SocketUtil.getLocalAddress(socket) + ", processing... "));
+
+                    responseSocket = dispatchMessage(bytes, getSourceMap(socket), responseSocket, streamHandler);
+
+                    eventController.dispatchEvent(new ConnectorCountEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.IDLE, SocketUtil.getLocalAddress(socket) + " -> " + SocketUtil.getInetAddress(socket), (Boolean) null));
+                }
+
+                return !checkSocket(socket);
+            } catch (IOException e) {
+                receiveError(socket, e);
+                return false;
+            } finally {
+                if (connectorProperties.getRespondOnNewConnection() == TcpReceiverProperties.NEW_CONNECTION) {
+                    closeSocketQuietly(responseSocket);
+                }
+
+                Thread.currentThread().setName(originalThreadName);
+            }
+        }
+
+        @Override
+        public boolean idleTimeout(Connection connection) {
+            if (connectorProperties.isKeepConnectionOpen()) {
+                logger.debug("Timeout reading from socket input stream (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ").");
+                eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.INFO, "Timeout waiting for message from " + SocketUtil.getLocalAddress(connection.getSocket()) + ". "));
+                return false;
+            }
+
+            eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.FAILURE, "Timeout waiting for message from " + SocketUtil.getLocalAddress(connection.getSocket()) + ". "));
+            return true;
+        }
+
+        @Override
+        public void readError(Connection connection, IOException e) {
+            receiveError(connection.getSocket(), e);
+        }
+
+        @Override
+        public void disconnected(Connection connection) {
+            Socket socket = connection.getSocket();
+            logger.debug("Done with socket, closing (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ")...");
+            eventController.dispatchEvent(new ConnectorCountEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.DISCONNECTED, SocketUtil.getLocalAddress(socket) + " -> " + SocketUtil.getInetAddress(socket), false));
+        }
+    }
+
+    /*
+     * Dispatches a single message read from the socket and sends the response, if any. Returns the
+     * response socket, which is created here when responding on a new connection.
+     */
+    private Socket dispatchMessage(byte[] bytes, Map<String, Object> sourceMap, Socket responseSocket, StreamHandler streamHandler) throws IOException, InterruptedException {
+        RawMessage rawMessage = null;
+
+        if (connectorProperties.isDataTypeBinary()) {
+            // Store the raw bytes in the RawMessage object
+            rawMessage = new RawMessage(bytes);
+        } else {
+            // Encode the bytes using the charset encoding property and store the string in the RawMessage object
+            rawMessage = new RawMessage(getString(bytes));
+        }
+
+        rawMessage.setSourceMap(sourceMap);
+
+        DispatchResult dispatchResult = null;
+
+        ThreadUtils.checkInterruptedStatus();
+
+        // Send the message to the source connector
+        try {
+            dispatchResult = dispatchRawMessage(rawMessage);
+
+            streamHandler.commit(true);
+
+            // Check to see if we have a response to send
+            if (dispatchResult.getSelectedResponse() != null) {
+                // Send the response
+                dispatchResult.setAttemptedResponse(true);
+
+                try {
+                    // If the response socket hasn't been initialized, do that now
+                    if (connectorProperties.getRespondOnNewConnection() == TcpReceiverProperties.NEW_CONNECTION) {
+                        responseSocket = createResponseSocket();
+                        connectResponseSocket(responseSocket, streamHandler);
+                    }
+
+                    sendResponse(dispatchResult.getSelectedResponse().getMessage(), responseSocket, streamHandler, connectorProperties.getRespondOnNewConnection() == TcpReceiverProperties.NEW_CONNECTION);
+                } catch (IOException e) {
+                    dispatchResult.setResponseError(ErrorMessageBuilder.buildErrorMessage(connectorProperties.getName(), "Error sending response.", e));
+                } finally {
+                    if (connectorProperties.getRespondOnNewConnection() == TcpReceiverProperties.NEW_CONNECTION || !connectorProperties.isKeepConnectionOpen()) {
+                        closeSocketQuietly(responseSocket);
+                    }
+                }
+            }
+        } catch (ChannelException e) {
+            streamHandler.commit(false);
+        } finally {
+            finishDispatch(dispatchResult);
+        }
+
+        return responseSocket;
+    }
+
+    private Map<String, Object> getSourceMap(Socket socket) {
+        Map<String, Object> sourceMap = new HashMap<String, Object>();
+        sourceMap.put("localAddress", socket.getLocalAddress().getHostAddress());
+        sourceMap.put("localPort", socket.getLocalPort());
+        if (socket.getRemoteSocketAddress() instanceof InetSocketAddress) {
+            sourceMap.put("remoteAddress", ((InetSocketAddress) socket.getRemoteSocketAddress()).getAddress().getHostAddress());
+            sourceMap.put("remotePort", ((InetSocketAddress) socket.getRemoteSocketAddress()).getPort());
+        }
+        sourceMap.putAll(configuration.getSocketInformation(socket));
+        return sourceMap;
+    }
+
+    /*
+     * Logs an error reading from the socket and sends an alert. Returns the exception that is used
+     * as the result of the reader.
+     */
+    private Throwable receiveError(Socket socket, IOException e) {
+        String errorMessage = "Error receiving message (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ").";
+
+        SocketException cause = null;
+        if (e instanceof SocketException) {
+            cause = (SocketException) e;
+        } else if (e.getCause() != null && e.getCause() instanceof SocketException) {
+            cause = (SocketException) e.getCause();
+        }
+
+        if (cause != null && cause.getMessage() != null && cause.getMessage().contains("Connection reset")) {
+            logger.warn(errorMessage, e);
+        } else {
+            logger.error(errorMessage, e);
+        }
+
+        eventController.dispatchEvent(new ErrorEvent(getChannelId(), getMetaDataId(), null, ErrorEventType.SOURCE_CONNECTOR, getSourceName(), connectorProperties.getName(), "Error receiving message", e));
+        eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getSourceName(), ConnectionStatusEventType.FAILURE, "Error receiving message from " + SocketUtil.getLocalAddress(socket) + ": " + e.getMessage()));
+        return new Exception(errorMessage, e);
+    }
+
     private void createServerSocket() throws IOException {
         // Create the server socket
         int backlog = DEFAULT_BACKLOG;
@@ -916,6 +1155,48 @@ public class TcpReceiver extends SourceConnector {
         }
     }
 
+    private ServerSocketChannel createServerSocketChannel() throws IOException {
+        String host = getLocalAddress();
+        int port = getLocalPort();
+
+        InetAddress hostAddress = InetAddress.getByName(host);
+        int bindAttempts = 0;
+
+        // If an error occurred during binding, try again. If the JVM fails to bind ten times, throw the exception.
+        while (true) {
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+
+            try {
+                bindAttempts++;
+                boolean isLoopback = false;
+
+                try {
+                    isLoopback = (hostAddress.isLoopbackAddress() || host.trim().equals("localhost") || hostAddress.equals(InetAddress.getLocalHost()));
+                } catch (UnknownHostException e) {
+                    logger.warn("Failed to determine if '" + hostAddress.getHostAddress() + "' is a loopback address. Could not resolve the system's host name to an address.", e);
+                }
+
+                serverChannel.bind(isLoopback ? new InetSocketAddress(port) : new InetSocketAddress(hostAddress, port), DEFAULT_BACKLOG);
+                return serverChannel;
+            } catch (BindException e) {
+                serverChannel.close();
+
+                if (bindAttempts >= 10) {
+                    throw e;
+                } else {
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException e2) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            } catch (IOException e) {
+                serverChannel.close();
+                throw e;
+            }
+        }
+    }
+
     private Socket createResponseSocket() throws IOException {
         logger.debug("Creating response socket (" + connectorProperties.getName() + " \"Source\" on channel " + getChannelId() + ").");
         return SocketUtil.createResponseSocket(configuration);
@@ -1076,6 +1357,13 @@ public class TcpReceiver extends SourceConnector {
         socket.setTcpNoDelay(true);
     }
 
+    /*
+     * Converts a byte array to a string using the charset encoding property.
+     */
+    private String getString(byte[] bytes) throws UnsupportedEncodingException {
+        return new String(bytes, CharsetUtils.getEncoding(connectorProperties.getCharsetEncoding()));
+    }
+
     /*
      * Converts a string to a byte array using the connector properties to determine whether or not
      * to encode in Base64, and what charset to use.
@@ -49,6 +49,8 @@ public class TcpReceiverProperties extends ConnectorProperties implements Listen
     private String bufferSize;
     private String maxConnections;
     private boolean keepConnectionOpen;
+    private boolean nonBlocking;
+    private String processingThreads;
     private boolean dataTypeBinary;
     private String charsetEncoding;
     private int respondOnNewConnection;
@@ -75,6 +77,8 @@ public class TcpReceiverProperties extends ConnectorProperties implements Listen
         this.bufferSize = "65536";
         this.maxConnections = "10";
         this.keepConnectionOpen = true;
+        this.nonBlocking = false;
+        this.processingThreads = "10";
         this.dataTypeBinary = false;
         this.charsetEncoding = CharsetUtils.DEFAULT_ENCODING;
         this.respondOnNewConnection = SAME_CONNECTION;
@@ -180,6 +184,23 @@ public class TcpReceiverProperties extends ConnectorProperties implements Listen
         this.keepConnectionOpen = keepConnectionOpen;
     }
 
+    public boolean isNonBlocking() {
+        return nonBlocking;
+    }
+
+    public void setNonBlocking(boolean nonBlocking) {
+        this.nonBlocking = nonBlocking;
+    }
+
+    public String getProcessingThreads() {
+        // Properties saved before non-blocking mode existed won't have this set
+        return processingThreads != null ? processingThreads : "10";
+    }
+
+    public void setProcessingThreads(String processingThreads) {
+        this.processingThreads = processingThreads;
+    }
+
     public boolean isDataTypeBinary() {
         return dataTypeBinary;
     }
@@ -313,6 +334,8 @@ public class TcpReceiverProperties extends ConnectorProperties implements Listen
         purgedProperties.put("bufferSize", PurgeUtil.getNumericValue(bufferSize));
         purgedProperties.put("maxConnections", PurgeUtil.getNumericValue(maxConnections));
         purgedProperties.put("keepConnectionOpen", keepConnectionOpen);
+        purgedProperties.put("nonBlocking", nonBlocking);
+        purgedProperties.put("processingThreads", PurgeUtil.getNumericValue(getProcessingThreads()));
         purgedProperties.put("dataTypeBinary", dataTypeBinary);
         purgedProperties.put("charsetEncoding", charsetEncoding);
         purgedProperties.put("respondOnNewConnection", respondOnNewConnection);
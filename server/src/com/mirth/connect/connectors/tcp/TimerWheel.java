@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.connectors.tcp;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs scheduled tasks on a single thread, using a hashed wheel of buckets instead of a sorted
+ * queue so that scheduling and cancelling are constant time. Tasks run at most one tick late, and
+ * should be short since they all run on the wheel's thread.
+ */
+class TimerWheel {
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private Logger logger = Logger.getLogger(this.getClass());
+
+    private String threadName;
+    private long tickMillis;
+    private List<List<Timeout>> buckets;
+    private Queue<Timeout> added = new ConcurrentLinkedQueue<Timeout>();
+    private Thread thread;
+    private volatile boolean running;
+    private long startTime;
+    private long tick;
+
+    TimerWheel(String threadName, long tickMillis, int ticksPerWheel) {
+        this.threadName = threadName;
+        this.tickMillis = Math.max(tickMillis, 1);
+
+        buckets = new ArrayList<List<Timeout>>(ticksPerWheel);
+        for (int i = 0; i < ticksPerWheel; i++) {
+            buckets.add(new ArrayList<Timeout>());
+        }
+    }
+
+    /**
+     * Runs the task after the given delay, starting the wheel's thread if needed.
+     */
+    Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(task, System.currentTimeMillis() + Math.max(delayMillis, 0));
+
+        synchronized (this) {
+            if (!running) {
+                running = true;
+                startTime = System.currentTimeMillis();
+                tick = 0;
+
+                thread = new Thread(threadName) {
+                    @Override
+                    public void run() {
+                        TimerWheel.this.run();
+                    }
+                };
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        added.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel's thread. Tasks that haven't run yet are dropped.
+     */
+    void stop() throws InterruptedException {
+        Thread thread;
+
+        synchronized (this) {
+            running = false;
+            thread = this.thread;
+            this.thread = null;
+        }
+
+        if (thread != null) {
+            thread.interrupt();
+            thread.join();
+        }
+
+        added.clear();
+        for (List<Timeout> bucket : buckets) {
+            bucket.clear();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = startTime + (tick + 1) * tickMillis;
+            long sleep = deadline - System.currentTimeMillis();
+
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            transferAdded();
+
+            long now = System.currentTimeMillis();
+            List<Timeout> bucket = buckets.get((int) (tick % buckets.size()));
+
+            for (Iterator<Timeout> it = bucket.iterator(); it.hasNext();) {
+                Timeout timeout = it.next();
+
+                if (timeout.state.get() == CANCELLED) {
+                    it.remove();
+                } else if (timeout.deadline <= now) {
+                    it.remove();
+                    timeout.expire();
+                }
+            }
+
+            tick++;
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state.get() != PENDING) {
+                continue;
+            }
+
+            // Put the timeout in the bucket for the tick it expires on; later rounds are skipped over by the deadline check
+            long ticks = Math.max((timeout.deadline - startTime + tickMillis - 1) / tickMillis, tick);
+            buckets.get((int) (ticks % buckets.size())).add(timeout);
+        }
+    }
+
+    class Timeout {
+        private Runnable task;
+        private long deadline;
+        private AtomicInteger state = new AtomicInteger(PENDING);
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Prevents the task from running. Returns false if it has already started running.
+         */
+        boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+
+        private void expire() {
+            if (state.compareAndSet(PENDING, EXPIRED)) {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    logger.warn("Error running timer task on " + threadName + ".", t);
+                }
+            }
+        }
+    }
+}
@@ -87,6 +87,7 @@ import org.apache.http.impl.conn.BasicHttpClientConnectionManager;
 import org.apache.http.protocol.HttpContext;
 import org.apache.log4j.Logger;
 
+import com.mirth.connect.connectors.http.HttpConnectionPool;
 import com.mirth.connect.donkey.model.channel.ConnectorProperties;
 import com.mirth.connect.donkey.model.event.ConnectionStatusEventType;
 import com.mirth.connect.donkey.model.event.ErrorEventType;
@@ -133,6 +134,11 @@ public class WebServiceDispatcher extends DestinationConnector {
      */
     private Set<CloseableHttpClient> clients = Collections.newSetFromMap(new ConcurrentHashMap<CloseableHttpClient, Boolean>());
 
+    /*
+     * Pool of keep-alive connections used for WSDL requests instead of a new client each time
+     */
+    private HttpConnectionPool connectionPool;
+
     @Override
     public void onDeploy() throws ConnectorTaskException {
         // load the default configuration
@@ -170,6 +176,7 @@ public class WebServiceDispatcher extends DestinationConnector {
             HttpClientUtils.closeQuietly(client);
         }
         clients.clear();
+        releaseConnectionPool();
 
         if (executor != null) {
             executor.shutdown();
@@ -189,6 +196,7 @@ public class WebServiceDispatcher extends DestinationConnector {
             HttpClientUtils.closeQuietly(client);
         }
         clients.clear();
+        releaseConnectionPool();
 
         if (executor != null) {
             boolean shutdown = executor.isShutdown();
@@ -296,14 +304,21 @@ public class WebServiceDispatcher extends DestinationConnector {
 
         // If the URL points to file, just return it
         if (!uri.getScheme().equalsIgnoreCase("file")) {
-            BasicHttpClientConnectionManager httpClientConnectionManager = new BasicHttpClientConnectionManager(socketFactoryRegistry.build());
-            httpClientConnectionManager.setSocketConfig(SocketConfig.custom().setSoTimeout(timeout).build());
-            HttpClientBuilder clientBuilder = HttpClients.custom().setConnectionManager(httpClientConnectionManager);
-            HttpUtil.configureClientBuilder(clientBuilder);
-            CloseableHttpClient client = clientBuilder.build();
+            CloseableHttpClient client;
+            boolean pooled = getConnectorProperties().isPoolConnections();
 
-            try {
+            if (pooled) {
+                client = getConnectionPool(timeout).getClient();
+            } else {
+                BasicHttpClientConnectionManager httpClientConnectionManager = new BasicHttpClientConnectionManager(socketFactoryRegistry.build());
+                httpClientConnectionManager.setSocketConfig(SocketConfig.custom().setSoTimeout(timeout).build());
+                HttpClientBuilder clientBuilder = HttpClients.custom().setConnectionManager(httpClientConnectionManager);
+                HttpUtil.configureClientBuilder(clientBuilder);
+                client = clientBuilder.build();
                 clients.add(client);
+            }
+
+            try {
                 HttpClientContext context = HttpClientContext.create();
 
                 if (dispatchContainer.getCurrentUsername() != null && dispatchContainer.getCurrentPassword() != null) {
@@ -325,14 +340,48 @@ public class WebServiceDispatcher extends DestinationConnector {
 
                 return getWsdl(client, context, dispatchContainer, new HashMap<String, File>(), dispatchContainer.getCurrentWsdlUrl()).toURI().toURL();
             } finally {
-                HttpClientUtils.closeQuietly(client);
-                clients.remove(client);
+                if (!pooled) {
+                    HttpClientUtils.closeQuietly(client);
+                    clients.remove(client);
+                }
             }
         }
 
         return uri.toURL();
     }
 
+    /*
+     * The pool is created on the first WSDL request, after the configuration has had a chance to
+     * register its socket factories.
+     */
+    private synchronized HttpConnectionPool getConnectionPool(int timeout) {
+        if (connectionPool == null) {
+            String poolName = StringUtils.trim(getConnectorProperties().getConnectionPoolName());
+            boolean shared = StringUtils.isNotEmpty(poolName);
+
+            // A custom configuration may register its own socket factories (e.g. for TLS) for each destination
+            if (shared && configuration.getClass() != DefaultWebServiceConfiguration.class) {
+                logger.warn("A shared connection pool is not supported with the current Web Service configuration, using a separate pool instead (" + getConnectorProperties().getName() + " \"" + getDestinationName() + "\" on channel " + getChannelId() + ").");
+                shared = false;
+            }
+
+            if (!shared) {
+                poolName = getChannelId() + " " + getMetaDataId();
+            }
+
+            connectionPool = HttpConnectionPool.acquire(poolName, shared, socketFactoryRegistry.build(), 10, 50, 60000, timeout);
+        }
+
+        return connectionPool;
+    }
+
+    private synchronized void releaseConnectionPool() {
+        if (connectionPool != null) {
+            connectionPool.release();
+            connectionPool = null;
+        }
+    }
+
     private File getWsdl(CloseableHttpClient client, HttpContext context, DispatchContainer dispatchContainer, Map<String, File> visitedUrls, String wsdlUrl) throws Exception {
         if (visitedUrls.containsKey(wsdlUrl)) {
             return visitedUrls.get(wsdlUrl);
@@ -633,7 +682,8 @@ public class WebServiceDispatcher extends DestinationConnector {
             responseError = ErrorMessageBuilder.buildErrorMessage(connectorProperties.getName(), "Error creating web service dispatch", e);
             eventController.dispatchEvent(new ErrorEvent(getChannelId(), getMetaDataId(), connectorMessage.getMessageId(), ErrorEventType.DESTINATION_CONNECTOR, getDestinationName(), connectorProperties.getName(), "Error creating web service dispatch.", e));
         } finally {
-            eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.IDLE));
+            HttpConnectionPool pool = connectionPool;
+            eventController.dispatchEvent(new ConnectionStatusEvent(getChannelId(), getMetaDataId(), getDestinationName(), ConnectionStatusEventType.IDLE, pool != null ? pool.getStatusMessage() : null));
         }
 
         return new Response(responseStatus, responseData, responseStatusMessage, responseError, validateResponse);
@@ -40,6 +40,8 @@ public class WebServiceDispatcherProperties extends ConnectorProperties implemen
     private String operation;
     private String locationURI;
     private String socketTimeout;
+    private boolean poolConnections;
+    private String connectionPoolName;
     private boolean useAuthentication;
     private String username;
     private String password;
@@ -69,6 +71,8 @@ public class WebServiceDispatcherProperties extends ConnectorProperties implemen
         this.port = "";
         this.locationURI = "";
         this.socketTimeout = "30000";
+        this.poolConnections = false;
+        this.connectionPoolName = "";
         this.useAuthentication = false;
         this.username = "";
         this.password = "";
@@ -97,6 +101,8 @@ public class WebServiceDispatcherProperties extends ConnectorProperties implemen
         port = props.getPort();
         locationURI = props.getLocationURI();
         socketTimeout = props.getSocketTimeout();
+        poolConnections = props.isPoolConnections();
+        connectionPoolName = props.getConnectionPoolName();
         useAuthentication = props.isUseAuthentication();
         username = props.getUsername();
         password = props.getPassword();
@@ -160,6 +166,23 @@ public class WebServiceDispatcherProperties extends ConnectorProperties implemen
         this.socketTimeout = socketTimeout;
     }
 
+    public boolean isPoolConnections() {
+        return poolConnections;
+    }
+
+    public void setPoolConnections(boolean poolConnections) {
+        this.poolConnections = poolConnections;
+    }
+
+    public String getConnectionPoolName() {
+        // Channels serialized before this property existed
+        return connectionPoolName != null ? connectionPoolName : "";
+    }
+
+    public void setConnectionPoolName(String connectionPoolName) {
+        this.connectionPoolName = connectionPoolName;
+    }
+
     public String getOperation() {
         return operation;
     }
@@ -496,6 +519,7 @@ public class WebServiceDispatcherProperties extends ConnectorProperties implemen
         purgedProperties.put("attachmentContentCount", attachmentContents.size());
         purgedProperties.put("wsdlDefinitionMapCount", wsdlDefinitionMap != null ? wsdlDefinitionMap.getMap().size() : 0);
         purgedProperties.put("socketTimeout", PurgeUtil.getNumericValue(socketTimeout));
+        purgedProperties.put("poolConnections", poolConnections);
         return purgedProperties;
     }
 }
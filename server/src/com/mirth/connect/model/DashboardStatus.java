@@ -45,6 +45,13 @@ public class DashboardStatus implements Serializable {
     private Integer metaDataId;
     private boolean queueEnabled;
     private Long queued = 0L;
+    private Long queueBufferSize = 0L;
+    private Long queueBufferMemory = 0L; // estimated bytes
+    private Long groupCommitTransactions; // null if group commit is not enabled
+    private Double groupCommitAverageBatchSize;
+    private Double groupCommitAverageLatency; // milliseconds
+    private Long xsltCacheHits; // null if the channel has not used an XSLT stylesheet
+    private Long xsltCacheMisses;
     private boolean waitForPrevious = false;
     private StatusType statusType;
 
@@ -144,6 +151,62 @@ public class DashboardStatus implements Serializable {
         this.queued = queued;
     }
 
+    public Long getQueueBufferSize() {
+        return queueBufferSize;
+    }
+
+    public void setQueueBufferSize(Long queueBufferSize) {
+        this.queueBufferSize = queueBufferSize;
+    }
+
+    public Long getQueueBufferMemory() {
+        return queueBufferMemory;
+    }
+
+    public void setQueueBufferMemory(Long queueBufferMemory) {
+        this.queueBufferMemory = queueBufferMemory;
+    }
+
+    public Long getGroupCommitTransactions() {
+        return groupCommitTransactions;
+    }
+
+    public void setGroupCommitTransactions(Long groupCommitTransactions) {
+        this.groupCommitTransactions = groupCommitTransactions;
+    }
+
+    public Double getGroupCommitAverageBatchSize() {
+        return groupCommitAverageBatchSize;
+    }
+
+    public void setGroupCommitAverageBatchSize(Double groupCommitAverageBatchSize) {
+        this.groupCommitAverageBatchSize = groupCommitAverageBatchSize;
+    }
+
+    public Double getGroupCommitAverageLatency() {
+        return groupCommitAverageLatency;
+    }
+
+    public void setGroupCommitAverageLatency(Double groupCommitAverageLatency) {
+        this.groupCommitAverageLatency = groupCommitAverageLatency;
+    }
+
+    public Long getXsltCacheHits() {
+        return xsltCacheHits;
+    }
+
+    public void setXsltCacheHits(Long xsltCacheHits) {
+        this.xsltCacheHits = xsltCacheHits;
+    }
+
+    public Long getXsltCacheMisses() {
+        return xsltCacheMisses;
+    }
+
+    public void setXsltCacheMisses(Long xsltCacheMisses) {
+        this.xsltCacheMisses = xsltCacheMisses;
+    }
+
     public boolean isWaitForPrevious() {
         return waitForPrevious;
     }
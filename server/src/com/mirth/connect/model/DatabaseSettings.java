@@ -66,6 +66,11 @@ public class DatabaseSettings extends AbstractSettings implements Serializable,
 
     private boolean splitReadWrite;
     private boolean writePoolCache;
+    private boolean groupCommit;
+    private Integer groupCommitWindow;
+    private Integer groupCommitMaxBatchSize;
+    private Integer groupCommitThreads;
+    private Integer messageIdBlockSize;
 
     private String database;
     private String databaseUrl;
@@ -111,6 +116,46 @@ public class DatabaseSettings extends AbstractSettings implements Serializable,
         this.writePoolCache = writePoolCache;
     }
 
+    public boolean isGroupCommit() {
+        return groupCommit;
+    }
+
+    public void setGroupCommit(boolean groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
+    public Integer getGroupCommitWindow() {
+        return groupCommitWindow;
+    }
+
+    public void setGroupCommitWindow(Integer groupCommitWindow) {
+        this.groupCommitWindow = groupCommitWindow;
+    }
+
+    public Integer getGroupCommitMaxBatchSize() {
+        return groupCommitMaxBatchSize;
+    }
+
+    public void setGroupCommitMaxBatchSize(Integer groupCommitMaxBatchSize) {
+        this.groupCommitMaxBatchSize = groupCommitMaxBatchSize;
+    }
+
+    public Integer getGroupCommitThreads() {
+        return groupCommitThreads;
+    }
+
+    public void setGroupCommitThreads(Integer groupCommitThreads) {
+        this.groupCommitThreads = groupCommitThreads;
+    }
+
+    public Integer getMessageIdBlockSize() {
+        return messageIdBlockSize;
+    }
+
+    public void setMessageIdBlockSize(Integer messageIdBlockSize) {
+        this.messageIdBlockSize = messageIdBlockSize;
+    }
+
     public String getDatabase() {
         return database;
     }
@@ -287,6 +332,11 @@ public class DatabaseSettings extends AbstractSettings implements Serializable,
     public void setProperties(Properties properties) {
         setSplitReadWrite(Boolean.parseBoolean(properties.getProperty(DatabaseConstants.DATABASE_ENABLE_READ_WRITE_SPLIT)));
         setWritePoolCache(Boolean.parseBoolean(properties.getProperty(DatabaseConstants.DATABASE_WRITE_POOL_CACHE)));
+        setGroupCommit(Boolean.parseBoolean(properties.getProperty(DatabaseConstants.DATABASE_GROUP_COMMIT)));
+        setGroupCommitWindow(toInteger(properties.getProperty(DatabaseConstants.DATABASE_GROUP_COMMIT_WINDOW)));
+        setGroupCommitMaxBatchSize(toInteger(properties.getProperty(DatabaseConstants.DATABASE_GROUP_COMMIT_MAX_BATCH_SIZE)));
+        setGroupCommitThreads(toInteger(properties.getProperty(DatabaseConstants.DATABASE_GROUP_COMMIT_THREADS)));
+        setMessageIdBlockSize(toInteger(properties.getProperty(DatabaseConstants.DATABASE_MESSAGE_ID_BLOCK_SIZE)));
 
         setDatabase(properties.getProperty(DatabaseConstants.DATABASE));
         setDatabaseUrl(properties.getProperty(DatabaseConstants.DATABASE_URL));
@@ -320,6 +370,24 @@ public class DatabaseSettings extends AbstractSettings implements Serializable,
 
         configuration.setProperty(DatabaseConstants.DATABASE_WRITE_POOL_CACHE, Boolean.toString(writePoolCache));
 
+        configuration.setProperty(DatabaseConstants.DATABASE_GROUP_COMMIT, Boolean.toString(groupCommit));
+
+        if (getGroupCommitWindow() != null) {
+            configuration.setProperty(DatabaseConstants.DATABASE_GROUP_COMMIT_WINDOW, getGroupCommitWindow().toString());
+        }
+
+        if (getGroupCommitMaxBatchSize() != null) {
+            configuration.setProperty(DatabaseConstants.DATABASE_GROUP_COMMIT_MAX_BATCH_SIZE, getGroupCommitMaxBatchSize().toString());
+        }
+
+        if (getGroupCommitThreads() != null) {
+            configuration.setProperty(DatabaseConstants.DATABASE_GROUP_COMMIT_THREADS, getGroupCommitThreads().toString());
+        }
+
+        if (getMessageIdBlockSize() != null) {
+            configuration.setProperty(DatabaseConstants.DATABASE_MESSAGE_ID_BLOCK_SIZE, getMessageIdBlockSize().toString());
+        }
+
         if (getDirBase() != null) {
             configuration.setProperty(DIR_BASE, getDirBase());
         }
@@ -422,6 +490,10 @@ public class DatabaseSettings extends AbstractSettings implements Serializable,
         return ConfigurationConverter.getProperties(configuration);
     }
 
+    private Integer toInteger(String value) {
+        return NumberUtils.isDigits(StringUtils.trim(value)) ? Integer.valueOf(StringUtils.trim(value)) : null;
+    }
+
     @Override
     public String toAuditString() {
         return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE).toString();
@@ -34,6 +34,8 @@ public class ServerSettings extends AbstractSettings implements Serializable, Au
 
     private static final String CLEAR_GLOBAL_MAP = "server.resetglobalvariables";
     private static final String QUEUE_BUFFER_SIZE = "server.queuebuffersize";
+    private static final String QUEUE_BUFFER_MEMORY = "server.queuebuffermemory";
+    private static final String QUEUE_CONTENT_PREFETCH = "server.queuecontentprefetch";
     private static final String DEFAULT_METADATA_COLUMNS = "server.defaultmetadatacolumns";
     private static final String DEFAULT_ADMINISTRATOR_COLOR = "server.defaultadministratorcolor";
     private static final String SMTP_HOST = "smtp.host";
@@ -50,6 +52,10 @@ public class ServerSettings extends AbstractSettings implements Serializable, Au
     private String serverName;
     private Boolean clearGlobalMap;
     private Integer queueBufferSize;
+    // Megabytes for each queue buffer on its own (not a server-wide total), 0 for no limit
+    private Integer queueBufferMemory;
+    // Messages to prefetch per destination queue thread, 0 to buffer messages with their content
+    private Integer queueContentPrefetch;
     private List<MetaDataColumn> defaultMetaDataColumns;
     private Color defaultAdministratorBackgroundColor;
 
@@ -83,6 +89,12 @@ public class ServerSettings extends AbstractSettings implements Serializable, Au
         if (getQueueBufferSize() != null) {
             properties.put(QUEUE_BUFFER_SIZE, getQueueBufferSize().toString());
         }
+        if (getQueueBufferMemory() != null) {
+            properties.put(QUEUE_BUFFER_MEMORY, getQueueBufferMemory().toString());
+        }
+        if (getQueueContentPrefetch() != null) {
+            properties.put(QUEUE_CONTENT_PREFETCH, getQueueContentPrefetch().toString());
+        }
         if (getDefaultMetaDataColumns() != null) {
             properties.put(DEFAULT_METADATA_COLUMNS, ObjectXMLSerializer.getInstance().serialize(getDefaultMetaDataColumns()));
         }
@@ -121,6 +133,8 @@ public class ServerSettings extends AbstractSettings implements Serializable, Au
     public void setProperties(Properties properties) {
         setClearGlobalMap(intToBooleanObject(properties.getProperty(CLEAR_GLOBAL_MAP)));
         setQueueBufferSize(toIntegerObject(properties.getProperty(QUEUE_BUFFER_SIZE)));
+        setQueueBufferMemory(toIntegerObject(properties.getProperty(QUEUE_BUFFER_MEMORY)));
+        setQueueContentPrefetch(toIntegerObject(properties.getProperty(QUEUE_CONTENT_PREFETCH)));
         setDefaultMetaDataColumns(toList(properties.getProperty(DEFAULT_METADATA_COLUMNS), MetaDataColumn.class, DefaultMetaData.DEFAULT_COLUMNS));
         setDefaultAdministratorBackgroundColor(deserialize(properties.getProperty(DEFAULT_ADMINISTRATOR_COLOR), Color.class, DEFAULT_COLOR));
         setSmtpHost(properties.getProperty(SMTP_HOST));
@@ -165,6 +179,22 @@ public class ServerSettings extends AbstractSettings implements Serializable, Au
         this.queueBufferSize = queueBufferSize;
     }
 
+    public Integer getQueueBufferMemory() {
+        return queueBufferMemory;
+    }
+
+    public void setQueueBufferMemory(Integer queueBufferMemory) {
+        this.queueBufferMemory = queueBufferMemory;
+    }
+
+    public Integer getQueueContentPrefetch() {
+        return queueContentPrefetch;
+    }
+
+    public void setQueueContentPrefetch(Integer queueContentPrefetch) {
+        this.queueContentPrefetch = queueContentPrefetch;
+    }
+
     public List<MetaDataColumn> getDefaultMetaDataColumns() {
         return defaultMetaDataColumns;
     }
@@ -255,6 +285,8 @@ public class ServerSettings extends AbstractSettings implements Serializable, Au
         Map<String, Object> purgedProperties = new HashMap<String, Object>();
         purgedProperties.put("clearGlobalMap", clearGlobalMap);
         purgedProperties.put("queueBufferSize", queueBufferSize);
+        purgedProperties.put("queueBufferMemory", queueBufferMemory);
+        purgedProperties.put("queueContentPrefetch", queueContentPrefetch);
         purgedProperties.put("defaultMetaDataColumns", PurgeUtil.purgeList(defaultMetaDataColumns));
         purgedProperties.put("defaultAdministratorBackgroundColor", defaultAdministratorBackgroundColor);
         purgedProperties.put("smtpTimeout", PurgeUtil.getNumericValue(smtpTimeout));
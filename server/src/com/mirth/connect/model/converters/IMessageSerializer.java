@@ -9,10 +9,20 @@
 
 package com.mirth.connect.model.converters;
 
+import java.util.List;
 import java.util.Map;
 
 import com.mirth.connect.donkey.model.message.MessageSerializer;
 
 public interface IMessageSerializer extends MessageSerializer {
     public Map<String, Object> getMetaDataFromMessage(String message);
+
+    /**
+     * Returns a reader that gets the values of the given serialized XML element paths directly from
+     * the unserialized message, or null if the serializer can't read those paths without
+     * serializing.
+     */
+    public default MessageFieldReader getFieldReader(List<String[]> paths) {
+        return null;
+    }
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.model.converters;
+
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
+
+/**
+ * Reads the values of a fixed set of element paths, such as ["PID", "PID.3", "PID.3.1"], the same
+ * way msg['PID']['PID.3']['PID.3.1'].toString() would read them from the serialized XML.
+ */
+public interface MessageFieldReader {
+
+    /**
+     * Reads the values of the paths this reader was created for.
+     *
+     * @param message
+     *            The message to read from.
+     * @param connectorMessage
+     *            The connector message being processed, which may be used to cache work.
+     * @return The values in the same order as the paths, or null if any value can't be read
+     *         exactly the way it would be from the serialized XML, for instance because a path
+     *         matches more than one element.
+     */
+    public String[] readValues(String message, ConnectorMessage connectorMessage) throws Exception;
+}
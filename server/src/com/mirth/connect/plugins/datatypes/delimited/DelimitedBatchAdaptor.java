@@ -12,9 +12,9 @@ package com.mirth.connect.plugins.datatypes.delimited;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
@@ -50,6 +50,7 @@ public class DelimitedBatchAdaptor extends BatchAdaptor {
     private DelimitedBatchProperties batchProperties;
     private DelimitedReader delimitedReader = null;
     private BufferedReader bufferedReader;
+    private DelimitedParser parser;
     private boolean skipHeader;
     private Integer groupingColumnIndex;
     private String batchMessageDelimiter = null;
@@ -91,6 +92,7 @@ public class DelimitedBatchAdaptor extends BatchAdaptor {
             if (batchSequenceId == 1) {
                 BatchMessageReader batchMessageReader = (BatchMessageReader) batchRawMessage.getBatchMessageSource();
                 bufferedReader = new BufferedReader(batchMessageReader.getReader());
+                parser = null;
                 skipHeader = true;
             }
             return getMessageFromReader();
@@ -124,32 +126,33 @@ public class DelimitedBatchAdaptor extends BatchAdaptor {
      * @throws InterruptedException
      */
     private String getMessage(final BufferedReader in, final boolean skipHeader) throws Exception {
-        String recDelim = delimitedReader.getRecordDelimiter();
-        int ch;
-        String lookAhead = "";
+        SplitType splitOption = batchProperties.getSplitType();
+
+        /*
+         * The batch script reads from the stream itself, so it is only read one character at a time
+         * for that option. Otherwise records are read from the stream in large blocks.
+         */
+        if (splitOption != SplitType.JavaScript && parser == null) {
+            parser = delimitedReader.createParser(in);
+        }
+
         // If skipping the header, and the option is configured, consume all the skip records,
         // including the record delimiters
         if (skipHeader && batchProperties.getBatchSkipRecords() > 0) {
             for (int i = 0; i < batchProperties.getBatchSkipRecords(); i++) {
-                do {
-                    ch = delimitedReader.getChar(in, null);
-                    lookAhead = delimitedReader.peekChars(in, recDelim.length());
-                } while (ch != -1 && !lookAhead.equals(recDelim));
-
-                if (lookAhead.equals(recDelim)) {
-                    for (int j = 0; j < recDelim.length(); j++) {
-                        ch = delimitedReader.getChar(in, null);
-                    }
+                if (parser != null) {
+                    parser.skipRecord();
+                } else {
+                    skipRecord(in);
                 }
             }
         }
 
         StringBuilder message = new StringBuilder();
-        SplitType splitOption = batchProperties.getSplitType();
 
         if (splitOption == SplitType.Record) {
             // Each record is treated as a message
-            delimitedReader.getRecord(in, message);
+            parser.nextRecord(message);
         } else if (splitOption == SplitType.Delimiter) {
             if (StringUtils.isEmpty(batchProperties.getBatchMessageDelimiter())) {
                 throw new BatchMessageException("No batch message delimiter was set.");
@@ -162,20 +165,17 @@ public class DelimitedBatchAdaptor extends BatchAdaptor {
             // message.
             for (;;) {
                 // Get the next record
-                ArrayList<String> record = delimitedReader.getRecord(in, message);
+                List<String> record = parser.nextRecord(message);
 
                 if (record == null) {
                     break;
                 }
 
                 // If the next sequence of characters is the message delimiter
-                lookAhead = delimitedReader.peekChars(in, batchMessageDelimiter.length());
-                if (lookAhead.equals(batchMessageDelimiter)) {
+                if (parser.startsWith(batchMessageDelimiter)) {
 
                     // Consume it.
-                    for (int i = 0; i < batchMessageDelimiter.length(); i++) {
-                        ch = delimitedReader.getChar(in, null);
-                    }
+                    parser.skip(batchMessageDelimiter.length(), null);
 
                     // Append it if it is being included
                     if (batchProperties.isBatchMessageDelimiterIncluded()) {
@@ -198,7 +198,7 @@ public class DelimitedBatchAdaptor extends BatchAdaptor {
 
             // Prime the pump: get the first record, and save the grouping
             // column.
-            ArrayList<String> record = delimitedReader.getRecord(in, message);
+            List<String> record = parser.nextRecord(message);
 
             if (record != null) {
 
@@ -213,14 +213,14 @@ public class DelimitedBatchAdaptor extends BatchAdaptor {
                 for (;;) {
 
                     StringBuilder recordText = new StringBuilder();
-                    record = delimitedReader.getRecord(in, recordText);
+                    record = parser.nextRecord(recordText);
 
                     if (record == null) {
                         break;
                     }
 
                     if (!record.get(groupingColumnIndex).equals(lastColumnValue)) {
-                        delimitedReader.ungetRecord(record, recordText.toString());
+                        parser.ungetRecord(record, recordText.toString());
                         break;
                     }
 
@@ -290,6 +290,26 @@ public class DelimitedBatchAdaptor extends BatchAdaptor {
         }
     }
 
+    /**
+     * Consumes everything up to and including the next record delimiter, one character at a time.
+     */
+    private void skipRecord(BufferedReader in) throws IOException {
+        String recDelim = delimitedReader.getRecordDelimiter();
+        int ch;
+        String lookAhead;
+
+        do {
+            ch = delimitedReader.getChar(in, null);
+            lookAhead = delimitedReader.peekChars(in, recDelim.length());
+        } while (ch != -1 && !lookAhead.equals(recDelim));
+
+        if (lookAhead.equals(recDelim)) {
+            for (int j = 0; j < recDelim.length(); j++) {
+                delimitedReader.getChar(in, null);
+            }
+        }
+    }
+
     private Map<String, Object> getScopeObjects(Reader in, DelimitedSerializationProperties props, Boolean skipHeader, Integer batchSkipRecords) {
         Map<String, Object> scopeObjects = new HashMap<String, Object>();
 
@@ -16,6 +16,7 @@ import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
+import com.mirth.connect.donkey.model.message.SerializationType;
 import com.mirth.connect.donkey.util.DonkeyElement;
 import com.mirth.connect.model.datatype.DataTypePropertyDescriptor;
 import com.mirth.connect.model.datatype.DeserializationProperties;
@@ -31,6 +32,7 @@ public class DelimitedDeserializationProperties extends DeserializationPropertie
     private String quoteToken = "\"";
     private boolean escapeWithDoubleQuote = true;
     private String quoteEscapeToken = "\\";
+    private SerializationType serializationType = SerializationType.XML;
 
     @Override
     public Map<String, DataTypePropertyDescriptor> getPropertyDescriptors() {
@@ -42,6 +44,7 @@ public class DelimitedDeserializationProperties extends DeserializationPropertie
         properties.put("quoteToken", new DataTypePropertyDescriptor(quoteToken, "Quote Token", "Enter the quote characters that are used to bracket delimit column values containing embedded special characters like column delimiters, record delimiters, quote characters and/or message delimiters.    For example, this is a double quote (\") in a CSV file.", PropertyEditorType.STRING));
         properties.put("escapeWithDoubleQuote", new DataTypePropertyDescriptor(escapeWithDoubleQuote, "Double Quote Escaping", "By default, two consecutive quote tokens within a quoted value are treated as an embedded quote token.  Uncheck to enable escaped quote token processing (and specify the Escape Tokens).", PropertyEditorType.BOOLEAN));
         properties.put("quoteEscapeToken", new DataTypePropertyDescriptor(quoteEscapeToken, "Escape Token", "Enter the characters used to escape embedded quote tokens.  By default, this is a back slash.  This option has no effect unless Double Quote Escaping is unchecked.", PropertyEditorType.STRING));
+        properties.put("serializationType", new DataTypePropertyDescriptor(getSerializationType(), "Serialization Type", "The format the transformed message is deserialized from. This should match the Serialization Type of the outbound template. JSON is converted directly to the delimited text.", PropertyEditorType.OPTION, new SerializationType[] { SerializationType.XML, SerializationType.JSON }));
 
         return properties;
     }
@@ -98,6 +101,10 @@ public class DelimitedDeserializationProperties extends DeserializationPropertie
             if (StringUtils.isNotEmpty((String) properties.get("quoteEscapeToken"))) {
                 quoteEscapeToken = (String) properties.get("quoteEscapeToken");
             }
+
+            if (properties.get("serializationType") != null) {
+                serializationType = (SerializationType) properties.get("serializationType");
+            }
         }
     }
 
@@ -172,6 +179,17 @@ public class DelimitedDeserializationProperties extends DeserializationPropertie
         this.quoteEscapeToken = quoteEscapeToken;
     }
 
+    @Override
+    public SerializationType getSerializationType() {
+        // Properties saved before this option existed do not have it set
+        return serializationType != null ? serializationType : SerializationType.XML;
+    }
+
+    @Override
+    public void setSerializationType(SerializationType serializationType) {
+        this.serializationType = serializationType;
+    }
+
     // @formatter:off
     @Override public void migrate3_0_1(DonkeyElement element) {}
     @Override public void migrate3_0_2(DonkeyElement element) {}
@@ -203,6 +221,7 @@ public class DelimitedDeserializationProperties extends DeserializationPropertie
         Map<String, Object> purgedProperties = new HashMap<String, Object>();
         purgedProperties.put("columnWidths", columnWidths);
         purgedProperties.put("escapeWithDoubleQuote", escapeWithDoubleQuote);
+        purgedProperties.put("serializationType", getSerializationType());
         return purgedProperties;
     }
 }
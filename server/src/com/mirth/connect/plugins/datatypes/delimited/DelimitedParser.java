@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.plugins.datatypes.delimited;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Reads delimited records from a character stream. The stream is read in large blocks, and column
+ * values are scanned directly out of the block instead of one character at a time, so that large
+ * files can be parsed as fast as they can be read. Carriage returns are dropped as each block is
+ * read when Ignore Carriage Returns is enabled.
+ *
+ * The records returned are the same as the ones the character-by-character parsing in
+ * DelimitedReader used to return, including the raw text of each record.
+ */
+class DelimitedParser {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private Reader in;
+    private Integer[] columnWidths;
+    private boolean escapeWithDoubleQuote;
+    private boolean ignoreCR;
+    private String columnDelimiter;
+    private String recordDelimiter;
+    private String quoteToken;
+    private String quoteEscapeToken;
+
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    private StringBuilder columnValue = new StringBuilder();
+
+    // The most recent ungotten record, and its raw text, if any
+    private List<String> ungottenRecord;
+    private String ungottenRawText;
+
+    DelimitedParser(Reader in, DelimitedSerializationProperties serializationProperties, String columnDelimiter, String recordDelimiter, String quoteToken, String quoteEscapeToken) {
+        this.in = in;
+        this.columnWidths = serializationProperties.getColumnWidths();
+        this.escapeWithDoubleQuote = serializationProperties.isEscapeWithDoubleQuote();
+        this.ignoreCR = serializationProperties.isIgnoreCR();
+        this.columnDelimiter = StringUtils.defaultIfEmpty(columnDelimiter, ",");
+        this.recordDelimiter = StringUtils.defaultIfEmpty(recordDelimiter, "\n");
+        this.quoteToken = StringUtils.defaultIfEmpty(quoteToken, "\"");
+        this.quoteEscapeToken = StringUtils.defaultIfEmpty(quoteEscapeToken, "\\");
+    }
+
+    /**
+     * Gets the next record, and consumes the record delimiter, if any.
+     *
+     * @param rawText
+     *            Optional StringBuilder used to return a copy of the raw text read by this method.
+     * @return The record represented as a list of column values, or null if there is no next
+     *         record.
+     */
+    List<String> nextRecord(StringBuilder rawText) throws IOException {
+        // If there is an ungotten (pushed back) record, return it rather than reading from the stream
+        if (ungottenRecord != null) {
+            List<String> record = ungottenRecord;
+            if (rawText != null) {
+                rawText.append(ungottenRawText);
+            }
+            ungottenRecord = null;
+            ungottenRawText = null;
+            return record;
+        }
+
+        if (!ensure(1)) {
+            return null;
+        }
+
+        List<String> record = new ArrayList<String>();
+
+        if (columnWidths != null) {
+            readFixedWidthRecord(record, rawText);
+        } else {
+            for (;;) {
+                record.add(readColumnValue(rawText));
+
+                // Break at end of input
+                if (!ensure(1)) {
+                    break;
+                }
+
+                // Consume record delimiter and break
+                if (startsWith(recordDelimiter)) {
+                    skip(recordDelimiter.length(), rawText);
+                    break;
+                }
+
+                // Consume column delimiter
+                if (startsWith(columnDelimiter)) {
+                    skip(columnDelimiter.length(), rawText);
+                }
+            }
+        }
+
+        return record;
+    }
+
+    /**
+     * Pushes back the given record. The next call to nextRecord() returns it rather than reading
+     * from the stream.
+     */
+    void ungetRecord(List<String> record, String rawText) {
+        ungottenRecord = record;
+        ungottenRawText = rawText;
+    }
+
+    /**
+     * Consumes everything up to and including the next record delimiter, without splitting it into
+     * columns. Quote tokens are not taken into account, so a quoted record delimiter ends the
+     * record.
+     */
+    void skipRecord() throws IOException {
+        int ch;
+        boolean atRecordDelimiter;
+
+        do {
+            ch = read(null);
+            atRecordDelimiter = startsWith(recordDelimiter);
+        } while (ch != -1 && !atRecordDelimiter);
+
+        if (atRecordDelimiter) {
+            skip(recordDelimiter.length(), null);
+        }
+    }
+
+    /**
+     * Returns true if the next characters in the stream are the given token.
+     */
+    boolean startsWith(String token) throws IOException {
+        int length = token.length();
+
+        if (!ensure(length)) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (buffer[position + i] != token.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Consumes up to the given number of characters, appending them to the raw text if given.
+     */
+    void skip(int count, StringBuilder rawText) throws IOException {
+        ensure(count);
+        count = Math.min(count, limit - position);
+
+        if (rawText != null) {
+            rawText.append(buffer, position, count);
+        }
+
+        position += count;
+    }
+
+    private void readFixedWidthRecord(List<String> record, StringBuilder rawText) throws IOException {
+        int ch = 0;
+        boolean atRecordDelimiter = false;
+
+        for (int i = 0; i < columnWidths.length; i++) {
+            columnValue.setLength(0);
+            atRecordDelimiter = startsWith(recordDelimiter);
+
+            for (int j = 0; j < columnWidths[i] && !atRecordDelimiter; j++) {
+                // Break on end of input
+                ch = read(rawText);
+                if (ch == -1) {
+                    break;
+                }
+
+                columnValue.append((char) ch);
+                atRecordDelimiter = startsWith(recordDelimiter);
+            }
+
+            // Trailing whitespace is padding
+            record.add(StringUtils.stripEnd(columnValue.toString(), null));
+
+            if (ch == -1 || atRecordDelimiter) {
+                break;
+            }
+        }
+
+        // Consume trailing characters, if any, up until end of input or record delimiter
+        while (ch != -1 && !atRecordDelimiter) {
+            ch = read(rawText);
+            atRecordDelimiter = startsWith(recordDelimiter);
+        }
+
+        if (atRecordDelimiter) {
+            skip(recordDelimiter.length(), rawText);
+        }
+    }
+
+    private String readColumnValue(StringBuilder rawText) throws IOException {
+        columnValue.setLength(0);
+
+        if (!startsWith(quoteToken)) {
+            char recordStart = recordDelimiter.charAt(0);
+            char columnStart = columnDelimiter.charAt(0);
+
+            while (ensure(1)) {
+                // Scan ahead to the next character that could start a delimiter
+                int end = position;
+                while (end < limit && buffer[end] != recordStart && buffer[end] != columnStart) {
+                    end++;
+                }
+                append(end - position, rawText);
+
+                if (end < limit) {
+                    if (startsWith(recordDelimiter) || startsWith(columnDelimiter)) {
+                        break;
+                    }
+
+                    append(1, rawText);
+                }
+            }
+        } else {
+            skip(quoteToken.length(), rawText);
+
+            char quoteStart = quoteToken.charAt(0);
+            char escapeStart = escapeWithDoubleQuote ? quoteStart : quoteEscapeToken.charAt(0);
+            boolean inQuote = true;
+
+            while (ensure(1)) {
+                if (inQuote) {
+                    // Everything up to the next quote or escape token is part of the value
+                    int end = position;
+                    while (end < limit && buffer[end] != quoteStart && buffer[end] != escapeStart) {
+                        end++;
+                    }
+                    append(end - position, rawText);
+
+                    if (end == limit) {
+                        continue;
+                    }
+
+                    if (escapeWithDoubleQuote) {
+                        // Two quote tokens are an embedded quote token
+                        if (startsWith(quoteToken + quoteToken)) {
+                            skip(quoteToken.length(), rawText);
+                            append(quoteToken.length(), rawText);
+                            continue;
+                        }
+                    } else {
+                        // An escaped quote token
+                        if (startsWith(quoteEscapeToken + quoteToken)) {
+                            skip(quoteEscapeToken.length(), rawText);
+                            append(quoteToken.length(), rawText);
+                            continue;
+                        }
+
+                        // An escaped escape token
+                        if (startsWith(quoteEscapeToken + quoteEscapeToken)) {
+                            skip(quoteEscapeToken.length(), rawText);
+                            append(quoteEscapeToken.length(), rawText);
+                            continue;
+                        }
+                    }
+
+                    // The ending quote token
+                    if (startsWith(quoteToken)) {
+                        skip(quoteToken.length(), rawText);
+                        inQuote = false;
+                        continue;
+                    }
+                } else if (startsWith(recordDelimiter) || startsWith(columnDelimiter)) {
+                    break;
+                }
+
+                // Characters after the ending quote token are still part of the value
+                append(1, rawText);
+            }
+        }
+
+        return columnValue.toString();
+    }
+
+    /*
+     * Appends the given number of buffered characters to the column value, and consumes them.
+     */
+    private void append(int count, StringBuilder rawText) {
+        columnValue.append(buffer, position, count);
+
+        if (rawText != null) {
+            rawText.append(buffer, position, count);
+        }
+
+        position += count;
+    }
+
+    private int read(StringBuilder rawText) throws IOException {
+        if (!ensure(1)) {
+            return -1;
+        }
+
+        char ch = buffer[position++];
+
+        if (rawText != null) {
+            rawText.append(ch);
+        }
+
+        return ch;
+    }
+
+    /*
+     * Makes sure at least the given number of characters are buffered, unless the end of the input
+     * is reached first. Returns false if fewer characters are available.
+     */
+    private boolean ensure(int count) throws IOException {
+        while (limit - position < count && !endOfInput) {
+            if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                position = 0;
+            }
+
+            if (limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+
+            int read = in.read(buffer, limit, buffer.length - limit);
+
+            if (read < 0) {
+                endOfInput = true;
+            } else if (ignoreCR) {
+                int end = limit + read;
+                for (int i = limit; i < end; i++) {
+                    if (buffer[i] != '\r') {
+                        buffer[limit++] = buffer[i];
+                    }
+                }
+            } else {
+                limit += read;
+            }
+        }
+
+        return limit - position >= count;
+    }
+}
@@ -11,7 +11,8 @@ package com.mirth.connect.plugins.datatypes.delimited;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.Reader;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
@@ -27,9 +28,6 @@ public class DelimitedReader extends SAXParser {
 
     private DelimitedSerializationProperties serializationProperties;
 
-    // The most recent ungotten record, and it's raw text, if any
-    private ArrayList<String> ungottenRecord;
-    private String ungottenRawText;
     private String columnDelimiter = null;
     private String recordDelimiter = null;
     private String quoteToken = null;
@@ -42,10 +40,6 @@ public class DelimitedReader extends SAXParser {
         updateRecordDelimiter();
         updateQuoteToken();
         updateQuoteEscapeToken();
-
-        // Initially, there is no ungotten (pushed back) record
-        ungottenRecord = null;
-        ungottenRawText = null;
     }
 
     public void parse(InputSource input) throws SAXException, IOException {
@@ -80,7 +74,7 @@ public class DelimitedReader extends SAXParser {
         // output:
         // o columnNames A list of column names (taken from either file header,
         // or supplied by user).
-        BufferedReader in = new BufferedReader(input.getCharacterStream());
+        DelimitedParser parser = createParser(input.getCharacterStream());
 
         // Start the document
         String documentHead = "delimited";
@@ -91,28 +85,18 @@ public class DelimitedReader extends SAXParser {
         contentHandler.startElement("", documentHead, "", null);
 
         // While the parser gets records from the message
-        ArrayList<String> record;
+        List<String> record;
         int recordNo = 1;
-        while ((record = getRecord(in, null)) != null) {
+        while ((record = parser.nextRecord(null)) != null) {
 
             // Output <rowN>
-            if (serializationProperties.isNumberedRows()) {
-                contentHandler.startElement("", "row" + recordNo, "", null);
-            } else {
-                contentHandler.startElement("", "row", "", null);
-            }
+            String rowName = getRowName(recordNo);
+            contentHandler.startElement("", rowName, "", null);
 
             // For each column
             for (int i = 0; i < record.size(); i++) {
+                String columnName = getColumnName(i);
 
-                String columnName;
-                if (serializationProperties.getColumnNames() != null && i < serializationProperties.getColumnNames().length) {
-                    // User specified column name
-                    columnName = serializationProperties.getColumnNames()[i];
-                } else {
-                    // Default column name
-                    columnName = "column" + (i + 1);
-                }
                 // Output <columnN>
                 contentHandler.startElement("", columnName, "", null);
 
@@ -124,11 +108,7 @@ public class DelimitedReader extends SAXParser {
             }
 
             // Output </rowN>
-            if (serializationProperties.isNumberedRows()) {
-                contentHandler.endElement("", "row" + recordNo, "");
-            } else {
-                contentHandler.endElement("", "row", "");
-            }
+            contentHandler.endElement("", rowName, "");
 
             recordNo++;
         }
@@ -141,312 +121,34 @@ public class DelimitedReader extends SAXParser {
     }
 
     /**
-     * Get the next record from the input stream, and consume the record delimiter, if any.
-     * 
-     * @param in
-     *            The input stream (it's a BufferedReader, because operations on it require
-     *            in.mark()).
-     * @param rawText
-     *            Optional StringBuilder used to return a copy of the raw text read by this method.
-     * @return The record represented as a collection of column values, or null if there is no next
-     *         record.
-     * @throws IOException
+     * Creates a parser that reads records from the given stream with these serialization
+     * properties. The parser reads ahead in large blocks, so nothing else should read from the
+     * stream afterwards.
      */
-    public ArrayList<String> getRecord(BufferedReader in, StringBuilder rawText) throws IOException {
-
-        // If there is an ungotten (pushed back) record, consume it and return
-        // it, rather
-        // than reading from the stream.
-        if (ungottenRecord != null) {
-            ArrayList<String> tempRecord = ungottenRecord;
-            ungottenRecord = null;
-            rawText.append(ungottenRawText);
-            ungottenRawText = null;
-            return tempRecord;
-        }
-
-        int ch;
-        ch = peekChar(in);
-        if (ch == -1)
-            return null;
-
-        String recDelim = recordDelimiter;
-        String lookAhead = "";
-        ArrayList<String> record = new ArrayList<String>();
-
-        // If column widths are set, separate and get each column's value based off of its set width
-        if (serializationProperties.getColumnWidths() != null) {
-
-            // Iterate through the list of column widths
-            for (int i = 0; i < serializationProperties.getColumnWidths().length; i++) {
-
-                // Read through the stream at the set length for this column width
-                StringBuilder columnValue = new StringBuilder();
-                lookAhead = peekChars(in, recDelim.length());
-                for (int j = 0; j < serializationProperties.getColumnWidths()[i]; j++) {
-
-                    // If the next characters are the record delimiter
-                    if (lookAhead.equals(recDelim)) {
-                        break;
-                    }
-
-                    // Break on end of input
-                    ch = getChar(in, rawText);
-                    if (ch == -1) {
-                        break;
-                    }
-
-                    columnValue.append((char) ch);
-                    lookAhead = peekChars(in, recDelim.length());
-                }
-
-                // Add column value to the record
-                record.add(ltrim(columnValue.toString()));
-
-                // Break on end of input or record delimiter
-                if (ch == -1 || lookAhead.equals(recDelim)) {
-                    break;
-                }
-            }
-
-            // Consume trailing characters, if any, up until end of input stream or
-            // record delimiter
-            while (ch != -1 && !lookAhead.equals(recDelim)) {
-                ch = getChar(in, rawText);
-                lookAhead = peekChars(in, recDelim.length());
-            }
-
-            // Consume record delimiter
-            if (lookAhead.equals(recDelim)) {
-                for (int i = 0; i < recDelim.length(); i++) {
-                    ch = getChar(in, rawText);
-                }
-            }
-        } else {
-            String colDelim = ","; // default
-            if (StringUtils.isNotEmpty(columnDelimiter)) {
-                colDelim = columnDelimiter;
-            }
-
-            for (;;) {
-                String columnValue = getColumnValue(in, rawText);
-
-                record.add(columnValue);
-
-                // Break at end of input
-                ch = peekChar(in);
-                if (ch == -1) {
-                    ch = getChar(in, rawText);
-                    break;
-                }
-
-                // Consume record delimiter and break
-                lookAhead = peekChars(in, recDelim.length());
-                if (lookAhead.equals(recDelim)) {
-                    for (int i = 0; i < recDelim.length(); i++) {
-                        ch = getChar(in, rawText);
-                    }
-                    break;
-                }
-
-                // Consume column delimiter
-                lookAhead = peekChars(in, colDelim.length());
-                if (lookAhead.equals(colDelim)) {
-                    for (int i = 0; i < colDelim.length(); i++) {
-                        ch = getChar(in, rawText);
-                    }
-                }
-            }
-        }
-
-        return record;
+    DelimitedParser createParser(Reader in) {
+        return new DelimitedParser(in, serializationProperties, columnDelimiter, recordDelimiter, quoteToken, quoteEscapeToken);
     }
 
     /**
-     * Unget the given record. The next call to getRecord() will consume it, and return it, rather
-     * than operating on the input stream.
-     * 
-     * @param record
-     *            The record to unget.
-     * @param rawText
-     *            The raw text for the record to unget.
+     * Returns the element name of the given row, starting at 1.
      */
-    public void ungetRecord(ArrayList<String> record, String rawText) {
-        ungottenRecord = record;
-        ungottenRawText = rawText;
+    String getRowName(int recordNo) {
+        return serializationProperties.isNumberedRows() ? "row" + recordNo : "row";
     }
 
     /**
-     * Get the next column value from the input stream, and consume the column delimiter, if any.
-     * 
-     * @param in
-     *            The input stream (it's a BufferedReader, because operations on it require
-     *            in.mark()).
-     * @param rawText
-     *            Optional StringBuilder used to return a copy of the raw text read by this method.
-     * @return The column value, or null if there is no next column value.
-     * @throws IOException
+     * Returns the element name of the column at the given index, starting at 0.
      */
-    private String getColumnValue(BufferedReader in, StringBuilder rawText) throws IOException {
+    String getColumnName(int index) {
+        String[] columnNames = serializationProperties.getColumnNames();
 
-        // Return empty string if input stream is empty
-        int ch;
-        ch = peekChar(in);
-        if (ch == -1)
-            return "";
-
-        StringBuilder columnValue = new StringBuilder();
-
-        String colDelim = ","; // default
-        if (StringUtils.isNotEmpty(columnDelimiter)) {
-            colDelim = columnDelimiter;
-        }
-
-        String recDelim = "\\n"; // default
-        if (StringUtils.isNotEmpty(recordDelimiter)) {
-            recDelim = recordDelimiter;
-        }
-
-        String theQuoteToken = "\""; // default
-        if (StringUtils.isNotEmpty(quoteToken)) {
-            theQuoteToken = quoteToken;
-        }
-
-        String theQuoteEscapeToken = "\\"; // default
-        if (StringUtils.isNotEmpty(quoteEscapeToken)) {
-            theQuoteEscapeToken = quoteEscapeToken;
-        }
-
-        // If the column value isn't quoted
-        boolean inQuote = false;
-        String lookAhead = peekChars(in, theQuoteToken.length());
-        if (!lookAhead.equals(theQuoteToken)) {
-            for (;;) {
-                // Break on record delimiter
-                lookAhead = peekChars(in, recDelim.length());
-                if (lookAhead.equals(recDelim)) {
-                    break;
-                }
-
-                // Break on column delimiter
-                lookAhead = peekChars(in, colDelim.length());
-                if (lookAhead.equals(colDelim)) {
-                    break;
-                }
-
-                ch = getChar(in, rawText);
-
-                // Break on end of input and end of column
-                if (ch == -1)
-                    break;
-
-                columnValue.append((char) ch);
-            }
-        }
-        // Column value is quoted
-        else {
-
-            inQuote = true;
-
-            // Get the quote token
-            for (int i = 0; i < theQuoteToken.length(); i++) {
-                ch = getChar(in, rawText);
-            }
-
-            for (;;) {
-                // Process escaped quotes
-                if (inQuote) {
-                    // If the quote escape method is double quoting
-                    if (serializationProperties.isEscapeWithDoubleQuote()) {
-
-                        // Then check if the next few characters are two quote tokens
-                        lookAhead = peekChars(in, theQuoteToken.length() * 2);
-                        if (lookAhead.equals(theQuoteToken + theQuoteToken)) {
-                            // If so, consume the first one
-                            for (int i = 0; i < theQuoteToken.length(); i++) {
-                                getChar(in, rawText);
-                            }
-
-                            // And add the second one (the escaped quote)
-                            for (int i = 0; i < theQuoteToken.length(); i++) {
-                                ch = getChar(in, rawText);
-                                columnValue.append((char) ch);
-                            }
-                            continue;
-                        }
-                    } else {
-                        // First check if the next few characters are an escaped quote token
-                        lookAhead = peekChars(in, theQuoteEscapeToken.length() + theQuoteToken.length());
-                        if (lookAhead.equals(theQuoteEscapeToken + theQuoteToken)) {
-                            // Consume the escape token
-                            for (int i = 0; i < theQuoteEscapeToken.length(); i++) {
-                                getChar(in, rawText);
-                            }
-
-                            // And add the escaped quote token
-                            for (int i = 0; i < theQuoteToken.length(); i++) {
-                                ch = getChar(in, rawText);
-                                columnValue.append((char) ch);
-                            }
-                            continue;
-                        }
-
-                        // If not, then check if the next few characters are an escaped escape token
-                        lookAhead = peekChars(in, theQuoteEscapeToken.length() * 2);
-                        if (lookAhead.equals(theQuoteEscapeToken + theQuoteEscapeToken)) {
-                            // Consume the escape token
-                            for (int i = 0; i < theQuoteEscapeToken.length(); i++) {
-                                getChar(in, rawText);
-                            }
-
-                            // And add the escaped escape token
-                            for (int i = 0; i < theQuoteEscapeToken.length(); i++) {
-                                ch = getChar(in, rawText);
-                                columnValue.append((char) ch);
-                            }
-                            continue;
-                        }
-                    }
-                }
-
-                // If the next characters are a quote token
-                lookAhead = peekChars(in, theQuoteToken.length());
-                if (inQuote && lookAhead.equals(theQuoteToken)) {
-                    // This is the ending quote token. Get it.
-                    for (int i = 0; i < theQuoteToken.length(); i++) {
-                        ch = getChar(in, rawText);
-                    }
-                    inQuote = false;
-                    continue;
-                }
-
-                // Break on record delimiter
-                lookAhead = peekChars(in, recDelim.length());
-                if (!inQuote && lookAhead.equals(recDelim)) {
-                    break;
-                }
-
-                // Break on column delimiter
-                lookAhead = peekChars(in, colDelim.length());
-                if (!inQuote && lookAhead.equals(colDelim)) {
-                    break;
-                }
-
-                // Get the next character. If this point has been reached, 
-                // then the next character is not part of 
-                // a delimiter, quote, or escape token.
-                ch = getChar(in, rawText);
-                // Break on end of input
-                if (ch == -1) {
-                    break;
-                }
-
-                // Add the next character to the column value
-                columnValue.append((char) ch);
-            }
+        if (columnNames != null && index < columnNames.length) {
+            // User specified column name
+            return columnNames[index];
+        } else {
+            // Default column name
+            return "column" + (index + 1);
         }
-
-        return columnValue.toString();
     }
 
     private void updateColumnDelimiter() {
@@ -501,6 +203,11 @@ public class DelimitedReader extends SAXParser {
         return quoteEscapeToken;
     }
 
+    /*
+     * The character level readers below don't read ahead of the characters they return, so they
+     * are used when the stream is later handed to a batch script.
+     */
+
     /**
      * This low level reader gets the next non-ignored character from the input, and returns it.
      * 
@@ -602,30 +309,4 @@ public class DelimitedReader extends SAXParser {
         in.reset();
         return result.toString();
     }
-
-    /**
-     * Removes trailing whitespace from a string and returns it.
-     * 
-     * @param s
-     *            The input string.
-     * @return If the input string has trailing whitespace, a new string with the whitespace
-     *         removed, otherwise, return s.
-     */
-    private String ltrim(String s) {
-
-        if (s.length() == 0)
-            return s;
-
-        int i = s.length() - 1;
-        while (i >= 0 && Character.isWhitespace(s.charAt(i))) {
-            i--;
-        }
-
-        if (i == s.length() - 1)
-            return s;
-        else if (i == -1)
-            return new String();
-        else
-            return s.substring(0, i + 1);
-    }
 }
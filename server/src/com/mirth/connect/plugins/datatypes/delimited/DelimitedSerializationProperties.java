@@ -17,6 +17,7 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
+import com.mirth.connect.donkey.model.message.SerializationType;
 import com.mirth.connect.donkey.util.DonkeyElement;
 import com.mirth.connect.model.datatype.DataTypePropertyDescriptor;
 import com.mirth.connect.model.datatype.PropertyEditorType;
@@ -35,6 +36,7 @@ public class DelimitedSerializationProperties extends SerializationProperties {
     private String[] columnNames = null; // list of column names: name1,name2,...,nameN
     private boolean numberedRows = false;
     private boolean ignoreCR = true;
+    private SerializationType serializationType = SerializationType.XML;
 
     @Override
     public Map<String, DataTypePropertyDescriptor> getPropertyDescriptors() {
@@ -49,6 +51,7 @@ public class DelimitedSerializationProperties extends SerializationProperties {
         properties.put("columnNames", new DataTypePropertyDescriptor(toCommaSeparatedString(columnNames), "Column Names", "To override the default column names (column1, ..., columnN), enter a comma separated list of column names.", PropertyEditorType.STRING));
         properties.put("numberedRows", new DataTypePropertyDescriptor(numberedRows, "Numbered Rows", "Check to number each row in the XML representation of the message.", PropertyEditorType.BOOLEAN));
         properties.put("ignoreCR", new DataTypePropertyDescriptor(ignoreCR, "Ignore Carriage Returns", "Ignores carriage return (\\r) characters.  These are read over and skipped without processing them.", PropertyEditorType.BOOLEAN));
+        properties.put("serializationType", new DataTypePropertyDescriptor(getSerializationType(), "Serialization Type", "The format the message is serialized to for filters and transformers. JSON is converted directly from the delimited text, with each column value as a string.", PropertyEditorType.OPTION, new SerializationType[] { SerializationType.XML, SerializationType.JSON }));
 
         return properties;
     }
@@ -136,6 +139,10 @@ public class DelimitedSerializationProperties extends SerializationProperties {
             if (properties.get("ignoreCR") != null) {
                 ignoreCR = (Boolean) properties.get("ignoreCR");
             }
+
+            if (properties.get("serializationType") != null) {
+                serializationType = (SerializationType) properties.get("serializationType");
+            }
         }
     }
 
@@ -266,6 +273,17 @@ public class DelimitedSerializationProperties extends SerializationProperties {
         this.ignoreCR = ignoreCR;
     }
 
+    @Override
+    public SerializationType getSerializationType() {
+        // Properties saved before this option existed do not have it set
+        return serializationType != null ? serializationType : SerializationType.XML;
+    }
+
+    @Override
+    public void setSerializationType(SerializationType serializationType) {
+        this.serializationType = serializationType;
+    }
+
     @Override
     public void migrate3_0_1(DonkeyElement element) {}
 
@@ -314,6 +332,7 @@ public class DelimitedSerializationProperties extends SerializationProperties {
         purgedProperties.put("columnNameCount", ArrayUtils.getLength(columnNames));
         purgedProperties.put("numberedRows", numberedRows);
         purgedProperties.put("ignoreCR", ignoreCR);
+        purgedProperties.put("serializationType", getSerializationType());
         return purgedProperties;
     }
 }
@@ -9,16 +9,27 @@
 
 package com.mirth.connect.plugins.datatypes.delimited;
 
+import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.apache.log4j.Logger;
 import org.xml.sax.InputSource;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
 import org.xml.sax.helpers.XMLReaderFactory;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.mirth.connect.donkey.model.message.MessageSerializer;
 import com.mirth.connect.donkey.model.message.MessageSerializerException;
 import com.mirth.connect.model.converters.IMessageSerializer;
@@ -28,6 +39,8 @@ import com.mirth.connect.model.util.DefaultMetaData;
 import com.mirth.connect.util.ErrorMessageBuilder;
 
 public class DelimitedSerializer implements IMessageSerializer {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
     private Logger logger = Logger.getLogger(this.getClass());
 
     private DelimitedSerializationProperties serializationProperties;
@@ -107,13 +120,165 @@ public class DelimitedSerializer implements IMessageSerializer {
     @Override
     public void populateMetaData(String message, Map<String, Object> map) {}
 
+    /**
+     * Returns the JSON representation of the delimited text. This is converted directly from the
+     * records without creating any XML, but has the same structure as converting the XML
+     * representation to JSON. Every column value is a string, and empty column values are null.
+     */
     @Override
     public String toJSON(String message) throws MessageSerializerException {
-        return null;
+        try {
+            DelimitedReader delimitedReader = new DelimitedReader(serializationProperties);
+            DelimitedParser parser = delimitedReader.createParser(new StringReader(message));
+            StringWriter stringWriter = new StringWriter();
+            JsonGenerator generator = jsonFactory.createGenerator(stringWriter);
+
+            generator.writeStartObject();
+            generator.writeFieldName("delimited");
+
+            List<String> record = parser.nextRecord(null);
+
+            if (record == null) {
+                generator.writeNull();
+            } else {
+                generator.writeStartObject();
+
+                if (serializationProperties.isNumberedRows()) {
+                    for (int recordNo = 1; record != null; recordNo++) {
+                        generator.writeFieldName(delimitedReader.getRowName(recordNo));
+                        writeRecord(generator, delimitedReader, record);
+                        record = parser.nextRecord(null);
+                    }
+                } else {
+                    // Unnumbered rows all have the same name, so they are an array unless there is only one
+                    List<String> nextRecord = parser.nextRecord(null);
+                    generator.writeFieldName("row");
+
+                    if (nextRecord == null) {
+                        writeRecord(generator, delimitedReader, record);
+                    } else {
+                        generator.writeStartArray();
+                        writeRecord(generator, delimitedReader, record);
+
+                        while (nextRecord != null) {
+                            writeRecord(generator, delimitedReader, nextRecord);
+                            nextRecord = parser.nextRecord(null);
+                        }
+
+                        generator.writeEndArray();
+                    }
+                }
+
+                generator.writeEndObject();
+            }
+
+            generator.writeEndObject();
+            generator.close();
+            return stringWriter.toString();
+        } catch (Exception e) {
+            throw new MessageSerializerException("Error converting delimited text to JSON", e, ErrorMessageBuilder.buildErrorMessage(this.getClass().getSimpleName(), "Error converting delimited text to JSON", e));
+        }
+    }
+
+    private void writeRecord(JsonGenerator generator, DelimitedReader delimitedReader, List<String> record) throws IOException {
+        // Columns with the same name are grouped into an array, in the order the names first appear
+        Map<String, List<String>> columns = new LinkedHashMap<String, List<String>>();
+
+        for (int i = 0; i < record.size(); i++) {
+            String columnName = delimitedReader.getColumnName(i);
+            List<String> values = columns.get(columnName);
+
+            if (values == null) {
+                values = new ArrayList<String>(1);
+                columns.put(columnName, values);
+            }
+
+            values.add(record.get(i));
+        }
+
+        generator.writeStartObject();
+
+        for (Entry<String, List<String>> column : columns.entrySet()) {
+            generator.writeFieldName(column.getKey());
+            List<String> values = column.getValue();
+
+            if (values.size() == 1) {
+                writeValue(generator, values.get(0));
+            } else {
+                generator.writeStartArray();
+                for (String value : values) {
+                    writeValue(generator, value);
+                }
+                generator.writeEndArray();
+            }
+        }
+
+        generator.writeEndObject();
+    }
+
+    private void writeValue(JsonGenerator generator, String value) throws IOException {
+        if (value.isEmpty()) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value);
+        }
     }
 
+    /**
+     * Returns the delimited text for the JSON representation of a message. The JSON is read the
+     * same way as the XML it would be converted to: each field is an element, arrays are repeated
+     * elements, and null values are empty elements. No XML is created in between. Since columns
+     * with the same name are grouped into one array, they are written next to each other.
+     */
     @Override
     public String fromJSON(String message) throws MessageSerializerException {
-        return null;
+        try {
+            DelimitedXMLHandler handler = new DelimitedXMLHandler(deserializationProperties);
+            JsonParser parser = jsonFactory.createParser(message);
+
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+
+            handler.startDocument();
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                readElement(parser, handler, name);
+            }
+
+            handler.endDocument();
+            parser.close();
+            return handler.getOutput().toString();
+        } catch (Exception e) {
+            throw new MessageSerializerException("Error converting JSON to delimited text", e, ErrorMessageBuilder.buildErrorMessage(this.getClass().getSimpleName(), "Error converting JSON to delimited text", e));
+        }
+    }
+
+    private void readElement(JsonParser parser, DelimitedXMLHandler handler, String name) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+
+        if (token == JsonToken.START_ARRAY) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                readElement(parser, handler, name);
+            }
+            return;
+        }
+
+        handler.startElement("", name, name, new AttributesImpl());
+
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String childName = parser.getCurrentName();
+                parser.nextToken();
+                readElement(parser, handler, childName);
+            }
+        } else if (token != JsonToken.VALUE_NULL) {
+            char[] text = parser.getText().toCharArray();
+            handler.characters(text, 0, text.length);
+        }
+
+        handler.endElement("", name, name);
     }
 }
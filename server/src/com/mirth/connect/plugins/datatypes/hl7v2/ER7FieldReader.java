@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.plugins.datatypes.hl7v2;
+
+import java.util.List;
+
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
+import com.mirth.connect.model.converters.MessageFieldReader;
+
+/**
+ * Reads component and subcomponent paths from an ER7 message using the ER7Index, with the same
+ * results as reading them from the XML created by the ER7Reader. Paths that would match more than
+ * one element or an element with child elements are not read, so that the caller can fall back to
+ * the serialized XML.
+ */
+class ER7FieldReader implements MessageFieldReader {
+
+    private String segmentDelimiter;
+    private boolean convertLineBreaks;
+    private boolean handleRepetitions;
+    private boolean handleSubcomponents;
+
+    private String[] segmentNames;
+    private int[] fields;
+    private int[] components;
+    private int[] subcomponents;
+
+    private ER7FieldReader(String segmentDelimiter, boolean convertLineBreaks, boolean handleRepetitions, boolean handleSubcomponents, int pathCount) {
+        this.segmentDelimiter = segmentDelimiter;
+        this.convertLineBreaks = convertLineBreaks;
+        this.handleRepetitions = handleRepetitions;
+        this.handleSubcomponents = handleSubcomponents;
+        segmentNames = new String[pathCount];
+        fields = new int[pathCount];
+        components = new int[pathCount];
+        subcomponents = new int[pathCount];
+    }
+
+    /**
+     * Returns a reader for the given paths, or null if any path is not a component or subcomponent
+     * path such as ["PID", "PID.3", "PID.3.1"].
+     */
+    static ER7FieldReader create(List<String[]> paths, String segmentDelimiter, boolean convertLineBreaks, boolean handleRepetitions, boolean handleSubcomponents) {
+        // The ER7Reader splits on each character of the delimiter, the index splits on the whole delimiter
+        if (segmentDelimiter.length() != 1 && !(convertLineBreaks && segmentDelimiter.replace("\r", "").replace("\n", "").isEmpty())) {
+            return null;
+        }
+
+        ER7FieldReader reader = new ER7FieldReader(segmentDelimiter, convertLineBreaks, handleRepetitions, handleSubcomponents, paths.size());
+
+        for (int i = 0; i < paths.size(); i++) {
+            String[] path = paths.get(i);
+
+            if (path.length < 3 || path.length > 4 || path[0].isEmpty() || path[0].indexOf('.') >= 0) {
+                return null;
+            }
+
+            reader.segmentNames[i] = path[0];
+            reader.fields[i] = getNumber(path[1], path[0]);
+            reader.components[i] = getNumber(path[2], path[1]);
+            reader.subcomponents[i] = path.length == 4 ? getNumber(path[3], path[2]) : 0;
+
+            if (reader.fields[i] <= 0 || reader.components[i] <= 0 || reader.subcomponents[i] < 0) {
+                return null;
+            }
+        }
+
+        return reader;
+    }
+
+    @Override
+    public String[] readValues(String message, ConnectorMessage connectorMessage) {
+        ER7Index index = ER7Index.getIndex(message, connectorMessage, segmentDelimiter, convertLineBreaks);
+
+        // Messages without a header, or with the MIRTH-1544 encoding characters, are read differently by the ER7Reader
+        if (!index.hasHeader() || index.getComponentSeparator() == 0 || index.getRepetitionSeparator() == 0 || index.getEscapeCharacter() == 0 || index.getSubcomponentSeparator() == 0) {
+            return null;
+        }
+
+        char repetitionSeparator = index.getRepetitionSeparator();
+        char subcomponentSeparator = index.getSubcomponentSeparator();
+        String[] values = new String[segmentNames.length];
+
+        for (int i = 0; i < segmentNames.length; i++) {
+            int segment = -1;
+
+            for (int j = 0; j < index.getSegmentCount(); j++) {
+                if (index.getSegmentName(j).trim().equals(segmentNames[i])) {
+                    // Repeated segments serialize to more than one element
+                    if (segment >= 0) {
+                        return null;
+                    }
+                    segment = j;
+                }
+            }
+
+            String field = segment >= 0 ? index.getValue(segment, fields[i], 0, 0, 0) : null;
+
+            // The field separator and encoding characters of header segments don't have components
+            if (field == null || (fields[i] <= 2 && isHeaderSegment(segmentNames[i]))) {
+                values[i] = "";
+                continue;
+            }
+
+            if (handleRepetitions && field.indexOf(repetitionSeparator) >= 0) {
+                return null;
+            }
+
+            String component = index.getValue(segment, fields[i], 0, components[i], 0);
+            boolean hasSubcomponents = handleSubcomponents && component.indexOf(subcomponentSeparator) >= 0;
+            String value;
+
+            if (subcomponents[i] == 0) {
+                if (hasSubcomponents) {
+                    return null;
+                }
+                value = component;
+            } else {
+                value = hasSubcomponents ? index.getValue(segment, fields[i], 0, components[i], subcomponents[i]) : "";
+            }
+
+            if (!isPlain(value)) {
+                return null;
+            }
+
+            values[i] = value;
+        }
+
+        return values;
+    }
+
+    /*
+     * Returns the number in a name like PID.3 with the given prefix, or -1 if it doesn't have one.
+     */
+    private static int getNumber(String name, String prefix) {
+        if (name.length() <= prefix.length() + 1 || !name.startsWith(prefix) || name.charAt(prefix.length()) != '.') {
+            return -1;
+        }
+
+        String number = name.substring(prefix.length() + 1);
+
+        try {
+            int value = Integer.parseInt(number);
+            return String.valueOf(value).equals(number) ? value : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isHeaderSegment(String segmentName) {
+        return segmentName.equals("MSH") || segmentName.equals("FHS") || segmentName.equals("BHS");
+    }
+
+    /*
+     * Values with surrounding whitespace or control characters are left to the XML, since they may
+     * not come back from it unchanged.
+     */
+    private static boolean isPlain(String value) {
+        if (value.isEmpty()) {
+            return true;
+        }
+
+        if (value.charAt(0) == ' ' || value.charAt(value.length() - 1) == ' ') {
+            return false;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.plugins.datatypes.hl7v2;
+
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
+
+/**
+ * An index of the segments and fields of an ER7-encoded HL7 message. The index only stores offsets
+ * into the original message, so building it does not copy the message, and values are only
+ * created when they are requested. Field offsets are found the first time a segment is accessed.
+ *
+ * Fields are numbered the same way as in the XML: in MSH, FHS and BHS segments, field 1 is the
+ * field separator and field 2 holds the encoding characters.
+ */
+public class ER7Index {
+    private static final char DEFAULT_FIELD_SEPARATOR = '|';
+
+    private String message;
+    private String segmentDelimiter;
+    private boolean convertLineBreaks;
+
+    private int segmentCount;
+    private int[] segmentStarts = new int[16];
+    private int[] segmentEnds = new int[16];
+    private int[][] fieldSeparators;
+
+    private boolean header;
+    private char fieldSeparator = DEFAULT_FIELD_SEPARATOR;
+    private char componentSeparator;
+    private char repetitionSeparator;
+    private char escapeCharacter;
+    private char subcomponentSeparator;
+
+    /**
+     * @param message
+     *            The ER7-encoded message.
+     * @param segmentDelimiter
+     *            The segment delimiter of the message.
+     * @param convertLineBreaks
+     *            If true, any CR or LF also ends a segment.
+     */
+    public ER7Index(String message, String segmentDelimiter, boolean convertLineBreaks) {
+        this.message = message;
+        this.segmentDelimiter = segmentDelimiter;
+        this.convertLineBreaks = convertLineBreaks;
+        indexSegments();
+        readEncodingCharacters();
+    }
+
+    /**
+     * Returns the index of the given message that is cached on the connector message, or creates
+     * the index and caches it there. An index is only reused for the same message content and
+     * segment delimiter settings.
+     */
+    public static ER7Index getIndex(String message, ConnectorMessage connectorMessage, String segmentDelimiter, boolean convertLineBreaks) {
+        if (connectorMessage != null) {
+            Object contentIndex = connectorMessage.getContentIndex(message);
+
+            if (contentIndex instanceof ER7Index) {
+                ER7Index index = (ER7Index) contentIndex;
+
+                if (index.convertLineBreaks == convertLineBreaks && index.segmentDelimiter.equals(segmentDelimiter)) {
+                    return index;
+                }
+            }
+        }
+
+        ER7Index index = new ER7Index(message, segmentDelimiter, convertLineBreaks);
+
+        if (connectorMessage != null) {
+            connectorMessage.setContentIndex(message, index);
+        }
+
+        return index;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Returns true if the message starts with an MSH, FHS or BHS segment.
+     */
+    public boolean hasHeader() {
+        return header;
+    }
+
+    public char getFieldSeparator() {
+        return fieldSeparator;
+    }
+
+    /**
+     * Returns the component separator from the header, or 0 if the header does not define it.
+     */
+    public char getComponentSeparator() {
+        return componentSeparator;
+    }
+
+    /**
+     * Returns the repetition separator from the header, or 0 if the header does not define it.
+     */
+    public char getRepetitionSeparator() {
+        return repetitionSeparator;
+    }
+
+    /**
+     * Returns the escape character from the header, or 0 if the header does not define it.
+     */
+    public char getEscapeCharacter() {
+        return escapeCharacter;
+    }
+
+    /**
+     * Returns the subcomponent separator from the header, or 0 if the header does not define it.
+     */
+    public char getSubcomponentSeparator() {
+        return subcomponentSeparator;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public String getSegmentName(int segment) {
+        int start = segmentStarts[segment];
+        return message.substring(start, indexOf(fieldSeparator, start, segmentEnds[segment]));
+    }
+
+    /**
+     * Returns the index of the first segment with the given name, or -1 if there is none.
+     */
+    public int getSegmentIndex(String segmentName) {
+        for (int segment = 0; segment < segmentCount; segment++) {
+            int start = segmentStarts[segment];
+
+            if (message.startsWith(segmentName, start) && (start + segmentName.length() == segmentEnds[segment] || message.charAt(start + segmentName.length()) == fieldSeparator)) {
+                return segment;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the number of fields in a segment, counting the field separator and encoding
+     * characters of header segments as fields.
+     */
+    public int getFieldCount(int segment) {
+        return getFieldSeparators(segment).length + (isHeaderSegment(segment) ? 1 : 0);
+    }
+
+    /**
+     * Returns a value from the message.
+     *
+     * @param segment
+     *            The index of the segment.
+     * @param field
+     *            The field number, starting at 1.
+     * @param repetition
+     *            The repetition number starting at 1, or 0 to not split the field into
+     *            repetitions.
+     * @param component
+     *            The component number starting at 1, or 0 to not split into components.
+     * @param subcomponent
+     *            The subcomponent number starting at 1, or 0 to not split into subcomponents.
+     * @return The value, an empty string if the field exists but does not have the requested
+     *         repetition, component or subcomponent, or null if the segment or field does not exist.
+     */
+    public String getValue(int segment, int field, int repetition, int component, int subcomponent) {
+        if (segment < 0 || segment >= segmentCount || field < 1) {
+            return null;
+        }
+
+        int[] separators = getFieldSeparators(segment);
+        boolean headerSegment = isHeaderSegment(segment);
+
+        if (headerSegment) {
+            if (field == 1) {
+                return separators.length > 0 ? String.valueOf(fieldSeparator) : null;
+            }
+
+            // The encoding characters are not split
+            if (field == 2) {
+                repetition = component = subcomponent = 0;
+            }
+
+            field--;
+        }
+
+        if (field > separators.length) {
+            return null;
+        }
+
+        int start = separators[field - 1] + 1;
+        int end = field < separators.length ? separators[field] : segmentEnds[segment];
+
+        if (repetition > 0 && repetitionSeparator != 0) {
+            long bounds = narrow(repetitionSeparator, start, end, repetition);
+            start = (int) (bounds >> 32);
+            end = (int) bounds;
+        }
+
+        if (component > 0 && componentSeparator != 0) {
+            long bounds = narrow(componentSeparator, start, end, component);
+            start = (int) (bounds >> 32);
+            end = (int) bounds;
+        }
+
+        if (subcomponent > 0 && subcomponentSeparator != 0) {
+            long bounds = narrow(subcomponentSeparator, start, end, subcomponent);
+            start = (int) (bounds >> 32);
+            end = (int) bounds;
+        }
+
+        return message.substring(start, end);
+    }
+
+    /*
+     * Returns the start and end of the given piece within the bounds, packed into a long. If there
+     * are fewer pieces, the bounds are empty.
+     */
+    private long narrow(char separator, int start, int end, int piece) {
+        for (int i = 1; i < piece; i++) {
+            start = indexOf(separator, start, end);
+
+            if (start == end) {
+                return ((long) end << 32) | end;
+            }
+
+            start++;
+        }
+
+        return ((long) start << 32) | indexOf(separator, start, end);
+    }
+
+    private boolean isHeaderSegment(int segment) {
+        int start = segmentStarts[segment];
+
+        if (segmentEnds[segment] - start < 3 || (start + 3 < segmentEnds[segment] && message.charAt(start + 3) != fieldSeparator)) {
+            return false;
+        }
+
+        return message.startsWith("MSH", start) || message.startsWith("FHS", start) || message.startsWith("BHS", start);
+    }
+
+    private int[] getFieldSeparators(int segment) {
+        if (fieldSeparators == null) {
+            fieldSeparators = new int[segmentCount][];
+        }
+
+        int[] separators = fieldSeparators[segment];
+
+        if (separators == null) {
+            int end = segmentEnds[segment];
+            int count = 0;
+
+            for (int i = segmentStarts[segment]; i < end; i++) {
+                if (message.charAt(i) == fieldSeparator) {
+                    count++;
+                }
+            }
+
+            separators = new int[count];
+            count = 0;
+
+            for (int i = segmentStarts[segment]; i < end; i++) {
+                if (message.charAt(i) == fieldSeparator) {
+                    separators[count++] = i;
+                }
+            }
+
+            fieldSeparators[segment] = separators;
+        }
+
+        return separators;
+    }
+
+    private void indexSegments() {
+        int length = message.length();
+        int start = 0;
+        int i = 0;
+
+        while (i <= length) {
+            int delimiterLength = 0;
+
+            if (i == length) {
+                delimiterLength = 1;
+            } else if (convertLineBreaks && (message.charAt(i) == '\r' || message.charAt(i) == '\n')) {
+                delimiterLength = 1;
+            } else if (segmentDelimiter.length() > 0 && message.startsWith(segmentDelimiter, i)) {
+                delimiterLength = segmentDelimiter.length();
+            }
+
+            if (delimiterLength > 0) {
+                // Skip leading whitespace, such as the LF of a CRLF when only CR is the delimiter
+                while (start < i && message.charAt(start) <= ' ') {
+                    start++;
+                }
+
+                if (start < i) {
+                    addSegment(start, i);
+                }
+
+                i += delimiterLength;
+                start = i;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private void addSegment(int start, int end) {
+        if (segmentCount == segmentStarts.length) {
+            int[] newStarts = new int[segmentCount * 2];
+            int[] newEnds = new int[segmentCount * 2];
+            System.arraycopy(segmentStarts, 0, newStarts, 0, segmentCount);
+            System.arraycopy(segmentEnds, 0, newEnds, 0, segmentCount);
+            segmentStarts = newStarts;
+            segmentEnds = newEnds;
+        }
+
+        segmentStarts[segmentCount] = start;
+        segmentEnds[segmentCount] = end;
+        segmentCount++;
+    }
+
+    /*
+     * Reads the separators from the header segment, the same way the metadata and ACK code always
+     * has: the field separator follows the segment name, and the encoding characters are the
+     * characters up to the next field separator.
+     */
+    private void readEncodingCharacters() {
+        if (segmentCount == 0) {
+            return;
+        }
+
+        int start = segmentStarts[0];
+        int end = segmentEnds[0];
+
+        if (end - start < 4 || !(message.startsWith("MSH", start) || message.startsWith("FHS", start) || message.startsWith("BHS", start))) {
+            return;
+        }
+
+        header = true;
+        fieldSeparator = message.charAt(start + 3);
+        char[] encodingCharacters = new char[4];
+        int count = 0;
+
+        for (int i = start + 4; i < end && message.charAt(i) != fieldSeparator && count < encodingCharacters.length; i++) {
+            encodingCharacters[count++] = message.charAt(i);
+        }
+
+        componentSeparator = encodingCharacters[0];
+        repetitionSeparator = encodingCharacters[1];
+        escapeCharacter = encodingCharacters[2];
+        subcomponentSeparator = encodingCharacters[3];
+    }
+
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (message.charAt(i) == c) {
+                return i;
+            }
+        }
+
+        return end;
+    }
+}
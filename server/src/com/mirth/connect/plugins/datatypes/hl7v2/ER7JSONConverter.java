@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.plugins.datatypes.hl7v2;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Converts ER7-encoded HL7 messages directly to JSON and back, without an intermediate XML
+ * document.
+ *
+ * The message is an array of segments in the order they appear, each an object with the segment
+ * name as its only key, so that interleaved segments such as OBR/OBX groups keep their order. Within
+ * a segment the elements are named the same way as in the XML from ER7Reader, after the segment,
+ * field, component and subcomponent (PID.3, PID.3.1, PID.3.1.1). Empty elements are null, field
+ * repetitions become arrays, and values are always written as strings:
+ *
+ * <pre>
+ * {"HL7Message":[{"MSH":{"MSH.1":"|",...}},{"OBR":{...}},{"OBX":{...}},{"OBR":{...}}]}
+ * </pre>
+ */
+public class ER7JSONConverter {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private static final char DEFAULT_FIELD_SEPARATOR = '|';
+    private static final String DEFAULT_COMPONENT_SEPARATOR = "^";
+    private static final String DEFAULT_REPETITION_SEPARATOR = "~";
+    private static final String DEFAULT_ESCAPE_CHARACTER = "\\";
+    private static final String DEFAULT_SUBCOMPONENT_SEPARATOR = "&";
+
+    private boolean handleRepetitions;
+    private boolean handleSubcomponents;
+    private String segmentDelimiter;
+
+    /**
+     * @param handleRepetitions
+     *            Whether field repetitions are parsed when converting to JSON.
+     * @param handleSubcomponents
+     *            Whether subcomponents are parsed when converting to JSON.
+     * @param segmentDelimiter
+     *            The segment delimiter expected when converting to JSON, or written after each
+     *            segment when converting from JSON.
+     */
+    public ER7JSONConverter(boolean handleRepetitions, boolean handleSubcomponents, String segmentDelimiter) {
+        this.handleRepetitions = handleRepetitions;
+        this.handleSubcomponents = handleSubcomponents;
+        this.segmentDelimiter = segmentDelimiter;
+    }
+
+    public String toJSON(String source) throws IOException {
+        String message = source.trim();
+
+        if (message.length() < 6) {
+            throw new IOException("Unable to parse message. It is NULL or too short. " + message);
+        }
+
+        char[] chars = message.toCharArray();
+        ER7Encoding encoding = new ER7Encoding(chars);
+
+        StringWriter writer = new StringWriter(message.length() * 3);
+        JsonGenerator generator = jsonFactory.createGenerator(writer);
+        generator.writeStartObject();
+        generator.writeFieldName(ER7Reader.MESSAGE_ROOT_ID);
+        generator.writeStartArray();
+        int segmentStart = 0;
+
+        for (int i = 0; i <= chars.length; i++) {
+            if (i == chars.length || segmentDelimiter.indexOf(chars[i]) >= 0) {
+                if (i > segmentStart) {
+                    int idEnd = indexOf(chars, encoding.fieldSeparator, segmentStart, i);
+                    String segmentId = new String(chars, segmentStart, idEnd - segmentStart).trim();
+
+                    if (segmentId.length() > 0) {
+                        generator.writeStartObject();
+                        generator.writeFieldName(segmentId);
+                        writeSegment(generator, chars, encoding, segmentId, idEnd, i);
+                        generator.writeEndObject();
+                    }
+                }
+
+                segmentStart = i + 1;
+            }
+        }
+
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+        return writer.toString();
+    }
+
+    private void writeSegment(JsonGenerator generator, char[] chars, ER7Encoding encoding, String segmentId, int start, int end) throws IOException {
+        // A segment without any field separator has no fields
+        if (start == end) {
+            generator.writeNull();
+            return;
+        }
+
+        generator.writeStartObject();
+        boolean header = isHeaderSegment(segmentId);
+        int fieldId = 1;
+        int fieldStart = start + 1;
+
+        if (header) {
+            generator.writeStringField(segmentId + ".1", String.valueOf(encoding.fieldSeparator));
+            generator.writeStringField(segmentId + ".2", encoding.getEncodingCharacters());
+
+            // Skip over the encoding characters
+            fieldStart = indexOf(chars, encoding.fieldSeparator, fieldStart, end) + 1;
+            fieldId = 3;
+        }
+
+        while (fieldStart <= end) {
+            int fieldEnd = indexOf(chars, encoding.fieldSeparator, fieldStart, end);
+            generator.writeFieldName(segmentId + "." + fieldId);
+
+            if (fieldStart == fieldEnd) {
+                generator.writeNull();
+            } else if (handleRepetitions && indexOf(chars, encoding.repetitionSeparator, fieldStart, fieldEnd) < fieldEnd) {
+                generator.writeStartArray();
+                int repetitionStart = fieldStart;
+
+                while (repetitionStart <= fieldEnd) {
+                    int repetitionEnd = indexOf(chars, encoding.repetitionSeparator, repetitionStart, fieldEnd);
+                    writeField(generator, chars, encoding, segmentId + "." + fieldId, repetitionStart, repetitionEnd);
+                    repetitionStart = repetitionEnd + 1;
+                }
+
+                generator.writeEndArray();
+            } else {
+                writeField(generator, chars, encoding, segmentId + "." + fieldId, fieldStart, fieldEnd);
+            }
+
+            fieldStart = fieldEnd + 1;
+            fieldId++;
+        }
+
+        generator.writeEndObject();
+    }
+
+    private void writeField(JsonGenerator generator, char[] chars, ER7Encoding encoding, String fieldName, int start, int end) throws IOException {
+        if (start == end) {
+            generator.writeNull();
+            return;
+        }
+
+        generator.writeStartObject();
+        int componentId = 1;
+
+        while (start <= end) {
+            int componentEnd = indexOf(chars, encoding.componentSeparator, start, end);
+            generator.writeFieldName(fieldName + "." + componentId);
+
+            if (start == componentEnd) {
+                generator.writeNull();
+            } else if (handleSubcomponents && encoding.subcomponentSeparator != 0 && indexOf(chars, encoding.subcomponentSeparator, start, componentEnd) < componentEnd) {
+                generator.writeStartObject();
+                int subcomponentId = 1;
+
+                while (start <= componentEnd) {
+                    int subcomponentEnd = indexOf(chars, encoding.subcomponentSeparator, start, componentEnd);
+                    generator.writeFieldName(fieldName + "." + componentId + "." + subcomponentId);
+
+                    if (start == subcomponentEnd) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeString(chars, start, subcomponentEnd - start);
+                    }
+
+                    start = subcomponentEnd + 1;
+                    subcomponentId++;
+                }
+
+                generator.writeEndObject();
+            } else {
+                generator.writeString(chars, start, componentEnd - start);
+            }
+
+            start = componentEnd + 1;
+            componentId++;
+        }
+
+        generator.writeEndObject();
+    }
+
+    public String fromJSON(String source) throws IOException {
+        StringBuilder builder = new StringBuilder(source.length() / 2);
+        JsonParser parser = jsonFactory.createParser(source);
+
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT || parser.nextToken() != JsonToken.FIELD_NAME || parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected an object containing the array of HL7 segments");
+            }
+
+            ER7Builder er7Builder = new ER7Builder(parser, builder);
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                // Each segment is an object with the segment name as its only key
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String segmentId = parser.getCurrentName();
+                    parser.nextToken();
+                    er7Builder.appendSegment(segmentId);
+                }
+            }
+
+            if (parser.getCurrentToken() != JsonToken.END_ARRAY) {
+                throw new JsonParseException(parser, "Expected an object for each HL7 segment");
+            }
+        } finally {
+            parser.close();
+        }
+
+        return builder.toString();
+    }
+
+    /*
+     * Appends the segments read from the parser. The separators are taken from the header segment
+     * once it has been read, and default to the standard separators until then.
+     */
+    private class ER7Builder {
+        private JsonParser parser;
+        private StringBuilder builder;
+        private char fieldSeparator = DEFAULT_FIELD_SEPARATOR;
+        private String componentSeparator = DEFAULT_COMPONENT_SEPARATOR;
+        private String repetitionSeparator = DEFAULT_REPETITION_SEPARATOR;
+        private String subcomponentSeparator = DEFAULT_SUBCOMPONENT_SEPARATOR;
+
+        ER7Builder(JsonParser parser, StringBuilder builder) {
+            this.parser = parser;
+            this.builder = builder;
+        }
+
+        void appendSegment(String segmentId) throws IOException {
+            builder.append(segmentId);
+
+            if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                boolean header = isHeaderSegment(segmentId);
+                int previousFieldId = 0;
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    int fieldId = getId(parser.getCurrentName());
+                    parser.nextToken();
+
+                    if (fieldId < 1) {
+                        parser.skipChildren();
+                        continue;
+                    }
+
+                    if (fieldId > previousFieldId) {
+                        if (header && fieldId == 1) {
+                            String value = getText();
+
+                            if (value.length() > 0) {
+                                fieldSeparator = value.charAt(0);
+                            }
+                        } else if (header && fieldId == 2) {
+                            String value = getText();
+                            setEncodingCharacters(value);
+                            builder.append(fieldSeparator).append(value);
+                        } else {
+                            appendFieldSeparators(fieldId - previousFieldId);
+                            appendField();
+                        }
+
+                        previousFieldId = fieldId;
+                    } else {
+                        builder.append(repetitionSeparator);
+                        appendField();
+                    }
+                }
+            } else if (parser.getCurrentToken() != JsonToken.VALUE_NULL) {
+                throw new JsonParseException(parser, "Expected an object for segment " + segmentId);
+            }
+
+            builder.append(segmentDelimiter);
+        }
+
+        private void appendFieldSeparators(int count) {
+            for (int i = 0; i < count; i++) {
+                builder.append(fieldSeparator);
+            }
+        }
+
+        private void appendField() throws IOException {
+            if (parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                boolean first = true;
+
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (!first) {
+                        builder.append(repetitionSeparator);
+                    }
+
+                    appendValue(componentSeparator, 2);
+                    first = false;
+                }
+            } else {
+                appendValue(componentSeparator, 2);
+            }
+        }
+
+        private void appendValue(String separator, int depth) throws IOException {
+            JsonToken token = parser.getCurrentToken();
+
+            if (token == JsonToken.START_OBJECT) {
+                if (depth > 3) {
+                    throw new JsonParseException(parser, "Subcomponents cannot contain other elements");
+                }
+
+                int previousId = 1;
+                boolean first = true;
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    int id = getId(parser.getCurrentName());
+                    parser.nextToken();
+
+                    if (id < 1) {
+                        parser.skipChildren();
+                        continue;
+                    }
+
+                    if (id > previousId) {
+                        for (int i = previousId; i < id; i++) {
+                            builder.append(separator);
+                        }
+                    } else if (!first) {
+                        builder.append(separator);
+                    }
+
+                    appendValue(subcomponentSeparator, depth + 1);
+                    previousId = id;
+                    first = false;
+                }
+            } else if (token.isScalarValue()) {
+                if (token != JsonToken.VALUE_NULL) {
+                    builder.append(parser.getText());
+                }
+            } else {
+                throw new JsonParseException(parser, "Unexpected " + token + " in HL7 message");
+            }
+        }
+
+        private String getText() throws IOException {
+            if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+                return "";
+            } else if (!parser.getCurrentToken().isScalarValue()) {
+                throw new JsonParseException(parser, "Expected a value for the header separators");
+            }
+
+            return parser.getText();
+        }
+
+        private void setEncodingCharacters(String value) {
+            if (value.length() > 0) {
+                componentSeparator = value.substring(0, 1);
+            }
+
+            if (value.length() > 1) {
+                repetitionSeparator = value.substring(1, 2);
+            }
+
+            subcomponentSeparator = value.length() > 3 ? value.substring(3, 4) : "";
+        }
+    }
+
+    /*
+     * Returns the number after the last period of an element name, so 3 for PID.3 and 1 for PID.3.1.
+     */
+    private static int getId(String name) {
+        return NumberUtils.toInt(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    private static int indexOf(char[] chars, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (chars[i] == c) {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    private static boolean isHeaderSegment(String segmentId) {
+        return segmentId.equals("MSH") || segmentId.equals("FHS") || segmentId.equals("BHS");
+    }
+
+    /*
+     * The separators of a message, determined the same way as ER7Reader does.
+     */
+    private static class ER7Encoding {
+        private char fieldSeparator = DEFAULT_FIELD_SEPARATOR;
+        private char componentSeparator = DEFAULT_COMPONENT_SEPARATOR.charAt(0);
+        private char repetitionSeparator = DEFAULT_REPETITION_SEPARATOR.charAt(0);
+        private char escapeCharacter = 0;
+        private char subcomponentSeparator = 0;
+
+        ER7Encoding(char[] chars) {
+            String firstSegment = new String(chars, 0, 3);
+
+            if (firstSegment.equalsIgnoreCase("MSH") || firstSegment.equalsIgnoreCase("FHS") || firstSegment.equalsIgnoreCase("BHS")) {
+                fieldSeparator = chars[3];
+                int nextDelimiter = indexOf(chars, fieldSeparator, 4, chars.length);
+
+                if (nextDelimiter > 4) {
+                    componentSeparator = chars[4];
+                }
+
+                if (nextDelimiter > 5) {
+                    repetitionSeparator = chars[5];
+                }
+
+                if (nextDelimiter > 6) {
+                    escapeCharacter = chars[6];
+                }
+
+                if (nextDelimiter > 7) {
+                    subcomponentSeparator = chars[7];
+                }
+            }
+
+            // replace the special case of ^~& with ^~\& (MIRTH-1544)
+            if (chars.length >= 8 && chars[4] == '^' && chars[5] == '~' && chars[6] == '&' && chars[7] == '|') {
+                escapeCharacter = DEFAULT_ESCAPE_CHARACTER.charAt(0);
+                subcomponentSeparator = DEFAULT_SUBCOMPONENT_SEPARATOR.charAt(0);
+                repetitionSeparator = DEFAULT_REPETITION_SEPARATOR.charAt(0);
+                componentSeparator = DEFAULT_COMPONENT_SEPARATOR.charAt(0);
+            }
+        }
+
+        String getEncodingCharacters() {
+            StringBuilder builder = new StringBuilder(4).append(componentSeparator).append(repetitionSeparator);
+
+            if (escapeCharacter != 0) {
+                builder.append(escapeCharacter);
+            }
+
+            if (subcomponentSeparator != 0) {
+                builder.append(subcomponentSeparator);
+            }
+
+            return builder.toString();
+        }
+    }
+}
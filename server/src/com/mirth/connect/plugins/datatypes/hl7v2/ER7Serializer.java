@@ -9,18 +9,16 @@
 
 package com.mirth.connect.plugins.datatypes.hl7v2;
 
-import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.model.Message;
 import ca.uhn.hl7v2.parser.DefaultXMLParser;
 import ca.uhn.hl7v2.parser.PipeParser;
 import ca.uhn.hl7v2.parser.XMLParser;
-import ca.uhn.hl7v2.util.Terser;
 import ca.uhn.hl7v2.validation.impl.NoValidation;
 
-import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -30,13 +28,16 @@ import org.xml.sax.InputSource;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.XMLReaderFactory;
 
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
 import com.mirth.connect.donkey.model.message.MessageSerializer;
 import com.mirth.connect.donkey.model.message.MessageSerializerException;
 import com.mirth.connect.model.converters.IMessageSerializer;
+import com.mirth.connect.model.converters.MessageFieldReader;
 import com.mirth.connect.model.converters.XMLPrettyPrinter;
 import com.mirth.connect.model.datatype.SerializerProperties;
 import com.mirth.connect.model.util.DefaultMetaData;
 import com.mirth.connect.util.ErrorMessageBuilder;
+import com.mirth.connect.util.JsonXmlUtil;
 import com.mirth.connect.util.StringUtil;
 
 public class ER7Serializer implements IMessageSerializer {
@@ -45,6 +46,8 @@ public class ER7Serializer implements IMessageSerializer {
     private XMLParser serializationXmlParser = null;
     private PipeParser deserializationPipeParser = null;
     private XMLParser deserializationXmlParser = null;
+    private ER7JSONConverter serializationJsonConverter = null;
+    private ER7JSONConverter deserializationJsonConverter = null;
 
     private boolean skipIntermediateDelimiter = false;
     private String serializationSegmentDelimiter = null;
@@ -78,6 +81,8 @@ public class ER7Serializer implements IMessageSerializer {
                 }
 
                 serializationXmlParser.setKeepAsOriginalNodes(new String[] { "NTE.3", "OBX.5" });
+            } else {
+                serializationJsonConverter = new ER7JSONConverter(serializationProperties.isHandleRepetitions(), serializationProperties.isHandleSubcomponents(), serializationSegmentDelimiter);
             }
         }
 
@@ -95,6 +100,8 @@ public class ER7Serializer implements IMessageSerializer {
                 }
 
                 deserializationXmlParser.setKeepAsOriginalNodes(new String[] { "NTE.3", "OBX.5" });
+            } else {
+                deserializationJsonConverter = new ER7JSONConverter(false, false, deserializationSegmentDelimiter);
             }
         }
     }
@@ -299,165 +306,117 @@ public class ER7Serializer implements IMessageSerializer {
     @Override
     public void populateMetaData(String message, Map<String, Object> map) {
         try {
-            if (serializationProperties.isUseStrictParser()) {
-                Message hapiMessage = serializationPipeParser.parse(message.trim());
-                Terser terser = new Terser(hapiMessage);
-
-                try {
-                    map.put(DefaultMetaData.SOURCE_VARIABLE_MAPPING, (Object) terser.get("/MSH-4-1"));
-                } catch (HL7Exception e) {
-                    logger.error("Error populating ER7 metadata.", e);
-                }
-
-                try {
-                    map.put(DefaultMetaData.TYPE_VARIABLE_MAPPING, terser.get("/MSH-9-1") + "-" + terser.get("/MSH-9-2"));
-                } catch (HL7Exception e) {
-                    logger.error("Error populating ER7 metadata.", e);
-                }
-
-                map.put(DefaultMetaData.VERSION_VARIABLE_MAPPING, hapiMessage.getVersion());
-            } else {
-                int index = 0;
-
-                // Skip leading whitespace
-                while (index < message.length() && message.charAt(index) <= ' ') {
-                    index++;
-                }
-
-                // Get the index of the first segment delimiter
-                int segmentDelimiterIndex = -1;
-                if (serializationProperties.isConvertLineBreaks()) {
-                    // If we're converting line breaks, check for CR, LF, and the serialization segment delimiter
-                    int tempIndex = index;
-                    while (segmentDelimiterIndex == -1 && tempIndex < message.length()) {
-                        if (message.startsWith("\r", tempIndex) || message.startsWith("\n", tempIndex) || (!skipIntermediateDelimiter && message.startsWith(serializationSegmentDelimiter, tempIndex))) {
-                            segmentDelimiterIndex = tempIndex;
-                        }
-                        tempIndex++;
-                    }
-                } else {
-                    segmentDelimiterIndex = message.indexOf(serializationSegmentDelimiter, index);
-                }
-
-                if (segmentDelimiterIndex == -1) {
-                    segmentDelimiterIndex = message.length();
-                }
-
-                // Return if the message doesn't start with MSH, FHS, or BHS
-                boolean mshFound = false;
-                if (message.startsWith("MSH", index)) {
-                    mshFound = true;
-                }
-                if (!mshFound && !message.startsWith("FHS", index) && !message.startsWith("BHS", index)) {
-                    return;
-                }
-                index += 3;
-
-                if (index >= segmentDelimiterIndex || index >= message.length()) {
-                    return;
-                }
-
-                int fieldSeparator = message.charAt(index++);
-                int[] encodingCharacters = new int[] { -1, -1, -1, -1 };
-                int c;
-
-                // Attempt to find the encoding characters
-                while (index < segmentDelimiterIndex && index < message.length() && (c = message.charAt(index)) != fieldSeparator) {
-                    for (int i = 0; i < encodingCharacters.length; i++) {
-                        if (encodingCharacters[i] == -1) {
-                            encodingCharacters[i] = c;
-                            break;
-                        }
-                    }
-                    index++;
-                }
+            populateMetaData(new ER7Index(message, serializationSegmentDelimiter, serializationProperties.isConvertLineBreaks()), map);
+        } catch (Exception e) {
+            logger.error("Error populating ER7 metadata.", e);
+        }
+    }
 
-                if (index >= segmentDelimiterIndex || index >= message.length()) {
-                    return;
-                }
+    @Override
+    public void populateMetaData(String message, ConnectorMessage connectorMessage) {
+        try {
+            populateMetaData(ER7Index.getIndex(message, connectorMessage, serializationSegmentDelimiter, serializationProperties.isConvertLineBreaks()), connectorMessage.getConnectorMap());
+        } catch (Exception e) {
+            logger.error("Error populating ER7 metadata.", e);
+        }
+    }
 
-                // At the beginning of third field, skip to fourth field
-                index = message.indexOf(fieldSeparator, index + 1);
-                if (index == -1 || index >= segmentDelimiterIndex || index >= message.length()) {
-                    return;
-                }
+    @Override
+    public MessageFieldReader getFieldReader(List<String[]> paths) {
+        // The strict parser creates different XML, so only the non-strict XML can be read directly
+        if (serializationProperties.isUseStrictParser()) {
+            return null;
+        }
 
-                // Get the source (fourth field)
-                map.put(DefaultMetaData.SOURCE_VARIABLE_MAPPING, getComponent(message, index + 1, fieldSeparator, encodingCharacters, segmentDelimiterIndex, false));
+        return ER7FieldReader.create(paths, serializationSegmentDelimiter, serializationProperties.isConvertLineBreaks(), serializationProperties.isHandleRepetitions(), serializationProperties.isHandleSubcomponents());
+    }
 
-                // Skip fields 4-8
-                for (int i = 4; i <= 8; i++) {
-                    index = message.indexOf(fieldSeparator, index + 1);
-                    if (index == -1 || index >= segmentDelimiterIndex) {
-                        return;
-                    }
-                }
+    private void populateMetaData(ER7Index index, Map<String, Object> map) {
+        // Return if the message doesn't start with MSH, FHS, or BHS
+        if (!index.hasHeader()) {
+            return;
+        }
 
-                // Get the type and trigger (ninth field)
-                map.put(DefaultMetaData.TYPE_VARIABLE_MAPPING, getComponent(message, index + 1, fieldSeparator, encodingCharacters, segmentDelimiterIndex, true));
-
-                // Don't get the version for batches
-                if (mshFound) {
-                    // Skip fields 9-11
-                    for (int i = 9; i <= 11; i++) {
-                        index = message.indexOf(fieldSeparator, index + 1);
-                        if (index == -1 || index >= segmentDelimiterIndex) {
-                            return;
-                        }
-                    }
+        /*
+         * The strict parser always splits repetitions and subcomponents, otherwise only split them
+         * if they would be split in the serialized XML.
+         */
+        boolean strict = serializationProperties.isUseStrictParser();
+        int repetition = strict || serializationProperties.isHandleRepetitions() ? 1 : 0;
+        int subcomponent = strict || serializationProperties.isHandleSubcomponents() ? 1 : 0;
+
+        // Get the source (fourth field)
+        String source = index.getValue(0, 4, repetition, 1, subcomponent);
+        if (source == null) {
+            return;
+        }
+        map.put(DefaultMetaData.SOURCE_VARIABLE_MAPPING, source);
 
-                    // Get the version (twelfth field)
-                    map.put(DefaultMetaData.VERSION_VARIABLE_MAPPING, getComponent(message, index + 1, fieldSeparator, encodingCharacters, segmentDelimiterIndex, false));
-                }
+        // Get the type and trigger (ninth field)
+        String type = index.getValue(0, 9, repetition, 1, subcomponent);
+        if (type == null) {
+            return;
+        }
+        String trigger = index.getValue(0, 9, repetition, 2, subcomponent);
+        map.put(DefaultMetaData.TYPE_VARIABLE_MAPPING, trigger.length() > 0 ? type + "-" + trigger : type);
+
+        // Don't get the version for batches
+        if (index.getSegmentName(0).equals("MSH")) {
+            // Get the version (twelfth field)
+            String version = index.getValue(0, 12, repetition, 1, subcomponent);
+            if (version != null) {
+                map.put(DefaultMetaData.VERSION_VARIABLE_MAPPING, version);
             }
-        } catch (Exception e) {
-            logger.error("Error populating ER7 metadata.", e);
         }
     }
 
-    private String getComponent(String message, int index, int fieldSeparator, int[] encodingCharacters, int segmentDelimiterIndex, boolean combineSecond) throws IOException {
-        StringBuilder result = new StringBuilder();
-        boolean resultEnd = false;
-        int c = -1;
-
-        int componentSeparator = encodingCharacters[0];
-        int repetitionMarker = encodingCharacters[1];
-        int subcomponentSeparator = encodingCharacters[3];
-
-        // Keep iterating until the reader is done, or until a field/component separator or repetition marker is found
-        while (index < segmentDelimiterIndex && index < message.length() && (c = message.charAt(index)) != fieldSeparator && c != componentSeparator && (!serializationProperties.isHandleRepetitions() || c != repetitionMarker)) {
-            if (serializationProperties.isHandleSubcomponents() && c == subcomponentSeparator) {
-                resultEnd = true;
-            } else if (!resultEnd) {
-                result.append((char) c);
+    /**
+     * Returns a JSON-encoded HL7 message given an ER7-encoded HL7 message. Unless the strict parser
+     * is used, the message is converted directly without creating any XML, as an array of segments
+     * in message order. With the strict parser, the JSON follows the strict parser's XML.
+     * 
+     * @param source
+     *            an ER7-encoded HL7 message.
+     * @return
+     */
+    @Override
+    public String toJSON(String source) throws MessageSerializerException {
+        try {
+            if (serializationProperties.isUseStrictParser()) {
+                return JsonXmlUtil.xmlToJson(toXML(source));
             }
-            index++;
-        }
 
-        // If combining the second component and the previous iteration was stopped by a component separator
-        if (combineSecond && c == componentSeparator) {
-            boolean secondFound = false;
-            index++;
-            while (index < segmentDelimiterIndex && index < message.length() && (c = message.charAt(index)) != fieldSeparator && c != componentSeparator && (!serializationProperties.isHandleRepetitions() || c != repetitionMarker) && (!serializationProperties.isHandleSubcomponents() || c != subcomponentSeparator)) {
-                if (!secondFound) {
-                    result.append('-');
-                    secondFound = true;
-                }
-                result.append((char) c);
-                index++;
+            if (serializationProperties.isConvertLineBreaks()) {
+                source = StringUtil.convertLineBreaks(source, serializationSegmentDelimiter);
             }
-        }
 
-        return result.toString();
+            return serializationJsonConverter.toJSON(source);
+        } catch (MessageSerializerException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MessageSerializerException("Error converting ER7 to JSON", e, ErrorMessageBuilder.buildErrorMessage(this.getClass().getSimpleName(), "Error converting ER7 to JSON", e));
+        }
     }
 
+    /**
+     * Returns an ER7-encoded HL7 message given a JSON-encoded HL7 message.
+     * 
+     * @param source
+     *            a JSON-encoded HL7 message.
+     * @return
+     */
     @Override
-    public String toJSON(String message) throws MessageSerializerException {
-        return null;
-    }
+    public String fromJSON(String source) throws MessageSerializerException {
+        try {
+            if (deserializationProperties.isUseStrictParser()) {
+                return fromXML(JsonXmlUtil.jsonToXml(source));
+            }
 
-    @Override
-    public String fromJSON(String message) throws MessageSerializerException {
-        return null;
+            return deserializationJsonConverter.fromJSON(source);
+        } catch (MessageSerializerException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MessageSerializerException("Error converting JSON to ER7", e, ErrorMessageBuilder.buildErrorMessage(this.getClass().getSimpleName(), "Error converting JSON to ER7", e));
+        }
     }
 }
\ No newline at end of file
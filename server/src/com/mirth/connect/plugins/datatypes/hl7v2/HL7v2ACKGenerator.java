@@ -11,8 +11,7 @@ package com.mirth.connect.plugins.datatypes.hl7v2;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.regex.Pattern;
-
+import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
 import com.mirth.connect.model.datatype.SerializerProperties;
@@ -27,6 +26,14 @@ public class HL7v2ACKGenerator {
     }
 
     public static String generateAckResponse(String message, boolean isXML, String acknowledgementCode, String textMessage, String dateFormat, String errorMessage, String segmentDelim) throws Exception {
+        return generateAckResponse(message, isXML, null, acknowledgementCode, textMessage, dateFormat, errorMessage, segmentDelim);
+    }
+
+    /**
+     * Generates an ACK for the given message. If the message is ER7 and an index of it is given,
+     * the header fields are read from the index instead of parsing the message again.
+     */
+    public static String generateAckResponse(String message, boolean isXML, ER7Index index, String acknowledgementCode, String textMessage, String dateFormat, String errorMessage, String segmentDelim) throws Exception {
         if (message == null || message.length() < 9) {
             logger.error("Unable to parse, message is null or too short: " + message);
             throw new Exception("Unable to parse, message is null or too short: " + message);
@@ -53,7 +60,7 @@ public class HL7v2ACKGenerator {
 
         /*
          * If XML is being sent over MLLP, use the HL7v2 XML Quick Parser to pull out the fields,
-         * otherwise use patterns to parse the ER7.
+         * otherwise use the ER7 index.
          */
         if (isXML) {
             ackIsXML = true;
@@ -74,68 +81,25 @@ public class HL7v2ACKGenerator {
 
         } else {
 
-            fieldDelim = message.charAt(3); // Usually |
-            componentDelim = message.charAt(4); // Usually ^
-            if (message.charAt(5) != fieldDelim) {
-                repetitionSeparator = message.charAt(5); // Usually ~
-                if (message.charAt(6) != fieldDelim) {
-                    escapeCharacter = message.charAt(6); // Usually \
-                    if (message.charAt(7) != fieldDelim) {
-                        subcomponentDelim = message.charAt(7); // Usually &
-                    }
-                }
-            }
-
-            // Handle single line messages without any segment delimiters
-            int firstSegmentDelim = message.indexOf(String.valueOf(segmentDelim));
-            String mshString;
-            if (firstSegmentDelim != -1) {
-                mshString = message.substring(0, firstSegmentDelim);
-            } else {
-                mshString = message;
+            if (index == null) {
+                index = new ER7Index(message, segmentDelim, false);
             }
 
-            Pattern fieldPattern = Pattern.compile(Pattern.quote(String.valueOf(fieldDelim)));
-            Pattern componentPattern = Pattern.compile(Pattern.quote(String.valueOf(componentDelim)));
-
-            String[] mshFields = fieldPattern.split(mshString);
-            int mshFieldsLength = mshFields.length;
-
-            if (mshFieldsLength > 2) {
-                sendingApplication = componentPattern.split(mshFields[2])[0]; // MSH.3.1
-                if (mshFieldsLength > 3) {
-                    sendingFacility = componentPattern.split(mshFields[3])[0]; // MSH.4.1
-                    if (mshFieldsLength > 4) {
-                        receivingApplication = componentPattern.split(mshFields[4])[0]; // MSH.5.1
-                        if (mshFieldsLength > 5) {
-                            receivingFacility = componentPattern.split(mshFields[5])[0]; // MSH.6.1
-                            if (mshFieldsLength > 8) { // MSH.9.2
-                                String[] msgDT = componentPattern.split(mshFields[8]);
-
-                                if (msgDT.length > 1) {
-                                    originalEvent = msgDT[1];
-                                }
-
-                                if (mshFieldsLength > 9) {
-                                    originalId = componentPattern.split(mshFields[9])[0]; // MSH.10.1
-                                    if (mshFieldsLength > 10) {
-                                        String[] msh11 = componentPattern.split(mshFields[10]); // MSH.11
-                                        procId = msh11[0]; // MSH.11.1
-
-                                        if (msh11.length > 1) {
-                                            procIdMode = msh11[1]; // MSH.11.2
-                                        }
-
-                                        if (mshFieldsLength > 11) {
-                                            version = componentPattern.split(mshFields[11])[0]; // MSH.12.1
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
+            fieldDelim = index.getFieldSeparator(); // Usually |
+            componentDelim = getSeparator(index.getComponentSeparator(), componentDelim); // Usually ^
+            repetitionSeparator = getSeparator(index.getRepetitionSeparator(), repetitionSeparator); // Usually ~
+            escapeCharacter = getSeparator(index.getEscapeCharacter(), escapeCharacter); // Usually \
+            subcomponentDelim = getSeparator(index.getSubcomponentSeparator(), subcomponentDelim); // Usually &
+
+            sendingApplication = getHeaderValue(index, 3, 1); // MSH.3.1
+            sendingFacility = getHeaderValue(index, 4, 1); // MSH.4.1
+            receivingApplication = getHeaderValue(index, 5, 1); // MSH.5.1
+            receivingFacility = getHeaderValue(index, 6, 1); // MSH.6.1
+            originalEvent = getHeaderValue(index, 9, 2); // MSH.9.2
+            originalId = getHeaderValue(index, 10, 1); // MSH.10.1
+            procId = getHeaderValue(index, 11, 1); // MSH.11.1
+            procIdMode = getHeaderValue(index, 11, 2); // MSH.11.2
+            version = getHeaderValue(index, 12, 1); // MSH.12.1
         }
 
         if (textMessage != null && textMessage.length() > 0) {
@@ -243,4 +207,12 @@ public class HL7v2ACKGenerator {
             return ackBuilder.toString();
         }
     }
-}
\ No newline at end of file
+
+    private static char getSeparator(char separator, char defaultSeparator) {
+        return separator != 0 ? separator : defaultSeparator;
+    }
+
+    private static String getHeaderValue(ER7Index index, int field, int component) {
+        return StringUtils.defaultString(index.getValue(0, field, 0, component, 0));
+    }
+}
@@ -12,7 +12,6 @@ package com.mirth.connect.plugins.datatypes.hl7v2;
 import java.io.CharArrayReader;
 import java.io.Reader;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -70,7 +69,7 @@ public class HL7v2AutoResponder implements AutoResponder {
     @Override
     public Response getResponse(Status status, String message, ConnectorMessage connectorMessage) throws Exception {
         HL7v2ResponseGenerationProperties hl7Properties = getReplacedHL7Properties(connectorMessage);
-        return generateACK(status, message, hl7Properties);
+        return generateACK(status, message, connectorMessage, hl7Properties);
     }
 
     private HL7v2ResponseGenerationProperties getReplacedHL7Properties(ConnectorMessage connectorMessage) {
@@ -88,12 +87,12 @@ public class HL7v2AutoResponder implements AutoResponder {
         return hl7v2Properties;
     }
 
-    private Response generateACK(Status status, String hl7Message, HL7v2ResponseGenerationProperties hl7v2Properties) throws Exception {
+    private Response generateACK(Status status, String message, ConnectorMessage connectorMessage, HL7v2ResponseGenerationProperties hl7v2Properties) throws Exception {
         boolean errorOnly = false;
         boolean always = false;
         boolean successOnly = false;
 
-        hl7Message = hl7Message.trim();
+        String hl7Message = message.trim();
         boolean isXML = StringUtils.isNotBlank(hl7Message) && hl7Message.charAt(0) == '<';
 
         String ACK = null;
@@ -101,8 +100,10 @@ public class HL7v2AutoResponder implements AutoResponder {
         String error = null;
 
         try {
-            if (serializationProperties.isConvertLineBreaks() && !isXML) {
-                hl7Message = StringUtil.convertLineBreaks(hl7Message, serializationSegmentDelimiter);
+            // Reuse the index built when the metadata was populated for this message
+            ER7Index index = null;
+            if (!isXML) {
+                index = ER7Index.getIndex(message, connectorMessage, serializationSegmentDelimiter, serializationProperties.isConvertLineBreaks());
             }
 
             // Check if we have to look at MSH15     
@@ -125,18 +126,7 @@ public class HL7v2AutoResponder implements AutoResponder {
                     Document doc = builder.parse(new InputSource(reader));
                     msh15 = msh15Query.evaluate(doc);
                 } else { // ER7
-                    char fieldDelim = hl7Message.charAt(3); // Usually |
-                    char componentDelim = hl7Message.charAt(4); // Usually ^
-
-                    Pattern fieldPattern = Pattern.compile(Pattern.quote(String.valueOf(fieldDelim)));
-                    Pattern componentPattern = Pattern.compile(Pattern.quote(String.valueOf(componentDelim)));
-
-                    String mshString = StringUtils.split(hl7Message, serializationSegmentDelimiter)[0];
-                    String[] mshFields = fieldPattern.split(mshString);
-
-                    if (mshFields.length > 14) {
-                        msh15 = componentPattern.split(mshFields[14])[0]; // MSH.15.1
-                    }
+                    msh15 = index.getValue(0, 15, 0, 1, 0); // MSH.15.1
                 }
 
                 if (msh15 != null && !msh15.equals("")) {
@@ -180,7 +170,7 @@ public class HL7v2AutoResponder implements AutoResponder {
                 ackMessage = hl7v2Properties.getSuccessfulACKMessage();
             }
 
-            ACK = HL7v2ACKGenerator.generateAckResponse(hl7Message, isXML, ackCode, ackMessage, generationProperties.getDateFormat(), new String(), deserializationSegmentDelimiter);
+            ACK = HL7v2ACKGenerator.generateAckResponse(hl7Message, isXML, index, ackCode, ackMessage, generationProperties.getDateFormat(), new String(), deserializationSegmentDelimiter);
             statusMessage = "HL7v2 " + (nack ? "N" : "") + "ACK successfully generated.";
             logger.debug("HL7v2 " + (nack ? "N" : "") + "ACK successfully generated: " + ACK);
         } catch (Exception e) {
@@ -13,6 +13,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import com.mirth.connect.donkey.model.message.SerializationType;
 import com.mirth.connect.donkey.util.DonkeyElement;
 import com.mirth.connect.model.datatype.DataTypePropertyDescriptor;
 import com.mirth.connect.model.datatype.DeserializationProperties;
@@ -22,6 +23,7 @@ public class HL7v2DeserializationProperties extends DeserializationProperties {
     private boolean useStrictParser = false;
     private boolean useStrictValidation = false;
     private String segmentDelimiter = "\\r";
+    private SerializationType serializationType = SerializationType.XML;
 
     @Override
     public Map<String, DataTypePropertyDescriptor> getPropertyDescriptors() {
@@ -30,6 +32,7 @@ public class HL7v2DeserializationProperties extends DeserializationProperties {
         properties.put("useStrictParser", new DataTypePropertyDescriptor(useStrictParser, "Use Strict Parser", "Parse messages based upon strict HL7 specifications.", PropertyEditorType.BOOLEAN));
         properties.put("useStrictValidation", new DataTypePropertyDescriptor(useStrictValidation, "Validate in Strict Parser", "Validate messages using HL7 specifications (applies to Strict Parser only).", PropertyEditorType.BOOLEAN));
         properties.put("segmentDelimiter", new DataTypePropertyDescriptor(segmentDelimiter, "Segment Delimiter", "This is the delimiter character(s) that will be used after each segment.", PropertyEditorType.STRING));
+        properties.put("serializationType", new DataTypePropertyDescriptor(getSerializationType(), "Serialization Type", "The format the transformed message is deserialized from. This should match the Serialization Type of the outbound template. With the Non-Strict Parser, JSON is converted directly to the ER7 message.", PropertyEditorType.OPTION, new SerializationType[] { SerializationType.XML, SerializationType.JSON }));
 
         return properties;
     }
@@ -48,6 +51,10 @@ public class HL7v2DeserializationProperties extends DeserializationProperties {
             if (properties.get("segmentDelimiter") != null) {
                 this.segmentDelimiter = (String) properties.get("segmentDelimiter");
             }
+
+            if (properties.get("serializationType") != null) {
+                this.serializationType = (SerializationType) properties.get("serializationType");
+            }
         }
     }
 
@@ -75,6 +82,17 @@ public class HL7v2DeserializationProperties extends DeserializationProperties {
         this.segmentDelimiter = segmentDelimiter;
     }
 
+    @Override
+    public SerializationType getSerializationType() {
+        // Properties saved before this option existed do not have it set
+        return serializationType != null ? serializationType : SerializationType.XML;
+    }
+
+    @Override
+    public void setSerializationType(SerializationType serializationType) {
+        this.serializationType = serializationType;
+    }
+
     // @formatter:off
     @Override public void migrate3_0_1(DonkeyElement element) {}
     @Override public void migrate3_0_2(DonkeyElement element) {}
@@ -92,6 +110,7 @@ public class HL7v2DeserializationProperties extends DeserializationProperties {
         Map<String, Object> purgedProperties = new HashMap<String, Object>();
         purgedProperties.put("useStrictParser", useStrictParser);
         purgedProperties.put("useStrictValidation", useStrictValidation);
+        purgedProperties.put("serializationType", getSerializationType());
         return purgedProperties;
     }
 }
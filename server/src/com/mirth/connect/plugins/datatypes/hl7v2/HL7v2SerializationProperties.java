@@ -13,6 +13,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import com.mirth.connect.donkey.model.message.SerializationType;
 import com.mirth.connect.donkey.util.DonkeyElement;
 import com.mirth.connect.model.datatype.DataTypePropertyDescriptor;
 import com.mirth.connect.model.datatype.PropertyEditorType;
@@ -26,6 +27,7 @@ public class HL7v2SerializationProperties extends SerializationProperties {
     private boolean stripNamespaces = true;
     private String segmentDelimiter = "\\r";
     private boolean convertLineBreaks = true;
+    private SerializationType serializationType = SerializationType.XML;
 
     @Override
     public Map<String, DataTypePropertyDescriptor> getPropertyDescriptors() {
@@ -38,6 +40,7 @@ public class HL7v2SerializationProperties extends SerializationProperties {
         properties.put("stripNamespaces", new DataTypePropertyDescriptor(stripNamespaces, "Strip Namespaces", "Strips namespace definitions from the transformed XML message (applies to Strict Parser only).", PropertyEditorType.BOOLEAN));
         properties.put("segmentDelimiter", new DataTypePropertyDescriptor(segmentDelimiter, "Segment Delimiter", "This is the input delimiter character(s) expected to occur after each segment.", PropertyEditorType.STRING));
         properties.put("convertLineBreaks", new DataTypePropertyDescriptor(convertLineBreaks, "Convert Line Breaks", "Convert all styles of line breaks (CRLF, CR, LF) in the raw message to the segment delimiter. ", PropertyEditorType.BOOLEAN));
+        properties.put("serializationType", new DataTypePropertyDescriptor(getSerializationType(), "Serialization Type", "The format the message is serialized to for filters and transformers. With the Non-Strict Parser, JSON is converted directly from the ER7 message, as an array of segments in message order.", PropertyEditorType.OPTION, new SerializationType[] { SerializationType.XML, SerializationType.JSON }));
 
         return properties;
     }
@@ -72,6 +75,10 @@ public class HL7v2SerializationProperties extends SerializationProperties {
             if (properties.get("convertLineBreaks") != null) {
                 this.convertLineBreaks = (Boolean) properties.get("convertLineBreaks");
             }
+
+            if (properties.get("serializationType") != null) {
+                this.serializationType = (SerializationType) properties.get("serializationType");
+            }
         }
     }
 
@@ -131,6 +138,17 @@ public class HL7v2SerializationProperties extends SerializationProperties {
         this.convertLineBreaks = convertLineBreaks;
     }
 
+    @Override
+    public SerializationType getSerializationType() {
+        // Properties saved before this option existed do not have it set
+        return serializationType != null ? serializationType : SerializationType.XML;
+    }
+
+    @Override
+    public void setSerializationType(SerializationType serializationType) {
+        this.serializationType = serializationType;
+    }
+
     // @formatter:off
     @Override public void migrate3_0_1(DonkeyElement element) {}
     @Override public void migrate3_0_2(DonkeyElement element) {}
@@ -151,6 +169,7 @@ public class HL7v2SerializationProperties extends SerializationProperties {
         purgedProperties.put("useStrictParser", useStrictParser);
         purgedProperties.put("stripNamespaces", stripNamespaces);
         purgedProperties.put("convertLineBreaks", convertLineBreaks);
+        purgedProperties.put("serializationType", getSerializationType());
         return purgedProperties;
     }
 }
@@ -46,6 +46,7 @@ public class JSONBatchAdaptor extends BatchAdaptor {
 
     private JSONBatchProperties batchProperties;
     private BufferedReader bufferedReader;
+    private JSONStreamSplitter streamSplitter;
 
     public JSONBatchAdaptor(BatchAdaptorFactory factory, SourceConnector sourceConnector, BatchRawMessage batchRawMessage) {
         super(factory, sourceConnector, batchRawMessage);
@@ -60,7 +61,15 @@ public class JSONBatchAdaptor extends BatchAdaptor {
     }
 
     @Override
-    public void cleanup() throws BatchMessageException {}
+    public void cleanup() throws BatchMessageException {
+        if (streamSplitter != null) {
+            try {
+                streamSplitter.close();
+            } catch (Exception e) {
+                throw new BatchMessageException("Error closing the JSON parser.", e);
+            }
+        }
+    }
 
     @Override
     protected String getNextMessage(int batchSequenceId) throws Exception {
@@ -96,7 +105,13 @@ public class JSONBatchAdaptor extends BatchAdaptor {
 
     private String getMessageFromReader() throws Exception {
         SplitType splitType = batchProperties.getSplitType();
-        if (splitType == SplitType.JavaScript) {
+        if (splitType == SplitType.Array_Elements || splitType == SplitType.JSON_Pointer || splitType == SplitType.Newline_Delimited) {
+            if (streamSplitter == null) {
+                streamSplitter = new JSONStreamSplitter(splitType, batchProperties.getJsonPointer(), bufferedReader);
+            }
+
+            return streamSplitter.next();
+        } else if (splitType == SplitType.JavaScript) {
             if (StringUtils.isEmpty(batchProperties.getBatchScript())) {
                 throw new BatchMessageException("No batch script was set.");
             }
@@ -22,7 +22,7 @@ import com.mirth.connect.model.datatype.PropertyEditorType;
 public class JSONBatchProperties extends BatchProperties {
 
     public enum SplitType {
-        JavaScript;
+        JavaScript, Array_Elements, JSON_Pointer, Newline_Delimited;
 
         @Override
         public String toString() {
@@ -31,13 +31,15 @@ public class JSONBatchProperties extends BatchProperties {
     };
 
     private SplitType splitType = SplitType.values()[0];
+    private String jsonPointer = "";
     private String batchScript = "";
 
     @Override
     public Map<String, DataTypePropertyDescriptor> getPropertyDescriptors() {
         Map<String, DataTypePropertyDescriptor> properties = new LinkedHashMap<String, DataTypePropertyDescriptor>();
 
-        properties.put("splitType", new DataTypePropertyDescriptor(splitType, "Split Batch By", "Select the method for splitting the batch message.  This option has no effect unless Process Batch Files is enabled in the connector.\n\nJavaScript: Use JavaScript to split messages.", PropertyEditorType.OPTION, SplitType.values()));
+        properties.put("splitType", new DataTypePropertyDescriptor(splitType, "Split Batch By", "Select the method for splitting the batch message.  This option has no effect unless Process Batch Files is enabled in the connector.\n\nJavaScript: Use JavaScript to split messages.\n\nArray Elements: The batch is a JSON array, and each element will be split into its own message.\n\nJSON Pointer: Each element of the array at the JSON Pointer will be split into its own message.\n\nNewline Delimited: Each non-blank line will be split into its own message.", PropertyEditorType.OPTION, SplitType.values()));
+        properties.put("jsonPointer", new DataTypePropertyDescriptor(jsonPointer, "JSON Pointer", "The JSON Pointer (for example /data/records) of the array to split when splitting by JSON Pointer. An empty pointer refers to the whole batch.", PropertyEditorType.STRING));
         properties.put("batchScript", new DataTypePropertyDescriptor(batchScript, "JavaScript", "Enter JavaScript that splits the batch, and returns the next message.  This script has access to 'reader', a Java BufferedReader, to read the incoming data stream.  The script must return a string containing the next message, or a null/empty string to indicate end of input.  This option has no effect unless Process Batch is enabled in the connector.", PropertyEditorType.JAVASCRIPT));
 
         return properties;
@@ -50,6 +52,10 @@ public class JSONBatchProperties extends BatchProperties {
                 splitType = (SplitType) properties.get("splitType");
             }
 
+            if (properties.get("jsonPointer") != null) {
+                jsonPointer = (String) properties.get("jsonPointer");
+            }
+
             if (properties.get("batchScript") != null) {
                 batchScript = (String) properties.get("batchScript");
             }
@@ -60,6 +66,18 @@ public class JSONBatchProperties extends BatchProperties {
         return splitType;
     }
 
+    public void setSplitType(SplitType splitType) {
+        this.splitType = splitType;
+    }
+
+    public String getJsonPointer() {
+        return jsonPointer;
+    }
+
+    public void setJsonPointer(String jsonPointer) {
+        this.jsonPointer = jsonPointer;
+    }
+
     public String getBatchScript() {
         return batchScript;
     }
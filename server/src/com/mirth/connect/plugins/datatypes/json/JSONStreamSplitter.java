@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.plugins.datatypes.json;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.JsonPointerBasedFilter;
+import com.mirth.connect.donkey.server.message.batch.BatchMessageException;
+import com.mirth.connect.plugins.datatypes.json.JSONBatchProperties.SplitType;
+
+/**
+ * Splits a JSON batch while streaming through it. Each element of the array, or each line of
+ * newline-delimited JSON, is returned as soon as it has been read, so only one element is held in
+ * memory at a time. Array elements are written back out without formatting whitespace, and with
+ * numbers exactly as they appeared in the batch.
+ */
+class JSONStreamSplitter {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private SplitType splitType;
+    private String jsonPointer;
+    private BufferedReader reader;
+    private JsonParser parser;
+    private boolean started;
+
+    JSONStreamSplitter(SplitType splitType, String jsonPointer, BufferedReader reader) {
+        this.splitType = splitType;
+        this.jsonPointer = StringUtils.trimToEmpty(jsonPointer);
+        this.reader = reader;
+    }
+
+    /**
+     * Returns the next message, or null if the end of the batch was reached.
+     */
+    String next() throws Exception {
+        if (splitType == SplitType.Newline_Delimited) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (StringUtils.isNotBlank(line)) {
+                    return line;
+                }
+            }
+
+            return null;
+        }
+
+        if (!started) {
+            started = true;
+            parser = jsonFactory.createParser(reader);
+
+            if (splitType == SplitType.JSON_Pointer && !jsonPointer.isEmpty()) {
+                // Only the tokens of the value at the pointer are returned, everything else is skipped over
+                parser = new FilteringParserDelegate(parser, new JsonPointerBasedFilter(JsonPointer.compile(jsonPointer)), false, false);
+            }
+
+            JsonToken token = parser.nextToken();
+
+            if (token == null) {
+                return null;
+            } else if (token != JsonToken.START_ARRAY) {
+                throw new BatchMessageException(splitType == SplitType.JSON_Pointer && !jsonPointer.isEmpty() ? "The value at JSON pointer \"" + jsonPointer + "\" is not an array." : "The batch is not a JSON array.");
+            }
+        }
+
+        if (parser == null) {
+            return null;
+        }
+
+        JsonToken token = parser.nextToken();
+
+        if (token == null || token == JsonToken.END_ARRAY) {
+            close();
+            return null;
+        }
+
+        StringWriter writer = new StringWriter();
+        JsonGenerator generator = jsonFactory.createGenerator(writer);
+        copyValue(parser, generator);
+        generator.close();
+
+        return writer.toString();
+    }
+
+    void close() throws IOException {
+        if (parser != null) {
+            parser.close();
+            parser = null;
+        }
+    }
+
+    /*
+     * Copies the value at the current token. Unlike JsonGenerator.copyCurrentStructure, numbers are
+     * copied as text so that their precision and format are preserved.
+     */
+    private static void copyValue(JsonParser parser, JsonGenerator generator) throws IOException {
+        int depth = 0;
+
+        do {
+            JsonToken token = parser.currentToken();
+
+            switch (token) {
+                case START_OBJECT:
+                    generator.writeStartObject();
+                    depth++;
+                    break;
+                case START_ARRAY:
+                    generator.writeStartArray();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    generator.writeEndObject();
+                    depth--;
+                    break;
+                case END_ARRAY:
+                    generator.writeEndArray();
+                    depth--;
+                    break;
+                case FIELD_NAME:
+                    generator.writeFieldName(parser.getCurrentName());
+                    break;
+                case VALUE_STRING:
+                    generator.writeString(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                    break;
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    generator.writeNumber(parser.getText());
+                    break;
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    generator.writeBoolean(token == JsonToken.VALUE_TRUE);
+                    break;
+                case VALUE_NULL:
+                    generator.writeNull();
+                    break;
+                default:
+                    generator.copyCurrentEvent(parser);
+                    break;
+            }
+        } while (depth > 0 && parser.nextToken() != null);
+    }
+}
@@ -61,6 +61,7 @@ public class XMLBatchAdaptor extends BatchAdaptor {
     private BufferedReader bufferedReader;
     private XPathFactory xPathFactory = XPathFactory.newInstance();
     private XMLBatchProperties batchProperties;
+    private XMLStreamSplitter streamSplitter;
     private NodeList nodeList;
     private int currentNode = 0;
 
@@ -77,7 +78,15 @@ public class XMLBatchAdaptor extends BatchAdaptor {
     }
 
     @Override
-    public void cleanup() throws BatchMessageException {}
+    public void cleanup() throws BatchMessageException {
+        if (streamSplitter != null) {
+            try {
+                streamSplitter.close();
+            } catch (Exception e) {
+                throw new BatchMessageException("Error closing the XML stream reader.", e);
+            }
+        }
+    }
 
     @Override
     protected String getNextMessage(int batchSequenceId) throws Exception {
@@ -115,6 +124,22 @@ public class XMLBatchAdaptor extends BatchAdaptor {
         SplitType splitType = batchProperties.getSplitType();
 
         if (splitType == SplitType.Element_Name || splitType == SplitType.Level || splitType == SplitType.XPath_Query) {
+            if (streamSplitter == null && nodeList == null) {
+                // Stream through the batch unless the XPath query needs the whole document
+                if (splitType == SplitType.Element_Name) {
+                    streamSplitter = XMLStreamSplitter.forElementName(batchProperties.getElementName());
+                } else if (splitType == SplitType.Level) {
+                    streamSplitter = XMLStreamSplitter.forLevel(batchProperties.getLevel());
+                } else {
+                    streamSplitter = XMLStreamSplitter.forQuery(batchProperties.getQuery());
+                }
+            }
+
+            if (streamSplitter != null) {
+                Node node = streamSplitter.next(bufferedReader);
+                return node != null ? toXML(node) : null;
+            }
+
             if (nodeList == null) {
                 StringBuilder query = new StringBuilder();
                 if (splitType == SplitType.Element_Name) {
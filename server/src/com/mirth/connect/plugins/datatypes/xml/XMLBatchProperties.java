@@ -45,7 +45,7 @@ public class XMLBatchProperties extends BatchProperties {
         properties.put("splitType", new DataTypePropertyDescriptor(splitType, "Split Batch By", "Select the method for splitting the batch message.  This option has no effect unless Process Batch Files is enabled in the connector.\n\nElement Name: Use the element name to split messages. Does not work with namespaces.\n\nLevel: Use the element level to split messages.\n\nXPath Query: Use a custom XPath Query to split messages.\n\nJavaScript: Use JavaScript to split messages.", PropertyEditorType.OPTION, SplitType.values()));
         properties.put("elementName", new DataTypePropertyDescriptor(elementName, "Element Name", "Each element with this name will split into its own message.", PropertyEditorType.STRING));
         properties.put("level", new DataTypePropertyDescriptor(Integer.toString(level), "Level", "Each element at this level will be split into its own message. The root element is at level 0.", PropertyEditorType.STRING));
-        properties.put("query", new DataTypePropertyDescriptor(query, "XPath Query", "Each element found with the XPath Query will be split into its own message.", PropertyEditorType.STRING));
+        properties.put("query", new DataTypePropertyDescriptor(query, "XPath Query", "Each element found with the XPath Query will be split into its own message. Queries made up only of element names and * (for example /batch/record or //record) are read without loading the whole batch into memory.", PropertyEditorType.STRING));
         properties.put("batchScript", new DataTypePropertyDescriptor(batchScript, "JavaScript", "Enter JavaScript that splits the batch, and returns the next message.  This script has access to 'reader', a Java BufferedReader, to read the incoming data stream.  The script must return a string containing the next message, or a null/empty string to indicate end of input.  This option has no effect unless Process Batch is enabled in the connector.", PropertyEditorType.JAVASCRIPT));
 
         return properties;
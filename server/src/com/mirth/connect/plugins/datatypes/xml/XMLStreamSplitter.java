@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.plugins.datatypes.xml;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang3.StringUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Splits an XML batch while streaming through it, so that only the elements being split out are
+ * held in memory. Elements are returned in document order as detached DOM elements, the same as
+ * the nodes an XPath query on the whole document would return. Elements nested inside another
+ * matching element are returned after it.
+ */
+class XMLStreamSplitter {
+
+    private static final Pattern PATH_PATTERN = Pattern.compile("(//?)(\\*|[A-Za-z_][\\w.\\-]*)((?:/(?:\\*|[A-Za-z_][\\w.\\-]*))*)");
+
+    private static XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    private static DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+
+    static {
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        documentBuilderFactory.setNamespaceAware(true);
+    }
+
+    private String[] steps;
+    private boolean anyDepth;
+    private boolean matchLocalName;
+
+    private XMLStreamReader reader;
+    private List<String[]> elements = new ArrayList<String[]>();
+    private LinkedList<Capture> captures = new LinkedList<Capture>();
+
+    private XMLStreamSplitter(String[] steps, boolean anyDepth, boolean matchLocalName) {
+        this.steps = steps;
+        this.anyDepth = anyDepth;
+        this.matchLocalName = matchLocalName;
+    }
+
+    /**
+     * Splits on every element with the given local name, in any namespace. This is the same as
+     * the query //*[local-name()='name'].
+     */
+    static XMLStreamSplitter forElementName(String elementName) {
+        return new XMLStreamSplitter(new String[] { elementName }, true, true);
+    }
+
+    /**
+     * Splits on every element at the given level, where the root element is at level 0.
+     */
+    static XMLStreamSplitter forLevel(int level) {
+        return new XMLStreamSplitter(new String[level + 1], false, false);
+    }
+
+    /**
+     * Returns a splitter for an XPath query made up only of child steps with element names or *,
+     * optionally starting with //, such as /batch/record or //order/item. Returns null for any
+     * other query.
+     */
+    static XMLStreamSplitter forQuery(String query) {
+        Matcher matcher = PATH_PATTERN.matcher(StringUtils.trimToEmpty(query));
+
+        if (!matcher.matches()) {
+            return null;
+        }
+
+        List<String> steps = new ArrayList<String>();
+        steps.add(matcher.group(2));
+
+        for (String step : StringUtils.split(matcher.group(3), '/')) {
+            steps.add(step);
+        }
+
+        for (int i = 0; i < steps.size(); i++) {
+            if (steps.get(i).equals("*")) {
+                steps.set(i, null);
+            }
+        }
+
+        return new XMLStreamSplitter(steps.toArray(new String[steps.size()]), matcher.group(1).length() == 2, false);
+    }
+
+    /**
+     * Returns the next matching element, or null if the end of the batch was reached.
+     */
+    Element next(Reader in) throws Exception {
+        if (reader == null) {
+            reader = inputFactory.createXMLStreamReader(in);
+        }
+
+        while (captures.isEmpty() || !captures.getFirst().complete) {
+            if (!reader.hasNext()) {
+                return null;
+            }
+
+            int event = reader.next();
+
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    elements.add(new String[] { StringUtils.defaultString(reader.getNamespaceURI()), reader.getLocalName() });
+
+                    if (matches()) {
+                        captures.add(new Capture(elements.size()));
+                    }
+
+                    for (Capture capture : captures) {
+                        if (!capture.complete) {
+                            capture.startElement(reader);
+                        }
+                    }
+                    break;
+
+                case XMLStreamConstants.END_ELEMENT:
+                    for (Capture capture : captures) {
+                        if (!capture.complete) {
+                            capture.endElement(elements.size());
+                        }
+                    }
+
+                    elements.remove(elements.size() - 1);
+                    break;
+
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.COMMENT:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    for (Capture capture : captures) {
+                        if (!capture.complete && capture.node != null) {
+                            capture.node.appendChild(capture.createNode(reader, event));
+                        }
+                    }
+                    break;
+            }
+        }
+
+        return captures.removeFirst().document.getDocumentElement();
+    }
+
+    void close() throws XMLStreamException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    private boolean matches() {
+        int offset = elements.size() - steps.length;
+
+        if (offset < 0 || (!anyDepth && offset > 0)) {
+            return false;
+        }
+
+        for (int i = 0; i < steps.length; i++) {
+            String[] element = elements.get(offset + i);
+
+            if (steps[i] != null) {
+                // Unprefixed XPath names only match elements without a namespace
+                if (!steps[i].equals(element[1]) || (!matchLocalName && !element[0].isEmpty())) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static class Capture {
+        private Document document;
+        private Node node;
+        private int depth;
+        private boolean complete;
+
+        private Capture(int depth) throws Exception {
+            this.depth = depth;
+            document = documentBuilderFactory.newDocumentBuilder().newDocument();
+            node = document;
+        }
+
+        private void startElement(XMLStreamReader reader) {
+            Element element = document.createElementNS(StringUtils.defaultIfEmpty(reader.getNamespaceURI(), null), getQualifiedName(reader.getPrefix(), reader.getLocalName()));
+
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                String prefix = reader.getNamespacePrefix(i);
+                element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, StringUtils.isEmpty(prefix) ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix, StringUtils.defaultString(reader.getNamespaceURI(i)));
+            }
+
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                element.setAttributeNS(StringUtils.defaultIfEmpty(reader.getAttributeNamespace(i), null), getQualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+            }
+
+            node.appendChild(element);
+            node = element;
+        }
+
+        private void endElement(int currentDepth) {
+            node = node.getParentNode();
+
+            if (currentDepth == depth) {
+                complete = true;
+                node = null;
+            }
+        }
+
+        private Node createNode(XMLStreamReader reader, int event) {
+            switch (event) {
+                case XMLStreamConstants.CDATA:
+                    return document.createCDATASection(reader.getText());
+                case XMLStreamConstants.COMMENT:
+                    return document.createComment(reader.getText());
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    return document.createProcessingInstruction(reader.getPITarget(), reader.getPIData());
+                default:
+                    return document.createTextNode(reader.getText());
+            }
+        }
+
+        private static String getQualifiedName(String prefix, String localName) {
+            return StringUtils.isEmpty(prefix) ? localName : prefix + ":" + localName;
+        }
+    }
+}
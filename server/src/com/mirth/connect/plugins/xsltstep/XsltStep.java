@@ -60,14 +60,10 @@ public class XsltStep extends Step implements FilterTransformerIterable<Step> {
 
     private String getTransformationScript() {
         StringBuilder script = new StringBuilder();
-        if (useCustomFactory && StringUtils.isNotEmpty(customFactory)) {
-            script.append("tFactory = Packages.javax.xml.transform.TransformerFactory.newInstance(\"" + customFactory + "\", null);\n");
-        } else {
-            script.append("tFactory = Packages.javax.xml.transform.TransformerFactory.newInstance();\n");
-        }
-
-        script.append("xsltTemplate = new Packages.java.io.StringReader(" + template + ");\n");
-        script.append("transformer = tFactory.newTransformer(new Packages.javax.xml.transform.stream.StreamSource(xsltTemplate));\n");
+        String factory = useCustomFactory && StringUtils.isNotEmpty(customFactory) ? "\"" + customFactory + "\"" : "null";
+
+        // The stylesheet is compiled once per deploy, and each thread reuses its own transformer
+        script.append("transformer = Packages.com.mirth.connect.server.util.XsltTemplateCache.getInstance().getTransformer(typeof channelId !== 'undefined' ? channelId : null, String(" + template + "), " + factory + ");\n");
         script.append("sourceVar = new Packages.java.io.StringReader(" + sourceXml + ");\n");
         script.append("resultVar = new Packages.java.io.StringWriter();\n");
         script.append("transformer.transform(new Packages.javax.xml.transform.stream.StreamSource(sourceVar), new Packages.javax.xml.transform.stream.StreamResult(resultVar));\n");
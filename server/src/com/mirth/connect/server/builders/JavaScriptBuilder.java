@@ -15,6 +15,7 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -44,6 +45,12 @@ public class JavaScriptBuilder {
     private static ExtensionController extensionController = ControllerFactory.getFactory().createExtensionController();
     private static CodeTemplateController codeTemplateController = ControllerFactory.getFactory().createCodeTemplateController();
 
+    /*
+     * Matches anything that could read the serialized message or set the transformed data. This
+     * errs on the side of serializing, so it also matches these names in strings and comments.
+     */
+    private static final Pattern MESSAGE_REFERENCE_PATTERN = Pattern.compile("(?<![\\w$])(msg|tmp|template|eval|Function)(?![\\w$])|getTransformedData");
+
     /*
      * Generates the global JavaScript contained in all new scopes created
      */
@@ -136,47 +143,58 @@ public class JavaScriptBuilder {
     }
 
     public static String generateFilterTransformerScript(Filter filter, Transformer transformer) throws ScriptBuilderException {
+        return generateFilterTransformerScript(filter, transformer, true);
+    }
+
+    /**
+     * Generates the filter/transformer script. If serializeMessage is false, the script does not
+     * set up msg or tmp, so it can be run without any transformed data.
+     */
+    public static String generateFilterTransformerScript(Filter filter, Transformer transformer, boolean serializeMessage) throws ScriptBuilderException {
         logger.debug("generating script");
 
         StringBuilder builder = new StringBuilder();
 
-        SerializationType inboundSerializationType = DataTypeFactory.getSerializationType(transformer.getInboundDataType(), transformer.getInboundProperties(), true);
-
-        switch (inboundSerializationType) {
-            case JSON:
-                builder.append("msg = JSON.parse(connectorMessage.getTransformedData());\n");
-                break;
-
-            case XML:
-                // Turn the inbound message into an E4X XML object
-                builder.append("msg = new XML(connectorMessage.getTransformedData());\n");
-
-                // Set the default namespace if there is one left on the root node, otherwise set it to ''.
-                builder.append("if (msg.namespace('') != undefined) { default xml namespace = msg.namespace(''); } else { default xml namespace = ''; }\n");
-                break;
-
-            case RAW:
-                builder.append("if (connectorMessage.getProcessedRawData() != null) { msg = new String(connectorMessage.getProcessedRawData()); } else { msg = new String(connectorMessage.getRawData()); } \n");
-                break;
-        }
-
-        // Turn the outbound template into an E4X XML object, if there is one
-        if (StringUtils.isNotBlank(transformer.getOutboundTemplate())) {
-            SerializationType templateSerializationType = DataTypeFactory.getSerializationType(transformer.getOutboundDataType(), transformer.getOutboundProperties(), true);
+        // Set up msg and tmp, unless the filter/transformer is run without serializing the message
+        if (serializeMessage) {
+            SerializationType inboundSerializationType = DataTypeFactory.getSerializationType(transformer.getInboundDataType(), transformer.getInboundProperties(), true);
 
-            switch (templateSerializationType) {
+            switch (inboundSerializationType) {
                 case JSON:
-                    builder.append("tmp = JSON.parse(template);\n");
+                    builder.append("msg = JSON.parse(connectorMessage.getTransformedData());\n");
                     break;
 
                 case XML:
-                    builder.append("tmp = new XML(template);\n");
+                    // Turn the inbound message into an E4X XML object
+                    builder.append("msg = new XML(connectorMessage.getTransformedData());\n");
+
+                    // Set the default namespace if there is one left on the root node, otherwise set it to ''.
+                    builder.append("if (msg.namespace('') != undefined) { default xml namespace = msg.namespace(''); } else { default xml namespace = ''; }\n");
                     break;
 
                 case RAW:
-                    builder.append("tmp = template;\n");
+                    builder.append("if (connectorMessage.getProcessedRawData() != null) { msg = new String(connectorMessage.getProcessedRawData()); } else { msg = new String(connectorMessage.getRawData()); } \n");
                     break;
             }
+
+            // Turn the outbound template into an E4X XML object, if there is one
+            if (StringUtils.isNotBlank(transformer.getOutboundTemplate())) {
+                SerializationType templateSerializationType = DataTypeFactory.getSerializationType(transformer.getOutboundDataType(), transformer.getOutboundProperties(), true);
+
+                switch (templateSerializationType) {
+                    case JSON:
+                        builder.append("tmp = JSON.parse(template);\n");
+                        break;
+
+                    case XML:
+                        builder.append("tmp = new XML(template);\n");
+                        break;
+
+                    case RAW:
+                        builder.append("tmp = template;\n");
+                        break;
+                }
+            }
         }
 
         // Append doFilter() function
@@ -189,6 +207,37 @@ public class JavaScriptBuilder {
         return builder.toString();
     }
 
+    /**
+     * Returns true if the filter or transformer, or any code template included with them, may read
+     * msg, tmp, the template or the transformed data. If not, the filter/transformer can be run
+     * without serializing the message.
+     */
+    public static boolean isMessageReferenced(String channelId, Filter filter, Transformer transformer, ContextType contextType) throws ScriptBuilderException {
+        StringBuilder codeTemplates = new StringBuilder();
+        appendCodeTemplates(codeTemplates, channelId, contextType);
+        return isMessageReferenced(filter, transformer, codeTemplates);
+    }
+
+    protected static boolean isMessageReferenced(Filter filter, Transformer transformer, CharSequence codeTemplates) throws ScriptBuilderException {
+        if (MESSAGE_REFERENCE_PATTERN.matcher(codeTemplates).find()) {
+            return true;
+        }
+
+        for (Rule rule : filter.getEnabledElements()) {
+            if (MESSAGE_REFERENCE_PATTERN.matcher(rule.getScript(true)).find()) {
+                return true;
+            }
+        }
+
+        for (Step step : transformer.getEnabledElements()) {
+            if (MESSAGE_REFERENCE_PATTERN.matcher(step.getScript(true)).find()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     public static String generateResponseTransformerScript(Transformer transformer) throws ScriptBuilderException {
         logger.debug("Generating response transformer script...");
 
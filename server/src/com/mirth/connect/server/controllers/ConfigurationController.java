@@ -248,8 +248,26 @@ public abstract class ConfigurationController extends Controller {
 
     public abstract int getStatsUpdateInterval();
 
+    /**
+     * Returns true if channel, queue and dispatch threads should be virtual threads, when the
+     * running Java version supports them.
+     */
+    public abstract boolean isVirtualThreads();
+
     public abstract Integer getRhinoLanguageVersion();
 
+    /**
+     * Returns true if JavaScript tasks should run on the calling thread when possible, instead of on
+     * a separate JavaScript thread.
+     */
+    public abstract boolean isRhinoInlineExecution();
+
+    /**
+     * Returns true if compiled scripts should be stored in the application data directory and
+     * reused by later deploys, instead of being compiled again from source.
+     */
+    public abstract boolean isRhinoCompiledScriptCache();
+
     public abstract int getStartupLockSleep();
 
     /**
@@ -32,6 +32,8 @@ public abstract class ContextFactoryController extends Controller {
     
     public abstract void removeDebugContextFactory(Set<String> libraryResourceIds, String channelId);
 
+    public abstract void removeScopeTemplates(String channelId);
+
     public abstract void reloadResource(String resourceId) throws Exception;
 
     public abstract List<URL> getLibraries(String resourceId) throws Exception;
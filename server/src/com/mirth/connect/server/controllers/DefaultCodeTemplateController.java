@@ -40,6 +40,7 @@ import com.mirth.connect.server.ExtensionLoader;
 import com.mirth.connect.server.util.DatabaseUtil;
 import com.mirth.connect.server.util.SqlConfig;
 import com.mirth.connect.server.util.StatementLock;
+import com.mirth.connect.server.util.XsltTemplateCache;
 import com.mirth.connect.util.JavaScriptSharedUtil;
 
 public class DefaultCodeTemplateController extends CodeTemplateController {
@@ -502,6 +503,7 @@ public class DefaultCodeTemplateController extends CodeTemplateController {
 
             // Re-compile the global scripts
             scriptController.compileGlobalScripts(contextFactoryController.getGlobalScriptContextFactory(), true);
+            XsltTemplateCache.getInstance().clear();
 
             return true;
         } catch (Exception e) {
@@ -537,6 +539,7 @@ public class DefaultCodeTemplateController extends CodeTemplateController {
 
             // Re-compile the global scripts
             scriptController.compileGlobalScripts(contextFactoryController.getGlobalScriptContextFactory(), true);
+            XsltTemplateCache.getInstance().clear();
         } catch (Exception e) {
             throw new ControllerException(e);
         } finally {
@@ -166,7 +166,10 @@ public class DefaultConfigurationController extends ConfigurationController {
     private static DatabaseSettings databaseConfig;
     private static String apiBypassword;
     private static int statsUpdateInterval;
+    private static boolean virtualThreads;
     private static Integer rhinoLanguageVersion;
+    private static boolean rhinoInlineExecution;
+    private static boolean rhinoCompiledScriptCache;
     private static int startupLockSleep;
     private volatile boolean configMapLoaded = false;
 
@@ -185,7 +188,10 @@ public class DefaultConfigurationController extends ConfigurationController {
     private static final String STARTUP_DEPLOY = "server.startupdeploy";
     private static final String API_BYPASSWORD = "server.api.bypassword";
     private static final String STATS_UPDATE_INTERVAL = "donkey.statsupdateinterval";
+    private static final String VIRTUAL_THREADS = "server.virtualthreads";
     private static final String RHINO_LANGUAGE_VERSION = "rhino.languageversion";
+    private static final String RHINO_INLINE_EXECUTION = "rhino.inlineexecution";
+    private static final String RHINO_COMPILED_SCRIPT_CACHE = "rhino.compiledscriptcache";
     private static final String SERVER_STARTUP_LOCK_SLEEP = "server.startuplocksleep";
 
     private static final String DEFAULT_STOREPASS = "81uWxplDtB";
@@ -350,6 +356,7 @@ public class DefaultConfigurationController extends ConfigurationController {
             }
 
             statsUpdateInterval = NumberUtils.toInt(mirthConfig.getString(STATS_UPDATE_INTERVAL), DonkeyStatisticsUpdater.DEFAULT_UPDATE_INTERVAL);
+            virtualThreads = mirthConfig.getBoolean(VIRTUAL_THREADS, false);
 
             if (Strings.isNullOrEmpty(mirthConfig.getString(CONFIGURATION_MAP_LOCATION)) || "file".equals(mirthConfig.getString(CONFIGURATION_MAP_LOCATION))) {
                 PropertiesConfiguration configurationMapProperties = PropertiesConfigurationUtil.create();
@@ -393,6 +400,9 @@ public class DefaultConfigurationController extends ConfigurationController {
                 JavaScriptSharedUtil.setRhinoLanguageVersion(rhinoLanguageVersion);
             }
 
+            rhinoInlineExecution = mirthConfig.getBoolean(RHINO_INLINE_EXECUTION, false);
+            rhinoCompiledScriptCache = mirthConfig.getBoolean(RHINO_COMPILED_SCRIPT_CACHE, false);
+
             startupLockSleep = NumberUtils.toInt(mirthConfig.getString(SERVER_STARTUP_LOCK_SLEEP), 0);
         } catch (Exception e) {
             logger.error("Failed to initialize configuration controller", e);
@@ -674,11 +684,26 @@ public class DefaultConfigurationController extends ConfigurationController {
         return statsUpdateInterval;
     }
 
+    @Override
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
     @Override
     public Integer getRhinoLanguageVersion() {
         return rhinoLanguageVersion;
     }
 
+    @Override
+    public boolean isRhinoInlineExecution() {
+        return rhinoInlineExecution;
+    }
+
+    @Override
+    public boolean isRhinoCompiledScriptCache() {
+        return rhinoCompiledScriptCache;
+    }
+
     @Override
     public int getStartupLockSleep() {
         return startupLockSleep;
@@ -214,6 +214,19 @@ public class DefaultContextFactoryController extends ContextFactoryController {
     	debugContextFactoryMap.remove(key);
     }
     
+    @Override
+    public void removeScopeTemplates(String channelId) {
+        getGlobalContextFactory().removeScopeTemplates(channelId);
+
+        for (MirthContextFactory contextFactory : contextFactoryMap.values()) {
+            contextFactory.removeScopeTemplates(channelId);
+        }
+
+        for (MirthContextFactory contextFactory : debugContextFactoryMap.values()) {
+            contextFactory.removeScopeTemplates(channelId);
+        }
+    }
+
     private Set<String> getDebugContextFactoryMapKey(Set<String> libraryResourceIds, String channelId) {
     	java.util.Objects.requireNonNull(channelId);
     	if (libraryResourceIds == null) {
@@ -32,6 +32,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang.ObjectUtils;
@@ -71,16 +72,20 @@ import com.mirth.connect.donkey.server.channel.DestinationChainProvider;
 import com.mirth.connect.donkey.server.channel.DestinationConnector;
 import com.mirth.connect.donkey.server.channel.DispatchResult;
 import com.mirth.connect.donkey.server.channel.FilterTransformerExecutor;
+import com.mirth.connect.donkey.server.channel.MessageIdAllocator;
 import com.mirth.connect.donkey.server.channel.MetaDataReplacer;
 import com.mirth.connect.donkey.server.channel.ResponseSelector;
 import com.mirth.connect.donkey.server.channel.ResponseTransformerExecutor;
 import com.mirth.connect.donkey.server.channel.SourceConnector;
 import com.mirth.connect.donkey.server.channel.Statistics;
 import com.mirth.connect.donkey.server.channel.StorageSettings;
+import com.mirth.connect.donkey.server.channel.components.FilterTransformer;
 import com.mirth.connect.donkey.server.channel.components.PostProcessor;
 import com.mirth.connect.donkey.server.channel.components.PreProcessor;
 import com.mirth.connect.donkey.server.data.DonkeyDao;
 import com.mirth.connect.donkey.server.data.buffered.BufferedDaoFactory;
+import com.mirth.connect.donkey.server.data.jdbc.GroupCommitCoordinator;
+import com.mirth.connect.donkey.server.data.jdbc.GroupCommitStatistics;
 import com.mirth.connect.donkey.server.data.passthru.PassthruDaoFactory;
 import com.mirth.connect.donkey.server.event.ErrorEvent;
 import com.mirth.connect.donkey.server.event.EventDispatcher;
@@ -106,9 +111,11 @@ import com.mirth.connect.model.Filter;
 import com.mirth.connect.model.InvalidChannel;
 import com.mirth.connect.model.MessageStorageMode;
 import com.mirth.connect.model.ServerEventContext;
+import com.mirth.connect.model.ServerSettings;
 import com.mirth.connect.model.Transformer;
 import com.mirth.connect.model.attachments.AttachmentHandlerType;
 import com.mirth.connect.model.codetemplates.CodeTemplateLibrary;
+import com.mirth.connect.model.codetemplates.ContextType;
 import com.mirth.connect.model.converters.ObjectXMLSerializer;
 import com.mirth.connect.model.datatype.BatchProperties;
 import com.mirth.connect.model.datatype.DataTypeProperties;
@@ -130,6 +137,7 @@ import com.mirth.connect.server.message.DataTypeFactory;
 import com.mirth.connect.server.message.DefaultResponseValidator;
 import com.mirth.connect.server.mybatis.MessageSearchResult;
 import com.mirth.connect.server.transformers.JavaScriptFilterTransformer;
+import com.mirth.connect.server.transformers.NativeFilterTransformer;
 import com.mirth.connect.server.transformers.JavaScriptInitializationException;
 import com.mirth.connect.server.transformers.JavaScriptPostprocessor;
 import com.mirth.connect.server.transformers.JavaScriptPreprocessor;
@@ -137,6 +145,7 @@ import com.mirth.connect.server.transformers.JavaScriptResponseTransformer;
 import com.mirth.connect.server.util.ChannelDependencyServerUtil;
 import com.mirth.connect.server.util.GlobalChannelVariableStoreFactory;
 import com.mirth.connect.server.util.GlobalVariableStore;
+import com.mirth.connect.server.util.XsltTemplateCache;
 import com.mirth.connect.server.util.javascript.JavaScriptExecutorException;
 import com.mirth.connect.server.util.javascript.JavaScriptUtil;
 import com.mirth.connect.server.util.javascript.MirthContextFactory;
@@ -177,6 +186,8 @@ public class DonkeyEngineController implements EngineController {
     private Set<Channel> undeployingChannels = Collections.synchronizedSet(new HashSet<Channel>());
 
     protected AtomicInteger queueBufferSize = new AtomicInteger(Constants.DEFAULT_QUEUE_BUFFER_SIZE);
+    protected AtomicLong queueBufferMemory = new AtomicLong(0);
+    protected AtomicInteger queueContentPrefetch = new AtomicInteger(0);
 
     private enum StatusTask {
         START, STOP, PAUSE, RESUME
@@ -188,10 +199,12 @@ public class DonkeyEngineController implements EngineController {
     public void startEngine() throws StartException, StopException, ControllerException, InterruptedException {
         logger.debug("starting donkey engine");
 
-        Integer queueBufferSize = configurationController.getServerSettings().getQueueBufferSize();
+        ServerSettings serverSettings = configurationController.getServerSettings();
+        Integer queueBufferSize = serverSettings.getQueueBufferSize();
         if (queueBufferSize != null && queueBufferSize > 0) {
             this.queueBufferSize.set(queueBufferSize);
         }
+        updateQueueBufferDefaults(serverSettings);
 
         final Encryptor encryptor = configurationController.getEncryptor();
 
@@ -217,6 +230,7 @@ public class DonkeyEngineController implements EngineController {
 
         Properties donkeyProperties = configurationController.getDatabaseSettings().getProperties();
         donkeyProperties.setProperty("donkey.statsupdateinterval", String.valueOf(configurationController.getStatsUpdateInterval()));
+        donkeyProperties.setProperty("donkey.virtualthreads", String.valueOf(configurationController.isVirtualThreads()));
 
         donkey.startEngine(new DonkeyConfiguration(configurationController.getApplicationDataDir(), donkeyProperties, donkeyEncryptor, eventDispatcher, configurationController.getServerId()));
     }
@@ -330,10 +344,12 @@ public class DonkeyEngineController implements EngineController {
         if (hasDeployTasks) {
             // Update the default queue buffer size on deploy
             try {
-                Integer queueBufferSize = configurationController.getServerSettings().getQueueBufferSize();
+                ServerSettings serverSettings = configurationController.getServerSettings();
+                Integer queueBufferSize = serverSettings.getQueueBufferSize();
                 if (queueBufferSize != null && queueBufferSize > 0) {
                     this.queueBufferSize.set(queueBufferSize);
                 }
+                updateQueueBufferDefaults(serverSettings);
             } catch (ControllerException e) {
             }
 
@@ -817,6 +833,8 @@ public class DonkeyEngineController implements EngineController {
             logger.error("Error retrieving code template libraries", e);
         }
 
+        GroupCommitCoordinator groupCommitCoordinator = donkey.getGroupCommitCoordinator();
+
         for (Channel channel : channels) {
             String channelId = channel.getChannelId();
             com.mirth.connect.model.Channel channelModel = channelController.getDeployedChannelById(channelId);
@@ -856,6 +874,22 @@ public class DonkeyEngineController implements EngineController {
                 status.setStatistics(stats.getConnectorStats(channelId, null));
                 status.setLifetimeStatistics(lifetimeStats.getConnectorStats(channelId, null));
 
+                if (groupCommitCoordinator != null) {
+                    GroupCommitStatistics groupCommitStatistics = groupCommitCoordinator.getStatistics(channelId);
+                    if (groupCommitStatistics != null) {
+                        status.setGroupCommitTransactions(groupCommitStatistics.getTransactionCount());
+                        status.setGroupCommitAverageBatchSize(groupCommitStatistics.getAverageBatchSize());
+                        status.setGroupCommitAverageLatency(groupCommitStatistics.getAverageLatencyMillis());
+                    }
+                }
+
+                // Every stylesheet is a miss the first time, so there are none if the channel never used one
+                long xsltCacheMisses = XsltTemplateCache.getInstance().getMissCount(channelId);
+                if (xsltCacheMisses > 0) {
+                    status.setXsltCacheHits(XsltTemplateCache.getInstance().getHitCount(channelId));
+                    status.setXsltCacheMisses(xsltCacheMisses);
+                }
+
                 DashboardStatus sourceStatus = new DashboardStatus();
                 sourceStatus.setStatusType(StatusType.SOURCE_CONNECTOR);
                 sourceStatus.setChannelId(channelId);
@@ -866,8 +900,12 @@ public class DonkeyEngineController implements EngineController {
                 sourceStatus.setLifetimeStatistics(lifetimeStats.getConnectorStats(channelId, 0));
                 sourceStatus.setQueueEnabled(!channel.getSourceConnector().isRespondAfterProcessing());
                 sourceStatus.setQueued(getSourceQueueSize(channel));
+                sourceStatus.setQueueBufferSize((long) channel.getSourceQueue().getBufferSize());
+                sourceStatus.setQueueBufferMemory(channel.getSourceQueue().getBufferMemory());
 
                 status.setQueued(sourceStatus.getQueued());
+                status.setQueueBufferSize(sourceStatus.getQueueBufferSize());
+                status.setQueueBufferMemory(sourceStatus.getQueueBufferMemory());
 
                 status.getChildStatuses().add(sourceStatus);
 
@@ -886,8 +924,12 @@ public class DonkeyEngineController implements EngineController {
                         destinationStatus.setLifetimeStatistics(lifetimeStats.getConnectorStats(channelId, metaDataId));
                         destinationStatus.setQueueEnabled(connector.isQueueEnabled());
                         destinationStatus.setQueued(getDestinationQueueSize(connector));
+                        destinationStatus.setQueueBufferSize((long) connector.getQueue().getBufferSize());
+                        destinationStatus.setQueueBufferMemory(connector.getQueue().getBufferMemory());
 
                         status.setQueued(status.getQueued() + destinationStatus.getQueued());
+                        status.setQueueBufferSize(status.getQueueBufferSize() + destinationStatus.getQueueBufferSize());
+                        status.setQueueBufferMemory(status.getQueueBufferMemory() + destinationStatus.getQueueBufferMemory());
 
                         status.getChildStatuses().add(destinationStatus);
                     }
@@ -911,6 +953,18 @@ public class DonkeyEngineController implements EngineController {
         return statuses;
     }
 
+    private void updateQueueBufferDefaults(ServerSettings serverSettings) {
+        Integer queueBufferMemory = serverSettings.getQueueBufferMemory();
+        if (queueBufferMemory != null && queueBufferMemory > 0) {
+            this.queueBufferMemory.set(queueBufferMemory * 1024L * 1024L);
+        } else {
+            this.queueBufferMemory.set(0);
+        }
+
+        Integer queueContentPrefetch = serverSettings.getQueueContentPrefetch();
+        this.queueContentPrefetch.set(queueContentPrefetch != null && queueContentPrefetch > 0 ? queueContentPrefetch : 0);
+    }
+
     protected Long getSourceQueueSize(Channel channel) {
         return new Long(channel.getSourceQueue().size());
     }
@@ -1135,6 +1189,7 @@ public class DonkeyEngineController implements EngineController {
         } else {
             sourceQueue.setBufferCapacity(queueBufferSize.get());
         }
+        sourceQueue.setBufferMemoryCapacity(queueBufferMemory.get());
         channel.setSourceQueue(sourceQueue);
 
         channel.setProcessLock(getChannelProcessLock(channelModel));
@@ -1145,6 +1200,10 @@ public class DonkeyEngineController implements EngineController {
             bufferedDaoFactory.setEncryptData(channelProperties.isEncryptData());
 
             channel.setDaoFactory(bufferedDaoFactory);
+
+            if (donkey.getMessageIdBlockSize() > 1) {
+                channel.setMessageIdAllocator(new MessageIdAllocator(channelId, bufferedDaoFactory, donkey.getMessageIdBlockSize()));
+            }
         } else {
             channel.setDaoFactory(new PassthruDaoFactory(donkey.getStatisticsUpdater()));
         }
@@ -1403,8 +1462,37 @@ public class DonkeyEngineController implements EngineController {
         FilterTransformerExecutor filterTransformerExecutor = new FilterTransformerExecutor(inboundDataType, outboundDataType);
 
         if (runFilterTransformer) {
-            String script = JavaScriptBuilder.generateFilterTransformerScript(filter, transformer);
-            filterTransformerExecutor.setFilterTransformer(new JavaScriptFilterTransformer(connector, connectorModel.getName(), script, template));
+            /*
+             * If the data types are the same, nothing requires serialization and the filter/transformer
+             * never reads the message, skip serializing the message and run the filter/transformer only
+             * for filtering and side effects.
+             */
+            boolean serializeMessage = true;
+            boolean skipSerializationAllowed = StringUtils.isBlank(transformer.getOutboundTemplate()) && transformer.getInboundDataType().equals(transformer.getOutboundDataType()) && !inboundDataType.getSerializer().isSerializationRequired(true) && !outboundDataType.getSerializer().isSerializationRequired(false);
+            if (skipSerializationAllowed) {
+                serializeMessage = JavaScriptBuilder.isMessageReferenced(connector.getChannelId(), filter, transformer, connector instanceof SourceConnector ? ContextType.SOURCE_FILTER_TRANSFORMER : ContextType.DESTINATION_FILTER_TRANSFORMER);
+            }
+
+            String script = JavaScriptBuilder.generateFilterTransformerScript(filter, transformer, serializeMessage);
+            FilterTransformer filterTransformer = new JavaScriptFilterTransformer(connector, connectorModel.getName(), script, template);
+
+            /*
+             * Rule builder rules and mapper steps that only read simple paths are run without
+             * JavaScript, which remains as the fallback for messages that can't be read natively. If
+             * the paths are read from the unserialized message, the message doesn't need to be
+             * serialized up front either.
+             */
+            NativeFilterTransformer nativeFilterTransformer = NativeFilterTransformer.compile(connector.getChannelId(), filter, transformer, inboundDataType, filterTransformer);
+            if (nativeFilterTransformer != null) {
+                filterTransformer = nativeFilterTransformer;
+
+                if (skipSerializationAllowed && !nativeFilterTransformer.isReadSerializedMessage()) {
+                    serializeMessage = false;
+                }
+            }
+
+            filterTransformerExecutor.setFilterTransformer(filterTransformer);
+            filterTransformerExecutor.setSerializeMessage(serializeMessage);
         }
 
         return filterTransformerExecutor;
@@ -1515,6 +1603,8 @@ public class DonkeyEngineController implements EngineController {
         } else {
             queue.setBufferCapacity(queueBufferSize.get());
         }
+        queue.setBufferMemoryCapacity(queueBufferMemory.get());
+        queue.setContentPrefetch(queueContentPrefetch.get());
 
         destinationConnector.setQueue(queue);
 
@@ -1937,6 +2027,11 @@ public class DonkeyEngineController implements EngineController {
                 donkey.getDeployedChannels().remove(channelId);
                 channel.undeploy();
 
+                GroupCommitCoordinator groupCommitCoordinator = donkey.getGroupCommitCoordinator();
+                if (groupCommitCoordinator != null) {
+                    groupCommitCoordinator.removeStatistics(channelId);
+                }
+
                 // Remove connector scripts
                 if (channel.getSourceConnector().getFilterTransformerExecutor().getFilterTransformer() != null) {
                     channel.getSourceConnector().getFilterTransformerExecutor().getFilterTransformer().dispose();
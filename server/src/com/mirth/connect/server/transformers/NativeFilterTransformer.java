@@ -0,0 +1,475 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.server.transformers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.log4j.Logger;
+
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
+import com.mirth.connect.donkey.model.message.ContentType;
+import com.mirth.connect.donkey.model.message.MessageContent;
+import com.mirth.connect.donkey.model.message.SerializationType;
+import com.mirth.connect.donkey.server.channel.FilterTransformerResult;
+import com.mirth.connect.donkey.server.channel.components.FilterTransformer;
+import com.mirth.connect.donkey.server.channel.components.FilterTransformerException;
+import com.mirth.connect.donkey.server.message.DataType;
+import com.mirth.connect.model.Filter;
+import com.mirth.connect.model.Rule;
+import com.mirth.connect.model.Step;
+import com.mirth.connect.model.Transformer;
+import com.mirth.connect.model.converters.IMessageSerializer;
+import com.mirth.connect.model.converters.MessageFieldReader;
+import com.mirth.connect.plugins.mapper.MapperStep;
+import com.mirth.connect.plugins.mapper.MapperStep.Scope;
+import com.mirth.connect.plugins.rulebuilder.RuleBuilderRule;
+import com.mirth.connect.plugins.rulebuilder.RuleBuilderRule.Condition;
+import com.mirth.connect.server.util.GlobalChannelVariableStoreFactory;
+import com.mirth.connect.server.util.GlobalVariableStore;
+import com.mirth.connect.util.ErrorMessageBuilder;
+
+/**
+ * Runs a filter/transformer made up only of rule builder rules and mapper steps that read simple
+ * paths like msg['PID']['PID.3']['PID.3.1'].toString(), without JavaScript. The values are read
+ * from the unserialized message if the inbound serializer supports it, or otherwise from the
+ * serialized XML in a single streaming pass. If a value can't be read exactly the way E4X would
+ * read it, the message is passed to the JavaScript filter/transformer instead.
+ */
+public class NativeFilterTransformer implements FilterTransformer {
+    private Logger logger = Logger.getLogger(this.getClass());
+
+    private String channelId;
+    private DataType inbound;
+    private FilterTransformer fallback;
+    private MessageFieldReader fieldReader;
+    private boolean readSerializedMessage;
+    private List<List<NativeRule>> ruleGroups;
+    private List<NativeStep> steps;
+
+    private NativeFilterTransformer(String channelId, DataType inbound, FilterTransformer fallback, List<List<NativeRule>> ruleGroups, List<NativeStep> steps, List<String[]> paths) {
+        this.channelId = channelId;
+        this.inbound = inbound;
+        this.fallback = fallback;
+        this.ruleGroups = ruleGroups;
+        this.steps = steps;
+
+        if (inbound.getSerializer() instanceof IMessageSerializer) {
+            fieldReader = ((IMessageSerializer) inbound.getSerializer()).getFieldReader(paths);
+        }
+
+        if (fieldReader == null) {
+            fieldReader = new XMLFieldReader(paths);
+            readSerializedMessage = true;
+        }
+    }
+
+    /**
+     * Compiles the filter and transformer, or returns null if they contain anything other than
+     * simple rule builder rules and mapper steps.
+     *
+     * @param fallback
+     *            The JavaScript filter/transformer for the same filter and transformer, used for
+     *            messages that can't be handled natively.
+     */
+    public static NativeFilterTransformer compile(String channelId, Filter filter, Transformer transformer, DataType inbound, FilterTransformer fallback) {
+        // The transformed data would be the template, and the paths only apply to XML
+        if (StringUtils.isNotBlank(transformer.getOutboundTemplate()) || inbound.getSerializationType() != SerializationType.XML) {
+            return null;
+        }
+
+        List<String[]> paths = new ArrayList<String[]>();
+        List<List<NativeRule>> ruleGroups = new ArrayList<List<NativeRule>>();
+        List<NativeStep> steps = new ArrayList<NativeStep>();
+
+        for (Rule rule : filter.getEnabledElements()) {
+            if (!(rule instanceof RuleBuilderRule)) {
+                return null;
+            }
+
+            RuleBuilderRule ruleBuilderRule = (RuleBuilderRule) rule;
+
+            // The field is compared as a string, so it has to be converted explicitly
+            String field = StringUtils.trimToEmpty(ruleBuilderRule.getField());
+            if (!field.endsWith(".toString()")) {
+                return null;
+            }
+
+            String[] path = parsePath(field);
+            List<String> values = new ArrayList<String>();
+
+            for (String value : ruleBuilderRule.getValues()) {
+                values.add(parseStringLiteral(value));
+            }
+
+            if (path == null || values.contains(null) || ruleBuilderRule.getCondition() == null) {
+                return null;
+            }
+
+            // && binds tighter than ||, so the rules are evaluated as OR groups of AND rules
+            if (ruleGroups.isEmpty() || rule.getOperator() == Rule.Operator.OR) {
+                ruleGroups.add(new ArrayList<NativeRule>());
+            } else if (rule.getOperator() != Rule.Operator.AND) {
+                return null;
+            }
+
+            ruleGroups.get(ruleGroups.size() - 1).add(new NativeRule(addPath(paths, path), ruleBuilderRule.getCondition(), values.toArray(new String[values.size()])));
+        }
+
+        for (Step step : transformer.getEnabledElements()) {
+            if (!(step instanceof MapperStep)) {
+                return null;
+            }
+
+            MapperStep mapperStep = (MapperStep) step;
+            String[] path = parsePath(StringUtils.trimToEmpty(mapperStep.getMapping()));
+            String defaultValue = StringUtils.isBlank(mapperStep.getDefaultValue()) ? "" : parseStringLiteral(mapperStep.getDefaultValue());
+
+            if (path == null || defaultValue == null || mapperStep.getVariable() == null) {
+                return null;
+            }
+
+            List<String[]> replacements = new ArrayList<String[]>();
+
+            if (mapperStep.getReplacements() != null) {
+                for (Pair<String, String> replacement : mapperStep.getReplacements()) {
+                    String regex = parseStringLiteral(replacement.getLeft());
+                    String replaceWith = parseStringLiteral(replacement.getRight());
+
+                    if (regex == null || replaceWith == null) {
+                        return null;
+                    }
+
+                    replacements.add(new String[] { regex, replaceWith });
+                }
+            }
+
+            steps.add(new NativeStep(addPath(paths, path), defaultValue, replacements, mapperStep.getScope() != null ? mapperStep.getScope() : Scope.CHANNEL, mapperStep.getVariable()));
+        }
+
+        return new NativeFilterTransformer(channelId, inbound, fallback, ruleGroups, steps, paths);
+    }
+
+    /**
+     * Returns true if the values are read from the serialized message, so the message has to be
+     * serialized before this filter/transformer runs.
+     */
+    public boolean isReadSerializedMessage() {
+        return readSerializedMessage;
+    }
+
+    @Override
+    public FilterTransformerResult doFilterTransform(ConnectorMessage message) throws FilterTransformerException, InterruptedException {
+        String transformedContent = message.getTransformed() != null ? message.getTransformed().getContent() : null;
+        String[] values = null;
+
+        try {
+            if (readSerializedMessage) {
+                if (transformedContent != null) {
+                    values = fieldReader.readValues(transformedContent, message);
+                }
+            } else {
+                values = fieldReader.readValues(message.getProcessedRaw() != null ? message.getProcessedRaw().getContent() : message.getRaw().getContent(), message);
+            }
+        } catch (Exception e) {
+            // Let the JavaScript filter/transformer report the error
+            logger.debug("Unable to read values natively, falling back to JavaScript.", e);
+        }
+
+        if (values == null) {
+            return doFallback(message);
+        }
+
+        if (!accept(values)) {
+            return new FilterTransformerResult(true, transformedContent);
+        }
+
+        for (NativeStep step : steps) {
+            step.execute(values[step.pathIndex], message, channelId);
+        }
+
+        return new FilterTransformerResult(false, transformedContent);
+    }
+
+    @Override
+    public void dispose() {
+        fallback.dispose();
+    }
+
+    private boolean accept(String[] values) {
+        // An empty filter accepts all messages
+        if (ruleGroups.isEmpty()) {
+            return true;
+        }
+
+        for (List<NativeRule> group : ruleGroups) {
+            boolean accept = true;
+
+            for (NativeRule rule : group) {
+                if (!rule.accept(values[rule.pathIndex])) {
+                    accept = false;
+                    break;
+                }
+            }
+
+            if (accept) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private FilterTransformerResult doFallback(ConnectorMessage message) throws FilterTransformerException, InterruptedException {
+        // The message isn't serialized if the values are read from the unserialized message
+        if (message.getTransformed() == null) {
+            String content = message.getProcessedRaw() != null ? message.getProcessedRaw().getContent() : message.getRaw().getContent();
+
+            try {
+                message.setTransformed(new MessageContent(message.getChannelId(), message.getMessageId(), message.getMetaDataId(), ContentType.TRANSFORMED, inbound.getSerializer().toXML(content), SerializationType.XML.toString(), false));
+            } catch (Exception e) {
+                throw new FilterTransformerException(e.getMessage(), e, ErrorMessageBuilder.buildErrorMessage("Filter/Transformer", null, e));
+            }
+        }
+
+        return fallback.doFilterTransform(message);
+    }
+
+    private static int addPath(List<String[]> paths, String[] path) {
+        for (int i = 0; i < paths.size(); i++) {
+            if (Arrays.equals(paths.get(i), path)) {
+                return i;
+            }
+        }
+
+        paths.add(path);
+        return paths.size() - 1;
+    }
+
+    /**
+     * Parses an expression like msg['PID']['PID.3']['PID.3.1'] or
+     * msg['PID']['PID.3']['PID.3.1'].toString() into its element names, or returns null if the
+     * expression is anything else.
+     */
+    static String[] parsePath(String expression) {
+        if (expression.endsWith(".toString()")) {
+            expression = expression.substring(0, expression.length() - ".toString()".length());
+        }
+
+        if (!expression.startsWith("msg[")) {
+            return null;
+        }
+
+        List<String> names = new ArrayList<String>();
+        int index = 3;
+
+        while (index < expression.length()) {
+            if (expression.charAt(index) != '[' || index + 1 >= expression.length()) {
+                return null;
+            }
+
+            char quote = expression.charAt(index + 1);
+            int end = quote == '\'' || quote == '"' ? expression.indexOf(quote, index + 2) : -1;
+
+            if (end < 0 || end + 1 >= expression.length() || expression.charAt(end + 1) != ']') {
+                return null;
+            }
+
+            String name = expression.substring(index + 2, end);
+
+            if (!isElementName(name)) {
+                return null;
+            }
+
+            names.add(name);
+            index = end + 2;
+        }
+
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * Returns the value of a JavaScript string literal, or null if the expression is not a string
+     * literal with only simple escape sequences.
+     */
+    static String parseStringLiteral(String expression) {
+        expression = StringUtils.trimToEmpty(expression);
+
+        if (expression.length() < 2 || (expression.charAt(0) != '\'' && expression.charAt(0) != '"') || expression.charAt(expression.length() - 1) != expression.charAt(0)) {
+            return null;
+        }
+
+        char quote = expression.charAt(0);
+        StringBuilder value = new StringBuilder();
+
+        for (int i = 1; i < expression.length() - 1; i++) {
+            char c = expression.charAt(i);
+
+            if (c == quote || c == '\n' || c == '\r') {
+                return null;
+            } else if (c == '\\') {
+                if (++i >= expression.length() - 1) {
+                    return null;
+                }
+
+                switch (expression.charAt(i)) {
+                    case '\\':
+                        value.append('\\');
+                        break;
+                    case '\'':
+                        value.append('\'');
+                        break;
+                    case '"':
+                        value.append('"');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    default:
+                        return null;
+                }
+            } else {
+                value.append(c);
+            }
+        }
+
+        return value.toString();
+    }
+
+    private static boolean isElementName(String name) {
+        if (name.isEmpty() || !(Character.isLetter(name.charAt(0)) || name.charAt(0) == '_')) {
+            return false;
+        }
+
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '-')) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static class NativeRule {
+        private int pathIndex;
+        private Condition condition;
+        private String[] values;
+
+        private NativeRule(int pathIndex, Condition condition, String[] values) {
+            this.pathIndex = pathIndex;
+            this.condition = condition;
+            // Without values, the generated script compares against an empty string
+            this.values = values.length > 0 ? values : new String[] { "" };
+        }
+
+        private boolean accept(String field) {
+            switch (condition) {
+                case EXISTS:
+                    return field.length() > 0;
+
+                case NOT_EXIST:
+                    return field.length() == 0;
+
+                case EQUALS:
+                    for (String value : values) {
+                        if (field.equals(value)) {
+                            return true;
+                        }
+                    }
+                    return false;
+
+                case NOT_EQUAL:
+                    for (String value : values) {
+                        if (field.equals(value)) {
+                            return false;
+                        }
+                    }
+                    return true;
+
+                case CONTAINS:
+                    for (String value : values) {
+                        if (field.contains(value)) {
+                            return true;
+                        }
+                    }
+                    return false;
+
+                case NOT_CONTAIN:
+                    for (String value : values) {
+                        if (field.contains(value)) {
+                            return false;
+                        }
+                    }
+                    return true;
+
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private static class NativeStep {
+        private int pathIndex;
+        private String defaultValue;
+        private List<String[]> replacements;
+        private Scope scope;
+        private String variable;
+
+        private NativeStep(int pathIndex, String defaultValue, List<String[]> replacements, Scope scope, String variable) {
+            this.pathIndex = pathIndex;
+            this.defaultValue = defaultValue;
+            this.replacements = replacements;
+            this.scope = scope;
+            this.variable = variable;
+        }
+
+        /*
+         * Does the same as the validate() function that mapper steps call.
+         */
+        private void execute(String value, ConnectorMessage message, String channelId) {
+            if (value.length() == 0) {
+                value = defaultValue;
+            }
+
+            for (String[] replacement : replacements) {
+                value = value.replaceAll(replacement[0], replacement[1]);
+            }
+
+            switch (scope) {
+                case CONNECTOR:
+                    message.getConnectorMap().put(variable, value);
+                    break;
+                case GLOBAL_CHANNEL:
+                    GlobalChannelVariableStoreFactory.getInstance().get(channelId).put(variable, value);
+                    break;
+                case GLOBAL:
+                    GlobalVariableStore.getInstance().put(variable, value);
+                    break;
+                case RESPONSE:
+                    message.getResponseMap().put(variable, value);
+                    break;
+                case CHANNEL:
+                default:
+                    message.getChannelMap().put(variable, value);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.server.transformers;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
+import com.mirth.connect.model.converters.MessageFieldReader;
+
+/**
+ * Reads element paths from serialized XML in a single streaming pass. A path is read the same way
+ * as msg['a']['b'].toString() in E4X when it matches at most one element with simple content. In
+ * any other case no values are returned, so that the caller can fall back to E4X.
+ */
+class XMLFieldReader implements MessageFieldReader {
+
+    private static XMLInputFactory inputFactory;
+
+    static {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private PathNode root = new PathNode();
+    private int pathCount;
+
+    XMLFieldReader(List<String[]> paths) {
+        pathCount = paths.size();
+
+        for (int i = 0; i < pathCount; i++) {
+            PathNode node = root;
+
+            for (String name : paths.get(i)) {
+                PathNode child = node.children.get(name);
+                if (child == null) {
+                    child = new PathNode();
+                    node.children.put(name, child);
+                }
+                node = child;
+            }
+
+            node.pathIndex = i;
+        }
+    }
+
+    @Override
+    public String[] readValues(String message, ConnectorMessage connectorMessage) throws Exception {
+        int[] counts = new int[pathCount];
+        StringBuilder[] texts = new StringBuilder[pathCount];
+        List<PathNode> stack = new ArrayList<PathNode>();
+
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(new StringReader(message));
+
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        // The default namespace set by the script isn't handled here
+                        if (StringUtils.isNotEmpty(reader.getNamespaceURI())) {
+                            return null;
+                        }
+
+                        PathNode node = null;
+
+                        if (stack.isEmpty()) {
+                            // msg is the root element, whatever its name
+                            node = root;
+                        } else {
+                            PathNode parent = stack.get(stack.size() - 1);
+
+                            if (parent != null) {
+                                // An element that has child elements doesn't have simple content
+                                if (parent.pathIndex >= 0) {
+                                    return null;
+                                }
+
+                                node = parent.children.get(reader.getLocalName());
+
+                                if (node != null && node.pathIndex >= 0) {
+                                    if (++counts[node.pathIndex] > 1) {
+                                        return null;
+                                    }
+                                    texts[node.pathIndex] = new StringBuilder();
+                                }
+                            }
+                        }
+
+                        stack.add(node);
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (!stack.isEmpty()) {
+                            PathNode current = stack.get(stack.size() - 1);
+                            if (current != null && current.pathIndex >= 0) {
+                                texts[current.pathIndex].append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                            }
+                        }
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        stack.remove(stack.size() - 1);
+                        break;
+
+                    case XMLStreamConstants.DTD:
+                    case XMLStreamConstants.ENTITY_REFERENCE:
+                        return null;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        String[] values = new String[pathCount];
+
+        for (int i = 0; i < pathCount; i++) {
+            values[i] = texts[i] != null ? texts[i].toString() : "";
+
+            if (!isPlain(values[i])) {
+                return null;
+            }
+        }
+
+        return values;
+    }
+
+    /*
+     * Values with surrounding whitespace or control characters are left to E4X, since it may
+     * normalize them.
+     */
+    private static boolean isPlain(String value) {
+        if (value.isEmpty()) {
+            return true;
+        }
+
+        if (value.charAt(0) == ' ' || value.charAt(value.length() - 1) == ' ') {
+            return false;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static class PathNode {
+        private int pathIndex = -1;
+        private Map<String, PathNode> children = new HashMap<String, PathNode>();
+    }
+}
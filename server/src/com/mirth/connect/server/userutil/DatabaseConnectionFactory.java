@@ -128,7 +128,8 @@ public class DatabaseConnectionFactory {
         initializeDriverAndGetInfo(driver);
     }
 
-    private CustomDriverInfo initializeDriverAndGetInfo(String driver) throws Exception {
+    // Synchronized because the same factory is shared by all scripts of a channel
+    private synchronized CustomDriverInfo initializeDriverAndGetInfo(String driver) throws Exception {
         if (customDriverInfoMap == null) {
             customDriverInfoMap = new HashMap<String, CustomDriverInfo>();
         }
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.server.util;
+
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Holds the compiled XSLT stylesheets used by the XSLT transformer step of each deployed channel,
+ * so that a stylesheet is only parsed and compiled once per deploy instead of once per message.
+ * Stylesheets are cached by their text and the transformer factory class. Transformers are not
+ * thread-safe, so each thread reuses its own transformer for each stylesheet.
+ */
+public class XsltTemplateCache {
+
+    // Stylesheets built from message data could otherwise fill up the cache
+    private static final int MAX_TEMPLATES_PER_CHANNEL = 100;
+
+    private Logger logger = Logger.getLogger(this.getClass());
+    private Map<String, ChannelTemplates> channelTemplates = new ConcurrentHashMap<String, ChannelTemplates>();
+
+    // singleton pattern
+    private static XsltTemplateCache instance = null;
+
+    private XsltTemplateCache() {
+
+    }
+
+    public static XsltTemplateCache getInstance() {
+        synchronized (XsltTemplateCache.class) {
+            if (instance == null)
+                instance = new XsltTemplateCache();
+
+            return instance;
+        }
+    }
+
+    /**
+     * Returns a transformer for the given stylesheet, ready to be used by the current thread.
+     *
+     * @param channelId
+     *            The channel the stylesheet is used by, or null if it is not used by a channel.
+     * @param template
+     *            The text of the XSLT stylesheet.
+     * @param factoryClassName
+     *            The TransformerFactory implementation to use, or null to use the default one.
+     */
+    public Transformer getTransformer(String channelId, String template, String factoryClassName) throws TransformerException {
+        ChannelTemplates templates = channelTemplates.get(StringUtils.defaultString(channelId));
+
+        if (templates == null) {
+            ChannelTemplates newTemplates = new ChannelTemplates();
+            templates = channelTemplates.putIfAbsent(StringUtils.defaultString(channelId), newTemplates);
+
+            if (templates == null) {
+                templates = newTemplates;
+            }
+        }
+
+        return templates.getTransformer(template, StringUtils.trimToNull(factoryClassName));
+    }
+
+    public long getHitCount(String channelId) {
+        ChannelTemplates templates = channelTemplates.get(StringUtils.defaultString(channelId));
+        return templates != null ? templates.hits.get() : 0;
+    }
+
+    public long getMissCount(String channelId) {
+        ChannelTemplates templates = channelTemplates.get(StringUtils.defaultString(channelId));
+        return templates != null ? templates.misses.get() : 0;
+    }
+
+    /**
+     * Removes the stylesheets of a channel. Called when the channel is undeployed.
+     */
+    public void removeChannel(String channelId) {
+        ChannelTemplates templates = channelTemplates.remove(StringUtils.defaultString(channelId));
+
+        if (templates != null) {
+            logger.debug("removing " + templates.templates.size() + " XSLT templates for channel " + channelId + " (" + templates.hits.get() + " hits, " + templates.misses.get() + " misses)");
+        }
+    }
+
+    /**
+     * Removes the stylesheets of all channels. Called when code templates change.
+     */
+    public void clear() {
+        for (String channelId : channelTemplates.keySet()) {
+            removeChannel(channelId);
+        }
+    }
+
+    private static TransformerFactory createTransformerFactory(String factoryClassName) {
+        if (factoryClassName != null) {
+            return TransformerFactory.newInstance(factoryClassName, null);
+        }
+
+        return TransformerFactory.newInstance();
+    }
+
+    private static class ChannelTemplates {
+        private Map<String, CachedTemplate> templates = new ConcurrentHashMap<String, CachedTemplate>();
+        private AtomicLong hits = new AtomicLong();
+        private AtomicLong misses = new AtomicLong();
+
+        Transformer getTransformer(String template, String factoryClassName) throws TransformerException {
+            String key = StringUtils.defaultString(factoryClassName) + '\n' + template;
+            CachedTemplate cachedTemplate = templates.get(key);
+
+            if (cachedTemplate != null) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                cachedTemplate = new CachedTemplate(createTransformerFactory(factoryClassName).newTemplates(new StreamSource(new StringReader(template))));
+
+                if (templates.size() < MAX_TEMPLATES_PER_CHANNEL) {
+                    templates.put(key, cachedTemplate);
+                }
+            }
+
+            return cachedTemplate.getTransformer();
+        }
+    }
+
+    private static class CachedTemplate {
+        private Templates templates;
+        private ThreadLocal<Transformer> transformer = new ThreadLocal<Transformer>();
+
+        CachedTemplate(Templates templates) {
+            this.templates = templates;
+        }
+
+        Transformer getTransformer() throws TransformerException {
+            Transformer threadTransformer = transformer.get();
+
+            if (threadTransformer == null) {
+                threadTransformer = templates.newTransformer();
+                transformer.set(threadTransformer);
+            } else {
+                // Clears any parameters or output properties set by the previous message. XSLTC keeps parameters after a reset.
+                threadTransformer.clearParameters();
+                threadTransformer.reset();
+            }
+
+            return threadTransformer;
+        }
+    }
+}
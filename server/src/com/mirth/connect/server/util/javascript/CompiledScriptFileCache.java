@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.server.util.javascript;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.GeneratedClassLoader;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+
+/**
+ * Stores compiled scripts in a directory so that they do not have to be compiled again by later
+ * deploys or after a server restart. Scripts are stored under a hash of their source, their script
+ * ID, the libraries of the context factory, and the server and Rhino settings they were compiled
+ * with, so any change to these results in a new compile.
+ *
+ * Scripts compiled to Java classes (optimization level 0 and above) are stored as class files.
+ * Interpreted scripts (optimization level -1) are stored as serialized interpreter data.
+ *
+ * Loading a cached script runs code from the cache directory, so every file is signed with an HMAC
+ * whose key is derived from the server's encryption key, which is kept in the keystore rather than
+ * in the cache directory. Files that fail the check are deleted and the script is compiled again.
+ * On top of that, class files must have the class name generated for their key, and serialized
+ * scripts may only contain Rhino classes.
+ */
+class CompiledScriptFileCache {
+
+    private static final int FORMAT_CLASS_FILES = 1;
+    private static final int FORMAT_SERIALIZED = 2;
+    private static final String FILE_SUFFIX = ".script";
+    private static final String CLASS_NAME_PREFIX = "org.mozilla.javascript.gen.mirth_";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+
+    // Cached scripts that have not been used for this long are removed when the server starts
+    private static final long MAX_UNUSED_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    private File directory;
+    private String serverVersion;
+    private SecretKeySpec signingKey;
+    private Logger logger = Logger.getLogger(getClass());
+
+    CompiledScriptFileCache(File directory, String serverVersion, byte[] secretKey) throws GeneralSecurityException {
+        this.directory = directory;
+        this.serverVersion = serverVersion;
+
+        // Use a key of its own rather than signing with the encryption key directly
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(new SecretKeySpec(secretKey, MAC_ALGORITHM));
+        signingKey = new SecretKeySpec(mac.doFinal("compiled script cache".getBytes(StandardCharsets.UTF_8)), MAC_ALGORITHM);
+
+        try {
+            FileUtils.forceMkdir(directory);
+            removeUnused();
+        } catch (IOException e) {
+            logger.warn("Unable to initialize the compiled script cache in " + directory.getAbsolutePath() + ".", e);
+        }
+    }
+
+    /**
+     * Returns the compiled script from the cache, or compiles it and adds it to the cache. Scripts
+     * compiled for the debugger are never cached, because the debugger needs to see each compile.
+     */
+    Script compile(Context context, String script, String scriptId) {
+        if (context.getDebugger() != null || context.isGeneratingDebug()) {
+            return context.compileString(script, scriptId, 1, null);
+        }
+
+        String key = getKey(context, script, scriptId);
+        File file = new File(directory, key + FILE_SUFFIX);
+
+        if (file.exists()) {
+            try {
+                Script compiledScript = read(context, file, key);
+                file.setLastModified(System.currentTimeMillis());
+                logger.debug("loaded compiled script " + scriptId + " from " + file.getName());
+                return compiledScript;
+            } catch (Throwable t) {
+                logger.debug("Unable to load compiled script " + scriptId + " from " + file.getName() + ", compiling it again.", t);
+                FileUtils.deleteQuietly(file);
+            }
+        }
+
+        if (context.getOptimizationLevel() >= 0) {
+            Object[] classFiles = new ClassCompiler(getCompilerEnvirons(context)).compileToClassFiles(script, scriptId, 1, CLASS_NAME_PREFIX + key);
+            write(file, key, toBytes(classFiles));
+            return loadClassFiles(context, classFiles);
+        } else {
+            Script compiledScript = context.compileString(script, scriptId, 1, null);
+            write(file, key, toBytes(compiledScript));
+            return compiledScript;
+        }
+    }
+
+    private String getKey(Context context, String script, String scriptId) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(serverVersion).append('\n');
+        builder.append(context.getImplementationVersion()).append('\n');
+        builder.append(context.getOptimizationLevel()).append('\n');
+        builder.append(context.getLanguageVersion()).append('\n');
+        builder.append(context.getInstructionObserverThreshold() > 0).append('\n');
+
+        if (context.getFactory() instanceof MirthContextFactory) {
+            Set<String> resourceIds = ((MirthContextFactory) context.getFactory()).getResourceIds();
+
+            if (resourceIds != null) {
+                builder.append(new TreeSet<String>(resourceIds));
+            }
+        }
+
+        builder.append('\n').append(scriptId).append('\n').append(script);
+        return DigestUtils.sha256Hex(builder.toString());
+    }
+
+    private CompilerEnvirons getCompilerEnvirons(Context context) {
+        CompilerEnvirons compilerEnvirons = new CompilerEnvirons();
+        compilerEnvirons.initFromContext(context);
+        return compilerEnvirons;
+    }
+
+    private Script read(Context context, File file, String key) throws Exception {
+        byte[] contents = Files.readAllBytes(file.toPath());
+
+        if (contents.length < MAC_LENGTH || !MessageDigest.isEqual(Arrays.copyOf(contents, MAC_LENGTH), sign(key, contents, MAC_LENGTH))) {
+            logger.warn("Compiled script " + file.getAbsolutePath() + " was not written by this server and will be compiled again.");
+            throw new IOException("Invalid compiled script signature.");
+        }
+
+        DataInputStream dataInputStream = new DataInputStream(new ByteArrayInputStream(contents, MAC_LENGTH, contents.length - MAC_LENGTH));
+        int format = dataInputStream.readInt();
+
+        if (format == FORMAT_CLASS_FILES) {
+            Object[] classFiles = new Object[dataInputStream.readInt() * 2];
+
+            for (int i = 0; i < classFiles.length; i += 2) {
+                classFiles[i] = dataInputStream.readUTF();
+
+                if (!((String) classFiles[i]).startsWith(CLASS_NAME_PREFIX + key)) {
+                    throw new IOException("Unexpected compiled script class: " + classFiles[i]);
+                }
+
+                byte[] bytes = new byte[dataInputStream.readInt()];
+                dataInputStream.readFully(bytes);
+                classFiles[i + 1] = bytes;
+            }
+
+            return loadClassFiles(context, classFiles);
+        } else if (format == FORMAT_SERIALIZED) {
+            return (Script) new ScriptObjectInputStream(dataInputStream).readObject();
+        } else {
+            throw new IOException("Unknown compiled script format: " + format);
+        }
+    }
+
+    /*
+     * Signs the cache key along with the contents, so that a signed file cannot be used for a
+     * different script either.
+     */
+    private byte[] sign(String key, byte[] contents, int offset) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(signingKey);
+        mac.update(key.getBytes(StandardCharsets.UTF_8));
+        mac.update(contents, offset, contents.length - offset);
+        return mac.doFinal();
+    }
+
+    /*
+     * Defines the classes the same way Rhino does when it compiles a script itself, and returns an
+     * instance of the main class.
+     */
+    private Script loadClassFiles(Context context, Object[] classFiles) {
+        GeneratedClassLoader classLoader = context.createClassLoader(Script.class.getClassLoader());
+        Class<?> mainClass = null;
+
+        for (int i = 0; i < classFiles.length; i += 2) {
+            Class<?> definedClass = classLoader.defineClass((String) classFiles[i], (byte[]) classFiles[i + 1]);
+
+            if (i == 0) {
+                mainClass = definedClass;
+            }
+        }
+
+        classLoader.linkClass(mainClass);
+
+        try {
+            return (Script) mainClass.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to instantiate compiled script " + mainClass.getName() + ".", e);
+        }
+    }
+
+    private byte[] toBytes(Object[] classFiles) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try {
+            DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+            dataOutputStream.writeInt(FORMAT_CLASS_FILES);
+            dataOutputStream.writeInt(classFiles.length / 2);
+
+            for (int i = 0; i < classFiles.length; i += 2) {
+                byte[] bytes = (byte[]) classFiles[i + 1];
+                dataOutputStream.writeUTF((String) classFiles[i]);
+                dataOutputStream.writeInt(bytes.length);
+                dataOutputStream.write(bytes);
+            }
+
+            dataOutputStream.flush();
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            // Not possible with a byte array
+            throw new RuntimeException(e);
+        }
+    }
+
+    private byte[] toBytes(Script compiledScript) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try {
+            DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+            dataOutputStream.writeInt(FORMAT_SERIALIZED);
+
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(dataOutputStream);
+            objectOutputStream.writeObject(compiledScript);
+            objectOutputStream.flush();
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            logger.debug("Unable to serialize compiled script.", e);
+            return null;
+        }
+    }
+
+    /*
+     * Writes to a temporary file first so that other threads or servers sharing the directory never
+     * read a partially written script. Failing to write only means the script is compiled again
+     * next time.
+     */
+    private void write(File file, String key, byte[] bytes) {
+        if (bytes == null) {
+            return;
+        }
+
+        File tempFile = null;
+
+        try {
+            byte[] signature = sign(key, bytes, 0);
+            tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+            BufferedOutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
+
+            try {
+                outputStream.write(signature);
+                outputStream.write(bytes);
+            } finally {
+                outputStream.close();
+            }
+
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            logger.debug("Unable to write compiled script to " + file.getAbsolutePath() + ".", e);
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    private void removeUnused() {
+        File[] files = directory.listFiles();
+
+        if (files != null) {
+            long now = System.currentTimeMillis();
+
+            for (File file : files) {
+                if (file.getName().endsWith(".tmp") || (file.getName().endsWith(FILE_SUFFIX) && now - file.lastModified() > MAX_UNUSED_MILLIS)) {
+                    FileUtils.deleteQuietly(file);
+                }
+            }
+        }
+    }
+
+    /*
+     * Resolves the classes of serialized scripts with Rhino's class loader, which is not necessarily
+     * the one that would be picked by default. Only Rhino classes, strings and arrays of these or of
+     * primitives are allowed, which is all that interpreted scripts are made of.
+     */
+    static class ScriptObjectInputStream extends ObjectInputStream {
+
+        ScriptObjectInputStream(InputStream inputStream) throws IOException {
+            super(inputStream);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "Class not allowed in a compiled script.");
+            }
+
+            try {
+                return Class.forName(desc.getName(), false, Script.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+
+        private boolean isAllowed(String className) {
+            if (className.startsWith("[")) {
+                String componentName = className.replaceFirst("^\\[+", "");
+
+                // Arrays of primitives have a single letter, arrays of objects have L<class name>;
+                if (componentName.length() == 1) {
+                    return true;
+                } else if (componentName.startsWith("L") && componentName.endsWith(";")) {
+                    componentName = componentName.substring(1, componentName.length() - 1);
+                    return componentName.equals(Object.class.getName()) || isAllowed(componentName);
+                }
+
+                return false;
+            }
+
+            return className.startsWith("org.mozilla.javascript.") || className.equals(String.class.getName());
+        }
+    }
+}
@@ -13,6 +13,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Properties;
 
 import org.apache.commons.collections4.MapUtils;
@@ -98,13 +99,44 @@ public class JavaScriptScopeUtil {
     }
 
     // Creates a new global scope within the current Context
-    private static Scriptable getScope(Context context) {
-        Scriptable scope = context.newObject(((MirthContext) context).getSealedSharedScope());
-        scope.setPrototype(((MirthContext) context).getSealedSharedScope());
+    private static Scriptable getScope(Context context, Scriptable prototype) {
+        Scriptable scope = context.newObject(prototype);
+        scope.setPrototype(prototype);
         scope.setParentScope(null);
         return scope;
     }
 
+    /*
+     * Returns the sealed template holding the objects that are the same for every script run with
+     * the given logger and channel. The template is built once per context factory and becomes the
+     * prototype of each new scope, so only the message-specific objects have to be added per
+     * script.
+     */
+    private static Scriptable getScopeTemplate(Context context, Object logger, String channelId, String channelName) {
+        MirthContextFactory contextFactory = (MirthContextFactory) ((MirthContext) context).getFactory();
+        ScopeTemplateKey key = new ScopeTemplateKey(logger, channelId, channelName);
+        Scriptable scopeTemplate = contextFactory.getScopeTemplate(channelId, key);
+
+        if (scopeTemplate == null) {
+            ScriptableObject newScopeTemplate = (ScriptableObject) getScope(context, ((MirthContext) context).getSealedSharedScope());
+            addRouter(newScopeTemplate);
+            addReplacer(newScopeTemplate);
+            addGlobalMap(newScopeTemplate);
+            addDatabaseConnectionFactory(newScopeTemplate, context);
+            addContextFactory(newScopeTemplate, context);
+            addLogger(newScopeTemplate, logger);
+
+            if (channelId != null) {
+                addChannel(newScopeTemplate, channelId, channelName);
+            }
+
+            newScopeTemplate.sealObject();
+            scopeTemplate = contextFactory.putScopeTemplate(channelId, key, newScopeTemplate);
+        }
+
+        return scopeTemplate;
+    }
+
     /*
      * Private Scope Builders
      */
@@ -206,26 +238,14 @@ public class JavaScriptScopeUtil {
      * Private Basic Scopes
      */
 
-    private static Scriptable getBasicScope(Context context) {
-        Scriptable scope = getScope(context);
-        addRouter(scope);
-        addReplacer(scope);
-        addConfigurationMap(scope);
-        addGlobalMap(scope);
-        addDatabaseConnectionFactory(scope, context);
-        addContextFactory(scope, context);
-        return scope;
-    }
-
     private static Scriptable getBasicScope(Context context, Object logger) {
-        Scriptable scope = getBasicScope(context);
-        addLogger(scope, logger);
-        return scope;
+        return getBasicScope(context, logger, null, null);
     }
 
     private static Scriptable getBasicScope(Context context, Object logger, String channelId, String channelName) {
-        Scriptable scope = getBasicScope(context, logger);
-        addChannel(scope, channelId, channelName);
+        Scriptable scope = getScope(context, getScopeTemplate(context, logger, channelId, channelName));
+        // The configuration map is replaced whenever it is reloaded, so it is not part of the template
+        addConfigurationMap(scope);
         return scope;
     }
 
@@ -376,16 +396,12 @@ public class JavaScriptScopeUtil {
      * try-finally with Context.exit() in the finally block.
      */
     public static Scriptable getBatchProcessorScope(ContextFactory contextFactory, Object logger, String channelId, String channelName, Map<String, Object> scopeObjects) {
-        Scriptable scope = getBasicScope(getContext(contextFactory), logger);
+        Scriptable scope = getBasicScope(getContext(contextFactory), logger, channelId, channelName);
 
         for (Entry<String, Object> entry : scopeObjects.entrySet()) {
             add(entry.getKey(), scope, entry.getValue());
         }
 
-        if (channelId != null) {
-            addChannel(scope, channelId, channelName);
-        }
-
         return scope;
     }
 
@@ -433,4 +449,31 @@ public class JavaScriptScopeUtil {
             response.setError(null);
         }
     }
+
+    private static class ScopeTemplateKey {
+        private Object logger;
+        private String channelId;
+        private String channelName;
+
+        public ScopeTemplateKey(Object logger, String channelId, String channelName) {
+            this.logger = logger;
+            this.channelId = channelId;
+            this.channelName = channelName;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ScopeTemplateKey)) {
+                return false;
+            }
+
+            ScopeTemplateKey key = (ScopeTemplateKey) obj;
+            return logger == key.logger && Objects.equals(channelId, key.channelId) && Objects.equals(channelName, key.channelName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(logger), channelId, channelName);
+        }
+    }
 }
\ No newline at end of file
@@ -149,6 +149,14 @@ public abstract class JavaScriptTask<T> implements Callable<T> {
 
             return compiledScript.exec(context, scope);
         } finally {
+            /*
+             * Contexts are reused by later scripts on the same thread, so a late attempt to halt
+             * this task must not find the context anymore.
+             */
+            synchronized (this) {
+                context = null;
+            }
+
             if (contextCreated) {
                 Context.exit();
                 contextCreated = false;
@@ -9,6 +9,7 @@
 
 package com.mirth.connect.server.util.javascript;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -40,12 +41,14 @@ import com.mirth.connect.donkey.model.message.Response;
 import com.mirth.connect.donkey.model.message.Status;
 import com.mirth.connect.donkey.model.message.attachment.AttachmentException;
 import com.mirth.connect.donkey.util.Base64Util;
+import com.mirth.connect.donkey.util.ThreadUtils;
 import com.mirth.connect.model.Channel;
 import com.mirth.connect.model.ServerEvent;
 import com.mirth.connect.model.ServerEvent.Level;
 import com.mirth.connect.model.codetemplates.ContextType;
 import com.mirth.connect.server.MirthJavascriptTransformerException;
 import com.mirth.connect.server.builders.JavaScriptBuilder;
+import com.mirth.connect.server.controllers.ConfigurationController;
 import com.mirth.connect.server.controllers.ContextFactoryController;
 import com.mirth.connect.server.controllers.ControllerFactory;
 import com.mirth.connect.server.controllers.EventController;
@@ -54,6 +57,7 @@ import com.mirth.connect.server.controllers.ScriptController;
 import com.mirth.connect.server.userutil.Attachment;
 import com.mirth.connect.server.util.CompiledScriptCache;
 import com.mirth.connect.server.util.ServerUUIDGenerator;
+import com.mirth.connect.server.util.XsltTemplateCache;
 import com.mirth.connect.userutil.ImmutableConnectorMessage;
 
 public class JavaScriptUtil {
@@ -65,8 +69,23 @@ public class JavaScriptUtil {
     private static ContextFactoryController contextFactoryController = ControllerFactory.getFactory().createContextFactoryController();
     private static volatile String globalScriptContextFactoryId = null;
     private static String serverId = ControllerFactory.getFactory().createConfigurationController().getServerId();
+    private static boolean inlineExecution = ControllerFactory.getFactory().createConfigurationController().isRhinoInlineExecution();
+    private static CompiledScriptFileCache compiledScriptFileCache = createCompiledScriptFileCache();
+
+    static void setInlineExecution(boolean inlineExecution) {
+        JavaScriptUtil.inlineExecution = inlineExecution;
+    }
 
     public static <T> T execute(JavaScriptTask<T> task) throws JavaScriptExecutorException, InterruptedException {
+        /*
+         * A script invoked while another one is running on the same thread (e.g. a script that
+         * routes a message to another channel) needs a context of its own, so it still gets handed
+         * off to a JavaScript thread.
+         */
+        if (inlineExecution && Context.getCurrentContext() == null) {
+            return executeInline(task);
+        }
+
         Future<T> future = executor.submit(task);
 
         try {
@@ -90,6 +109,32 @@ public class JavaScriptUtil {
         }
     }
 
+    /*
+     * Runs the task on the calling thread. The task is halted by interrupting the thread, which
+     * makes the context's instruction observer stop the script.
+     */
+    private static <T> T executeInline(JavaScriptTask<T> task) throws JavaScriptExecutorException, InterruptedException {
+        Thread currentThread = Thread.currentThread();
+        ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+
+        try {
+            ThreadUtils.checkInterruptedStatus();
+            return task.call();
+        } catch (InterruptedException e) {
+            currentThread.interrupt();
+            throw e;
+        } catch (Throwable t) {
+            if (currentThread.isInterrupted()) {
+                throw new InterruptedException();
+            }
+
+            throw new JavaScriptExecutorException(t);
+        } finally {
+            // The task switches to the context factory's class loader, which the channel thread must not keep
+            currentThread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
     public static String executeAttachmentScript(MirthContextFactory contextFactory, RawMessage message, final String channelId, final String channelName, final List<Attachment> attachments) throws InterruptedException, AttachmentException, JavaScriptExecutorException {
         final boolean isBinary = message.isBinary();
         if (isBinary) {
@@ -566,9 +611,34 @@ public class JavaScriptUtil {
     }
 
     private static Script compileScript(Context context, String script, String scriptId) {
+        if (compiledScriptFileCache != null) {
+            return compiledScriptFileCache.compile(context, script, scriptId);
+        }
+
         return context.compileString(script, scriptId, 1, null);
     }
 
+    private static CompiledScriptFileCache createCompiledScriptFileCache() {
+        ConfigurationController configurationController = ControllerFactory.getFactory().createConfigurationController();
+
+        if (configurationController.isRhinoCompiledScriptCache() && configurationController.getApplicationDataDir() != null) {
+            try {
+                // Cached scripts are signed with a key derived from the server's encryption key
+                byte[] secretKey = configurationController.getEncryptionSettings().getSecretKey();
+
+                if (secretKey != null) {
+                    return new CompiledScriptFileCache(new File(configurationController.getApplicationDataDir(), "scriptcache"), configurationController.getServerVersion(), secretKey);
+                }
+
+                logger.warn("The compiled script cache is disabled because the server's encryption key is not available.");
+            } catch (Exception e) {
+                logger.warn("Unable to initialize the compiled script cache.", e);
+            }
+        }
+
+        return null;
+    }
+
     public static void compileChannelScripts(MirthContextFactory contextFactory, Channel channel) throws ScriptCompileException {
         try {
             String deployScriptId = ScriptController.getScriptId(ScriptController.DEPLOY_SCRIPT_KEY, channel.getId());
@@ -724,6 +794,8 @@ public class JavaScriptUtil {
         removeScriptFromCache(ScriptController.getScriptId(ScriptController.POSTPROCESSOR_SCRIPT_KEY, channelId));
         removeScriptFromCache(ScriptController.getScriptId(ScriptController.ATTACHMENT_SCRIPT_KEY, channelId));
         removeScriptFromCache(ScriptController.getScriptId(ScriptController.BATCH_SCRIPT_KEY, channelId));
+        XsltTemplateCache.getInstance().removeChannel(channelId);
+        contextFactoryController.removeScopeTemplates(channelId);
     }
 
     /**
@@ -20,7 +20,6 @@ public class MirthContext extends Context {
 
     private final AtomicBoolean running = new AtomicBoolean(true);
     private Logger logger = Logger.getLogger(this.getClass());
-    private ScriptableObject sealedSharedScope;
 
     public MirthContext(MirthContextFactory contextFactory) {
         this(contextFactory, Context.VERSION_DEFAULT);
@@ -29,7 +28,6 @@ public class MirthContext extends Context {
     public MirthContext(MirthContextFactory contextFactory, int languageVersion) {
         super(contextFactory);
         setInstructionObserverThreshold(INSTRUCTION_THRESHOLD);
-        sealedSharedScope = contextFactory.getSealedSharedScope();
         setLanguageVersion(languageVersion);
     }
 
@@ -37,12 +35,34 @@ public class MirthContext extends Context {
         this.running.set(running);
     }
 
+    /*
+     * Clears the state left behind by the previous script before the context is entered again.
+     * Context factory listeners such as the debugger are notified again after this.
+     */
+    void reset() {
+        setRunning(true);
+        setDebugger(null, null);
+        setGeneratingDebug(false);
+    }
+
+    /*
+     * Contexts are reused, and the first one is created while the factory is still building the
+     * sealed shared scope, so the scope is always taken from the factory.
+     */
     protected ScriptableObject getSealedSharedScope() {
-        return sealedSharedScope;
+        return ((MirthContextFactory) getFactory()).getSealedSharedScope();
     }
 
+    /*
+     * A script running directly on a channel thread is halted by interrupting that thread, so the
+     * interrupt also stops the script.
+     */
     @Override
     protected void observeInstructionCount(int count) {
+        if (running.get() && Thread.currentThread().isInterrupted()) {
+            setRunning(false);
+        }
+
         if (!running.get()) {
             logger.debug("Halting JavaScript execution");
             throw new Error();
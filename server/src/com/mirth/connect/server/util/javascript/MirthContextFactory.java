@@ -9,14 +9,19 @@
 
 package com.mirth.connect.server.util.javascript;
 
+import java.lang.ref.SoftReference;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 
 import com.mirth.connect.donkey.util.Serializer;
@@ -26,6 +31,14 @@ import com.mirth.connect.server.controllers.ControllerFactory;
 
 public class MirthContextFactory extends ContextFactory {
 
+    /*
+     * The last context each thread used. It is entered again the next time the thread needs a
+     * context from the same factory, instead of creating a new one for every script. The context is
+     * only softly reachable from here, so a pooled thread that no longer runs scripts cannot keep a
+     * replaced factory and its class loader from being collected.
+     */
+    private static final ThreadLocal<SoftReference<MirthContext>> threadContext = new ThreadLocal<SoftReference<MirthContext>>();
+
     private String id;
     private URL[] urls;
     private Set<String> resourceIds;
@@ -33,6 +46,8 @@ public class MirthContextFactory extends ContextFactory {
     private ObjectXMLSerializer serializer;
     private ClassLoader isolatedClassLoader;
     private int languageVersion = Context.VERSION_DEFAULT;
+    // Scope templates by channel ID, with an empty channel ID for scripts that are not in a channel
+    private Map<String, Map<Object, Scriptable>> scopeTemplates = new ConcurrentHashMap<String, Map<Object, Scriptable>>();
 
     public MirthContextFactory(URL[] urls, Set<String> resourceIds) {
         this.id = UUID.randomUUID().toString();
@@ -96,8 +111,49 @@ public class MirthContextFactory extends ContextFactory {
         return serializer;
     }
 
+    /*
+     * Returns the scope template previously stored for the channel with the given key, or null if
+     * there is none.
+     */
+    Scriptable getScopeTemplate(String channelId, Object key) {
+        Map<Object, Scriptable> channelScopeTemplates = scopeTemplates.get(StringUtils.defaultString(channelId));
+        return channelScopeTemplates != null ? channelScopeTemplates.get(key) : null;
+    }
+
+    /*
+     * Stores a scope template for the channel unless another thread already stored one with the
+     * same key, and returns the template that ends up being stored.
+     */
+    Scriptable putScopeTemplate(String channelId, Object key, Scriptable scopeTemplate) {
+        Map<Object, Scriptable> channelScopeTemplates = scopeTemplates.computeIfAbsent(StringUtils.defaultString(channelId), k -> new ConcurrentHashMap<Object, Scriptable>());
+        Scriptable existing = channelScopeTemplates.putIfAbsent(key, scopeTemplate);
+        return existing != null ? existing : scopeTemplate;
+    }
+
+    /**
+     * Removes the scope templates of a channel. Called when the channel is undeployed, since its
+     * name or scripts may be different the next time it is deployed.
+     */
+    public void removeScopeTemplates(String channelId) {
+        scopeTemplates.remove(StringUtils.defaultString(channelId));
+    }
+
+    /*
+     * This is only called when the current thread has not entered a context, so the thread's
+     * previous context is not in use and can be entered again.
+     */
     @Override
     protected Context makeContext() {
-        return new MirthContext(this, languageVersion);
+        SoftReference<MirthContext> reference = threadContext.get();
+        MirthContext context = reference != null ? reference.get() : null;
+
+        if (context != null && context.getFactory() == this) {
+            context.reset();
+        } else {
+            context = new MirthContext(this, languageVersion);
+            threadContext.set(new SoftReference<MirthContext>(context));
+        }
+
+        return context;
     }
 }
\ No newline at end of file
@@ -12,6 +12,8 @@ package com.mirth.connect.server.util.javascript;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.mirth.connect.donkey.util.ThreadUtils;
+
 public class MirthJavaScriptThreadFactory implements ThreadFactory {
     private static final AtomicInteger poolNumber = new AtomicInteger(1);
     private final ThreadGroup group;
@@ -26,6 +28,10 @@ public class MirthJavaScriptThreadFactory implements ThreadFactory {
 
     @Override
     public Thread newThread(Runnable r) {
+        if (ThreadUtils.isVirtualThreadsEnabled()) {
+            return ThreadUtils.newThread(r, namePrefix + threadNumber.getAndIncrement());
+        }
+
         Thread t = new MirthJavaScriptThread(group, r, namePrefix + threadNumber.getAndIncrement(), 0);
         if (t.isDaemon()) {
             t.setDaemon(false);
@@ -25,11 +25,18 @@ import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.net.URI;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.LogFactory;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -612,11 +619,143 @@ public class FileReceiverTest {
         assertTrue(exceptionThrown);
     }
 
+    /*
+     * Watching for changes instead of listing the directory on every poll
+     */
+    @Test
+    public void testPollWatchForChanges() throws Exception {
+        File directory = Files.createTempDirectory("filereader").toFile();
+
+        try {
+            writeFile(new File(directory, "a.hl7"));
+            writeFile(new File(directory, "ignored.txt"));
+
+            FileReceiverProperties connectorProperties = new FileReceiverProperties();
+            connectorProperties.setFileFilter("*.hl7");
+            connectorProperties.setDirectoryRecursion(true);
+            connectorProperties.setWatchForChanges(true);
+            connectorProperties.setFullScanInterval("0");
+            connectorProperties.setSortBy(FileReceiverProperties.SORT_BY_NAME);
+            connectorProperties.setAfterProcessingAction(FileAction.DELETE);
+            TestFileReceiver receiver = createReceiver(directory.getPath(), connectorProperties, false);
+
+            try {
+                // Files that are already there are found by the first full scan
+                receiver.poll();
+                assertEquals(1, receiver.rawMessages.size());
+                assertEquals("a.hl7", receiver.rawMessages.get(0).getSourceMap().get(ORIGINAL_FILENAME));
+
+                // New files are found from notifications, including in new subdirectories
+                writeFile(new File(directory, "c.hl7"));
+                File subdirectory = new File(directory, "sub");
+                subdirectory.mkdir();
+                writeFile(new File(subdirectory, "b.hl7"));
+
+                long end = System.currentTimeMillis() + 10000;
+                while (receiver.rawMessages.size() < 3 && System.currentTimeMillis() < end) {
+                    Thread.sleep(100);
+                    receiver.poll();
+                }
+
+                assertEquals(3, receiver.rawMessages.size());
+                Set<Object> filenames = new HashSet<Object>();
+                for (RawMessage message : receiver.rawMessages) {
+                    filenames.add(message.getSourceMap().get(ORIGINAL_FILENAME));
+                }
+                assertEquals(new HashSet<Object>(Arrays.asList("a.hl7", "b.hl7", "c.hl7")), filenames);
+                assertTrue(((Boolean) receiver.rawMessages.get(2).getSourceMap().get(POLL_COMPLETE)).booleanValue());
+
+                // Files that were read and deleted aren't read again
+                receiver.poll();
+                assertEquals(3, receiver.rawMessages.size());
+                assertTrue(new File(directory, "ignored.txt").exists());
+            } finally {
+                receiver.stop();
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /*
+     * Processing files on several threads, keeping the order of the files in each directory
+     */
+    @Test
+    public void testPollProcessingThreads() throws Exception {
+        File directory = Files.createTempDirectory("filereader").toFile();
+
+        try {
+            for (String subdirectory : new String[] { "one", "two" }) {
+                for (int i = 0; i < 5; i++) {
+                    writeFile(new File(new File(directory, subdirectory), "file" + i + ".hl7"));
+                }
+            }
+
+            FileReceiverProperties connectorProperties = new FileReceiverProperties();
+            connectorProperties.setDirectoryRecursion(true);
+            connectorProperties.setProcessingThreads("4");
+            connectorProperties.setKeepDirectoryOrder(true);
+            connectorProperties.setSortBy(FileReceiverProperties.SORT_BY_NAME);
+            connectorProperties.setAfterProcessingAction(FileAction.DELETE);
+            TestFileReceiver receiver = createReceiver(directory.getPath(), connectorProperties, false);
+
+            try {
+                receiver.poll();
+            } finally {
+                receiver.stop();
+            }
+
+            assertEquals(10, receiver.rawMessages.size());
+
+            Map<Object, List<Object>> filenames = new HashMap<Object, List<Object>>();
+            Set<Object> pollSequenceIds = new HashSet<Object>();
+            for (int i = 0; i < receiver.rawMessages.size(); i++) {
+                Map<String, Object> sourceMap = receiver.rawMessages.get(i).getSourceMap();
+                filenames.computeIfAbsent(new File((String) sourceMap.get("fileDirectory")).getName(), key -> new ArrayList<Object>()).add(sourceMap.get(ORIGINAL_FILENAME));
+                pollSequenceIds.add(sourceMap.get(POLL_SEQUENCE_ID));
+
+                // The file that completes the poll is processed after all of the others
+                assertEquals(i == receiver.rawMessages.size() - 1, sourceMap.containsKey(POLL_COMPLETE));
+            }
+
+            List<Object> expected = Arrays.asList("file0.hl7", "file1.hl7", "file2.hl7", "file3.hl7", "file4.hl7");
+            assertEquals(expected, filenames.get("one"));
+            assertEquals(expected, filenames.get("two"));
+            assertEquals(10, pollSequenceIds.size());
+
+            // The batched deletes were all done by the end of the poll
+            assertEquals(0, new File(directory, "one").list().length);
+            assertEquals(0, new File(directory, "two").list().length);
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    private void writeFile(File file) throws Exception {
+        FileUtils.writeStringToFile(file, "MSH|^~\\&|\r", "UTF-8");
+        // Old enough to pass the default file age check
+        file.setLastModified(System.currentTimeMillis() - 60000);
+    }
+
     private TestFileReceiver createReceiver(String directory, boolean directoryRecursion, boolean batchProcess, String sortBy, String fileSizeMaximum) throws Exception {
         return createReceiver(directory, directoryRecursion, batchProcess, sortBy, fileSizeMaximum, false);
     }
 
     private TestFileReceiver createReceiver(String directory, boolean directoryRecursion, boolean batchProcess, String sortBy, String fileSizeMaximum, boolean fileTypeBinary) throws Exception {
+        FileReceiverProperties connectorProperties = new FileReceiverProperties();
+        connectorProperties.setDirectoryRecursion(directoryRecursion);
+        connectorProperties.setSortBy(sortBy);
+        if (fileSizeMaximum != null) {
+            connectorProperties.setIgnoreFileSizeMaximum(false);
+            connectorProperties.setFileSizeMinimum("0");
+            connectorProperties.setFileSizeMaximum(fileSizeMaximum);
+        }
+        connectorProperties.setBinary(fileTypeBinary);
+
+        return createReceiver(directory, connectorProperties, batchProcess);
+    }
+
+    private TestFileReceiver createReceiver(String directory, FileReceiverProperties connectorProperties, boolean batchProcess) throws Exception {
         TestFileReceiver receiver = spy(new TestFileReceiver() {
             @Override
             protected String getConfigurationClass() {
@@ -633,15 +772,6 @@ public class FileReceiverTest {
         receiver.setChannel(channel);
         receiver.setChannelId(channelId);
 
-        FileReceiverProperties connectorProperties = new FileReceiverProperties();
-        connectorProperties.setDirectoryRecursion(directoryRecursion);
-        connectorProperties.setSortBy(sortBy);
-        if (fileSizeMaximum != null) {
-            connectorProperties.setIgnoreFileSizeMaximum(false);
-            connectorProperties.setFileSizeMinimum("0");
-            connectorProperties.setFileSizeMaximum(fileSizeMaximum);
-        }
-        connectorProperties.setBinary(fileTypeBinary);
         receiver.setConnectorProperties(connectorProperties);
 
         FileConnector fileConnector = mock(FileConnector.class);
@@ -669,7 +799,7 @@ public class FileReceiverTest {
     }
 
     class TestFileReceiver extends FileReceiver {
-        List<RawMessage> rawMessages = new ArrayList<>();
+        List<RawMessage> rawMessages = Collections.synchronizedList(new ArrayList<>());
 
         public TestFileReceiver() {
             logger = spy(LogFactory.getLog(getClass()));
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.connectors.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.util.EntityUtils;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpConnectionPoolTest {
+
+    private Server server;
+    private int port;
+    private Registry<ConnectionSocketFactory> registry;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+                response.setContentType("text/plain");
+                response.getWriter().write("ok");
+                baseRequest.setHandled(true);
+            }
+        });
+        server.start();
+        port = connector.getLocalPort();
+
+        registry = RegistryBuilder.<ConnectionSocketFactory> create().register("http", PlainConnectionSocketFactory.getSocketFactory()).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testConnectionsReused() throws Exception {
+        final HttpConnectionPool pool = HttpConnectionPool.acquire("test reuse", false, registry, 4, 10, 60000, 5000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 40; i++) {
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return get(pool);
+                    }
+                }));
+            }
+
+            for (Future<String> future : futures) {
+                assertEquals("ok", future.get());
+            }
+
+            // Every connection went back to the pool, and no more were opened than the route allows
+            assertEquals(0, pool.getStats().getLeased());
+            assertTrue(pool.getStats().getAvailable() > 0);
+            assertTrue(pool.getStats().getAvailable() <= 4);
+            assertTrue(HttpConnectionPool.getStatistics().containsKey("test reuse"));
+            assertTrue(pool.getStatusMessage().startsWith("Connection pool: 0 leased, "));
+        } finally {
+            executor.shutdownNow();
+            pool.release();
+        }
+
+        assertTrue(HttpConnectionPool.getStatistics().isEmpty());
+    }
+
+    @Test
+    public void testSharedPool() throws Exception {
+        HttpConnectionPool pool1 = HttpConnectionPool.acquire("test shared", true, registry, 4, 10, 60000, 5000);
+        HttpConnectionPool pool2 = HttpConnectionPool.acquire("test shared", true, registry, 1, 1, 0, 1000);
+        assertSame(pool1, pool2);
+
+        // The pool stays open until the last destination releases it
+        assertEquals("ok", get(pool1));
+        pool1.release();
+        assertEquals("ok", get(pool2));
+        assertEquals(1, HttpConnectionPool.getStatistics().size());
+
+        pool2.release();
+        assertTrue(HttpConnectionPool.getStatistics().isEmpty());
+    }
+
+    @Test
+    public void testDuplicateName() throws Exception {
+        HttpConnectionPool pool = HttpConnectionPool.acquire("test duplicate", false, registry, 4, 10, 60000, 5000);
+
+        try {
+            HttpConnectionPool.acquire("test duplicate", true, registry, 4, 10, 60000, 5000);
+            fail("Expected the pool name to be rejected");
+        } catch (IllegalStateException e) {
+        } finally {
+            pool.release();
+        }
+    }
+
+    @Test
+    public void testIdleConnectionsEvicted() throws Exception {
+        HttpConnectionPool pool = HttpConnectionPool.acquire("test idle", false, registry, 4, 10, 100, 5000);
+
+        try {
+            assertEquals("ok", get(pool));
+            assertEquals(1, pool.getStats().getAvailable());
+
+            long end = System.currentTimeMillis() + 10000;
+            while (pool.getStats().getAvailable() > 0 && System.currentTimeMillis() < end) {
+                Thread.sleep(50);
+            }
+            assertEquals(0, pool.getStats().getAvailable());
+        } finally {
+            pool.release();
+        }
+    }
+
+    private String get(HttpConnectionPool pool) throws IOException {
+        CloseableHttpResponse response = pool.getClient().execute(new HttpGet("http://127.0.0.1:" + port + "/"));
+        try {
+            return EntityUtils.toString(response.getEntity(), "UTF-8");
+        } finally {
+            response.close();
+        }
+    }
+}
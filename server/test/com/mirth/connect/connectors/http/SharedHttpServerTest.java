@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.connectors.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SharedHttpServerTest {
+
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerSocket serverSocket = new ServerSocket(0);
+        port = serverSocket.getLocalPort();
+        serverSocket.close();
+    }
+
+    @Test
+    public void testRouting() throws Exception {
+        SharedHttpServer.Registration root = SharedHttpServer.register("127.0.0.1", port, 30000, "", new NameHandler("root"));
+        SharedHttpServer.Registration first = SharedHttpServer.register("127.0.0.1", port, 30000, "/first", new NameHandler("first"));
+        SharedHttpServer.Registration nested = SharedHttpServer.register("127.0.0.1", port, 30000, "/first/nested", new NameHandler("nested"));
+
+        try {
+            assertEquals(1, SharedHttpServer.getServerCount());
+
+            // The longest matching context path wins, and partial path segments don't match
+            assertEquals("first", get("/first"));
+            assertEquals("first", get("/first/other"));
+            assertEquals("nested", get("/first/nested/path"));
+            assertEquals("root", get("/firstly"));
+            assertEquals("root", get("/"));
+
+            // Requests fall back to the remaining listeners once one is removed
+            nested.unregister();
+            assertEquals("first", get("/first/nested/path"));
+        } finally {
+            root.unregister();
+            first.unregister();
+        }
+
+        assertEquals(0, SharedHttpServer.getServerCount());
+    }
+
+    @Test
+    public void testDuplicateContextPath() throws Exception {
+        SharedHttpServer.Registration registration = SharedHttpServer.register("127.0.0.1", port, 30000, "/path", new NameHandler("one"));
+
+        try {
+            SharedHttpServer.register("127.0.0.1", port, 30000, "/path", new NameHandler("two"));
+            fail("Expected the context path to be rejected");
+        } catch (Exception e) {
+        }
+
+        try {
+            assertEquals("one", get("/path"));
+        } finally {
+            registration.unregister();
+        }
+    }
+
+    @Test
+    public void testServerStopped() throws Exception {
+        SharedHttpServer.Registration registration = SharedHttpServer.register("127.0.0.1", port, 30000, "/path", new NameHandler("one"));
+        assertEquals("one", get("/path"));
+        registration.unregister();
+
+        assertEquals(0, SharedHttpServer.getServerCount());
+        try {
+            get("/path");
+            fail("Expected the connection to be refused");
+        } catch (IOException e) {
+        }
+
+        // The port is free to be used again
+        registration = SharedHttpServer.register("127.0.0.1", port, 30000, "/path", new NameHandler("two"));
+        try {
+            assertEquals("two", get("/path"));
+        } finally {
+            registration.unregister();
+        }
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(5000);
+
+        InputStream in = connection.getInputStream();
+        try {
+            return IOUtils.toString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class NameHandler extends AbstractHandler {
+        private String name;
+
+        NameHandler(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+            response.setContentType("text/plain");
+            response.getWriter().write(name);
+            baseRequest.setHandled(true);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.connectors.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.reflect.Field;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import com.mirth.connect.donkey.model.message.attachment.Attachment;
+
+public class SpooledRequestBodyTest {
+
+    @Test
+    public void testInMemory() throws Exception {
+        SpooledRequestBody body = new SpooledRequestBody(new ByteArrayInputStream("small body".getBytes("UTF-8")), 1024, "text/plain", false, "UTF-8");
+
+        assertTrue(body.isInMemory());
+        assertEquals(10, body.getSize());
+        assertEquals("small body", IOUtils.toString(body.getReader()));
+        body.dispose();
+    }
+
+    @Test
+    public void testSpooledToFile() throws Exception {
+        String message = StringUtils.repeat("MSH|^~\\&|\r", 1000);
+        SpooledRequestBody body = new SpooledRequestBody(new ByteArrayInputStream(message.getBytes("UTF-8")), 1024, "text/plain", false, "UTF-8");
+
+        assertFalse(body.isInMemory());
+        File file = getFile(body);
+        assertEquals(message.length(), file.length());
+
+        // The body can be read more than once, and the file is removed when it's disposed
+        assertEquals(message, IOUtils.toString(body.getReader()));
+        assertEquals(message, IOUtils.toString(body.getReader()));
+        body.dispose();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testTextAttachment() throws Exception {
+        String message = "café " + StringUtils.repeat("x", 2000);
+
+        // Text in another charset is converted to the attachment charset
+        SpooledRequestBody body = new SpooledRequestBody(new ByteArrayInputStream(message.getBytes("ISO-8859-1")), 1024, "text/plain", false, "ISO-8859-1");
+        Attachment attachment = body.toAttachment();
+        body.dispose();
+
+        assertEquals("text/plain", attachment.getType());
+        assertEquals(message, new String(attachment.getContent(), "UTF-8"));
+        assertEquals("${ATTACH:" + attachment.getId() + "}", attachment.getAttachmentId());
+    }
+
+    @Test
+    public void testBinaryAttachment() throws Exception {
+        byte[] bytes = new byte[3000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        // Binary content is stored Base64 encoded, without line breaks
+        SpooledRequestBody body = new SpooledRequestBody(new ByteArrayInputStream(bytes), 1024, "application/pdf", true, "UTF-8");
+        Attachment attachment = body.toAttachment();
+        body.dispose();
+
+        assertEquals("application/pdf", attachment.getType());
+        assertEquals(Base64.encodeBase64String(bytes), new String(attachment.getContent(), "US-ASCII"));
+        assertArrayEquals(bytes, Base64.decodeBase64(attachment.getContent()));
+    }
+
+    private static File getFile(SpooledRequestBody body) throws Exception {
+        Field field = SpooledRequestBody.class.getDeclaredField("output");
+        field.setAccessible(true);
+        return ((DeferredFileOutputStream) field.get(body)).getFile();
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.connectors.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mirth.connect.connectors.tcp.NonBlockingTcpListener.Connection;
+import com.mirth.connect.model.transmission.framemode.FrameStreamHandlerException;
+
+public class NonBlockingTcpListenerTest {
+
+    private static final byte[] START = new byte[] { 0x0B };
+    private static final byte[] END = new byte[] { 0x1C, 0x0D };
+
+    private ExecutorService executor;
+    private NonBlockingTcpListener listener;
+    private TestHandler handler;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (listener != null) {
+            listener.stop();
+            listener.closeConnections();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testIndexOf() throws Exception {
+        byte[] array = "abcabdab".getBytes("US-ASCII");
+        assertEquals(3, NonBlockingTcpListener.indexOf(array, 0, array.length, "abd".getBytes("US-ASCII")));
+        assertEquals(-1, NonBlockingTcpListener.indexOf(array, 0, 5, "abd".getBytes("US-ASCII")));
+        assertEquals(6, NonBlockingTcpListener.indexOf(array, 4, array.length, "ab".getBytes("US-ASCII")));
+        assertEquals(-1, NonBlockingTcpListener.indexOf(array, 7, array.length, "ab".getBytes("US-ASCII")));
+        assertEquals(2, NonBlockingTcpListener.indexOf(array, 2, array.length, new byte[0]));
+    }
+
+    @Test
+    public void testFramesAcrossReads() throws Exception {
+        start(16, 0);
+
+        Socket socket = connect();
+        OutputStream out = socket.getOutputStream();
+
+        // Junk before the start byte, a frame split into single bytes, and a frame longer than the read buffer
+        String longMessage = StringUtils.repeat("0123456789", 100);
+        byte[] bytes = frame("one");
+        out.write("junk".getBytes("US-ASCII"));
+        for (byte b : bytes) {
+            out.write(b);
+            out.flush();
+            Thread.sleep(1);
+        }
+        out.write(frame(longMessage));
+        out.flush();
+
+        assertEquals("one", handler.take());
+        assertEquals(longMessage, handler.take());
+        socket.close();
+    }
+
+    @Test
+    public void testPipelinedResponsesInOrder() throws Exception {
+        start(1024, 0);
+        int count = 200;
+
+        Socket socket = connect();
+        OutputStream out = socket.getOutputStream();
+
+        // Send every frame in one write, before reading any responses
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append((char) START[0]).append("message ").append(i).append((char) END[0]).append((char) END[1]);
+        }
+        out.write(builder.toString().getBytes("US-ASCII"));
+        out.flush();
+
+        InputStream in = socket.getInputStream();
+        for (int i = 0; i < count; i++) {
+            assertEquals("ACK message " + i, readFrame(in));
+        }
+
+        socket.close();
+        assertTrue(handler.disconnected.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testEndOfStream() throws Exception {
+        start(1024, 0);
+
+        // A complete frame is still handled when the remote side closes right after sending it
+        Socket socket = connect();
+        socket.getOutputStream().write(frame("last"));
+        socket.getOutputStream().write(new byte[] { START[0], 'x' });
+        socket.shutdownOutput();
+
+        assertEquals("last", handler.take());
+        assertTrue(handler.disconnected.await(5, TimeUnit.SECONDS));
+        assertEquals(1, handler.errors.size());
+        assertTrue(handler.errors.get(0) instanceof FrameStreamHandlerException);
+        socket.close();
+    }
+
+    @Test
+    public void testMaxConnections() throws Exception {
+        start(1024, 0);
+
+        List<Socket> sockets = new ArrayList<Socket>();
+        for (int i = 0; i < 3; i++) {
+            Socket socket = connect();
+            socket.getOutputStream().write(frame("connection " + i));
+            sockets.add(socket);
+        }
+
+        for (int i = 0; i < 2; i++) {
+            handler.take();
+        }
+
+        // The third connection is closed without being read, which resets it since it sent data
+        try {
+            assertEquals(-1, sockets.get(2).getInputStream().read());
+        } catch (SocketException e) {
+        }
+        assertEquals(2, listener.getConnections().size());
+
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testIdleTimeout() throws Exception {
+        start(1024, 200);
+
+        Socket socket = connect();
+        socket.getOutputStream().write(new byte[] { START[0], 'x' });
+
+        // Timing out in the middle of a frame is an error
+        assertTrue(handler.disconnected.await(5, TimeUnit.SECONDS));
+        assertEquals(1, handler.errors.size());
+        socket.close();
+    }
+
+    private void start(int bufferSize, int timeout) throws Exception {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+        port = serverChannel.socket().getLocalPort();
+
+        handler = new TestHandler();
+        listener = new NonBlockingTcpListener(serverChannel, START, END, bufferSize, 2, timeout, executor, handler);
+        listener.start("Test Selector Thread");
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("127.0.0.1", port);
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static byte[] frame(String message) throws IOException {
+        return ((char) START[0] + message + (char) END[0] + (char) END[1]).getBytes("US-ASCII");
+    }
+
+    private static String readFrame(InputStream in) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        int b;
+
+        assertEquals(START[0], in.read());
+        while ((b = in.read()) != END[0]) {
+            builder.append((char) b);
+        }
+        assertEquals(END[1], in.read());
+
+        return builder.toString();
+    }
+
+    private static class TestHandler implements NonBlockingTcpListener.FrameHandler {
+        private BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        private List<IOException> errors = Collections.synchronizedList(new ArrayList<IOException>());
+        private CountDownLatch disconnected = new CountDownLatch(1);
+
+        String take() throws InterruptedException {
+            String message = messages.poll(5, TimeUnit.SECONDS);
+            assertTrue(message != null);
+            return message;
+        }
+
+        @Override
+        public void connected(Connection connection) {}
+
+        @Override
+        public boolean frameReceived(Connection connection, byte[] frame) throws InterruptedException {
+            String message = new String(frame, 1, frame.length - 3);
+            messages.add(message);
+
+            try {
+                OutputStream out = connection.getOutputStream();
+                out.write(frame("ACK " + message));
+                out.flush();
+            } catch (IOException e) {
+                return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public boolean idleTimeout(Connection connection) {
+            return false;
+        }
+
+        @Override
+        public void readError(Connection connection, IOException e) {
+            errors.add(e);
+        }
+
+        @Override
+        public void disconnected(Connection connection) {
+            disconnected.countDown();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.connectors.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mirth.connect.model.transmission.framemode.FrameModeProperties;
+import com.mirth.connect.plugins.BasicModeProvider;
+import com.mirth.connect.util.TcpUtil;
+
+public class TcpConnectionPoolTest {
+
+    private static final int START = 0x0B;
+    private static final int END_1 = 0x1C;
+    private static final int END_2 = 0x0D;
+
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private TimerWheel timerWheel;
+    private TcpConnectionPool pool;
+    private TestHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        executor = Executors.newCachedThreadPool();
+        timerWheel = new TimerWheel("Test Timer Thread", 10, 64);
+        handler = new TestHandler();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (pool != null) {
+            pool.close();
+        }
+        timerWheel.stop();
+        executor.shutdownNow();
+        serverSocket.close();
+    }
+
+    @Test
+    public void testControlIds() throws Exception {
+        assertEquals("MSG00001", TcpConnectionPool.getMessageControlId("MSH|^~\\&|SENDER|FAC|RECEIVER|FAC|20240101||ADT^A01|MSG00001|P|2.5\rPID|1"));
+        assertEquals("1", TcpConnectionPool.getMessageControlId("FHS|^~\\&\nMSH#^~\\&#A#B#C#D#E##ADT#1#P"));
+        assertNull(TcpConnectionPool.getMessageControlId("MSH|^~\\&|SENDER|FAC|RECEIVER|FAC|20240101||ADT^A01||P"));
+        assertNull(TcpConnectionPool.getMessageControlId("MSH|^~\\&|SENDER\rPID|1|2|3|4|5|6|7|8|9|10"));
+        assertNull(TcpConnectionPool.getMessageControlId("<HL7Message/>"));
+
+        assertEquals("MSG00001", TcpConnectionPool.getAcknowledgedControlId("MSH|^~\\&|A|B|C|D|20240101||ACK|ACK1|P|2.5\rMSA|AA| MSG00001 \r"));
+        assertNull(TcpConnectionPool.getAcknowledgedControlId("MSH|^~\\&|A|B|C|D|20240101||ACK|ACK1|P|2.5\rMSA|AA"));
+        assertNull(TcpConnectionPool.getAcknowledgedControlId("MSH|^~\\&|A|B|C|D|MSA|AA|1"));
+    }
+
+    @Test
+    public void testPipelinedResponsesOutOfOrder() throws Exception {
+        final int count = 8;
+        createPool(1, count);
+
+        // Read every message before answering, and answer them in reverse order
+        executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Socket socket = serverSocket.accept();
+                List<String> controlIds = new ArrayList<String>();
+
+                for (int i = 0; i < count; i++) {
+                    controlIds.add(TcpConnectionPool.getMessageControlId(readFrame(socket.getInputStream())));
+                }
+
+                for (int i = count - 1; i >= 0; i--) {
+                    writeFrame(socket.getOutputStream(), "MSH|^~\\&|||||||ACK|A" + i + "|P|2.5\rMSA|AA|" + controlIds.get(i));
+                }
+                return null;
+            }
+        });
+
+        final CountDownLatch written = new CountDownLatch(count);
+        List<Future<String>> responses = new ArrayList<Future<String>>();
+
+        for (int i = 0; i < count; i++) {
+            final String controlId = "MSG" + i;
+
+            responses.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    TcpConnectionPool.Connection connection = pool.acquire("endpoint", null);
+
+                    try {
+                        TcpConnectionPool.Pending pending = connection.write(getBytes("MSH|^~\\&|||||||ADT^A01|" + controlId + "|P|2.5"), controlId, true, 5000);
+                        written.countDown();
+                        return TcpConnectionPool.getAcknowledgedControlId(new String(connection.read(pending), "US-ASCII"));
+                    } finally {
+                        connection.release(0);
+                    }
+                }
+            }));
+        }
+
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++) {
+            assertEquals("MSG" + i, responses.get(i).get(5, TimeUnit.SECONDS));
+        }
+
+        // Everything was sent on the one connection
+        assertEquals(1, handler.connections);
+        assertEquals(1, pool.getConnectionCount());
+    }
+
+    @Test
+    public void testResponseTimeout() throws Exception {
+        createPool(2, 2);
+
+        // Accept connections but never answer
+        final List<Socket> accepted = new ArrayList<Socket>();
+        executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                accepted.add(serverSocket.accept());
+                return null;
+            }
+        });
+
+        TcpConnectionPool.Connection connection = pool.acquire("endpoint", null);
+        TcpConnectionPool.Pending pending = connection.write(getBytes("message"), null, true, 200);
+
+        try {
+            connection.read(pending);
+            fail("Expected a timeout");
+        } catch (SocketTimeoutException e) {
+        } finally {
+            connection.release(0);
+        }
+
+        // The connection is closed since its response could still arrive
+        assertEquals(0, pool.getConnectionCount());
+        assertTrue(handler.disconnected.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testIdleTimeout() throws Exception {
+        createPool(2, 1);
+
+        executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Socket socket = serverSocket.accept();
+                writeFrame(socket.getOutputStream(), readFrame(socket.getInputStream()));
+                return null;
+            }
+        });
+
+        TcpConnectionPool.Connection connection = pool.acquire("endpoint", null);
+        try {
+            assertEquals("message", new String(connection.read(connection.write(getBytes("message"), null, true, 5000)), "US-ASCII"));
+        } finally {
+            connection.release(100);
+        }
+
+        // Reusing the idle connection cancels the idle timeout
+        assertTrue(connection == pool.acquire("endpoint", null));
+        Thread.sleep(300);
+        assertEquals(1, pool.getConnectionCount());
+
+        connection.release(100);
+        assertTrue(handler.disconnected.await(5, TimeUnit.SECONDS));
+        assertEquals(0, pool.getConnectionCount());
+    }
+
+    private void createPool(int maxConnections, int maxOutstanding) {
+        FrameModeProperties frameModeProperties = new FrameModeProperties("MLLP");
+        frameModeProperties.setStartOfMessageBytes(TcpUtil.DEFAULT_LLP_START_BYTES);
+        frameModeProperties.setEndOfMessageBytes(TcpUtil.DEFAULT_LLP_END_BYTES);
+
+        pool = new TcpConnectionPool(new BasicModeProvider(), frameModeProperties, handler, timerWheel, maxConnections, maxOutstanding, 65536, "US-ASCII");
+    }
+
+    private static byte[] getBytes(String message) throws IOException {
+        return message.getBytes("US-ASCII");
+    }
+
+    private static String readFrame(InputStream in) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        int b;
+
+        assertEquals(START, in.read());
+        while ((b = in.read()) != END_1) {
+            builder.append((char) b);
+        }
+        assertEquals(END_2, in.read());
+
+        return builder.toString();
+    }
+
+    private static void writeFrame(OutputStream out, String message) throws IOException {
+        out.write(((char) START + message + (char) END_1 + (char) END_2).getBytes("US-ASCII"));
+        out.flush();
+    }
+
+    private class TestHandler implements TcpConnectionPool.ConnectionHandler {
+        private volatile int connections;
+        private CountDownLatch disconnected = new CountDownLatch(1);
+
+        @Override
+        public Socket connect(TcpDispatcherProperties connectorProperties) throws Exception {
+            connections++;
+            Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+            socket.setSoTimeout(5000);
+            return socket;
+        }
+
+        @Override
+        public void disconnected(Socket socket) {
+            disconnected.countDown();
+        }
+    }
+}
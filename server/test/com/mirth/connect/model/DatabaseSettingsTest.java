@@ -11,12 +11,17 @@ package com.mirth.connect.model;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.util.Properties;
+
 import org.junit.Test;
 
+import com.mirth.connect.donkey.model.DatabaseConstants;
+
 public class DatabaseSettingsTest {
 
     @Test
@@ -97,4 +102,24 @@ public class DatabaseSettingsTest {
         assertEquals("test", databaseSettings.getMappedReadOnlyDatabaseDriver());
         verify(databaseSettings, times(0)).getMappedDatabaseDriver();
     }
+
+    @Test
+    public void getProperties_GroupCommit() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(DatabaseConstants.DATABASE, "postgres");
+        properties.setProperty(DatabaseConstants.DATABASE_GROUP_COMMIT, "true");
+        properties.setProperty(DatabaseConstants.DATABASE_GROUP_COMMIT_WINDOW, "5");
+        properties.setProperty(DatabaseConstants.DATABASE_GROUP_COMMIT_MAX_BATCH_SIZE, "");
+
+        DatabaseSettings databaseSettings = new DatabaseSettings(properties);
+        assertTrue(databaseSettings.isGroupCommit());
+        assertEquals(Integer.valueOf(5), databaseSettings.getGroupCommitWindow());
+        assertNull(databaseSettings.getGroupCommitMaxBatchSize());
+        assertNull(databaseSettings.getGroupCommitThreads());
+
+        Properties result = databaseSettings.getProperties();
+        assertEquals("true", result.getProperty(DatabaseConstants.DATABASE_GROUP_COMMIT));
+        assertEquals("5", result.getProperty(DatabaseConstants.DATABASE_GROUP_COMMIT_WINDOW));
+        assertNull(result.getProperty(DatabaseConstants.DATABASE_GROUP_COMMIT_MAX_BATCH_SIZE));
+    }
 }
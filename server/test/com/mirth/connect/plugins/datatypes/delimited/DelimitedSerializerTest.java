@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.plugins.datatypes.delimited;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mirth.connect.donkey.model.message.SerializationType;
+import com.mirth.connect.model.datatype.SerializerProperties;
+import com.mirth.connect.util.JsonXmlUtil;
+
+import de.odysseus.staxon.json.JsonXMLConfig;
+import de.odysseus.staxon.json.JsonXMLConfigBuilder;
+
+public class DelimitedSerializerTest {
+
+    private static final String MESSAGE = "1,Smith,\"John, Jr.\",\"Say \"\"hi\"\"\"\r\n2,,  padded  ,\"multi\nline\"x\r\n\"unterminated";
+
+    private ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testRecords() throws Exception {
+        DelimitedSerializationProperties properties = new DelimitedSerializationProperties();
+
+        List<List<String>> records = new ArrayList<List<String>>();
+        records.add(Arrays.asList("1", "Smith", "John, Jr.", "Say \"hi\""));
+        records.add(Arrays.asList("2", "", "  padded  ", "multi\nlinex"));
+        records.add(Arrays.asList("unterminated"));
+        assertEquals(records, parse(properties, MESSAGE));
+
+        // Carriage returns are kept when not ignored
+        properties.setIgnoreCR(false);
+        assertEquals(Arrays.asList("1", "Smith", "John, Jr.", "Say \"hi\"\r"), parse(properties, MESSAGE).get(0));
+
+        properties = new DelimitedSerializationProperties();
+        properties.setColumnDelimiter("||");
+        properties.setRecordDelimiter("#\\n");
+        properties.setQuoteToken("'");
+        properties.setEscapeWithDoubleQuote(false);
+        properties.setQuoteEscapeToken("\\");
+        records.clear();
+        records.add(Arrays.asList("a|b", "'c' \\ d", "e||f#\n"));
+        records.add(Arrays.asList("g#h", ""));
+        assertEquals(records, parse(properties, "a|b||'\\'c\\' \\\\ d'||'e||f#\n'#\ng#h||"));
+    }
+
+    @Test
+    public void testFixedWidth() throws Exception {
+        DelimitedSerializationProperties properties = new DelimitedSerializationProperties();
+        properties.setColumnWidths(new Integer[] { 3, 5, 2 });
+
+        List<List<String>> records = new ArrayList<List<String>>();
+        records.add(Arrays.asList("abc", "de", "fg"));
+        records.add(Arrays.asList("hi"));
+        records.add(Arrays.asList("jkl", "mn"));
+        assertEquals(records, parse(properties, "abcde   fgIGNORED\nhi\njklmn"));
+    }
+
+    @Test
+    public void testLongValues() throws Exception {
+        // Values longer than the read buffer, and delimiters that straddle the end of it
+        String value = StringUtils.repeat("x", 100000);
+        DelimitedSerializationProperties properties = new DelimitedSerializationProperties();
+        properties.setColumnDelimiter("<=>");
+
+        List<List<String>> records = new ArrayList<List<String>>();
+        for (int i = 0; i < 20; i++) {
+            records.add(Arrays.asList(value.substring(i), "\"" + value, "y"));
+        }
+
+        StringBuilder message = new StringBuilder();
+        for (List<String> record : records) {
+            message.append(record.get(0)).append("<=>\"\"\"").append(value).append("\"<=>y\r\n");
+        }
+
+        assertEquals(records, parse(properties, message.toString()));
+    }
+
+    @Test
+    public void testBatchOperations() throws Exception {
+        DelimitedSerializationProperties properties = new DelimitedSerializationProperties();
+        DelimitedParser parser = new DelimitedReader(properties).createParser(new StringReader("header,\"quoted\nheader\"\na,1\r\nb,2\n--\nc,3"));
+
+        parser.skipRecord();
+        parser.skipRecord();
+
+        StringBuilder rawText = new StringBuilder();
+        List<String> record = parser.nextRecord(rawText);
+        assertEquals(Arrays.asList("a", "1"), record);
+        assertEquals("a,1\n", rawText.toString());
+
+        parser.ungetRecord(record, rawText.toString());
+        rawText.setLength(0);
+        assertEquals(Arrays.asList("a", "1"), parser.nextRecord(rawText));
+        assertEquals("a,1\n", rawText.toString());
+
+        assertEquals(Arrays.asList("b", "2"), parser.nextRecord(null));
+        assertTrue(parser.startsWith("--\n"));
+        parser.skip(3, null);
+        assertEquals(Arrays.asList("c", "3"), parser.nextRecord(null));
+        assertNull(parser.nextRecord(null));
+        parser.skipRecord();
+    }
+
+    @Test
+    public void testSameStructureAsXml() throws Exception {
+        DelimitedSerializationProperties properties = new DelimitedSerializationProperties();
+        assertSameStructureAsXml(properties, MESSAGE);
+        assertSameStructureAsXml(properties, "one,row");
+        assertSameStructureAsXml(properties, "<a> & \"b\",,");
+        assertSameStructureAsXml(properties, "");
+
+        properties.setNumberedRows(true);
+        assertSameStructureAsXml(properties, MESSAGE);
+
+        // Columns with the same name are grouped together
+        properties.setNumberedRows(false);
+        properties.setColumnNames(new String[] { "id", "name", "id" });
+        assertSameStructureAsXml(properties, MESSAGE);
+
+        properties = new DelimitedSerializationProperties();
+        properties.setColumnWidths(new Integer[] { 3, 5, 2 });
+        assertSameStructureAsXml(properties, "abcde   fgIGNORED\nhi\n\njklmn");
+    }
+
+    @Test
+    public void testFromJson() throws Exception {
+        DelimitedSerializationProperties properties = new DelimitedSerializationProperties();
+        assertSameAsXmlRoute(properties, MESSAGE);
+        assertSameAsXmlRoute(properties, "one,row");
+        assertSameAsXmlRoute(properties, "<a> & \"b\",,");
+        assertSameAsXmlRoute(properties, "");
+
+        properties.setNumberedRows(true);
+        assertSameAsXmlRoute(properties, MESSAGE);
+
+        properties.setNumberedRows(false);
+        properties.setColumnNames(new String[] { "id", "name" });
+        assertSameAsXmlRoute(properties, MESSAGE);
+
+        // JSON written by hand, with values that are not strings
+        DelimitedSerializer serializer = new DelimitedSerializer(new SerializerProperties(new DelimitedSerializationProperties(), new DelimitedDeserializationProperties(), null));
+        assertEquals("a,,\"b,c\"\n1,true\n", serializer.fromJSON("{\"delimited\":{\"row\":[{\"column1\":\"a\",\"column2\":null,\"column3\":\"b,c\"},{\"column1\":1,\"column2\":true}]}}"));
+        assertEquals("", serializer.fromJSON("{\"delimited\":null}"));
+    }
+
+    @Test
+    public void testSerializationType() throws Exception {
+        DelimitedDataTypeProperties properties = new DelimitedDataTypeProperties();
+        assertEquals(SerializationType.XML, properties.getSerializationProperties().getSerializationType());
+
+        // Properties saved before the serialization type existed
+        properties.getSerializationProperties().setSerializationType(null);
+        assertEquals(SerializationType.XML, properties.getSerializationProperties().getSerializationType());
+
+        properties.getSerializationProperties().setSerializationType(SerializationType.JSON);
+        assertEquals(SerializationType.JSON, properties.getSerializationProperties().getSerializationType());
+
+        assertEquals(SerializationType.XML, properties.getDeserializationProperties().getSerializationType());
+        properties.getDeserializationProperties().setSerializationType(null);
+        assertEquals(SerializationType.XML, properties.getDeserializationProperties().getSerializationType());
+        properties.getDeserializationProperties().setSerializationType(SerializationType.JSON);
+        assertEquals(SerializationType.JSON, properties.getDeserializationProperties().getSerializationType());
+    }
+
+    private List<List<String>> parse(DelimitedSerializationProperties properties, String message) throws Exception {
+        DelimitedParser parser = new DelimitedReader(properties).createParser(new StringReader(message));
+        List<List<String>> records = new ArrayList<List<String>>();
+        List<String> record;
+
+        while ((record = parser.nextRecord(null)) != null) {
+            records.add(record);
+        }
+
+        return records;
+    }
+
+    private void assertSameAsXmlRoute(DelimitedSerializationProperties serializationProperties, String message) throws Exception {
+        DelimitedSerializer serializer = new DelimitedSerializer(new SerializerProperties(serializationProperties, new DelimitedDeserializationProperties(), null));
+        assertEquals(serializer.fromXML(serializer.toXML(message)), serializer.fromJSON(serializer.toJSON(message)));
+    }
+
+    private void assertSameStructureAsXml(DelimitedSerializationProperties serializationProperties, String message) throws Exception {
+        DelimitedSerializer serializer = new DelimitedSerializer(new SerializerProperties(serializationProperties, new DelimitedDeserializationProperties(), null));
+
+        // The direct conversion always writes strings, so compare against the XML route without primitives
+        JsonXMLConfig config = new JsonXMLConfigBuilder().autoArray(true).autoPrimitive(false).prettyPrint(false).build();
+        String expected = JsonXmlUtil.xmlToJson(config, serializer.toXML(message), true, false, false);
+
+        assertEquals(mapper.readTree(expected), mapper.readTree(serializer.toJSON(message)));
+    }
+}
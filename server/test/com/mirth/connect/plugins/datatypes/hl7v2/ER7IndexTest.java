@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.plugins.datatypes.hl7v2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
+import com.mirth.connect.model.util.DefaultMetaData;
+
+public class ER7IndexTest {
+
+    private static final String MESSAGE = "MSH|^~\\&|SENDER^X|FAC&SUB~FAC2|RECEIVER|RFAC|20200101120000||ADT^A01^ADT_A01|123|P^T|2.5|||AL\rPID|1||0012^^^A&B&C~456~||DOE^JOHN\r\nPID|2\rZZZ\r";
+
+    @Test
+    public void testValues() throws Exception {
+        ER7Index index = new ER7Index(MESSAGE, "\r", false);
+
+        assertEquals(4, index.getSegmentCount());
+        assertTrue(index.hasHeader());
+        assertEquals('|', index.getFieldSeparator());
+        assertEquals('^', index.getComponentSeparator());
+        assertEquals('~', index.getRepetitionSeparator());
+        assertEquals('\\', index.getEscapeCharacter());
+        assertEquals('&', index.getSubcomponentSeparator());
+
+        assertEquals("MSH", index.getSegmentName(0));
+        assertEquals("PID", index.getSegmentName(1));
+        assertEquals("ZZZ", index.getSegmentName(3));
+        assertEquals(1, index.getSegmentIndex("PID"));
+        assertEquals(-1, index.getSegmentIndex("PV1"));
+        assertEquals(15, index.getFieldCount(0));
+
+        // Header fields are numbered like the XML
+        assertEquals("|", index.getValue(0, 1, 0, 0, 0));
+        assertEquals("^~\\&", index.getValue(0, 2, 1, 1, 1));
+        assertEquals("SENDER^X", index.getValue(0, 3, 0, 0, 0));
+        assertEquals("X", index.getValue(0, 3, 1, 2, 1));
+        assertEquals("FAC&SUB", index.getValue(0, 4, 1, 1, 0));
+        assertEquals("SUB", index.getValue(0, 4, 1, 1, 2));
+        assertEquals("FAC2", index.getValue(0, 4, 2, 1, 1));
+        assertEquals("", index.getValue(0, 4, 3, 1, 1));
+        assertEquals("", index.getValue(0, 8, 0, 0, 0));
+        assertEquals("AL", index.getValue(0, 15, 0, 1, 0));
+        assertNull(index.getValue(0, 16, 0, 0, 0));
+
+        assertEquals("0012^^^A&B&C~456~", index.getValue(1, 3, 0, 0, 0));
+        assertEquals("C", index.getValue(1, 3, 1, 4, 3));
+        assertEquals("456", index.getValue(1, 3, 2, 1, 0));
+        assertEquals("JOHN", index.getValue(1, 5, 1, 2, 1));
+
+        // The LF of the CRLF is not part of the next segment
+        assertEquals("PID", index.getSegmentName(2));
+        assertEquals("2", index.getValue(2, 1, 0, 0, 0));
+        assertNull(index.getValue(3, 1, 0, 0, 0));
+        assertNull(index.getValue(4, 1, 0, 0, 0));
+    }
+
+    @Test
+    public void testConvertLineBreaks() throws Exception {
+        String message = "MSH|^~\\&|A\nPID|1\r\nPV1|1";
+        assertEquals(2, new ER7Index(message, "\r", false).getSegmentCount());
+        assertEquals(3, new ER7Index(message, "\r", true).getSegmentCount());
+        assertEquals(2, new ER7Index("MSH|^~\\&|A$$PID|1$$", "$$", false).getSegmentCount());
+    }
+
+    @Test
+    public void testNoHeader() throws Exception {
+        ER7Index index = new ER7Index("PID|1|2^3", "\r", false);
+        assertFalse(index.hasHeader());
+        assertEquals(0, index.getComponentSeparator());
+        assertEquals("2^3", index.getValue(0, 2, 1, 1, 1));
+
+        index = new ER7Index("   ", "\r", false);
+        assertEquals(0, index.getSegmentCount());
+        assertNull(index.getValue(0, 1, 0, 0, 0));
+    }
+
+    @Test
+    public void testMetaData() throws Exception {
+        Map<String, Object> map = getSerializer(false, true, true).getMetaDataFromMessage(MESSAGE);
+        assertEquals("FAC", map.get(DefaultMetaData.SOURCE_VARIABLE_MAPPING));
+        assertEquals("ADT-A01", map.get(DefaultMetaData.TYPE_VARIABLE_MAPPING));
+        assertEquals("2.5", map.get(DefaultMetaData.VERSION_VARIABLE_MAPPING));
+
+        map = getSerializer(false, false, false).getMetaDataFromMessage(MESSAGE);
+        assertEquals("FAC&SUB~FAC2", map.get(DefaultMetaData.SOURCE_VARIABLE_MAPPING));
+
+        // Batch headers don't have a version
+        map = getSerializer(false, true, true).getMetaDataFromMessage("BHS|^~\\&|A|B|||||ZZZ\rMSH|^~\\&|A|B|||||||||2.5");
+        assertEquals("B", map.get(DefaultMetaData.SOURCE_VARIABLE_MAPPING));
+        assertEquals("ZZZ", map.get(DefaultMetaData.TYPE_VARIABLE_MAPPING));
+        assertFalse(map.containsKey(DefaultMetaData.VERSION_VARIABLE_MAPPING));
+
+        // Missing fields aren't added
+        map = getSerializer(false, true, true).getMetaDataFromMessage("MSH|^~\\&|A|B|C");
+        assertEquals(1, map.size());
+        assertTrue(getSerializer(false, true, true).getMetaDataFromMessage("PID|1|2|3|4|5|6|7|8|9|10|11|12").isEmpty());
+    }
+
+    @Test
+    public void testStrictMetaData() throws Exception {
+        // The strict parser always splits repetitions and subcomponents
+        Map<String, Object> map = getSerializer(true, false, false).getMetaDataFromMessage(MESSAGE);
+        assertEquals("FAC", map.get(DefaultMetaData.SOURCE_VARIABLE_MAPPING));
+        assertEquals("ADT-A01", map.get(DefaultMetaData.TYPE_VARIABLE_MAPPING));
+        assertEquals("2.5", map.get(DefaultMetaData.VERSION_VARIABLE_MAPPING));
+
+        map = getSerializer(true, true, true).getMetaDataFromMessage(FileUtils.readFileToString(new File("tests/test-hl7-input.txt")));
+        assertEquals("MIRTH", map.get(DefaultMetaData.SOURCE_VARIABLE_MAPPING));
+        assertEquals("ORM-O01", map.get(DefaultMetaData.TYPE_VARIABLE_MAPPING));
+        assertEquals("2.4", map.get(DefaultMetaData.VERSION_VARIABLE_MAPPING));
+    }
+
+    @Test
+    public void testIndexCachedOnConnectorMessage() throws Exception {
+        ConnectorMessage connectorMessage = new ConnectorMessage();
+        ER7Serializer serializer = getSerializer(false, true, true);
+        serializer.populateMetaData(MESSAGE, connectorMessage);
+        assertEquals("ADT-A01", connectorMessage.getConnectorMap().get(DefaultMetaData.TYPE_VARIABLE_MAPPING));
+
+        ER7Index index = ER7Index.getIndex(MESSAGE, connectorMessage, "\r", true);
+        assertTrue(index == connectorMessage.getContentIndex(MESSAGE));
+        assertTrue(index == ER7Index.getIndex(MESSAGE, connectorMessage, "\r", true));
+
+        // Different content or settings build a new index
+        assertTrue(index != ER7Index.getIndex(new String(MESSAGE), connectorMessage, "\r", true));
+        assertTrue(ER7Index.getIndex(MESSAGE, connectorMessage, "\r", true) != ER7Index.getIndex(MESSAGE, connectorMessage, "\n", true));
+    }
+
+    @Test
+    public void testAck() throws Exception {
+        String ack = HL7v2ACKGenerator.generateAckResponse(MESSAGE, false, "AA", "OK", "yyyyMMdd", null, "\r");
+        String[] segments = ack.split("\r");
+        String[] msh = segments[0].split("\\|", -1);
+
+        assertEquals("MSH", msh[0]);
+        assertEquals("^~\\&", msh[1]);
+        assertEquals("RECEIVER", msh[2]);
+        assertEquals("RFAC", msh[3]);
+        assertEquals("SENDER", msh[4]);
+        assertEquals("FAC&SUB~FAC2", msh[5]);
+        assertEquals("ACK^A01^ACK", msh[8]);
+        assertEquals("P^T", msh[10]);
+        assertEquals("2.5", msh[11]);
+        assertEquals("MSA|AA|123|OK", segments[1]);
+
+        // Custom separators and defaults for missing fields
+        ack = HL7v2ACKGenerator.generateAckResponse("MSH#*#APP#FAC", false, "AE", null, "yyyyMMdd", "Error", "\n");
+        segments = ack.split("\n");
+        msh = segments[0].split("#", -1);
+        assertEquals("MSH#*~\\&#MIRTH##APP#FAC#" + msh[6] + "##ACK**ACK#" + msh[6] + "#P#2.4", segments[0]);
+        assertEquals("MSA#AE#1", segments[1]);
+        assertEquals("ERR#Error", segments[2]);
+    }
+
+    private ER7Serializer getSerializer(boolean useStrictParser, boolean handleRepetitions, boolean handleSubcomponents) {
+        HL7v2DataTypeProperties properties = new HL7v2DataTypeProperties();
+        HL7v2SerializationProperties serializationProperties = (HL7v2SerializationProperties) properties.getSerializationProperties();
+        serializationProperties.setUseStrictParser(useStrictParser);
+        serializationProperties.setHandleRepetitions(handleRepetitions);
+        serializationProperties.setHandleSubcomponents(handleSubcomponents);
+        return new ER7Serializer(properties.getSerializerProperties());
+    }
+}
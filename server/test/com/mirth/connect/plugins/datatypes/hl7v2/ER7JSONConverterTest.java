@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.plugins.datatypes.hl7v2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.mirth.connect.donkey.model.message.SerializationType;
+import com.mirth.connect.util.JsonXmlUtil;
+
+import de.odysseus.staxon.json.JsonXMLConfig;
+import de.odysseus.staxon.json.JsonXMLConfigBuilder;
+
+public class ER7JSONConverterTest {
+
+    private static final String MESSAGE = "MSH|^~\\&|SENDER|FACILITY|RECEIVER||20200101120000||ADT^A01|123|P|2.5\rPID|1||0012^^^A&B&C~456~||DOE^JOHN||||\rNK1|1|DOE^JANE\rNK1|2|DOE^JIM^^^^^L\rOBX|1|TX|||a\\T\\b&c^\rZZZ\rZZ1|";
+
+    // @formatter:off
+    private static final String[] FILES = new String[] {
+        "tests/test-hl7-input.txt",
+        "tests/test-hl7-batch-input.txt",
+        "tests/test-hl7-repetitions-input.txt",
+        "tests/test-hl7-subcomponents-input.txt",
+        "tests/test-hl7-whitespace-input.txt"
+    };
+    // @formatter:on
+
+    private ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testSameStructureAsXml() throws Exception {
+        for (boolean handleRepetitions : new boolean[] { true, false }) {
+            for (boolean handleSubcomponents : new boolean[] { true, false }) {
+                assertSameStructureAsXml(MESSAGE, handleRepetitions, handleSubcomponents);
+
+                for (String file : FILES) {
+                    assertSameStructureAsXml(FileUtils.readFileToString(new File(file)), handleRepetitions, handleSubcomponents);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ER7Serializer serializer = new ER7Serializer(new HL7v2DataTypeProperties().getSerializerProperties());
+        assertEquals(MESSAGE + "\r", serializer.fromJSON(serializer.toJSON(MESSAGE)));
+
+        for (String file : FILES) {
+            String message = FileUtils.readFileToString(new File(file)).replace("\r\n", "\r").trim() + "\r";
+            assertEquals(message, serializer.fromJSON(serializer.toJSON(message)));
+        }
+    }
+
+    @Test
+    public void testInterleavedSegmentOrder() throws Exception {
+        String message = "MSH|^~\\&|LAB||||20200101120000||ORU^R01|1|P|2.5\rPID|1||123\rOBR|1||A\rOBX|1|TX|||first\rOBX|2|TX|||second\rNTE|1||note\rOBR|2||B\rOBX|1|TX|||third\rNTE|1||other note\r";
+        ER7Serializer serializer = new ER7Serializer(new HL7v2DataTypeProperties().getSerializerProperties());
+        String json = serializer.toJSON(message);
+
+        JsonNode segments = mapper.readTree(json).get("HL7Message");
+        String[] order = new String[] { "MSH", "PID", "OBR", "OBX", "OBX", "NTE", "OBR", "OBX", "NTE" };
+        assertEquals(order.length, segments.size());
+        for (int i = 0; i < order.length; i++) {
+            assertEquals(order[i], segments.get(i).fieldNames().next());
+        }
+        assertEquals("B", segments.get(6).get("OBR").get("OBR.3").get("OBR.3.1").asText());
+        assertEquals("third", segments.get(7).get("OBX").get("OBX.5").get("OBX.5.1").asText());
+
+        assertEquals(message, serializer.fromJSON(json));
+    }
+
+    @Test
+    public void testFromJson() throws Exception {
+        // @formatter:off
+        String json = "{\"HL7Message\":[" +
+                "{\"MSH\":{\"MSH.1\":\"|\",\"MSH.2\":\"^~\\\\&\",\"MSH.3\":{\"MSH.3.1\":\"SENDER\"},\"MSH.9\":{\"MSH.9.1\":\"ADT\",\"MSH.9.2\":\"A01\"},\"MSH.12\":2.5}}," +
+                "{\"PID\":{\"PID.3\":[{\"PID.3.1\":1,\"PID.3.4\":{\"PID.3.4.2\":\"B\"}},\"456\"],\"PID.5\":{\"PID.5.2\":\"JOHN\"}}}," +
+                "{\"OBX\":{\"OBX.1\":\"1\"}},{\"OBX\":null}]}";
+        // @formatter:on
+
+        ER7JSONConverter converter = new ER7JSONConverter(true, true, "\n");
+        assertEquals("MSH|^~\\&|SENDER||||||ADT^A01|||2.5\nPID|||1^^^&B~456||^JOHN\nOBX|1\nOBX\n", converter.fromJSON(json));
+    }
+
+    @Test
+    public void testCustomSeparators() throws Exception {
+        String message = "MSH#*!\\$#SENDER#FACILITY\rPID#1#a*b$c!d";
+        ER7JSONConverter converter = new ER7JSONConverter(true, true, "\r");
+        String json = converter.toJSON(message);
+
+        assertEquals("#", mapper.readTree(json).get("HL7Message").get(0).get("MSH").get("MSH.1").asText());
+        assertEquals("c", mapper.readTree(json).get("HL7Message").get(1).get("PID").get("PID.2").get(0).get("PID.2.2").get("PID.2.2.2").asText());
+        assertEquals(message + "\r", converter.fromJSON(json));
+    }
+
+    @Test
+    public void testSerializationType() throws Exception {
+        HL7v2DataTypeProperties properties = new HL7v2DataTypeProperties();
+        assertEquals(SerializationType.XML, properties.getSerializationProperties().getSerializationType());
+        assertEquals(SerializationType.XML, properties.getDeserializationProperties().getSerializationType());
+
+        // Properties saved before the serialization type existed
+        properties.getSerializationProperties().setSerializationType(null);
+        assertEquals(SerializationType.XML, properties.getSerializationProperties().getSerializationType());
+
+        properties.getSerializationProperties().setSerializationType(SerializationType.JSON);
+        assertEquals(SerializationType.JSON, properties.getSerializationProperties().getSerializationType());
+    }
+
+    @Test
+    public void testSegmentWithoutFields() throws Exception {
+        ER7JSONConverter converter = new ER7JSONConverter(true, true, "\r");
+        JsonNode message = mapper.readTree(converter.toJSON(MESSAGE)).get("HL7Message");
+        assertTrue(message.get(5).get("ZZZ").isNull());
+        assertTrue(message.get(6).get("ZZ1").get("ZZ1.1").isNull());
+    }
+
+    private void assertSameStructureAsXml(String message, boolean handleRepetitions, boolean handleSubcomponents) throws Exception {
+        HL7v2DataTypeProperties properties = new HL7v2DataTypeProperties();
+        HL7v2SerializationProperties serializationProperties = (HL7v2SerializationProperties) properties.getSerializationProperties();
+        serializationProperties.setHandleRepetitions(handleRepetitions);
+        serializationProperties.setHandleSubcomponents(handleSubcomponents);
+        ER7Serializer serializer = new ER7Serializer(properties.getSerializerProperties());
+
+        /*
+         * Each segment should match the XML route for that segment's element. The direct conversion
+         * always writes strings, so compare against the XML route without primitives.
+         */
+        JsonXMLConfig config = new JsonXMLConfigBuilder().autoArray(true).autoPrimitive(false).prettyPrint(false).build();
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(serializer.toXML(message))));
+        ArrayNode expected = mapper.createArrayNode();
+
+        for (Node segment = document.getDocumentElement().getFirstChild(); segment != null; segment = segment.getNextSibling()) {
+            if (segment.getNodeType() == Node.ELEMENT_NODE) {
+                expected.add(mapper.readTree(JsonXmlUtil.xmlToJson(config, toXml(segment), true, false, false)));
+            }
+        }
+
+        assertEquals(expected, mapper.readTree(serializer.toJSON(message)).get("HL7Message"));
+    }
+
+    private String toXml(Node node) throws Exception {
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        StringWriter writer = new StringWriter();
+        transformer.transform(new DOMSource(node), new StreamResult(writer));
+        return writer.toString();
+    }
+}
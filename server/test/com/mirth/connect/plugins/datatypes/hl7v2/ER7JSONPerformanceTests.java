@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.plugins.datatypes.hl7v2;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.mirth.connect.util.JsonXmlUtil;
+
+/**
+ * Compares converting HL7 v2 messages between ER7 and JSON directly with the route through XML
+ * (ER7Reader, XMLPrettyPrinter and JsonXmlUtil), for a small message and for a large message with
+ * many OBX segments.
+ */
+public class ER7JSONPerformanceTests {
+    private final static int WARMUP_ITERATIONS = 1000;
+    private final static int ITERATIONS = 4000;
+    private final static int LARGE_MESSAGE_OBX_SEGMENTS = 500;
+
+    private ER7Serializer serializer = new ER7Serializer(new HL7v2DataTypeProperties().getSerializerProperties());
+
+    @Test
+    public void testSmallMessage() throws Exception {
+        runTest("Small message", FileUtils.readFileToString(new File("tests/test-hl7-input.txt")), ITERATIONS);
+    }
+
+    @Test
+    public void testLargeMessage() throws Exception {
+        StringBuilder builder = new StringBuilder(FileUtils.readFileToString(new File("tests/test-hl7-input.txt")).trim());
+
+        for (int i = 1; i <= LARGE_MESSAGE_OBX_SEGMENTS; i++) {
+            builder.append("\rOBX|").append(i).append("|NM|2345-7^Glucose^LN||").append(80 + i % 40).append("|mg/dL^mg/dL|70-105|N|||F|||20061213150000|LAB^Lab^L&Local&L~ALT^Alternate");
+        }
+
+        runTest("Large message", builder.toString(), ITERATIONS / 20);
+    }
+
+    private void runTest(String description, String message, int iterations) throws Exception {
+        String json = serializer.toJSON(message);
+
+        for (int i = 0; i < WARMUP_ITERATIONS / (ITERATIONS / iterations); i++) {
+            JsonXmlUtil.xmlToJson(serializer.toXML(message));
+            serializer.toJSON(message);
+            serializer.fromXML(JsonXmlUtil.jsonToXml(json));
+            serializer.fromJSON(json);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            JsonXmlUtil.xmlToJson(serializer.toXML(message));
+        }
+        long xmlToJsonNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            serializer.toJSON(message);
+        }
+        long toJsonNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            serializer.fromXML(JsonXmlUtil.jsonToXml(json));
+        }
+        long jsonToXmlNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            serializer.fromJSON(json);
+        }
+        long fromJsonNanos = System.nanoTime() - start;
+
+        System.out.println(description + " (" + message.length() + " characters, " + iterations + " iterations)");
+        System.out.println("  ER7 to JSON through XML: " + format(xmlToJsonNanos, iterations));
+        System.out.println("  ER7 to JSON directly:    " + format(toJsonNanos, iterations) + String.format(" (%.1fx)", (double) xmlToJsonNanos / toJsonNanos));
+        System.out.println("  JSON to ER7 through XML: " + format(jsonToXmlNanos, iterations));
+        System.out.println("  JSON to ER7 directly:    " + format(fromJsonNanos, iterations) + String.format(" (%.1fx)", (double) jsonToXmlNanos / fromJsonNanos));
+    }
+
+    private String format(long nanos, int iterations) {
+        return String.format("%.1f us/message", nanos / 1000.0 / iterations);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.plugins.datatypes.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.mirth.connect.donkey.server.message.batch.BatchMessageException;
+import com.mirth.connect.plugins.datatypes.json.JSONBatchProperties.SplitType;
+
+public class JSONStreamSplitterTest {
+
+    @Test
+    public void testArrayElements() throws Exception {
+        String batch = "[\n  {\"id\": 1, \"name\": \"One \\\"quoted\\\"\", \"tags\": [\"a\", \"b\"]},\n  {\"id\": 2, \"amount\": 1.10, \"big\": 123456789012345678901234567890, \"ok\": true, \"none\": null},\n  \"text\",\n  42,\n  []\n]";
+        assertEquals(Arrays.asList("{\"id\":1,\"name\":\"One \\\"quoted\\\"\",\"tags\":[\"a\",\"b\"]}", "{\"id\":2,\"amount\":1.10,\"big\":123456789012345678901234567890,\"ok\":true,\"none\":null}", "\"text\"", "42", "[]"), split(SplitType.Array_Elements, null, batch));
+
+        assertEquals(0, split(SplitType.Array_Elements, null, "[]").size());
+        assertEquals(0, split(SplitType.Array_Elements, null, "  ").size());
+
+        try {
+            split(SplitType.Array_Elements, null, "{\"id\": 1}");
+            fail();
+        } catch (BatchMessageException e) {
+        }
+    }
+
+    @Test
+    public void testJSONPointer() throws Exception {
+        String batch = "{\"header\": {\"records\": [0]}, \"data\": {\"records\": [{\"id\": 1}, {\"id\": 2, \"records\": [3]}]}, \"trailer\": [4]}";
+        assertEquals(Arrays.asList("{\"id\":1}", "{\"id\":2,\"records\":[3]}"), split(SplitType.JSON_Pointer, "/data/records", batch));
+        assertEquals(Arrays.asList("4"), split(SplitType.JSON_Pointer, " /trailer ", batch));
+        assertEquals(0, split(SplitType.JSON_Pointer, "/missing", batch).size());
+
+        // An empty pointer refers to the whole batch
+        assertEquals(Arrays.asList("1", "2"), split(SplitType.JSON_Pointer, "", "[1, 2]"));
+
+        try {
+            split(SplitType.JSON_Pointer, "/data", batch);
+            fail();
+        } catch (BatchMessageException e) {
+            assertTrue(e.getMessage().contains("/data"));
+        }
+    }
+
+    @Test
+    public void testNewlineDelimited() throws Exception {
+        String batch = "{\"id\": 1}\r\n\n{\"id\": 2}\n   \n[3]";
+        assertEquals(Arrays.asList("{\"id\": 1}", "{\"id\": 2}", "[3]"), split(SplitType.Newline_Delimited, null, batch));
+    }
+
+    @Test
+    public void testLargeArray() throws Exception {
+        final int count = 100000;
+
+        // Generate the batch as it is read, so it's never held in memory as a whole
+        Reader reader = new Reader() {
+            private int index = -1;
+            private String current = "[";
+            private int position;
+
+            @Override
+            public int read(char[] cbuf, int off, int len) {
+                if (position == current.length()) {
+                    if (++index > count) {
+                        return -1;
+                    }
+                    current = index == count ? "]" : (index > 0 ? "," : "") + "{\"id\":" + index + ",\"value\":\"" + index + "\"}";
+                    position = 0;
+                }
+
+                int length = Math.min(len, current.length() - position);
+                current.getChars(position, position + length, cbuf, off);
+                position += length;
+                return length;
+            }
+
+            @Override
+            public void close() {}
+        };
+
+        JSONStreamSplitter splitter = new JSONStreamSplitter(SplitType.Array_Elements, null, new BufferedReader(reader));
+        int messages = 0;
+        String message;
+        while ((message = splitter.next()) != null) {
+            assertEquals("{\"id\":" + messages + ",\"value\":\"" + messages + "\"}", message);
+            messages++;
+        }
+
+        assertEquals(count, messages);
+    }
+
+    private List<String> split(SplitType splitType, String jsonPointer, String batch) throws Exception {
+        JSONStreamSplitter splitter = new JSONStreamSplitter(splitType, jsonPointer, new BufferedReader(new StringReader(batch)));
+        List<String> messages = new ArrayList<String>();
+
+        try {
+            String message;
+            while ((message = splitter.next()) != null) {
+                messages.add(message);
+            }
+        } finally {
+            splitter.close();
+        }
+
+        return messages;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.plugins.datatypes.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+public class XMLStreamSplitterTest {
+
+    // @formatter:off
+    private static final String BATCH = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<batch xmlns:x=\"urn:x\">\n"
+            + "  <!-- header -->\n"
+            + "  <header id=\"1\">Test &amp; batch</header>\n"
+            + "  <record type=\"a\">\n"
+            + "    <name>One</name>\n"
+            + "    <x:code x:system=\"s\">1</x:code>\n"
+            + "    <record type=\"nested\"><name><![CDATA[<Nested>]]></name></record>\n"
+            + "  </record>\n"
+            + "  <group>\n"
+            + "    <record type=\"b\"><name>Two</name><?pi data?></record>\n"
+            + "    <x:record><name>Three</name></x:record>\n"
+            + "  </group>\n"
+            + "  <record xmlns=\"urn:default\"><name>Four</name></record>\n"
+            + "</batch>";
+    // @formatter:on
+
+    @Test
+    public void testElementName() throws Exception {
+        assertSameAsXPath(XMLStreamSplitter.forElementName("record"), "//*[local-name()='record']", 5);
+        assertSameAsXPath(XMLStreamSplitter.forElementName("name"), "//*[local-name()='name']", 5);
+        assertSameAsXPath(XMLStreamSplitter.forElementName("missing"), "//*[local-name()='missing']", 0);
+        assertSameAsXPath(XMLStreamSplitter.forElementName(""), "//*[local-name()='']", 0);
+    }
+
+    @Test
+    public void testLevel() throws Exception {
+        assertSameAsXPath(XMLStreamSplitter.forLevel(0), "/*", 1);
+        assertSameAsXPath(XMLStreamSplitter.forLevel(1), "/*/*", 4);
+        assertSameAsXPath(XMLStreamSplitter.forLevel(2), "/*/*/*", 6);
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        for (String query : new String[] { "/batch/record", "//record", "//record/name", "/batch/*/record", "//*", "/*/group/*", "/record", "//x:record" }) {
+            XMLStreamSplitter splitter = XMLStreamSplitter.forQuery(query);
+
+            if (query.contains(":")) {
+                assertNull(splitter);
+            } else {
+                assertNotNull(query, splitter);
+                assertSameAsXPath(splitter, query, -1);
+            }
+        }
+
+        assertNull(XMLStreamSplitter.forQuery("/batch/record[1]"));
+        assertNull(XMLStreamSplitter.forQuery("/batch//record"));
+        assertNull(XMLStreamSplitter.forQuery("//record/@type"));
+        assertNull(XMLStreamSplitter.forQuery("record"));
+    }
+
+    @Test
+    public void testExternalEntityNotResolved() throws Exception {
+        File file = File.createTempFile("XMLStreamSplitterTest", ".txt");
+
+        try {
+            FileUtils.writeStringToFile(file, "secret", "UTF-8");
+            String batch = "<?xml version=\"1.0\"?>\n<!DOCTYPE batch [<!ENTITY file SYSTEM \"" + file.toURI() + "\">]>\n<batch><record>&file;</record></batch>";
+
+            XMLStreamSplitter splitter = XMLStreamSplitter.forElementName("record");
+            StringReader reader = new StringReader(batch);
+            Element element;
+
+            try {
+                while ((element = splitter.next(reader)) != null) {
+                    assertFalse(element.getTextContent().contains("secret"));
+                }
+            } catch (XMLStreamException e) {
+                // Undeclared entities may also be rejected
+            } finally {
+                splitter.close();
+            }
+        } finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    private void assertSameAsXPath(XMLStreamSplitter splitter, String query, int expectedCount) throws Exception {
+        NodeList nodeList = (NodeList) XPathFactory.newInstance().newXPath().evaluate(query, new InputSource(new StringReader(BATCH)), XPathConstants.NODESET);
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            expected.add(toXML(nodeList.item(i)));
+        }
+
+        List<String> actual = new ArrayList<String>();
+        StringReader reader = new StringReader(BATCH);
+        Element element;
+        while ((element = splitter.next(reader)) != null) {
+            actual.add(toXML(element));
+        }
+        splitter.close();
+
+        if (expectedCount >= 0) {
+            assertEquals(expectedCount, actual.size());
+        }
+        assertEquals(query, expected, actual);
+    }
+
+    private String toXML(Node node) throws Exception {
+        StringWriter writer = new StringWriter();
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+        transformer.transform(new DOMSource(node), new StreamResult(writer));
+        return writer.toString();
+    }
+}
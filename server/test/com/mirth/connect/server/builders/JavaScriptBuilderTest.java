@@ -10,6 +10,8 @@
 package com.mirth.connect.server.builders;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -225,4 +227,53 @@ public class JavaScriptBuilderTest {
 
         assertEquals(scriptEmpty, scriptInnerDisabled);
     }
+
+    @Test
+    public void testMessageReferenced() throws ScriptBuilderException {
+        JavaScriptRule rule = new JavaScriptRule();
+        rule.setScript("return $('source') == 'A';");
+        JavaScriptStep step = new JavaScriptStep();
+        step.setScript("var match = /ID=(\\d+)/.exec(connectorMessage.getRawData());\nchannelMap.put('id', match[1]);\nvar msgCount = 1;");
+
+        Filter filter = new Filter();
+        filter.setElements(new ArrayList<Rule>(Arrays.asList(rule)));
+        Transformer transformer = new Transformer();
+        transformer.setElements(new ArrayList<Step>(Arrays.asList(step)));
+        assertFalse(JavaScriptBuilder.isMessageReferenced(filter, transformer, ""));
+
+        // A code template that reads msg
+        assertTrue(JavaScriptBuilder.isMessageReferenced(filter, transformer, "function getId() { return msg['PID']['PID.3']; }"));
+
+        for (String script : new String[] { "msg['PID']", "tmp = 'x';", "logger.info(template);", "connectorMessage.getTransformedData()", "eval(code)", "this.msg" }) {
+            step.setScript(script);
+            assertTrue(script, JavaScriptBuilder.isMessageReferenced(filter, transformer, ""));
+        }
+
+        // Disabled steps are ignored
+        step.setEnabled(false);
+        assertFalse(JavaScriptBuilder.isMessageReferenced(filter, transformer, ""));
+
+        // Generated steps read msg
+        MapperStep mapperStep = new MapperStep();
+        mapperStep.setVariable("id");
+        mapperStep.setMapping("msg['PID']['PID.3']['PID.3.1'].toString()");
+        transformer.setElements(new ArrayList<Step>(Arrays.asList(mapperStep)));
+        assertTrue(JavaScriptBuilder.isMessageReferenced(filter, transformer, ""));
+    }
+
+    @Test
+    public void testFilterTransformerScriptWithoutSerializing() throws ScriptBuilderException {
+        JavaScriptStep step = new JavaScriptStep();
+        step.setScript("channelMap.put('a', 'b');");
+        Transformer transformer = new Transformer();
+        transformer.setElements(new ArrayList<Step>(Arrays.asList(step)));
+        transformer.setOutboundTemplate("<template/>");
+
+        String script = JavaScriptBuilder.generateFilterTransformerScript(new Filter(), transformer, false);
+        assertFalse(script.contains("getTransformedData"));
+        assertFalse(script.contains("getRawData"));
+        assertFalse(script.contains("template"));
+        assertTrue(script.contains("channelMap.put('a', 'b');"));
+        assertTrue(script.endsWith("if (doFilter() == true) { doTransform(); return true; } else { return false; }"));
+    }
 }
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.server.transformers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import com.mirth.connect.donkey.model.message.ConnectorMessage;
+import com.mirth.connect.donkey.model.message.ContentType;
+import com.mirth.connect.donkey.model.message.MessageContent;
+import com.mirth.connect.donkey.model.message.SerializationType;
+import com.mirth.connect.donkey.server.channel.FilterTransformerResult;
+import com.mirth.connect.donkey.server.channel.components.FilterTransformer;
+import com.mirth.connect.donkey.server.channel.components.FilterTransformerException;
+import com.mirth.connect.donkey.server.message.DataType;
+import com.mirth.connect.model.Filter;
+import com.mirth.connect.model.Rule;
+import com.mirth.connect.model.Step;
+import com.mirth.connect.model.Transformer;
+import com.mirth.connect.plugins.datatypes.hl7v2.ER7Serializer;
+import com.mirth.connect.plugins.datatypes.hl7v2.HL7v2DataTypeProperties;
+import com.mirth.connect.plugins.datatypes.xml.XMLDataTypeProperties;
+import com.mirth.connect.plugins.datatypes.xml.XMLSerializer;
+import com.mirth.connect.plugins.javascriptstep.JavaScriptStep;
+import com.mirth.connect.plugins.mapper.MapperStep;
+import com.mirth.connect.plugins.mapper.MapperStep.Scope;
+import com.mirth.connect.plugins.rulebuilder.RuleBuilderRule;
+import com.mirth.connect.plugins.rulebuilder.RuleBuilderRule.Condition;
+
+public class NativeFilterTransformerTest {
+
+    private static final String HL7_MESSAGE = "MSH|^~\\&|SENDER|FAC|RECEIVER|RFAC|20200101120000||ADT^A01|123|P|2.5\rPID|1||0012^^^A&B||DOE^JOHN||19700101|M\rPV1|1|I|ICU^101^A\r";
+    private static final String XML_MESSAGE = "<order><id>42</id><patient><name>Doe</name><mrn> 7 </mrn></patient><item>a</item><item>b</item></order>";
+
+    @Test
+    public void testParsePath() throws Exception {
+        assertArrayEquals(new String[] { "PID", "PID.3", "PID.3.1" }, NativeFilterTransformer.parsePath("msg['PID']['PID.3']['PID.3.1'].toString()"));
+        assertArrayEquals(new String[] { "PID", "PID.3" }, NativeFilterTransformer.parsePath("msg[\"PID\"][\"PID.3\"]"));
+        assertNull(NativeFilterTransformer.parsePath("msg['PID'][0]['PID.3']"));
+        assertNull(NativeFilterTransformer.parsePath("msg['PID']['PID.3'].text()"));
+        assertNull(NativeFilterTransformer.parsePath("tmp['PID']"));
+        assertNull(NativeFilterTransformer.parsePath("msg['PID' + x]"));
+    }
+
+    @Test
+    public void testParseStringLiteral() throws Exception {
+        assertEquals("abc", NativeFilterTransformer.parseStringLiteral("'abc'"));
+        assertEquals("a'b\"c\\\n", NativeFilterTransformer.parseStringLiteral("\"a'b\\\"c\\\\\\n\""));
+        assertEquals("", NativeFilterTransformer.parseStringLiteral(" '' "));
+        assertNull(NativeFilterTransformer.parseStringLiteral("'a' + 'b'"));
+        assertNull(NativeFilterTransformer.parseStringLiteral("'\\u0041'"));
+        assertNull(NativeFilterTransformer.parseStringLiteral("5"));
+    }
+
+    @Test
+    public void testCompile() throws Exception {
+        DataType dataType = getHL7v2DataType();
+
+        assertNotNull(compile(filter(), transformer(mapper("mrn")), dataType));
+        assertNotNull(compile(filter(rule("msg['PID']['PID.8']['PID.8.1'].toString()", Condition.EQUALS, "'M'")), transformer(), dataType));
+
+        // Anything that isn't a simple path or string literal is left to JavaScript
+        assertNull(compile(filter(rule("msg['PID']['PID.8']['PID.8.1']", Condition.EQUALS, "'M'")), transformer(), dataType));
+        assertNull(compile(filter(rule("msg['PID']['PID.8']['PID.8.1'].toString()", Condition.EQUALS, "value")), transformer(), dataType));
+        assertNull(compile(filter(), transformer(mapper("mrn"), new JavaScriptStep()), dataType));
+
+        MapperStep mapper = mapper("mrn");
+        mapper.setDefaultValue("$('default')");
+        assertNull(compile(filter(), transformer(mapper), dataType));
+
+        mapper = mapper("mrn");
+        mapper.setReplacements(Arrays.asList((Pair<String, String>) new ImmutablePair<String, String>("/a/g", "'b'")));
+        assertNull(compile(filter(), transformer(mapper), dataType));
+
+        Transformer transformer = transformer(mapper("mrn"));
+        transformer.setOutboundTemplate("MSH|^~\\&|");
+        assertNull(compile(filter(), transformer, dataType));
+    }
+
+    @Test
+    public void testER7() throws Exception {
+        NativeFilterTransformer nativeFilterTransformer = compile(filter(), transformer(mapper("mrn", "msg['PID']['PID.3']['PID.3.1'].toString()"), mapper("sex", "msg['PID']['PID.8']['PID.8.1']"), mapper("room", "msg['PV1']['PV1.3']['PV1.3.2']"), mapper("empty", "msg['PID']['PID.2']['PID.2.1'].toString()"), mapper("missing", "msg['ZZZ']['ZZZ.1']['ZZZ.1.1'].toString()")), getHL7v2DataType());
+        assertFalse(nativeFilterTransformer.isReadSerializedMessage());
+
+        ConnectorMessage message = createMessage(HL7_MESSAGE);
+        FilterTransformerResult result = nativeFilterTransformer.doFilterTransform(message);
+
+        assertFalse(result.isFiltered());
+        assertEquals("0012", message.getChannelMap().get("mrn"));
+        assertEquals("M", message.getChannelMap().get("sex"));
+        assertEquals("101", message.getChannelMap().get("room"));
+        assertEquals("", message.getChannelMap().get("empty"));
+        assertEquals("", message.getChannelMap().get("missing"));
+
+        // The message wasn't serialized
+        assertNull(message.getTransformed());
+        assertEquals(0, getFallback(nativeFilterTransformer).count);
+    }
+
+    @Test
+    public void testER7MatchesXML() throws Exception {
+        DataType dataType = getHL7v2DataType();
+        List<String[]> paths = new ArrayList<String[]>();
+        paths.add(new String[] { "MSH", "MSH.1", "MSH.1.1" });
+        paths.add(new String[] { "MSH", "MSH.9", "MSH.9.2" });
+        paths.add(new String[] { "MSH", "MSH.12", "MSH.12.1" });
+        paths.add(new String[] { "PID", "PID.5", "PID.5.2" });
+        paths.add(new String[] { "PID", "PID.5", "PID.5.2", "PID.5.2.1" });
+        paths.add(new String[] { "PID", "PID.4", "PID.4.1" });
+        paths.add(new String[] { "PID", "PID.30", "PID.30.1" });
+        paths.add(new String[] { "PV1", "PV1.3", "PV1.3.3" });
+
+        String[] values = ((ER7Serializer) dataType.getSerializer()).getFieldReader(paths).readValues(HL7_MESSAGE, new ConnectorMessage());
+        assertArrayEquals(new XMLFieldReader(paths).readValues(dataType.getSerializer().toXML(HL7_MESSAGE), null), values);
+        assertArrayEquals(new String[] { "", "A01", "2.5", "JOHN", "", "", "", "A" }, values);
+    }
+
+    @Test
+    public void testER7Fallback() throws Exception {
+        NativeFilterTransformer nativeFilterTransformer = compile(filter(), transformer(mapper("mrn", "msg['PID']['PID.3']['PID.3.1'].toString()")), getHL7v2DataType());
+
+        // Repetitions create more than one PID.3 element
+        ConnectorMessage message = createMessage(HL7_MESSAGE.replace("0012^^^A&B", "0012~456"));
+        nativeFilterTransformer.doFilterTransform(message);
+
+        assertEquals(1, getFallback(nativeFilterTransformer).count);
+        assertNull(message.getChannelMap().get("mrn"));
+        assertTrue(message.getTransformed().getContent().contains("<HL7Message>"));
+        assertEquals(SerializationType.XML.toString(), message.getTransformed().getDataType());
+    }
+
+    @Test
+    public void testXML() throws Exception {
+        NativeFilterTransformer nativeFilterTransformer = compile(filter(), transformer(mapper("id", "msg['id'].toString()"), mapper("name", "msg['patient']['name']"), mapper("missing", "msg['patient']['dob']")), getXMLDataType());
+        assertTrue(nativeFilterTransformer.isReadSerializedMessage());
+
+        ConnectorMessage message = createMessage(XML_MESSAGE);
+        setTransformed(message);
+        FilterTransformerResult result = nativeFilterTransformer.doFilterTransform(message);
+
+        assertFalse(result.isFiltered());
+        assertEquals(XML_MESSAGE, result.getTransformedContent());
+        assertEquals("42", message.getChannelMap().get("id"));
+        assertEquals("Doe", message.getChannelMap().get("name"));
+        assertEquals("", message.getChannelMap().get("missing"));
+        assertEquals(0, getFallback(nativeFilterTransformer).count);
+
+        // Elements with child elements, repeated elements, and whitespace are left to E4X
+        for (String mapping : new String[] { "msg['patient'].toString()", "msg['item'].toString()", "msg['patient']['mrn'].toString()" }) {
+            nativeFilterTransformer = compile(filter(), transformer(mapper("value", mapping)), getXMLDataType());
+            message = createMessage(XML_MESSAGE);
+            setTransformed(message);
+            nativeFilterTransformer.doFilterTransform(message);
+            assertEquals(mapping, 1, getFallback(nativeFilterTransformer).count);
+        }
+    }
+
+    @Test
+    public void testRules() throws Exception {
+        String sex = "msg['PID']['PID.8']['PID.8.1'].toString()";
+        String ssn = "msg['PID']['PID.19']['PID.19.1'].toString()";
+
+        assertFalse(isFiltered(filter()));
+        assertFalse(isFiltered(filter(rule(sex, Condition.EXISTS))));
+        assertTrue(isFiltered(filter(rule(ssn, Condition.EXISTS))));
+        assertFalse(isFiltered(filter(rule(ssn, Condition.NOT_EXIST))));
+        assertFalse(isFiltered(filter(rule(sex, Condition.EQUALS, "'F'", "'M'"))));
+        assertTrue(isFiltered(filter(rule(sex, Condition.NOT_EQUAL, "'F'", "'M'"))));
+        assertFalse(isFiltered(filter(rule(ssn, Condition.EQUALS))));
+        assertTrue(isFiltered(filter(rule(sex, Condition.CONTAINS, "'F'"))));
+        assertFalse(isFiltered(filter(rule(sex, Condition.CONTAINS))));
+        assertTrue(isFiltered(filter(rule(sex, Condition.NOT_CONTAIN))));
+        assertFalse(isFiltered(filter(rule(sex, Condition.NOT_CONTAIN, "'F'", "'U'"))));
+
+        // AND binds tighter than OR
+        Rule and = rule(sex, Condition.EQUALS, "'F'");
+        and.setOperator(Rule.Operator.AND);
+        Rule or = rule(sex, Condition.EXISTS);
+        or.setOperator(Rule.Operator.OR);
+        assertFalse(isFiltered(filter(rule(ssn, Condition.EXISTS), and, or)));
+
+        assertTrue(isFiltered(filter(rule(ssn, Condition.EXISTS), or, and)));
+
+        // Rules without an operator after the first one don't form a valid expression
+        assertNull(compile(filter(rule(ssn, Condition.EXISTS), rule(sex, Condition.EXISTS)), transformer(), getHL7v2DataType()));
+    }
+
+    @Test
+    public void testMapperDefaultAndReplacements() throws Exception {
+        MapperStep mapper = mapper("value", "msg['PID']['PID.19']['PID.19.1'].toString()");
+        mapper.setDefaultValue("'none'");
+        mapper.setScope(Scope.CONNECTOR);
+
+        MapperStep replaced = mapper("name", "msg['PID']['PID.5']['PID.5.1'].toString()");
+        replaced.setReplacements(Arrays.asList((Pair<String, String>) new ImmutablePair<String, String>("'O'", "'0'"), new ImmutablePair<String, String>("\"^D\"", "'d'")));
+        replaced.setScope(Scope.RESPONSE);
+
+        ConnectorMessage message = createMessage(HL7_MESSAGE);
+        compile(filter(), transformer(mapper, replaced), getHL7v2DataType()).doFilterTransform(message);
+
+        assertEquals("none", message.getConnectorMap().get("value"));
+        assertEquals("d0E", message.getResponseMap().get("name"));
+    }
+
+    private boolean isFiltered(Filter filter) throws Exception {
+        return compile(filter, transformer(), getHL7v2DataType()).doFilterTransform(createMessage(HL7_MESSAGE)).isFiltered();
+    }
+
+    private NativeFilterTransformer compile(Filter filter, Transformer transformer, DataType dataType) {
+        return NativeFilterTransformer.compile("channelId", filter, transformer, dataType, new CountingFilterTransformer());
+    }
+
+    private CountingFilterTransformer getFallback(NativeFilterTransformer nativeFilterTransformer) throws Exception {
+        java.lang.reflect.Field field = NativeFilterTransformer.class.getDeclaredField("fallback");
+        field.setAccessible(true);
+        return (CountingFilterTransformer) field.get(nativeFilterTransformer);
+    }
+
+    private ConnectorMessage createMessage(String content) {
+        ConnectorMessage message = new ConnectorMessage("channelId", "channel", 1, 0, "serverId", null, null);
+        message.setRaw(new MessageContent("channelId", 1, 0, ContentType.RAW, content, null, false));
+        return message;
+    }
+
+    private void setTransformed(ConnectorMessage message) {
+        message.setTransformed(new MessageContent("channelId", 1, 0, ContentType.TRANSFORMED, message.getRaw().getContent(), SerializationType.XML.toString(), false));
+    }
+
+    private DataType getHL7v2DataType() {
+        return new DataType("HL7V2", new ER7Serializer(new HL7v2DataTypeProperties().getSerializerProperties()), null);
+    }
+
+    private DataType getXMLDataType() {
+        return new DataType("XML", new XMLSerializer(new XMLDataTypeProperties().getSerializerProperties()), null);
+    }
+
+    private Filter filter(Rule... rules) {
+        Filter filter = new Filter();
+        filter.setElements(new ArrayList<Rule>(Arrays.asList(rules)));
+        return filter;
+    }
+
+    private Transformer transformer(Step... steps) {
+        Transformer transformer = new Transformer();
+        transformer.setElements(new ArrayList<Step>(Arrays.asList(steps)));
+        return transformer;
+    }
+
+    private RuleBuilderRule rule(String field, Condition condition, String... values) {
+        RuleBuilderRule rule = new RuleBuilderRule();
+        rule.setField(field);
+        rule.setCondition(condition);
+        rule.setValues(new ArrayList<String>(Arrays.asList(values)));
+        rule.setOperator(Rule.Operator.NONE);
+        return rule;
+    }
+
+    private MapperStep mapper(String variable) {
+        return mapper(variable, "msg['PID']['PID.3']['PID.3.1'].toString()");
+    }
+
+    private MapperStep mapper(String variable, String mapping) {
+        MapperStep mapper = new MapperStep();
+        mapper.setVariable(variable);
+        mapper.setMapping(mapping);
+        return mapper;
+    }
+
+    private static class CountingFilterTransformer implements FilterTransformer {
+        private int count;
+
+        @Override
+        public FilterTransformerResult doFilterTransform(ConnectorMessage message) throws FilterTransformerException, InterruptedException {
+            count++;
+            return new FilterTransformerResult(false, message.getTransformed().getContent());
+        }
+
+        @Override
+        public void dispose() {}
+    }
+}
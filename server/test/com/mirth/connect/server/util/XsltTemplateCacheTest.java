@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.server.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class XsltTemplateCacheTest {
+
+    private static final String CHANNEL_ID = "XsltTemplateCacheTest";
+
+    // @formatter:off
+    private static final String TEMPLATE =
+        "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+        "<xsl:output method=\"text\"/>" +
+        "<xsl:param name=\"prefix\"/>" +
+        "<xsl:template match=\"/\"><xsl:value-of select=\"$prefix\"/><xsl:value-of select=\"value\"/></xsl:template>" +
+        "</xsl:stylesheet>";
+    // @formatter:on
+
+    private XsltTemplateCache cache = XsltTemplateCache.getInstance();
+
+    @After
+    public void after() {
+        cache.removeChannel(CHANNEL_ID);
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        assertEquals("1", transform(cache.getTransformer(CHANNEL_ID, TEMPLATE, null), "<value>1</value>"));
+        assertEquals("2", transform(cache.getTransformer(CHANNEL_ID, TEMPLATE, null), "<value>2</value>"));
+        assertEquals("3", transform(cache.getTransformer(CHANNEL_ID, TEMPLATE, " "), "<value>3</value>"));
+        assertEquals(1, cache.getMissCount(CHANNEL_ID));
+        assertEquals(2, cache.getHitCount(CHANNEL_ID));
+
+        // A different factory class compiles the stylesheet again
+        String factoryClassName = javax.xml.transform.TransformerFactory.newInstance().getClass().getName();
+        cache.getTransformer(CHANNEL_ID, TEMPLATE, factoryClassName);
+        assertEquals(2, cache.getMissCount(CHANNEL_ID));
+
+        cache.removeChannel(CHANNEL_ID);
+        assertEquals(0, cache.getHitCount(CHANNEL_ID));
+        cache.getTransformer(CHANNEL_ID, TEMPLATE, null);
+        assertEquals(1, cache.getMissCount(CHANNEL_ID));
+    }
+
+    @Test
+    public void testTransformerPerThread() throws Exception {
+        Transformer transformer = cache.getTransformer(CHANNEL_ID, TEMPLATE, null);
+        transformer.setParameter("prefix", "a");
+        assertEquals("a1", transform(transformer, "<value>1</value>"));
+
+        // The same thread gets the same transformer back, without the previous parameters
+        Transformer reused = cache.getTransformer(CHANNEL_ID, TEMPLATE, null);
+        assertTrue(transformer == reused);
+        assertEquals("2", transform(reused, "<value>2</value>"));
+
+        final AtomicReference<Transformer> otherTransformer = new AtomicReference<Transformer>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    otherTransformer.set(cache.getTransformer(CHANNEL_ID, TEMPLATE, null));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertTrue(otherTransformer.get() != null && otherTransformer.get() != transformer);
+        assertEquals(1, cache.getMissCount(CHANNEL_ID));
+    }
+
+    @Test
+    public void testNullChannel() throws Exception {
+        // Other tests run XSLT steps without a channel
+        cache.removeChannel(null);
+
+        assertEquals("1", transform(cache.getTransformer(null, TEMPLATE, null), "<value>1</value>"));
+        assertEquals(1, cache.getMissCount(null));
+        cache.removeChannel(null);
+    }
+
+    private String transform(Transformer transformer, String xml) throws Exception {
+        StringWriter writer = new StringWriter();
+        transformer.transform(new StreamSource(new StringReader(xml)), new StreamResult(writer));
+        return writer.toString();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ *
+ * http://www.mirthcorp.com
+ *
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.server.util.javascript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Script;
+
+public class CompiledScriptFileCacheTest {
+
+    private static final byte[] KEY = "0123456789abcdef".getBytes();
+    private static final String SCRIPT = "function doScript() { return [1, 2, 3].map(function(value) { return value * 2; }).join(','); }\ndoScript();";
+
+    private File directory;
+    private Context context;
+
+    @Before
+    public void before() throws Exception {
+        directory = new File(FileUtils.getTempDirectory(), "CompiledScriptFileCacheTest");
+        FileUtils.deleteDirectory(directory);
+        context = new ContextFactory().enterContext();
+    }
+
+    @After
+    public void after() throws Exception {
+        Context.exit();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testInterpretedScript() throws Exception {
+        context.setOptimizationLevel(-1);
+        assertCached();
+    }
+
+    @Test
+    public void testCompiledScript() throws Exception {
+        context.setOptimizationLevel(9);
+        assertCached();
+    }
+
+    @Test
+    public void testKey() throws Exception {
+        context.setOptimizationLevel(-1);
+        CompiledScriptFileCache cache = new CompiledScriptFileCache(directory, "1.0.0", KEY);
+
+        cache.compile(context, SCRIPT, "script1");
+        cache.compile(context, SCRIPT, "script1");
+        assertEquals(1, getCachedFiles().length);
+
+        cache.compile(context, SCRIPT, "script2");
+        cache.compile(context, SCRIPT + "\n", "script1");
+        new CompiledScriptFileCache(directory, "1.0.1", KEY).compile(context, SCRIPT, "script1");
+        context.setOptimizationLevel(0);
+        cache.compile(context, SCRIPT, "script1");
+        assertEquals(5, getCachedFiles().length);
+    }
+
+    @Test
+    public void testInvalidFile() throws Exception {
+        context.setOptimizationLevel(-1);
+        CompiledScriptFileCache cache = new CompiledScriptFileCache(directory, "1.0.0", KEY);
+        cache.compile(context, SCRIPT, "script1");
+
+        File file = getCachedFiles()[0];
+        FileUtils.writeStringToFile(file, "invalid", "UTF-8");
+
+        Script script = cache.compile(context, SCRIPT, "script1");
+        assertEquals("2,4,6", execute(script));
+        assertTrue(file.length() > "invalid".length());
+    }
+
+    @Test
+    public void testModifiedFile() throws Exception {
+        context.setOptimizationLevel(9);
+        CompiledScriptFileCache cache = new CompiledScriptFileCache(directory, "1.0.0", KEY);
+        cache.compile(context, SCRIPT, "script1");
+
+        File file = getCachedFiles()[0];
+        byte[] contents = FileUtils.readFileToByteArray(file);
+        contents[contents.length - 1]++;
+        FileUtils.writeByteArrayToFile(file, contents);
+
+        Script script = cache.compile(context, SCRIPT, "script1");
+        assertEquals("2,4,6", execute(script));
+        assertFalse(Arrays.equals(contents, FileUtils.readFileToByteArray(file)));
+    }
+
+    @Test
+    public void testOtherKey() throws Exception {
+        context.setOptimizationLevel(-1);
+        new CompiledScriptFileCache(directory, "1.0.0", KEY).compile(context, SCRIPT, "script1");
+
+        File file = getCachedFiles()[0];
+        byte[] contents = FileUtils.readFileToByteArray(file);
+
+        // A file signed with a different key is compiled again
+        Script script = new CompiledScriptFileCache(directory, "1.0.0", "fedcba9876543210".getBytes()).compile(context, SCRIPT, "script1");
+        assertEquals("2,4,6", execute(script));
+        assertFalse(Arrays.equals(contents, FileUtils.readFileToByteArray(file)));
+    }
+
+    @Test
+    public void testSerializedClassNotAllowed() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
+        objectOutputStream.writeObject(new ArrayList<String>());
+        objectOutputStream.flush();
+
+        try {
+            new CompiledScriptFileCache.ScriptObjectInputStream(new ByteArrayInputStream(outputStream.toByteArray())).readObject();
+            fail("Expected the class to be rejected");
+        } catch (InvalidClassException e) {
+        }
+    }
+
+    private void assertCached() throws Exception {
+        Script compiled = new CompiledScriptFileCache(directory, "1.0.0", KEY).compile(context, SCRIPT, "script1");
+        assertEquals(1, getCachedFiles().length);
+
+        Script loaded = new CompiledScriptFileCache(directory, "1.0.0", KEY).compile(context, SCRIPT, "script1");
+        assertTrue(compiled != loaded);
+        assertEquals(1, getCachedFiles().length);
+        assertEquals("2,4,6", execute(compiled));
+        assertEquals("2,4,6", execute(loaded));
+        assertEquals(context.decompileScript(compiled, 0), context.decompileScript(loaded, 0));
+    }
+
+    private File[] getCachedFiles() {
+        return directory.listFiles();
+    }
+
+    private Object execute(Script script) {
+        return Context.toString(script.exec(context, context.initStandardObjects()));
+    }
+}
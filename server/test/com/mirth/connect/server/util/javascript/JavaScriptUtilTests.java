@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) Mirth Corporation. All rights reserved.
+ * 
+ * http://www.mirthcorp.com
+ * 
+ * The software in this package is published under the terms of the MPL license a copy of which has
+ * been included with this distribution in the LICENSE.txt file.
+ */
+
+package com.mirth.connect.server.util.javascript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+public class JavaScriptUtilTests {
+
+    private static MirthContextFactory contextFactory;
+
+    @BeforeClass
+    public static void beforeClass() {
+        contextFactory = new MirthContextFactory(new URL[0], new HashSet<String>());
+    }
+
+    @After
+    public void after() {
+        JavaScriptUtil.setInlineExecution(false);
+    }
+
+    @Test
+    public void testInlineExecution() throws Exception {
+        JavaScriptUtil.setInlineExecution(true);
+        Thread callingThread = Thread.currentThread();
+        String threadName = callingThread.getName();
+        ClassLoader contextClassLoader = callingThread.getContextClassLoader();
+
+        Thread executingThread = JavaScriptUtil.execute(new ScriptTask("1 + 1")).thread;
+
+        assertEquals(callingThread, executingThread);
+        assertEquals(threadName, callingThread.getName());
+        assertEquals(contextClassLoader, callingThread.getContextClassLoader());
+        assertTrue(Context.getCurrentContext() == null);
+    }
+
+    @Test
+    public void testPooledExecution() throws Exception {
+        assertTrue(Thread.currentThread() != JavaScriptUtil.execute(new ScriptTask("1 + 1")).thread);
+    }
+
+    @Test
+    public void testNestedExecutionIsNotInline() throws Exception {
+        JavaScriptUtil.setInlineExecution(true);
+
+        ScriptTask outer = new ScriptTask("1 + 1") {
+            @Override
+            Object execute(Context context, Script script) throws Exception {
+                nested = JavaScriptUtil.execute(new ScriptTask("2 + 2")).thread;
+                return super.execute(context, script);
+            }
+        };
+
+        JavaScriptUtil.execute(outer);
+        assertEquals(Thread.currentThread(), outer.thread);
+        assertTrue(outer.nested != null && outer.nested != Thread.currentThread());
+    }
+
+    @Test(timeout = 30000)
+    public void testInlineHalt() throws Exception {
+        JavaScriptUtil.setInlineExecution(true);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicReference<Throwable> result = new AtomicReference<Throwable>();
+
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    JavaScriptUtil.execute(new ScriptTask("while (true) {}") {
+                        @Override
+                        Object execute(Context context, Script script) throws Exception {
+                            started.countDown();
+                            return super.execute(context, script);
+                        }
+                    });
+                } catch (Throwable t) {
+                    result.set(t);
+                }
+            }
+        };
+
+        thread.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        thread.interrupt();
+        thread.join();
+
+        assertTrue(result.get() instanceof InterruptedException);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void testContextReuse() throws Exception {
+        JavaScriptUtil.setInlineExecution(true);
+
+        Context first = JavaScriptUtil.execute(new ScriptTask("1 + 1")).context;
+        Context second = JavaScriptUtil.execute(new ScriptTask("1 + 1")).context;
+        assertTrue(first == second);
+
+        // A context from another factory is not reused
+        MirthContextFactory otherContextFactory = new MirthContextFactory(new URL[0], new HashSet<String>());
+        Context other = otherContextFactory.enterContext();
+        Context.exit();
+        assertTrue(other != second);
+    }
+
+    @Test
+    public void testHaltedContextIsReset() throws Exception {
+        JavaScriptUtil.setInlineExecution(true);
+
+        Context halted = JavaScriptUtil.execute(new ScriptTask("1 + 1")).context;
+        ((MirthContext) halted).setRunning(false);
+
+        ScriptTask task = JavaScriptUtil.execute(new ScriptTask("1 + 1"));
+        assertTrue(halted == task.context);
+        assertEquals(2, ((Number) task.result).intValue());
+    }
+
+    @Test
+    public void testScopeTemplate() throws Exception {
+        Object logger = new Object();
+        Context context = JavaScriptScopeUtil.getContext(contextFactory);
+
+        try {
+            Scriptable scope1 = getDeployScope(logger, "channelName");
+            Scriptable scope2 = getDeployScope(logger, "channelName");
+            Scriptable scope3 = getDeployScope(logger, "otherName");
+
+            assertTrue(scope1 != scope2);
+            assertTrue(scope1.getPrototype() == scope2.getPrototype());
+            assertTrue(scope1.getPrototype() != scope3.getPrototype());
+            assertEquals("channelId", ScriptableObject.getProperty(scope1, "channelId"));
+            assertEquals("otherName", ScriptableObject.getProperty(scope3, "channelName"));
+
+            // Variables set by a script stay in its own scope
+            context.evaluateString(scope1, "channelId = 'changed'; var x = 1;", "Test", 1, null);
+            assertEquals("changed", ScriptableObject.getProperty(scope1, "channelId"));
+            assertEquals("channelId", ScriptableObject.getProperty(scope2, "channelId"));
+            assertFalse(ScriptableObject.hasProperty(scope2, "x"));
+        } finally {
+            Context.exit();
+        }
+    }
+
+    @Test
+    public void testRemoveScopeTemplates() throws Exception {
+        Object logger = new Object();
+        Scriptable deployed = getDeployScope(logger, "channelName");
+        assertTrue(deployed.getPrototype() == getDeployScope(logger, "channelName").getPrototype());
+
+        // Undeploying the channel removes its templates, so the next deploy builds new ones
+        contextFactory.removeScopeTemplates("channelId");
+        assertTrue(deployed.getPrototype() != getDeployScope(logger, "channelName").getPrototype());
+    }
+
+    private static Scriptable getDeployScope(Object logger, String channelName) {
+        try {
+            return JavaScriptScopeUtil.getDeployScope(contextFactory, logger, "channelId", channelName);
+        } finally {
+            Context.exit();
+        }
+    }
+
+    private static class ScriptTask extends JavaScriptTask<ScriptTask> {
+        private String source;
+        Thread thread;
+        Thread nested;
+        Context context;
+        Object result;
+
+        ScriptTask(String source) {
+            super(contextFactory, "Test");
+            this.source = source;
+        }
+
+        @Override
+        public ScriptTask doCall() throws Exception {
+            thread = Thread.currentThread();
+            context = JavaScriptScopeUtil.getContext(getContextFactory());
+
+            try {
+                result = execute(context, context.compileString(source, "Test", 1, null));
+                return this;
+            } finally {
+                Context.exit();
+            }
+        }
+
+        Object execute(Context context, Script script) throws Exception {
+            return executeScript(script, context.newObject(((MirthContext) context).getSealedSharedScope()));
+        }
+    }
+}